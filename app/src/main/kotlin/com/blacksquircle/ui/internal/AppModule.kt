@@ -29,6 +29,8 @@ import com.blacksquircle.ui.navigation.api.provider.EntryProvider
 import dagger.Module
 import dagger.Provides
 import dagger.multibindings.IntoSet
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.SupervisorJob
 import javax.inject.Singleton
 
 @Module
@@ -57,4 +59,11 @@ internal object AppModule {
     fun provideStringProvider(context: Context): StringProvider {
         return StringProviderImpl(context)
     }
+
+    /** Lives as long as the process, for work owned by singletons */
+    @Provides
+    @Singleton
+    fun provideApplicationScope(dispatcherProvider: DispatcherProvider): CoroutineScope {
+        return CoroutineScope(dispatcherProvider.io() + SupervisorJob())
+    }
 }
\ No newline at end of file
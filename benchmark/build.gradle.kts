@@ -25,6 +25,7 @@ plugins {
 android {
     namespace = "com.blacksquircle.benchmark"
     targetProjectPath = ":app"
+    useLibrary("android.test.mock")
 
     testOptions.managedDevices.allDevices {
         create<ManagedVirtualDevice>("pixel6Api34") {
@@ -45,6 +46,12 @@ dependencies {
     implementation(libs.test.junit.ext)
     implementation(libs.test.runner)
     implementation(libs.test.macrobenchmark)
+    implementation(libs.test.microbenchmark)
+    implementation(libs.kotlinx.coroutines.core)
+
+    implementation(project(":filesystems:filesystem-base"))
+    implementation(project(":filesystems:filesystem-local"))
+    implementation(project(":filesystems:filesystem-saf"))
 }
 
 androidComponents {
@@ -0,0 +1,98 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.benchmark.filesystem
+
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.blacksquircle.ui.filesystem.base.charset.EncodingDetector
+import com.blacksquircle.ui.filesystem.base.model.FileModel
+import com.blacksquircle.ui.filesystem.base.model.FileParams
+import com.blacksquircle.ui.filesystem.base.utils.openReader
+import com.blacksquircle.ui.filesystem.local.LocalFilesystem
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+import java.io.RandomAccessFile
+
+/**
+ * Charset detection of a 10 MB file that is plain ASCII apart from its tail.
+ *
+ * ./gradlew :benchmark:connectedBenchmarkAndroidTest
+ **/
+@RunWith(AndroidJUnit4::class)
+class EncodingDetectorBenchmark {
+
+    @get:Rule
+    val rule = BenchmarkRule()
+
+    private val filesystem = LocalFilesystem()
+    private lateinit var file: File
+    private lateinit var fileModel: FileModel
+
+    @Before
+    fun setup() {
+        val cacheDir = InstrumentationRegistry.getInstrumentation().targetContext.cacheDir
+        file = File(cacheDir, "encoding.txt")
+        file.bufferedWriter().use { writer ->
+            val line = "The quick brown fox jumps over the lazy dog\n"
+            repeat(FILE_SIZE / line.length) { writer.write(line) }
+            writer.write("Съешь же ещё этих мягких французских булок\n")
+        }
+        fileModel = FileModel(
+            fileUri = LocalFilesystem.LOCAL_SCHEME + file.absolutePath,
+            filesystemUuid = LocalFilesystem.LOCAL_UUID,
+        )
+    }
+
+    @After
+    fun cleanup() {
+        file.delete()
+    }
+
+    @Test
+    fun detectHead() {
+        rule.measureRepeated {
+            file.inputStream().buffered().use(EncodingDetector::detect)
+        }
+    }
+
+    @Test
+    fun detectSampled() {
+        rule.measureRepeated {
+            RandomAccessFile(file, "r").use(EncodingDetector::detect)
+        }
+    }
+
+    @Test
+    fun openReaderDetected() {
+        val fileParams = FileParams(chardet = true)
+        val buffer = CharArray(BUFFER_SIZE)
+        rule.measureRepeated {
+            filesystem.openReader(fileModel, fileParams).use { it.read(buffer) }
+        }
+    }
+
+    companion object {
+        private const val FILE_SIZE = 10 * 1024 * 1024
+        private const val BUFFER_SIZE = 8 * 1024
+    }
+}
\ No newline at end of file
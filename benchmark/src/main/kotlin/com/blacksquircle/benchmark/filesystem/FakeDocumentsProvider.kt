@@ -0,0 +1,102 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.benchmark.filesystem
+
+import android.database.Cursor
+import android.database.MatrixCursor
+import android.os.CancellationSignal
+import android.os.ParcelFileDescriptor
+import android.provider.DocumentsContract.Document
+import android.provider.DocumentsContract.Root
+import android.provider.DocumentsProvider
+
+/**
+ * Serves a single folder of [childCount] documents from memory, so a listing
+ * measures the query and the mapping rather than a real storage backend.
+ */
+class FakeDocumentsProvider(private val childCount: Int) : DocumentsProvider() {
+
+    override fun onCreate(): Boolean = true
+
+    override fun queryRoots(projection: Array<out String>?): Cursor {
+        val cursor = MatrixCursor(projection ?: arrayOf(Root.COLUMN_ROOT_ID, Root.COLUMN_DOCUMENT_ID))
+        cursor.newRow()
+            .add(Root.COLUMN_ROOT_ID, ROOT_ID)
+            .add(Root.COLUMN_DOCUMENT_ID, ROOT_ID)
+        return cursor
+    }
+
+    override fun queryDocument(documentId: String, projection: Array<out String>?): Cursor {
+        val cursor = MatrixCursor(projection ?: DEFAULT_PROJECTION)
+        if (documentId == ROOT_ID) {
+            cursor.newRow()
+                .add(Document.COLUMN_DOCUMENT_ID, ROOT_ID)
+                .add(Document.COLUMN_DISPLAY_NAME, ROOT_ID)
+                .add(Document.COLUMN_MIME_TYPE, Document.MIME_TYPE_DIR)
+        } else {
+            addDocument(cursor, documentId.removePrefix(CHILD_PREFIX).toInt())
+        }
+        return cursor
+    }
+
+    override fun queryChildDocuments(
+        parentDocumentId: String,
+        projection: Array<out String>?,
+        sortOrder: String?,
+    ): Cursor {
+        val cursor = MatrixCursor(projection ?: DEFAULT_PROJECTION, childCount)
+        if (parentDocumentId == ROOT_ID) {
+            repeat(childCount) { index -> addDocument(cursor, index) }
+        }
+        return cursor
+    }
+
+    override fun openDocument(
+        documentId: String,
+        mode: String,
+        signal: CancellationSignal?,
+    ): ParcelFileDescriptor {
+        throw UnsupportedOperationException()
+    }
+
+    private fun addDocument(cursor: MatrixCursor, index: Int) {
+        cursor.newRow()
+            .add(Document.COLUMN_DOCUMENT_ID, CHILD_PREFIX + index)
+            .add(Document.COLUMN_DISPLAY_NAME, "file_$index.txt")
+            .add(Document.COLUMN_MIME_TYPE, "text/plain")
+            .add(Document.COLUMN_SIZE, index.toLong())
+            .add(Document.COLUMN_LAST_MODIFIED, 1_700_000_000_000L + index)
+            .add(Document.COLUMN_FLAGS, Document.FLAG_SUPPORTS_WRITE or Document.FLAG_SUPPORTS_DELETE)
+    }
+
+    companion object {
+
+        const val AUTHORITY = "com.blacksquircle.benchmark.documents"
+        const val ROOT_ID = "root"
+
+        private const val CHILD_PREFIX = "child:"
+
+        private val DEFAULT_PROJECTION = arrayOf(
+            Document.COLUMN_DOCUMENT_ID,
+            Document.COLUMN_DISPLAY_NAME,
+            Document.COLUMN_MIME_TYPE,
+            Document.COLUMN_SIZE,
+            Document.COLUMN_LAST_MODIFIED,
+            Document.COLUMN_FLAGS,
+        )
+    }
+}
\ No newline at end of file
@@ -0,0 +1,91 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.benchmark.filesystem
+
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.blacksquircle.ui.filesystem.base.model.FileModel
+import com.blacksquircle.ui.filesystem.base.model.FileParams
+import com.blacksquircle.ui.filesystem.base.model.LineBreak
+import com.blacksquircle.ui.filesystem.base.utils.useWriter
+import com.blacksquircle.ui.filesystem.local.LocalFilesystem
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+
+/**
+ * Saves 1, 10 and 100 MB of LF text as CRLF, the conversion happens while encoding.
+ *
+ * ./gradlew :benchmark:connectedBenchmarkAndroidTest
+ **/
+@RunWith(AndroidJUnit4::class)
+class LineBreakWriterBenchmark {
+
+    @get:Rule
+    val rule = BenchmarkRule()
+
+    private val filesystem = LocalFilesystem()
+    private val fileParams = FileParams(linebreak = LineBreak.CRLF)
+    private val chunk = buildString {
+        while (length < CHUNK_SIZE) {
+            append("fun main() = println(\"Hello World!\")\n")
+        }
+    }.toCharArray()
+
+    private lateinit var file: File
+    private lateinit var fileModel: FileModel
+
+    @Before
+    fun setup() {
+        val cacheDir = InstrumentationRegistry.getInstrumentation().targetContext.cacheDir
+        file = File(cacheDir, "linebreaks.txt")
+        fileModel = LocalFilesystem.toFileModel(file)
+    }
+
+    @After
+    fun cleanup() {
+        file.delete()
+    }
+
+    @Test
+    fun save1Mb() = save(megabytes = 1)
+
+    @Test
+    fun save10Mb() = save(megabytes = 10)
+
+    @Test
+    fun save100Mb() = save(megabytes = 100)
+
+    private fun save(megabytes: Int) {
+        val chunkCount = megabytes * MEGABYTE / chunk.size
+        rule.measureRepeated {
+            filesystem.useWriter(fileModel, fileParams) { writer ->
+                repeat(chunkCount) { writer.write(chunk) }
+            }
+        }
+    }
+
+    companion object {
+        private const val MEGABYTE = 1024 * 1024
+        private const val CHUNK_SIZE = 64 * 1024
+    }
+}
\ No newline at end of file
@@ -0,0 +1,106 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.benchmark.filesystem
+
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.blacksquircle.ui.filesystem.local.LocalFilesystem
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.runBlocking
+import org.junit.AfterClass
+import org.junit.BeforeClass
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+import java.io.RandomAccessFile
+
+/**
+ * Copies a tree of 50k small files and a folder of a few large files.
+ *
+ * ./gradlew :benchmark:connectedBenchmarkAndroidTest
+ **/
+@RunWith(AndroidJUnit4::class)
+class LocalCopyBenchmark {
+
+    @get:Rule
+    val rule = BenchmarkRule()
+
+    private val filesystem = LocalFilesystem()
+
+    @Test
+    fun copySmallFiles50k() = copy(smallTree)
+
+    @Test
+    fun copyLargeFiles() = copy(largeFiles)
+
+    private fun copy(source: File) {
+        val sourceModel = LocalFilesystem.toFileModel(source)
+        val destModel = LocalFilesystem.toFileModel(destDir)
+        rule.measureRepeated {
+            runBlocking {
+                filesystem.copyFile(sourceModel, destModel).collect()
+            }
+            runWithTimingDisabled {
+                File(destDir, source.name).deleteRecursively()
+            }
+        }
+    }
+
+    companion object {
+
+        private const val SMALL_FILES = 50_000
+        private const val SMALL_FILES_PER_FOLDER = 500
+        private const val LARGE_FILES = 4
+        private const val LARGE_FILE_SIZE = 64 * 1024 * 1024L
+
+        private lateinit var smallTree: File
+        private lateinit var largeFiles: File
+        private lateinit var destDir: File
+
+        @JvmStatic
+        @BeforeClass
+        fun setup() {
+            val cacheDir = InstrumentationRegistry.getInstrumentation().targetContext.cacheDir
+            smallTree = File(cacheDir, "copy-small")
+            repeat(SMALL_FILES) { index ->
+                val folder = File(smallTree, "folder_${index / SMALL_FILES_PER_FOLDER}")
+                folder.mkdirs()
+                File(folder, "file_$index.txt").writeText("Hello World! $index")
+            }
+            largeFiles = File(cacheDir, "copy-large")
+            largeFiles.mkdirs()
+            repeat(LARGE_FILES) { index ->
+                RandomAccessFile(File(largeFiles, "file_$index.bin"), "rw").use { file ->
+                    file.setLength(LARGE_FILE_SIZE)
+                }
+            }
+            destDir = File(cacheDir, "copy-dest")
+            destDir.mkdirs()
+        }
+
+        @JvmStatic
+        @AfterClass
+        fun cleanup() {
+            smallTree.deleteRecursively()
+            largeFiles.deleteRecursively()
+            destDir.deleteRecursively()
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.benchmark.filesystem
+
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.blacksquircle.ui.filesystem.local.LocalFilesystem
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.junit.AfterClass
+import org.junit.BeforeClass
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+
+/**
+ * Lists directories of 10k and 100k files, compared with one [File] call per attribute.
+ * The listing stats each entry once and adds an access(2) call for every permission the
+ * mode leaves possible, i.e. read and write for the empty files created here.
+ *
+ * ./gradlew :benchmark:connectedBenchmarkAndroidTest
+ **/
+@RunWith(AndroidJUnit4::class)
+class LocalListingBenchmark {
+
+    @get:Rule
+    val rule = BenchmarkRule()
+
+    private val filesystem = LocalFilesystem()
+
+    @Test
+    fun listFiles10k() = listFiles(smallDir)
+
+    @Test
+    fun listFiles100k() = listFiles(largeDir)
+
+    @Test
+    fun listFilesLegacy10k() = listFilesLegacy(smallDir)
+
+    @Test
+    fun listFilesLegacy100k() = listFilesLegacy(largeDir)
+
+    @Test
+    fun firstChunk100k() {
+        val parent = LocalFilesystem.toFileModel(largeDir)
+        rule.measureRepeated {
+            runBlocking { filesystem.streamFiles(parent).first() }
+        }
+    }
+
+    private fun listFiles(directory: File) {
+        val parent = LocalFilesystem.toFileModel(directory)
+        rule.measureRepeated {
+            filesystem.listFiles(parent)
+        }
+    }
+
+    private fun listFilesLegacy(directory: File) {
+        rule.measureRepeated {
+            directory.listFiles().orEmpty().map { LocalFilesystem.toFileModel(it) }
+        }
+    }
+
+    companion object {
+
+        private lateinit var smallDir: File
+        private lateinit var largeDir: File
+
+        @JvmStatic
+        @BeforeClass
+        fun setup() {
+            val cacheDir = InstrumentationRegistry.getInstrumentation().targetContext.cacheDir
+            smallDir = createFiles(File(cacheDir, "listing-10k"), count = 10_000)
+            largeDir = createFiles(File(cacheDir, "listing-100k"), count = 100_000)
+        }
+
+        @JvmStatic
+        @AfterClass
+        fun cleanup() {
+            smallDir.deleteRecursively()
+            largeDir.deleteRecursively()
+        }
+
+        private fun createFiles(directory: File, count: Int): File {
+            directory.mkdirs()
+            repeat(count) { index ->
+                File(directory, "file_$index.txt").createNewFile()
+            }
+            return directory
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.benchmark.filesystem
+
+import android.Manifest
+import android.content.ContentResolver
+import android.content.Context
+import android.content.ContextWrapper
+import android.content.pm.ProviderInfo
+import android.provider.DocumentsContract
+import android.test.mock.MockContentResolver
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.blacksquircle.ui.filesystem.base.model.FileModel
+import com.blacksquircle.ui.filesystem.saf.SAFFilesystem
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Lists SAF folders of 1k and 10k documents served by [FakeDocumentsProvider].
+ * The provider is attached in-process, a real one adds a binder call per cursor window.
+ *
+ * ./gradlew :benchmark:connectedBenchmarkAndroidTest
+ **/
+@RunWith(AndroidJUnit4::class)
+class SafListingBenchmark {
+
+    @get:Rule
+    val rule = BenchmarkRule()
+
+    @Test
+    fun listFiles1k() = listFiles(childCount = 1_000)
+
+    @Test
+    fun listFiles10k() = listFiles(childCount = 10_000)
+
+    @Test
+    fun firstChunk10k() {
+        val (filesystem, parent) = createFilesystem(childCount = 10_000)
+        rule.measureRepeated {
+            runBlocking { filesystem.streamFiles(parent).first() }
+        }
+    }
+
+    private fun listFiles(childCount: Int) {
+        val (filesystem, parent) = createFilesystem(childCount)
+        rule.measureRepeated {
+            filesystem.listFiles(parent)
+        }
+    }
+
+    private fun createFilesystem(childCount: Int): Pair<SAFFilesystem, FileModel> {
+        val targetContext = InstrumentationRegistry.getInstrumentation().targetContext
+        val provider = FakeDocumentsProvider(childCount)
+        val providerInfo = ProviderInfo().apply {
+            authority = FakeDocumentsProvider.AUTHORITY
+            exported = true
+            grantUriPermissions = true
+            readPermission = Manifest.permission.MANAGE_DOCUMENTS
+            writePermission = Manifest.permission.MANAGE_DOCUMENTS
+        }
+        provider.attachInfo(targetContext, providerInfo)
+
+        val contentResolver = MockContentResolver(targetContext)
+        contentResolver.addProvider(FakeDocumentsProvider.AUTHORITY, provider)
+        val context = object : ContextWrapper(targetContext) {
+            override fun getContentResolver(): ContentResolver = contentResolver
+            override fun getApplicationContext(): Context = this
+        }
+
+        val treeUri = DocumentsContract.buildTreeDocumentUri(
+            FakeDocumentsProvider.AUTHORITY,
+            FakeDocumentsProvider.ROOT_ID,
+        )
+        val parent = FileModel(
+            fileUri = treeUri.toString(),
+            filesystemUuid = SAFFilesystem.SAF_UUID,
+            isDirectory = true,
+        )
+        return SAFFilesystem(context) to parent
+    }
+}
\ No newline at end of file
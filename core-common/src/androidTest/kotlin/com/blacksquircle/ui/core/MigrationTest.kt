@@ -41,6 +41,7 @@ class MigrationTest {
             Migrations.MIGRATION_2_3,
             Migrations.MIGRATION_3_4,
             Migrations.MIGRATION_4_5,
+            Migrations.MIGRATION_5_6,
         )
     }
 
@@ -191,4 +192,39 @@ class MigrationTest {
             }
         }
     }
+    @Test
+    fun migrate5To6() {
+        // Given
+        helper.createDatabase(TEST_DB, 5).apply {
+            val values = ContentValues().apply {
+                put("uuid", "12345")
+                put("scheme", "ftps")
+                put("name", "Server")
+                put("address", "192.168.1.1")
+                put("port", 21)
+                put("initial_dir", "/")
+                put("auth_method", 0)
+                put("username", "username")
+                putNull("password")
+                putNull("private_key")
+                putNull("passphrase")
+            }
+            insert(Tables.SERVERS, SQLiteDatabase.CONFLICT_REPLACE, values)
+            close()
+        }
+
+        // When
+        val db = helper.runMigrationsAndValidate(TEST_DB, 6, true, Migrations.MIGRATION_5_6)
+
+        // Then
+        db.query("SELECT * FROM `${Tables.SERVERS}`").use { cursor ->
+            if (cursor.moveToFirst()) {
+                val columnIndex = cursor.getColumnIndex("protect_data")
+                do {
+                    val columnValue = cursor.getInt(columnIndex)
+                    assertEquals(0, columnValue)
+                } while (cursor.moveToNext())
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -34,7 +34,7 @@ import com.blacksquircle.ui.core.database.entity.workspace.WorkspaceEntity
         ServerEntity::class,
         WorkspaceEntity::class,
     ],
-    version = 5,
+    version = 6,
 )
 abstract class AppDatabaseImpl : RoomDatabase(), AppDatabase {
 
@@ -46,4 +46,6 @@ data class ServerEntity(
     val keyId: String?,
     @ColumnInfo(name = "passphrase")
     val passphrase: String?,
+    @ColumnInfo(name = "protect_data")
+    val protectData: Boolean,
 )
\ No newline at end of file
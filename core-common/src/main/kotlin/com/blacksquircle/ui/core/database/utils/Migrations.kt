@@ -71,4 +71,10 @@ object Migrations {
             db.execSQL("UPDATE `${Tables.WORKSPACES}` SET `type` = 'custom'")
         }
     }
+
+    val MIGRATION_5_6 = object : Migration(5, 6) {
+        override fun migrate(db: SupportSQLiteDatabase) {
+            db.execSQL("ALTER TABLE `${Tables.SERVERS}` ADD COLUMN `protect_data` INTEGER NOT NULL DEFAULT 0")
+        }
+    }
 }
\ No newline at end of file
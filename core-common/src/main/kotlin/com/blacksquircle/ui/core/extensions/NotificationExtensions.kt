@@ -47,6 +47,7 @@ fun Context.buildNotification(
     channelId: String,
     notificationTitle: String? = null,
     notificationMessage: String? = null,
+    subText: String? = null,
     pendingIntent: PendingIntent? = null,
     @DrawableRes smallIcon: Int? = null,
     priority: Int? = null,
@@ -62,6 +63,7 @@ fun Context.buildNotification(
 
     notificationTitle?.let(notificationBuilder::setContentTitle)
     notificationMessage?.let(notificationBuilder::setContentText)
+    subText?.let(notificationBuilder::setSubText)
     pendingIntent?.let(notificationBuilder::setContentIntent)
     smallIcon?.let(notificationBuilder::setSmallIcon)
     priority?.let(notificationBuilder::setPriority)
@@ -48,6 +48,7 @@ object CoreModule {
                 Migrations.MIGRATION_2_3,
                 Migrations.MIGRATION_3_4,
                 Migrations.MIGRATION_4_5,
+                Migrations.MIGRATION_5_6,
             )
             .build()
     }
@@ -73,12 +73,16 @@ class SettingsManager(private val context: Context) {
         // Linebreaks
         const val KEY_LINEBREAK_FOR_SAVING = "linebreak_for_saving"
 
+        // Large Files
+        const val KEY_LARGE_FILE_THRESHOLD = "large_file_threshold"
+
         // File Explorer
         const val KEY_WORKSPACE = "workspace"
         const val KEY_SHOW_HIDDEN_FILES = "show_hidden_files"
         const val KEY_COMPACT_PACKAGES = "compact_packages"
         const val KEY_FOLDERS_ON_TOP = "folders_on_top"
         const val KEY_SORT_MODE = "sort_mode"
+        const val KEY_TRANSFER_CONCURRENCY = "transfer_concurrency"
 
         // Terminal
         const val KEY_TERMINAL_RUNTIME = "terminal_runtime"
@@ -196,6 +200,10 @@ class SettingsManager(private val context: Context) {
         get() = sharedPreferences.getString(KEY_LINEBREAK_FOR_SAVING, "lf") ?: "lf"
         set(value) = sharedPreferences.edit().putString(KEY_LINEBREAK_FOR_SAVING, value).apply()
 
+    var largeFileThreshold: Int
+        get() = sharedPreferences.getInt(KEY_LARGE_FILE_THRESHOLD, 8)
+        set(value) = sharedPreferences.edit().putInt(KEY_LARGE_FILE_THRESHOLD, value).apply()
+
     var showHidden: Boolean
         get() = sharedPreferences.getBoolean(KEY_SHOW_HIDDEN_FILES, true)
         set(value) = sharedPreferences.edit().putBoolean(KEY_SHOW_HIDDEN_FILES, value).apply()
@@ -208,6 +216,9 @@ class SettingsManager(private val context: Context) {
     var sortMode: String
         get() = sharedPreferences.getString(KEY_SORT_MODE, "sort_by_name") ?: "sort_by_name"
         set(value) = sharedPreferences.edit().putString(KEY_SORT_MODE, value).apply()
+    var transferConcurrency: Int
+        get() = sharedPreferences.getInt(KEY_TRANSFER_CONCURRENCY, 3)
+        set(value) = sharedPreferences.edit().putInt(KEY_TRANSFER_CONCURRENCY, value).apply()
     var workspace: String
         get() = sharedPreferences.getString(KEY_WORKSPACE, "local") ?: "local"
         set(value) = sharedPreferences.edit().putString(KEY_WORKSPACE, value).apply()
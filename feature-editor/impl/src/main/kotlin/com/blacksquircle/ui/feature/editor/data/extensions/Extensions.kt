@@ -16,6 +16,9 @@
 
 package com.blacksquircle.ui.feature.editor.data.extensions
 
+import com.blacksquircle.ui.filesystem.base.model.LineBreak
+import io.github.rosemoe.sora.text.Content
+import java.nio.ByteBuffer
 import java.nio.charset.Charset
 
 internal fun charsetFor(charsetName: String): Charset = try {
@@ -23,4 +26,59 @@ internal fun charsetFor(charsetName: String): Charset = try {
 } catch (e: Throwable) {
     e.printStackTrace()
     Charsets.UTF_8
+}
+
+private const val FNV_OFFSET_BASIS = -0x340d631b7bdddcdbL
+private const val FNV_PRIME = 0x100000001b3L
+
+/** 64-bit FNV-1a of the text. Line breaks hash as `\n`, they're normalized on save anyway */
+internal fun Content.contentHash(): Long {
+    var hash = FNV_OFFSET_BASIS
+    for (line in 0 until lineCount) {
+        if (line > 0) {
+            hash = (hash xor '\n'.code.toLong()) * FNV_PRIME
+        }
+        val contentLine = getLine(line)
+        for (i in 0 until contentLine.length) {
+            hash = (hash xor contentLine[i].code.toLong()) * FNV_PRIME
+        }
+    }
+    return hash
+}
+
+/** Every line ends with [lineBreak], so saving it with [lineBreak] writes the same text */
+internal fun Content.endsLinesWith(lineBreak: LineBreak): Boolean {
+    for (line in 0 until lineCount - 1) {
+        if (getLineSeparator(line).content != lineBreak.replacement) {
+            return false
+        }
+    }
+    return true
+}
+
+/** Encoded line feed, e.g. `0A 00` in UTF-16LE. Byte order marks put in front by some encoders are left out */
+internal fun Charset.lineFeed(): ByteArray {
+    val single = "\n".toByteArray(this)
+    val double = "\n\n".toByteArray(this)
+    val size = double.size - single.size
+    return single.copyOfRange(single.size - size, single.size)
+}
+
+/**
+ * True if [lineFeed] starts at [index], which is [offset] bytes into the file. Only offsets
+ * that are a multiple of its size count, so a match can't straddle two characters.
+ */
+internal fun ByteBuffer.isLineFeedAt(index: Int, offset: Long, lineFeed: ByteArray): Boolean {
+    if (index + lineFeed.size > limit() || get(index) != lineFeed[0]) {
+        return false
+    }
+    if (offset % lineFeed.size != 0L) {
+        return false
+    }
+    for (i in 1 until lineFeed.size) {
+        if (get(index + i) != lineFeed[i]) {
+            return false
+        }
+    }
+    return true
 }
\ No newline at end of file
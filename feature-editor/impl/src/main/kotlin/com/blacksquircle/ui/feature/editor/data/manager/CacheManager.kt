@@ -17,26 +17,39 @@
 package com.blacksquircle.ui.feature.editor.data.manager
 
 import androidx.annotation.VisibleForTesting
+import com.blacksquircle.ui.feature.editor.data.extensions.contentHash
 import com.blacksquircle.ui.feature.editor.data.extensions.readFile
 import com.blacksquircle.ui.feature.editor.data.extensions.writeFile
 import com.blacksquircle.ui.feature.editor.domain.model.DocumentModel
+import com.blacksquircle.ui.filesystem.base.utils.AtomicFileOutputStream
 import io.github.rosemoe.sora.text.Content
+import io.github.rosemoe.sora.text.ContentIO
 import io.github.rosemoe.sora.text.UndoManager
 import java.io.File
+import java.util.concurrent.ConcurrentHashMap
 
 internal class CacheManager(private val cacheDir: File) {
 
+    private val cachedHashes = ConcurrentHashMap<String, Long>()
+
     fun isCached(document: DocumentModel): Boolean {
         return cacheFile(document, postfix = TEXT).exists()
     }
 
     fun saveContent(document: DocumentModel, content: Content) {
         val textFile = cacheFile(document, postfix = TEXT)
-        if (!textFile.exists()) {
-            textFile.createNewFile()
+        val contentHash = content.contentHash()
+        if (cachedHashes[document.uuid] != contentHash || !textFile.exists()) {
+            val outputStream = AtomicFileOutputStream(textFile)
+            outputStream.bufferedWriter().use { writer ->
+                ContentIO.writeTo(content, writer, false)
+                writer.flush()
+                outputStream.commit()
+            }
+            cachedHashes[document.uuid] = contentHash
         }
-        textFile.writeText(content.toString())
 
+        // Undo and redo stacks change even when the text ends up the same
         val historyFile = cacheFile(document, postfix = HISTORY)
         if (!historyFile.exists()) {
             historyFile.createNewFile()
@@ -50,8 +63,10 @@ internal class CacheManager(private val cacheDir: File) {
             textFile.createNewFile()
         }
 
-        val text = textFile.readText()
-        val content = Content(text)
+        val content = textFile.bufferedReader().use { reader ->
+            ContentIO.createFrom(reader)
+        }
+        cachedHashes[document.uuid] = content.contentHash()
 
         val selectionStart = content.indexer.getCharPosition(document.selectionStart)
         val selectionEnd = content.indexer.getCharPosition(document.selectionEnd)
@@ -82,6 +97,7 @@ internal class CacheManager(private val cacheDir: File) {
     }
 
     fun delete(document: DocumentModel) {
+        cachedHashes.remove(document.uuid)
         val textCacheFile = cacheFile(document, postfix = TEXT)
         val undoCacheFile = cacheFile(document, postfix = HISTORY)
 
@@ -90,6 +106,7 @@ internal class CacheManager(private val cacheDir: File) {
     }
 
     fun deleteAll(predicate: (File) -> Boolean) {
+        cachedHashes.clear()
         cacheDir.listFiles().orEmpty().forEach { file ->
             if (predicate(file)) {
                 file.deleteRecursively()
@@ -98,6 +115,7 @@ internal class CacheManager(private val cacheDir: File) {
     }
 
     fun deleteAll() {
+        cachedHashes.clear()
         cacheDir.listFiles().orEmpty().forEach { file ->
             file.deleteRecursively()
         }
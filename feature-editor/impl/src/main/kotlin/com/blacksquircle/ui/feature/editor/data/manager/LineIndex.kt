@@ -0,0 +1,137 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.feature.editor.data.manager
+
+import com.blacksquircle.ui.feature.editor.data.extensions.isLineFeedAt
+import com.blacksquircle.ui.feature.editor.data.extensions.lineFeed
+import kotlinx.coroutines.currentCoroutineContext
+import kotlinx.coroutines.ensureActive
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.channels.FileChannel
+import java.nio.charset.Charset
+
+/**
+ * Offsets of every [STRIDE]th line of a local file. The file is scanned through
+ * memory-mapped regions, so neither its bytes nor an offset per line end up in the heap.
+ */
+internal class LineIndex private constructor(
+    private val file: File,
+    private val fileSize: Long,
+    private val lastModified: Long,
+    private val checkpoints: LongArray,
+    /** Line feed of the charset the file was indexed with */
+    val lineFeed: ByteArray,
+    /** Counted the same way as in sora's Content, a trailing line break starts an empty line */
+    val lineCount: Int,
+) {
+
+    /** True if the file has been changed since it was indexed */
+    val isStale: Boolean
+        get() = file.length() != fileSize || file.lastModified() != lastModified
+
+    /** Zero-based number of the line containing [offset] */
+    fun lineAt(offset: Long): Int {
+        val target = offset.coerceIn(0L, fileSize)
+        val found = checkpoints.binarySearch(target)
+        val checkpoint = if (found >= 0) found else -found - 2
+        var line = checkpoint * STRIDE
+        file.scanLineBreaks(checkpoints[checkpoint], target, lineFeed) {
+            line++
+            true
+        }
+        return line
+    }
+
+    /** Offset of the first byte of [line], lines out of range are clamped */
+    fun offsetOf(line: Int): Long {
+        val target = line.coerceIn(0, lineCount - 1)
+        val checkpoint = target / STRIDE
+        var remaining = target - checkpoint * STRIDE
+        var offset = checkpoints[checkpoint]
+        if (remaining > 0) {
+            file.scanLineBreaks(offset, fileSize, lineFeed) { position ->
+                offset = position + lineFeed.size
+                --remaining > 0
+            }
+        }
+        return offset
+    }
+
+    companion object {
+
+        const val STRIDE = 1024
+
+        private const val REGION_SIZE = 16 * 1024 * 1024L
+
+        /** Takes a while on large files, cancellation is checked between regions */
+        suspend fun build(file: File, charset: Charset = Charsets.UTF_8): LineIndex {
+            val coroutineContext = currentCoroutineContext()
+            val fileSize = file.length()
+            val lastModified = file.lastModified()
+            val lineFeed = charset.lineFeed()
+            var checkpoints = LongArray(64)
+            var checkpointCount = 1
+            var lineCount = 1
+            file.scanLineBreaks(0L, fileSize, lineFeed, coroutineContext::ensureActive) { position ->
+                if (lineCount % STRIDE == 0) {
+                    if (checkpointCount == checkpoints.size) {
+                        checkpoints = checkpoints.copyOf(checkpointCount * 2)
+                    }
+                    checkpoints[checkpointCount++] = position + lineFeed.size
+                }
+                lineCount++
+                true
+            }
+            return LineIndex(
+                file = file,
+                fileSize = fileSize,
+                lastModified = lastModified,
+                checkpoints = checkpoints.copyOf(checkpointCount),
+                lineFeed = lineFeed,
+                lineCount = lineCount,
+            )
+        }
+
+        /** Calls [action] with the offset of each line feed starting in [from, to) until it returns false */
+        private inline fun File.scanLineBreaks(
+            from: Long,
+            to: Long,
+            lineFeed: ByteArray,
+            onRegion: () -> Unit = {},
+            action: (Long) -> Boolean,
+        ) {
+            RandomAccessFile(this, "r").channel.use { channel ->
+                var regionStart = from
+                while (regionStart < to) {
+                    onRegion()
+                    val regionSize = minOf(REGION_SIZE, to - regionStart)
+                    // Mapped a few bytes further, so a line feed across the region end still matches
+                    val mappedSize = minOf(regionSize + lineFeed.size - 1, channel.size() - regionStart)
+                        .coerceAtLeast(0L)
+                    val buffer = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, mappedSize)
+                    for (i in 0 until regionSize.toInt()) {
+                        if (buffer.isLineFeedAt(i, regionStart + i, lineFeed) && !action(regionStart + i)) {
+                            return
+                        }
+                    }
+                    regionStart += regionSize
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -26,27 +26,55 @@ import com.blacksquircle.ui.core.extensions.isStorageAccessGranted
 import com.blacksquircle.ui.core.provider.coroutine.DispatcherProvider
 import com.blacksquircle.ui.core.settings.SettingsManager
 import com.blacksquircle.ui.feature.editor.data.extensions.charsetFor
+import com.blacksquircle.ui.feature.editor.data.extensions.contentHash
+import com.blacksquircle.ui.feature.editor.data.extensions.endsLinesWith
+import com.blacksquircle.ui.feature.editor.data.extensions.isLineFeedAt
+import com.blacksquircle.ui.feature.editor.data.extensions.lineFeed
 import com.blacksquircle.ui.feature.editor.data.extensions.openUriAsContent
 import com.blacksquircle.ui.feature.editor.data.extensions.openUriAsDocument
 import com.blacksquircle.ui.feature.editor.data.extensions.openUriAsFile
 import com.blacksquircle.ui.feature.editor.data.manager.CacheManager
+import com.blacksquircle.ui.feature.editor.data.manager.LineIndex
 import com.blacksquircle.ui.feature.editor.data.mapper.DocumentMapper
 import com.blacksquircle.ui.feature.editor.data.model.FileAssociation
 import com.blacksquircle.ui.feature.editor.data.model.LanguageScope
 import com.blacksquircle.ui.feature.editor.domain.model.DocumentModel
+import com.blacksquircle.ui.feature.editor.domain.model.PreviewPage
+import com.blacksquircle.ui.feature.editor.domain.model.PreviewWindow
 import com.blacksquircle.ui.feature.editor.domain.repository.DocumentRepository
 import com.blacksquircle.ui.feature.editor.ui.editor.view.selectionEnd
 import com.blacksquircle.ui.feature.editor.ui.editor.view.selectionStart
 import com.blacksquircle.ui.feature.explorer.api.factory.FilesystemFactory
 import com.blacksquircle.ui.feature.git.api.extensions.findGitRepository
+import com.blacksquircle.ui.filesystem.base.Filesystem
+import com.blacksquircle.ui.filesystem.base.charset.EncodingDetector
 import com.blacksquircle.ui.filesystem.base.model.FileModel
 import com.blacksquircle.ui.filesystem.base.model.FileParams
 import com.blacksquircle.ui.filesystem.base.model.LineBreak
+import com.blacksquircle.ui.filesystem.base.utils.cancellable
+import com.blacksquircle.ui.filesystem.base.utils.readAtMost
+import com.blacksquircle.ui.filesystem.base.utils.useReader
+import com.blacksquircle.ui.filesystem.base.utils.useWriter
 import com.blacksquircle.ui.filesystem.local.LocalFilesystem
 import com.blacksquircle.ui.filesystem.saf.SAFFilesystem
 import io.github.rosemoe.sora.text.Content
+import io.github.rosemoe.sora.text.ContentIO
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
+import timber.log.Timber
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.Buffer
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.Charset
 import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
 
 internal class DocumentRepositoryImpl(
     private val dispatcherProvider: DispatcherProvider,
@@ -57,6 +85,15 @@ internal class DocumentRepositoryImpl(
     private val context: Context,
 ) : DocumentRepository {
 
+    /** What was last written to each file, a save is skipped only while the file still matches it */
+    private val savedStates = ConcurrentHashMap<String, SavedState>()
+
+    /** Windows of the documents which are too large to be loaded in full, by document uuid */
+    private val previews = ConcurrentHashMap<String, PreviewWindow>()
+    private val lineIndexes = ConcurrentHashMap<String, LineIndex>()
+    private val indexJobs = ConcurrentHashMap<String, Job>()
+    private val indexScope = CoroutineScope(dispatcherProvider.io() + SupervisorJob())
+
     override suspend fun loadDocuments(): List<DocumentModel> {
         return withContext(dispatcherProvider.io()) {
             documentDao.loadAll().map(DocumentMapper::toModel)
@@ -105,35 +142,64 @@ internal class DocumentRepositoryImpl(
                 if (!context.isStorageAccessGranted()) {
                     throw PermissionException()
                 }
+                val fileSize = sizeOf(document) ?: 0L
+                if (fileSize > settingsManager.largeFileThreshold * MEGABYTE) {
+                    val offset = previews[document.uuid]?.start ?: 0L
+                    return@withContext loadWindow(document, offset, fileSize, forward = true)
+                }
+                releaseWindow(document.uuid)
+
                 val filesystem = filesystemFactory.create(document.filesystemUuid)
                 val fileModel = DocumentMapper.toModel(document)
                 val fileParams = FileParams(
                     chardet = settingsManager.encodingAutoDetect,
                     charset = charsetFor(settingsManager.encodingForOpening),
                 )
-                Content(filesystem.loadFile(fileModel, fileParams)).also { content ->
-                    cacheDocument(document, content)
+                val content = filesystem.useReader(fileModel, fileParams) { reader ->
+                    ContentIO.createFrom(reader)
+                }
+                val savingParams = savingParams()
+                if (!fileParams.chardet &&
+                    fileParams.charset == savingParams.charset &&
+                    content.endsLinesWith(savingParams.linebreak)
+                ) {
+                    // Saving it right away would write the same bytes
+                    rememberSaved(filesystem, fileModel, content, savingParams)
                 }
+                cacheDocument(document, content)
+                content
             }
         }
     }
 
     override suspend fun saveDocument(document: DocumentModel, content: Content) {
         withContext(dispatcherProvider.io()) {
+            check(!previews.containsKey(document.uuid)) {
+                "Can't save a part of ${document.displayName}"
+            }
             val filesystem = filesystemFactory.create(document.filesystemUuid)
             val fileModel = DocumentMapper.toModel(document)
-            val fileParams = FileParams(
-                charset = charsetFor(settingsManager.encodingForSaving),
-                linebreak = LineBreak.of(settingsManager.lineBreakForSaving),
-            )
-            filesystem.saveFile(fileModel, content.toString(), fileParams).also {
-                cacheDocument(document, content)
+            val fileParams = savingParams()
+            val savedState = savedStates[keyOf(fileModel)]
+            if (savedState == null ||
+                savedState.contentHash != contentHashOf(content, fileParams) ||
+                savedState.stamp != stampOf(filesystem, fileModel)
+            ) {
+                filesystem.useWriter(fileModel, fileParams) { writer ->
+                    ContentIO.writeTo(content, writer, false)
+                }
+                rememberSaved(filesystem, fileModel, content, fileParams)
             }
+            cacheDocument(document, content)
         }
     }
 
     override suspend fun cacheDocument(document: DocumentModel, content: Content) {
         withContext(dispatcherProvider.io()) {
+            if (previews.containsKey(document.uuid)) {
+                // Windows are loaded from the file again, a cached one would be taken for the whole file
+                return@withContext
+            }
             cacheManager.create(document)
             cacheManager.saveContent(document, content)
 
@@ -157,6 +223,7 @@ internal class DocumentRepositoryImpl(
 
     override suspend fun refreshDocument(document: DocumentModel) {
         withContext(dispatcherProvider.io()) {
+            releaseWindow(document.uuid)
             cacheManager.delete(document)
             documentDao.updateProperties(
                 uuid = document.uuid,
@@ -169,6 +236,34 @@ internal class DocumentRepositoryImpl(
         }
     }
 
+    override fun previewWindow(document: DocumentModel): PreviewWindow? {
+        return previews[document.uuid]
+    }
+
+    override suspend fun loadPreview(document: DocumentModel, page: PreviewPage): Content {
+        return withContext(dispatcherProvider.io()) {
+            val window = checkNotNull(previews[document.uuid])
+
+            // Logs keep growing while they are viewed, so the size is refreshed on every page
+            val fileSize = sizeOf(document) ?: window.fileSize
+            when (page) {
+                PreviewPage.HEAD -> loadWindow(document, 0L, fileSize, forward = true)
+                PreviewPage.PREVIOUS -> loadWindow(document, window.start, fileSize, forward = false)
+                PreviewPage.NEXT -> loadWindow(document, window.end, fileSize, forward = true)
+                PreviewPage.TAIL -> loadWindow(document, fileSize, fileSize, forward = false)
+            }
+        }
+    }
+
+    override suspend fun loadPreview(document: DocumentModel, line: Int): Content {
+        return withContext(dispatcherProvider.io()) {
+            val window = checkNotNull(previews[document.uuid])
+            val lineIndex = checkNotNull(lineIndexes[document.uuid])
+            val fileSize = sizeOf(document) ?: window.fileSize
+            loadWindow(document, lineIndex.offsetOf(line), fileSize, forward = true)
+        }
+    }
+
     override suspend fun reorderDocuments(from: DocumentModel, to: DocumentModel) {
         withContext(dispatcherProvider.io()) {
             documentDao.reorderDocuments(
@@ -182,6 +277,7 @@ internal class DocumentRepositoryImpl(
 
     override suspend fun closeDocument(document: DocumentModel) {
         withContext(dispatcherProvider.io()) {
+            releaseWindow(document.uuid)
             documentDao.closeDocument(document.uuid, document.position)
             cacheManager.delete(document)
         }
@@ -190,6 +286,9 @@ internal class DocumentRepositoryImpl(
     override suspend fun closeOtherDocuments(document: DocumentModel) {
         withContext(dispatcherProvider.io()) {
             documentDao.closeOtherDocuments(document.uuid)
+            (previews.keys + indexJobs.keys)
+                .filter { it != document.uuid }
+                .forEach(::releaseWindow)
             settingsManager.selectedUuid = document.uuid
             cacheManager.deleteAll { file ->
                 !file.name.startsWith(document.uuid, ignoreCase = true)
@@ -200,6 +299,7 @@ internal class DocumentRepositoryImpl(
     override suspend fun closeAllDocuments() {
         withContext(dispatcherProvider.io()) {
             documentDao.deleteAll()
+            (previews.keys + indexJobs.keys).forEach(::releaseWindow)
             cacheManager.deleteAll()
             settingsManager.selectedUuid = ""
         }
@@ -240,6 +340,9 @@ internal class DocumentRepositoryImpl(
 
     override suspend fun saveExternal(document: DocumentModel, content: Content, fileUri: Uri) {
         withContext(dispatcherProvider.io()) {
+            check(!previews.containsKey(document.uuid)) {
+                "Can't save a part of ${document.displayName}"
+            }
             val filesystemUuid = SAFFilesystem.SAF_UUID
             val filesystem = filesystemFactory.create(filesystemUuid)
             val fileModel = DocumentMapper.toModel(
@@ -248,11 +351,223 @@ internal class DocumentRepositoryImpl(
                     filesystemUuid = filesystemUuid,
                 )
             )
-            val fileParams = FileParams(
-                charset = charsetFor(settingsManager.encodingForSaving),
-                linebreak = LineBreak.of(settingsManager.lineBreakForSaving),
-            )
-            filesystem.saveFile(fileModel, content.toString(), fileParams)
+            val fileParams = savingParams()
+            filesystem.useWriter(fileModel, fileParams) { writer ->
+                ContentIO.writeTo(content, writer, false)
+            }
         }
     }
+
+    /**
+     * Reads [PREVIEW_SIZE] bytes after or before [offset], then drops the lines cut in half
+     * by the window bounds. Only the window is decoded, so the editor never highlights more.
+     */
+    private suspend fun loadWindow(
+        document: DocumentModel,
+        offset: Long,
+        fileSize: Long,
+        forward: Boolean,
+    ): Content {
+        val anchor = offset.coerceIn(0L, fileSize) // the file may have been truncated meanwhile
+        val from = if (forward) anchor else (anchor - PREVIEW_SIZE).coerceAtLeast(0L)
+        val to = if (forward) (anchor + PREVIEW_SIZE).coerceAtMost(fileSize) else anchor
+
+        // The character before the window tells whether it starts in the middle of a line
+        val position = (from - MAX_LINE_FEED_SIZE).coerceAtLeast(0L)
+        val buffer = readRange(document, position, (to - position).toInt())
+        var start = (from - position).toInt().coerceAtMost(buffer.limit())
+        var end = buffer.limit()
+
+        val charset = if (settingsManager.encodingAutoDetect) {
+            val sample = ByteArray(minOf(end - start, CHARSET_SAMPLE_SIZE))
+            val head = buffer.duplicate()
+            val headBounds: Buffer = head
+            headBounds.position(start)
+            head.get(sample)
+            EncodingDetector.detect(sample)
+        } else {
+            charsetFor(settingsManager.encodingForOpening)
+        }
+
+        // Cut at line feeds as the charset encodes them, so no character is split in half
+        val lineFeed = charset.lineFeed()
+        if (from > 0) {
+            val lineBreak = buffer.indexOfLineFeed(start - lineFeed.size, position, lineFeed)
+            if (lineBreak >= 0 && lineBreak + lineFeed.size < end) {
+                start = lineBreak + lineFeed.size
+            } else {
+                // A window without a single line break is shown as is, from its first whole character
+                val misalignment = ((position + start) % lineFeed.size).toInt()
+                if (misalignment > 0) {
+                    start = (start + lineFeed.size - misalignment).coerceAtMost(end)
+                }
+            }
+        }
+        if (position + buffer.limit() < fileSize) {
+            val lineBreak = buffer.lastIndexOfLineFeed(start, position, lineFeed)
+            if (lineBreak >= 0) {
+                end = lineBreak + lineFeed.size
+            }
+        }
+
+        // Called through Buffer, older runtimes lack the ByteBuffer overrides of limit and position
+        val window = buffer.duplicate()
+        val bounds: Buffer = window
+        bounds.limit(end)
+        bounds.position(start)
+        val bytes = window.slice()
+        val content = Content(charset.decode(bytes))
+        previews[document.uuid] = PreviewWindow(
+            start = position + start,
+            end = position + end,
+            fileSize = fileSize,
+        )
+        if (document.filesystemUuid == LocalFilesystem.LOCAL_UUID) {
+            numberLines(document, charset)
+        }
+        return content
+    }
+
+    /**
+     * Local files are memory-mapped, pages outside of the window are never read.
+     * Remote files are fetched with a single range read.
+     */
+    private suspend fun readRange(document: DocumentModel, position: Long, length: Int): ByteBuffer {
+        val fileModel = DocumentMapper.toModel(document)
+        if (document.filesystemUuid == LocalFilesystem.LOCAL_UUID) {
+            return RandomAccessFile(fileModel.path, "r").channel.use { channel ->
+                val size = minOf(length.toLong(), channel.size() - position).coerceAtLeast(0L)
+                channel.map(FileChannel.MapMode.READ_ONLY, position, size)
+            }
+        }
+        val filesystem = filesystemFactory.create(document.filesystemUuid)
+        val inputStream = cancellable { filesystem.openInputStream(fileModel, position) }
+        val bytes = inputStream.use {
+            cancellable(onCancel = inputStream::close) {
+                inputStream.readAtMost(length)
+            }
+        }
+        return ByteBuffer.wrap(bytes)
+    }
+
+    /** Line numbers of the window become known once the file is indexed in the background */
+    private fun numberLines(document: DocumentModel, charset: Charset) {
+        val lineIndex = lineIndexes[document.uuid]
+            ?.takeIf { it.lineFeed.contentEquals(charset.lineFeed()) }
+        if (lineIndex != null && !lineIndex.isStale) {
+            previews.computeIfPresent(document.uuid) { _, window -> window.numberedBy(lineIndex) }
+            return
+        }
+        if (indexJobs[document.uuid]?.isActive == true) {
+            return
+        }
+        val file = File(DocumentMapper.toModel(document).path)
+        indexJobs[document.uuid] = indexScope.launch {
+            try {
+                val index = LineIndex.build(file, charset)
+                lineIndexes[document.uuid] = index
+                previews.computeIfPresent(document.uuid) { _, window -> window.numberedBy(index) }
+            } catch (e: IOException) {
+                Timber.w(e, e.message)
+            }
+        }
+    }
+
+    private fun releaseWindow(uuid: String) {
+        previews.remove(uuid)
+        lineIndexes.remove(uuid)
+        indexJobs.remove(uuid)?.cancel()
+    }
+
+    private fun savingParams(): FileParams {
+        return FileParams(
+            charset = charsetFor(settingsManager.encodingForSaving),
+            linebreak = LineBreak.of(settingsManager.lineBreakForSaving),
+        )
+    }
+
+    private suspend fun rememberSaved(
+        filesystem: Filesystem,
+        fileModel: FileModel,
+        content: Content,
+        fileParams: FileParams,
+    ) {
+        val stamp = stampOf(filesystem, fileModel)
+        if (stamp != null) {
+            savedStates[keyOf(fileModel)] = SavedState(contentHashOf(content, fileParams), stamp)
+        } else {
+            savedStates.remove(keyOf(fileModel))
+        }
+    }
+
+    /** Size and modification time of the file, null if the filesystem can't tell */
+    private suspend fun stampOf(filesystem: Filesystem, fileModel: FileModel): FileStamp? {
+        return try {
+            cancellable { filesystem.stat(listOf(fileModel)) }
+                .firstOrNull()
+                ?.let { FileStamp(it.size, it.lastModified) }
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    private fun contentHashOf(content: Content, fileParams: FileParams): Long {
+        return 31 * content.contentHash() + fileParams.hashCode()
+    }
+
+    private fun keyOf(fileModel: FileModel): String {
+        return fileModel.filesystemUuid + '|' + fileModel.fileUri
+    }
+
+    /** Returns null if the size is unknown, such files are loaded in full */
+    private suspend fun sizeOf(document: DocumentModel): Long? {
+        val fileModel = DocumentMapper.toModel(document)
+        if (document.filesystemUuid == LocalFilesystem.LOCAL_UUID) {
+            return File(fileModel.path).length()
+        }
+        return try {
+            val filesystem = filesystemFactory.create(document.filesystemUuid)
+            cancellable { filesystem.stat(listOf(fileModel)) }.firstOrNull()?.size
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    private fun PreviewWindow.numberedBy(lineIndex: LineIndex): PreviewWindow {
+        return copy(
+            startLine = lineIndex.lineAt(start),
+            endLine = if (end < fileSize) lineIndex.lineAt(end) else lineIndex.lineCount,
+            lineCount = lineIndex.lineCount,
+        )
+    }
+
+    /** [origin] is the file offset of the first byte in the buffer */
+    private fun ByteBuffer.indexOfLineFeed(fromIndex: Int, origin: Long, lineFeed: ByteArray): Int {
+        for (i in fromIndex.coerceAtLeast(0) until limit()) {
+            if (isLineFeedAt(i, origin + i, lineFeed)) return i
+        }
+        return -1
+    }
+
+    private fun ByteBuffer.lastIndexOfLineFeed(minIndex: Int, origin: Long, lineFeed: ByteArray): Int {
+        for (i in limit() - lineFeed.size downTo minIndex) {
+            if (isLineFeedAt(i, origin + i, lineFeed)) return i
+        }
+        return -1
+    }
+
+    private data class FileStamp(val size: Long, val lastModified: Long)
+
+    private data class SavedState(val contentHash: Long, val stamp: FileStamp)
+
+    companion object {
+        private const val MEGABYTE = 1024 * 1024L
+        private const val PREVIEW_SIZE = 1024 * 1024L
+        private const val CHARSET_SAMPLE_SIZE = 8 * 1024
+        private const val MAX_LINE_FEED_SIZE = 4 // UTF-32
+    }
 }
\ No newline at end of file
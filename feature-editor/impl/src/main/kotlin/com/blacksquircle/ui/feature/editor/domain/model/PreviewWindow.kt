@@ -0,0 +1,38 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.feature.editor.domain.model
+
+/**
+ * Part of a file too large to be loaded at once, cut at line boundaries.
+ * [start] and [end] are byte offsets within the file, [startLine] and [endLine]
+ * are zero-based line numbers, known only once the file has been indexed.
+ */
+internal data class PreviewWindow(
+    val start: Long,
+    val end: Long,
+    val fileSize: Long,
+    val startLine: Int = -1,
+    val endLine: Int = -1,
+    val lineCount: Int = -1,
+) {
+    val hasPrevious: Boolean
+        get() = start > 0
+    val hasNext: Boolean
+        get() = end < fileSize
+    val hasLines: Boolean
+        get() = lineCount >= 0
+}
\ No newline at end of file
@@ -18,6 +18,8 @@ package com.blacksquircle.ui.feature.editor.domain.repository
 
 import android.net.Uri
 import com.blacksquircle.ui.feature.editor.domain.model.DocumentModel
+import com.blacksquircle.ui.feature.editor.domain.model.PreviewPage
+import com.blacksquircle.ui.feature.editor.domain.model.PreviewWindow
 import com.blacksquircle.ui.filesystem.base.model.FileModel
 import io.github.rosemoe.sora.text.Content
 
@@ -32,6 +34,12 @@ internal interface DocumentRepository {
     suspend fun updateDocument(document: DocumentModel)
     suspend fun refreshDocument(document: DocumentModel)
 
+    /** Large files are loaded a window at a time, null if [document] was loaded in full */
+    fun previewWindow(document: DocumentModel): PreviewWindow?
+    suspend fun loadPreview(document: DocumentModel, page: PreviewPage): Content
+    /** Loads the window starting at [line], requires [PreviewWindow.hasLines] */
+    suspend fun loadPreview(document: DocumentModel, line: Int): Content
+
     suspend fun reorderDocuments(from: DocumentModel, to: DocumentModel)
 
     suspend fun closeDocument(document: DocumentModel)
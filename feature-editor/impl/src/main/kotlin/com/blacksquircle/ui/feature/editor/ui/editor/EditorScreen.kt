@@ -60,12 +60,14 @@ import com.blacksquircle.ui.ds.progress.CircularProgress
 import com.blacksquircle.ui.ds.scaffold.ScaffoldSuite
 import com.blacksquircle.ui.feature.editor.R
 import com.blacksquircle.ui.feature.editor.domain.model.DocumentModel
+import com.blacksquircle.ui.feature.editor.domain.model.PreviewPage
 import com.blacksquircle.ui.feature.editor.internal.EditorComponent
 import com.blacksquircle.ui.feature.editor.ui.editor.compose.CodeEditor
 import com.blacksquircle.ui.feature.editor.ui.editor.compose.DocumentTabLayout
 import com.blacksquircle.ui.feature.editor.ui.editor.compose.EditorToolbar
 import com.blacksquircle.ui.feature.editor.ui.editor.compose.ErrorStatus
 import com.blacksquircle.ui.feature.editor.ui.editor.compose.ExtendedKeyboard
+import com.blacksquircle.ui.feature.editor.ui.editor.compose.PreviewPanel
 import com.blacksquircle.ui.feature.editor.ui.editor.compose.SearchPanel
 import com.blacksquircle.ui.feature.editor.ui.editor.model.DocumentState
 import com.blacksquircle.ui.feature.editor.ui.editor.model.EditorController
@@ -115,6 +117,7 @@ internal fun EditorScreen(
         onSaveFileAsClicked = viewModel::onSaveFileAsClicked,
         onReloadFileClicked = viewModel::onReloadFileClicked,
         onReadOnlyClicked = viewModel::onReadOnlyClicked,
+        onPreviewPageClicked = viewModel::onPreviewPageClicked,
         onContentChanged = viewModel::onContentChanged,
         onShortcutPressed = viewModel::onShortcutPressed,
         onCutClicked = viewModel::onCutClicked,
@@ -266,6 +269,7 @@ private fun EditorScreen(
     onSaveFileAsClicked: () -> Unit = {},
     onReloadFileClicked: () -> Unit = {},
     onReadOnlyClicked: () -> Unit = {},
+    onPreviewPageClicked: (PreviewPage) -> Unit = {},
     onContentChanged: () -> Unit = {},
     onShortcutPressed: (Boolean, Boolean, Boolean, Int) -> Unit = { _, _, _, _ -> },
     onCutClicked: () -> Unit = {},
@@ -383,6 +387,7 @@ private fun EditorScreen(
             val currentDocument = viewState.currentDocument
             val content = currentDocument?.content
             val searchState = currentDocument?.searchState
+            val preview = currentDocument?.preview
 
             val isError = viewState.isError
             val isLoading = viewState.isLoading
@@ -406,12 +411,24 @@ private fun EditorScreen(
                 HorizontalDivider()
             }
 
+            if (!isError && preview != null) {
+                PreviewPanel(
+                    preview = preview,
+                    onPageClicked = onPreviewPageClicked,
+                )
+                HorizontalDivider()
+            }
+
             if (!isError && !isLoading && content != null) {
                 key(currentDocument.document.uuid) {
                     CodeEditor(
                         content = currentDocument.content,
                         language = currentDocument.document.language,
-                        settings = viewState.settings,
+                        settings = if (preview != null) {
+                            viewState.settings.copy(readOnly = true)
+                        } else {
+                            viewState.settings
+                        },
                         controller = editorController,
                         onContentChanged = onContentChanged,
                         onShortcutPressed = onShortcutPressed,
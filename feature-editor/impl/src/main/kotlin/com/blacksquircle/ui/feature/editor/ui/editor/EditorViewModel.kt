@@ -37,6 +37,8 @@ import com.blacksquircle.ui.feature.editor.api.navigation.GoToLineRoute
 import com.blacksquircle.ui.feature.editor.api.navigation.InsertColorRoute
 import com.blacksquircle.ui.feature.editor.domain.interactor.LanguageInteractor
 import com.blacksquircle.ui.feature.editor.domain.model.DocumentModel
+import com.blacksquircle.ui.feature.editor.domain.model.PreviewPage
+import com.blacksquircle.ui.feature.editor.domain.model.PreviewWindow
 import com.blacksquircle.ui.feature.editor.domain.repository.DocumentRepository
 import com.blacksquircle.ui.feature.editor.ui.editor.model.DocumentState
 import com.blacksquircle.ui.feature.editor.ui.editor.model.EditorCommand
@@ -62,6 +64,7 @@ import com.blacksquircle.ui.feature.terminal.api.interactor.TerminalInteractor
 import com.blacksquircle.ui.feature.terminal.api.navigation.TerminalRoute
 import com.blacksquircle.ui.filesystem.base.model.FileModel
 import com.blacksquircle.ui.navigation.api.Navigator
+import io.github.rosemoe.sora.text.Content
 import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.channels.Channel
@@ -146,6 +149,11 @@ internal class EditorViewModel @Inject constructor(
 
                 val document = documents[selectedPosition].document
                 val content = documents[selectedPosition].content ?: return@launch
+                if (documents[selectedPosition].preview != null) {
+                    val message = stringProvider.getString(R.string.editor_toast_preview_read_only)
+                    _viewEvent.send(ViewEvent.Toast(message))
+                    return@launch
+                }
 
                 val updatedDocument = document.copy(
                     modified = false,
@@ -180,6 +188,11 @@ internal class EditorViewModel @Inject constructor(
             if (selectedPosition !in documents.indices) {
                 return@launch
             }
+            if (documents[selectedPosition].preview != null) {
+                val message = stringProvider.getString(R.string.editor_toast_preview_read_only)
+                _viewEvent.send(ViewEvent.Toast(message))
+                return@launch
+            }
             val document = documents[selectedPosition].document
             _viewEvent.send(EditorViewEvent.SaveAsFileContract(document.displayName))
         }
@@ -194,6 +207,11 @@ internal class EditorViewModel @Inject constructor(
 
                 val document = documents[selectedPosition].document
                 val content = documents[selectedPosition].content ?: return@launch
+                if (documents[selectedPosition].preview != null) {
+                    val message = stringProvider.getString(R.string.editor_toast_preview_read_only)
+                    _viewEvent.send(ViewEvent.Toast(message))
+                    return@launch
+                }
 
                 documentRepository.saveExternal(document, content, fileUri)
 
@@ -231,6 +249,52 @@ internal class EditorViewModel @Inject constructor(
         }
     }
 
+    fun onPreviewPageClicked(page: PreviewPage) {
+        loadPreview { document -> documentRepository.loadPreview(document, page) }
+    }
+
+    private fun loadPreview(load: suspend (DocumentModel) -> Content) {
+        currentJob?.cancel()
+        currentJob = viewModelScope.launch {
+            try {
+                if (selectedPosition !in documents.indices) {
+                    return@launch
+                }
+
+                val document = documents[selectedPosition].document
+                _viewState.update {
+                    it.copy(isLoading = true)
+                }
+
+                val content = load(document)
+                ensureActive()
+
+                documents = documents.mapSelected {
+                    it.copy(
+                        content = content,
+                        canUndo = false,
+                        canRedo = false,
+                        preview = documentRepository.previewWindow(document),
+                    )
+                }
+                _viewState.update {
+                    it.copy(
+                        documents = documents,
+                        isLoading = false,
+                    )
+                }
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                Timber.e(e, e.message)
+                _viewState.update {
+                    it.copy(isLoading = false)
+                }
+                _viewEvent.send(ViewEvent.Toast(e.message.orEmpty()))
+            }
+        }
+    }
+
     fun onReadOnlyClicked() {
         settings = settings.copy(readOnly = !settings.readOnly)
         _viewState.update {
@@ -660,17 +724,41 @@ internal class EditorViewModel @Inject constructor(
             return
         }
         val content = documents[selectedPosition].content ?: return
-        val screen = GoToLineRoute(content.lineCount)
+        val preview = refreshPreview()?.takeIf(PreviewWindow::hasLines)
+        val screen = GoToLineRoute(preview?.lineCount ?: content.lineCount)
         navigator.navigate(screen)
     }
 
     fun onLineSelected(lineNumber: Int) {
+        // Lines of a window are numbered from its start, the rest are in other windows
+        val preview = refreshPreview()?.takeIf(PreviewWindow::hasLines)
+        if (preview != null && lineNumber !in preview.startLine until preview.endLine) {
+            loadPreview { document -> documentRepository.loadPreview(document, lineNumber) }
+            return
+        }
         viewModelScope.launch {
-            val command = EditorCommand.GoToLine(lineNumber)
+            val command = EditorCommand.GoToLine(lineNumber - (preview?.startLine ?: 0))
             _viewEvent.send(EditorViewEvent.Command(command))
         }
     }
 
+    /** Windows of local files get line numbers once the file is indexed in the background */
+    private fun refreshPreview(): PreviewWindow? {
+        if (selectedPosition !in documents.indices) {
+            return null
+        }
+        val state = documents[selectedPosition]
+        if (state.preview == null) {
+            return null
+        }
+        val preview = documentRepository.previewWindow(state.document)
+        if (preview != state.preview) {
+            documents = documents.mapSelected { it.copy(preview = preview) }
+            _viewState.update { it.copy(documents = documents) }
+        }
+        return preview
+    }
+
     fun onForceSyntaxClicked() {
         if (selectedPosition !in documents.indices) {
             return
@@ -1099,6 +1187,9 @@ internal class EditorViewModel @Inject constructor(
 
                 val document = documents[selectedPosition].document
                 val content = documents[selectedPosition].content ?: return@launch
+                if (documents[selectedPosition].preview != null) {
+                    return@launch
+                }
 
                 val autoSaveFiles = settingsManager.autoSaveFiles
                 val updatedDocument = document.copy(
@@ -1235,7 +1326,7 @@ internal class EditorViewModel @Inject constructor(
                             selectionEnd = state.content?.selectionEnd
                                 ?: state.document.selectionEnd,
                         )
-                        if (state.content != null) {
+                        if (state.content != null && state.preview == null) {
                             if (autoSaveFiles) {
                                 documentRepository.saveDocument(updatedDocument, state.content)
                             } else {
@@ -1284,6 +1375,7 @@ internal class EditorViewModel @Inject constructor(
                         canUndo = content.canUndo(),
                         canRedo = content.canRedo(),
                         errorState = null,
+                        preview = documentRepository.previewWindow(document),
                     )
                 }
 
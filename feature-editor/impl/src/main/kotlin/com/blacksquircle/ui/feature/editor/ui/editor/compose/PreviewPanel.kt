@@ -0,0 +1,116 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.feature.editor.ui.editor.compose
+
+import android.text.format.Formatter
+import androidx.compose.foundation.horizontalScroll
+import androidx.compose.foundation.layout.Arrangement
+import androidx.compose.foundation.layout.Column
+import androidx.compose.foundation.layout.Row
+import androidx.compose.foundation.layout.Spacer
+import androidx.compose.foundation.layout.fillMaxWidth
+import androidx.compose.foundation.layout.height
+import androidx.compose.foundation.layout.padding
+import androidx.compose.foundation.rememberScrollState
+import androidx.compose.material.Text
+import androidx.compose.runtime.Composable
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.res.stringResource
+import androidx.compose.ui.tooling.preview.PreviewLightDark
+import androidx.compose.ui.unit.dp
+import com.blacksquircle.ui.ds.PreviewBackground
+import com.blacksquircle.ui.ds.SquircleTheme
+import com.blacksquircle.ui.ds.button.TextButton
+import com.blacksquircle.ui.feature.editor.R
+import com.blacksquircle.ui.feature.editor.domain.model.PreviewPage
+import com.blacksquircle.ui.feature.editor.domain.model.PreviewWindow
+
+@Composable
+internal fun PreviewPanel(
+    preview: PreviewWindow,
+    modifier: Modifier = Modifier,
+    onPageClicked: (PreviewPage) -> Unit = {},
+) {
+    val context = LocalContext.current
+    Column(modifier.padding(vertical = 8.dp)) {
+        Text(
+            text = if (preview.hasLines) {
+                stringResource(
+                    R.string.editor_preview_lines,
+                    preview.startLine + 1,
+                    preview.endLine,
+                    preview.lineCount,
+                )
+            } else {
+                stringResource(
+                    R.string.editor_preview_window,
+                    Formatter.formatShortFileSize(context, preview.start),
+                    Formatter.formatShortFileSize(context, preview.end),
+                    Formatter.formatShortFileSize(context, preview.fileSize),
+                )
+            },
+            color = SquircleTheme.colors.colorTextAndIconSecondary,
+            style = SquircleTheme.typography.text14Regular,
+            modifier = Modifier.padding(horizontal = 8.dp),
+        )
+
+        Spacer(Modifier.height(8.dp))
+
+        Row(
+            horizontalArrangement = Arrangement.spacedBy(8.dp),
+            modifier = Modifier
+                .horizontalScroll(rememberScrollState())
+                .padding(horizontal = 8.dp)
+                .fillMaxWidth()
+        ) {
+            TextButton(
+                text = stringResource(R.string.editor_preview_head),
+                onClick = { onPageClicked(PreviewPage.HEAD) },
+                enabled = preview.hasPrevious,
+            )
+            TextButton(
+                text = stringResource(R.string.editor_preview_previous),
+                onClick = { onPageClicked(PreviewPage.PREVIOUS) },
+                enabled = preview.hasPrevious,
+            )
+            TextButton(
+                text = stringResource(R.string.editor_preview_next),
+                onClick = { onPageClicked(PreviewPage.NEXT) },
+                enabled = preview.hasNext,
+            )
+            TextButton(
+                text = stringResource(R.string.editor_preview_tail),
+                onClick = { onPageClicked(PreviewPage.TAIL) },
+            )
+        }
+    }
+}
+
+@PreviewLightDark
+@Composable
+private fun PreviewPanelPreview() {
+    PreviewBackground {
+        PreviewPanel(
+            preview = PreviewWindow(
+                start = 1024 * 1024,
+                end = 2 * 1024 * 1024,
+                fileSize = 2L * 1024 * 1024 * 1024,
+            ),
+        )
+    }
+}
\ No newline at end of file
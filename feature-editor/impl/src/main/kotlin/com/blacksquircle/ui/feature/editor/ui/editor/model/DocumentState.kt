@@ -20,6 +20,7 @@ import androidx.compose.runtime.Immutable
 import androidx.compose.runtime.getValue
 import androidx.compose.runtime.setValue
 import com.blacksquircle.ui.feature.editor.domain.model.DocumentModel
+import com.blacksquircle.ui.feature.editor.domain.model.PreviewWindow
 import io.github.rosemoe.sora.text.Content
 
 @Immutable
@@ -30,4 +31,5 @@ internal data class DocumentState(
     val canRedo: Boolean = false,
     val errorState: ErrorState? = null,
     val searchState: SearchState? = null,
+    val preview: PreviewWindow? = null,
 )
\ No newline at end of file
@@ -0,0 +1,125 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.feature.editor.manager
+
+import com.blacksquircle.ui.feature.editor.data.manager.LineIndex
+import junit.framework.TestCase.assertEquals
+import junit.framework.TestCase.assertFalse
+import junit.framework.TestCase.assertTrue
+import kotlinx.coroutines.test.runTest
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.nio.file.Files
+
+class LineIndexTest {
+
+    private lateinit var file: File
+    private lateinit var text: String
+
+    @Before
+    fun setup() {
+        file = Files.createTempFile("lineIndexTest", ".log").toFile()
+        text = buildString {
+            repeat(LINE_COUNT) { index -> append("line ").append(index).append('\n') }
+        }
+        file.writeText(text)
+    }
+
+    @After
+    fun cleanup() {
+        file.delete()
+    }
+
+    @Test
+    fun `When file is indexed Then trailing line break starts an empty line`() = runTest {
+        // When
+        val lineIndex = LineIndex.build(file)
+
+        // Then
+        assertEquals(LINE_COUNT + 1, lineIndex.lineCount)
+        assertFalse(lineIndex.isStale)
+    }
+
+    @Test
+    fun `When line is looked up Then return offset of its first byte`() = runTest {
+        // Given
+        val lineIndex = LineIndex.build(file)
+
+        // When
+        val lines = listOf(0, 1, LineIndex.STRIDE - 1, LineIndex.STRIDE, 2500)
+
+        // Then
+        for (line in lines) {
+            val offset = text.indexOf("line $line\n").toLong()
+            assertEquals(offset, lineIndex.offsetOf(line))
+            assertEquals(line, lineIndex.lineAt(offset))
+            assertEquals(line, lineIndex.lineAt(offset + 3))
+        }
+    }
+
+    @Test
+    fun `When line is out of range Then clamp to the last line`() = runTest {
+        // Given
+        val lineIndex = LineIndex.build(file)
+
+        // When
+        val offset = lineIndex.offsetOf(LINE_COUNT * 2)
+
+        // Then
+        assertEquals(file.length(), offset)
+        assertEquals(LINE_COUNT, lineIndex.lineAt(offset))
+    }
+
+    @Test
+    fun `When file is appended Then index is stale`() = runTest {
+        // Given
+        val lineIndex = LineIndex.build(file)
+
+        // When
+        file.appendText("line $LINE_COUNT\n")
+
+        // Then
+        assertTrue(lineIndex.isStale)
+    }
+
+    @Test
+    fun `When file is UTF-16 Then count only whole line feeds`() = runTest {
+        // Given
+        // U+010A is encoded as 0A 01, its first byte alone looks like a line feed
+        val utf16Text = buildString {
+            repeat(LINE_COUNT) { index -> append("line ").append(index).append(" \u010A\n") }
+        }
+        file.writeBytes(utf16Text.toByteArray(Charsets.UTF_16LE))
+
+        // When
+        val lineIndex = LineIndex.build(file, Charsets.UTF_16LE)
+
+        // Then
+        assertEquals(LINE_COUNT + 1, lineIndex.lineCount)
+        for (line in listOf(1, LineIndex.STRIDE, 2500)) {
+            val offset = utf16Text.indexOf("line $line ").toLong() * 2
+            assertEquals(offset, lineIndex.offsetOf(line))
+            assertEquals(line, lineIndex.lineAt(offset))
+        }
+    }
+
+    companion object {
+        private const val LINE_COUNT = 3000
+    }
+}
\ No newline at end of file
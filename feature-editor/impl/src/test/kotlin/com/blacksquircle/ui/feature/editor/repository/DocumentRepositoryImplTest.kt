@@ -26,6 +26,7 @@ import com.blacksquircle.ui.feature.editor.createDocumentEntity
 import com.blacksquircle.ui.feature.editor.data.manager.CacheManager
 import com.blacksquircle.ui.feature.editor.data.model.LanguageScope
 import com.blacksquircle.ui.feature.editor.data.repository.DocumentRepositoryImpl
+import com.blacksquircle.ui.feature.editor.domain.model.PreviewPage
 import com.blacksquircle.ui.feature.explorer.api.factory.FilesystemFactory
 import com.blacksquircle.ui.filesystem.base.Filesystem
 import com.blacksquircle.ui.filesystem.base.model.FileModel
@@ -39,9 +40,14 @@ import io.mockk.mockk
 import io.mockk.mockkStatic
 import io.mockk.verify
 import junit.framework.TestCase.assertEquals
+import junit.framework.TestCase.assertTrue
 import kotlinx.coroutines.test.runTest
+import org.junit.After
 import org.junit.Before
 import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.nio.file.Files
 
 class DocumentRepositoryImplTest {
 
@@ -53,6 +59,8 @@ class DocumentRepositoryImplTest {
     private val context = mockk<Context>(relaxed = true)
 
     private val filesystem = mockk<Filesystem>(relaxed = true)
+    private val outputStream = ByteArrayOutputStream()
+    private val tempDir = Files.createTempDirectory("documentTest").toFile()
 
     private val documentRepository = DocumentRepositoryImpl(
         dispatcherProvider = dispatcherProvider,
@@ -66,10 +74,18 @@ class DocumentRepositoryImplTest {
     @Before
     fun setup() {
         coEvery { filesystemFactory.create(any()) } returns filesystem
+        every { filesystem.openInputStream(any()) } answers { "Hello World!".byteInputStream() }
+        every { filesystem.openOutputStream(any()) } returns outputStream
 
         every { settingsManager.encodingForOpening } returns Charsets.UTF_8.name()
         every { settingsManager.encodingForSaving } returns Charsets.UTF_8.name()
         every { settingsManager.lineBreakForSaving } returns LineBreak.LF.value
+        every { settingsManager.largeFileThreshold } returns 8
+    }
+
+    @After
+    fun cleanup() {
+        tempDir.deleteRecursively()
     }
 
     @Test
@@ -118,10 +134,164 @@ class DocumentRepositoryImplTest {
             fileUri = document.fileUri,
             filesystemUuid = document.filesystemUuid,
         )
-        verify(exactly = 1) { filesystem.loadFile(fileModel, any()) }
+        verify(exactly = 1) { filesystem.openInputStream(fileModel) }
         verify(exactly = 1) { settingsManager.selectedUuid = document.uuid }
     }
 
+    @Test
+    fun `When remote document is too large Then load head window at line boundary`() = runTest {
+        // Given
+        val document = createDocument("12345", "file.log").copy(filesystemUuid = "server")
+        val fileModel = FileModel(document.fileUri, document.filesystemUuid)
+        val data = createLines(count = 200_000)
+        every { cacheManager.isCached(document) } returns false
+        every { filesystem.stat(any()) } returns listOf(fileModel.copy(size = LARGE_FILE))
+        every { filesystem.openInputStream(fileModel, 0L) } answers { data.inputStream() }
+
+        mockkStatic(Context::isStorageAccessGranted)
+        every { context.isStorageAccessGranted() } returns true
+
+        // When
+        val content = documentRepository.loadDocument(document)
+
+        // Then
+        val window = documentRepository.previewWindow(document)!!
+        assertEquals(0L, window.start)
+        assertEquals('\n'.code.toByte(), data[window.end.toInt() - 1])
+        assertEquals("line 0", content.getLineString(0))
+        verify(exactly = 0) { filesystem.openInputStream(fileModel) }
+        verify(exactly = 0) { cacheManager.saveContent(document, any()) }
+    }
+
+    @Test
+    fun `When next preview page requested Then read range after current window`() = runTest {
+        // Given
+        val document = createDocument("12345", "file.log").copy(filesystemUuid = "server")
+        val fileModel = FileModel(document.fileUri, document.filesystemUuid)
+        val data = createLines(count = 400_000)
+        every { cacheManager.isCached(document) } returns false
+        every { filesystem.stat(any()) } returns listOf(fileModel.copy(size = LARGE_FILE))
+        every { filesystem.openInputStream(fileModel, any()) } answers {
+            data.inputStream().apply { skip(secondArg()) }
+        }
+
+        mockkStatic(Context::isStorageAccessGranted)
+        every { context.isStorageAccessGranted() } returns true
+
+        // When
+        documentRepository.loadDocument(document)
+        val head = documentRepository.previewWindow(document)!!
+        val content = documentRepository.loadPreview(document, PreviewPage.NEXT)
+
+        // Then
+        val next = documentRepository.previewWindow(document)!!
+        assertEquals(head.end, next.start)
+        val firstLine = String(data, head.end.toInt(), 64).substringBefore('\n')
+        assertEquals(firstLine, content.getLineString(0))
+        verify(exactly = 1) { filesystem.openInputStream(fileModel, head.end - 4) }
+    }
+
+    @Test
+    fun `When file is UTF-16 Then cut preview windows between characters`() = runTest {
+        // Given
+        val document = createDocument("12345", "file.log").copy(filesystemUuid = "server")
+        val fileModel = FileModel(document.fileUri, document.filesystemUuid)
+        // U+010A is encoded as 0A 01, its first byte alone looks like a line feed
+        val data = buildString {
+            repeat(200_000) { index -> append("line ").append(index).append(" \u010A\n") }
+        }.toByteArray(Charsets.UTF_16LE)
+        every { settingsManager.encodingForOpening } returns Charsets.UTF_16LE.name()
+        every { settingsManager.largeFileThreshold } returns 1
+        every { cacheManager.isCached(document) } returns false
+        every { filesystem.stat(any()) } returns listOf(fileModel.copy(size = data.size.toLong()))
+        every { filesystem.openInputStream(fileModel, any()) } answers {
+            data.inputStream().apply { skip(secondArg()) }
+        }
+
+        mockkStatic(Context::isStorageAccessGranted)
+        every { context.isStorageAccessGranted() } returns true
+
+        // When
+        val head = documentRepository.loadDocument(document)
+        val next = documentRepository.loadPreview(document, PreviewPage.NEXT)
+
+        // Then
+        val window = documentRepository.previewWindow(document)!!
+        assertEquals(0L, window.start % 2)
+        assertEquals(0L, window.end % 2)
+        val pattern = Regex("line \\d+ \u010A")
+        for (content in listOf(head, next)) {
+            for (line in 0 until content.lineCount - 1) {
+                assertTrue(content.getLineString(line).matches(pattern))
+            }
+        }
+    }
+
+    @Test
+    fun `When local file exceeds threshold Then map window and index its lines`() = runTest {
+        // Given
+        val file = File(tempDir, "file.log").apply { writeBytes(createLines(count = 400_000)) }
+        val document = createDocument("12345", "file.log").copy(fileUri = "file://" + file.path)
+        every { cacheManager.isCached(document) } returns false
+        every { settingsManager.largeFileThreshold } returns 1
+
+        mockkStatic(Context::isStorageAccessGranted)
+        every { context.isStorageAccessGranted() } returns true
+
+        // When
+        val content = documentRepository.loadDocument(document)
+
+        // Then
+        val window = documentRepository.previewWindow(document)!!
+        assertEquals(0L, window.start)
+        assertEquals(0, window.startLine)
+        assertEquals(content.lineCount - 1, window.endLine)
+        assertEquals(400_001, window.lineCount)
+        assertEquals("line 0", content.getLineString(0))
+        verify(exactly = 0) { filesystem.openInputStream(any()) }
+        verify(exactly = 0) { cacheManager.saveContent(document, any()) }
+    }
+
+    @Test
+    fun `When line of indexed file requested Then load window starting at line`() = runTest {
+        // Given
+        val file = File(tempDir, "file.log").apply { writeBytes(createLines(count = 400_000)) }
+        val document = createDocument("12345", "file.log").copy(fileUri = "file://" + file.path)
+        every { cacheManager.isCached(document) } returns false
+        every { settingsManager.largeFileThreshold } returns 1
+
+        mockkStatic(Context::isStorageAccessGranted)
+        every { context.isStorageAccessGranted() } returns true
+
+        // When
+        documentRepository.loadDocument(document)
+        val content = documentRepository.loadPreview(document, line = 250_000)
+
+        // Then
+        val window = documentRepository.previewWindow(document)!!
+        assertEquals(250_000, window.startLine)
+        assertEquals("line 250000", content.getLineString(0))
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun `When saving preview window Then throw IllegalStateException`() = runTest {
+        // Given
+        val document = createDocument("12345", "file.log").copy(filesystemUuid = "server")
+        val fileModel = FileModel(document.fileUri, document.filesystemUuid)
+        every { cacheManager.isCached(document) } returns false
+        every { filesystem.stat(any()) } returns listOf(fileModel.copy(size = LARGE_FILE))
+        every { filesystem.openInputStream(fileModel, 0L) } answers {
+            createLines(count = 1000).inputStream()
+        }
+
+        mockkStatic(Context::isStorageAccessGranted)
+        every { context.isStorageAccessGranted() } returns true
+
+        // When
+        val content = documentRepository.loadDocument(document)
+        documentRepository.saveDocument(document, content)
+    }
+
     @Test(expected = PermissionException::class)
     fun `When loading content without permission Then throw PermissionException`() = runTest {
         // Given
@@ -171,7 +341,91 @@ class DocumentRepositoryImplTest {
             fileUri = document.fileUri,
             filesystemUuid = document.filesystemUuid,
         )
-        verify(exactly = 1) { filesystem.saveFile(fileModel, content.toString(), any()) }
+        verify(exactly = 1) { filesystem.openOutputStream(fileModel) }
+        assertEquals(content.toString(), outputStream.toString(Charsets.UTF_8.name()))
+    }
+
+    @Test
+    fun `When saving unchanged content Then skip writing to filesystem`() = runTest {
+        // Given
+        val document = createDocument("12345", "file.txt")
+        val content = Content("Hello World!")
+        val fileModel = FileModel(document.fileUri, document.filesystemUuid, size = 12, lastModified = 1)
+        every { filesystem.stat(any()) } returns listOf(fileModel)
+
+        // When
+        documentRepository.saveDocument(document, content)
+        documentRepository.saveDocument(document, Content("Hello World!"))
+
+        // Then
+        verify(exactly = 1) { filesystem.openOutputStream(any()) }
+        verify(exactly = 2) { cacheManager.saveContent(document, any()) }
+    }
+
+    @Test
+    fun `When file changed on disk since last save Then write unchanged content again`() = runTest {
+        // Given
+        val document = createDocument("12345", "file.txt")
+        val savedModel = FileModel(document.fileUri, document.filesystemUuid, size = 12, lastModified = 1)
+        val changedModel = savedModel.copy(size = 20, lastModified = 2)
+        every { filesystem.stat(any()) } returnsMany listOf(
+            listOf(savedModel),
+            listOf(changedModel),
+            listOf(savedModel.copy(lastModified = 3)),
+        )
+
+        // When
+        documentRepository.saveDocument(document, Content("Hello World!"))
+        documentRepository.saveDocument(document, Content("Hello World!"))
+
+        // Then
+        verify(exactly = 2) { filesystem.openOutputStream(any()) }
+    }
+
+    @Test
+    fun `When saving document right after loading it Then skip writing to filesystem`() = runTest {
+        // Given
+        val document = createDocument("12345", "file.txt")
+        val fileModel = FileModel(document.fileUri, document.filesystemUuid, size = 12, lastModified = 1)
+        every { filesystem.stat(any()) } returns listOf(fileModel)
+        every { cacheManager.isCached(document) } returns false
+        mockkStatic(Context::isStorageAccessGranted)
+        every { context.isStorageAccessGranted() } returns true
+
+        // When
+        val content = documentRepository.loadDocument(document)
+        documentRepository.saveDocument(document, content)
+
+        // Then
+        verify(exactly = 0) { filesystem.openOutputStream(any()) }
+    }
+
+    @Test
+    fun `When saving changed content Then write to filesystem again`() = runTest {
+        // Given
+        val document = createDocument("12345", "file.txt")
+
+        // When
+        documentRepository.saveDocument(document, Content("Hello World!"))
+        documentRepository.saveDocument(document, Content("Hello World!!"))
+
+        // Then
+        verify(exactly = 2) { filesystem.openOutputStream(any()) }
+    }
+
+    @Test
+    fun `When saving document with CRLF line breaks Then convert every line break`() = runTest {
+        // Given
+        val document = createDocument("12345", "file.txt")
+        val content = Content("first\nsecond\r\nthird")
+        every { settingsManager.lineBreakForSaving } returns LineBreak.CRLF.value
+
+        // When
+        documentRepository.saveDocument(document, content)
+
+        // Then
+        val expected = "first\r\nsecond\r\nthird"
+        assertEquals(expected, outputStream.toString(Charsets.UTF_8.name()))
     }
 
     @Test
@@ -291,4 +545,14 @@ class DocumentRepositoryImplTest {
         // Then
         coVerify(exactly = 1) { documentDao.updateLanguage(document.uuid, LanguageScope.C) }
     }
+
+    private fun createLines(count: Int): ByteArray {
+        return buildString {
+            repeat(count) { index -> append("line ").append(index).append('\n') }
+        }.toByteArray()
+    }
+
+    companion object {
+        private const val LARGE_FILE = 64 * 1024 * 1024L
+    }
 }
\ No newline at end of file
@@ -22,6 +22,8 @@ import com.blacksquircle.ui.core.settings.SettingsManager
 import com.blacksquircle.ui.feature.editor.api.interactor.EditorInteractor
 import com.blacksquircle.ui.feature.editor.createDocument
 import com.blacksquircle.ui.feature.editor.domain.interactor.LanguageInteractor
+import com.blacksquircle.ui.feature.editor.domain.model.PreviewPage
+import com.blacksquircle.ui.feature.editor.domain.model.PreviewWindow
 import com.blacksquircle.ui.feature.editor.domain.repository.DocumentRepository
 import com.blacksquircle.ui.feature.editor.ui.editor.EditorViewModel
 import com.blacksquircle.ui.feature.editor.ui.editor.model.DocumentState
@@ -68,6 +70,7 @@ class LoadFileTest {
     fun setup() {
         mockkObject(TypefaceProvider)
         every { TypefaceProvider.DEFAULT } returns mockk()
+        every { documentRepository.previewWindow(any()) } returns null
     }
 
     @Test
@@ -127,6 +130,74 @@ class LoadFileTest {
         assertEquals(false, viewModel.viewState.value.isLoading)
     }
 
+    @Test
+    fun `When next preview page clicked Then load next window`() = runTest {
+        // Given
+        val documentList = listOf(
+            createDocument(uuid = "1", fileName = "file.log", position = 0)
+        )
+        val selected = documentList[0]
+        val head = Content("head")
+        val next = Content("next")
+        val headWindow = PreviewWindow(start = 0L, end = 1024L, fileSize = 4096L)
+        val nextWindow = PreviewWindow(start = 1024L, end = 2048L, fileSize = 4096L)
+
+        every { settingsManager.selectedUuid } returns selected.uuid
+        every { documentRepository.previewWindow(selected) } returnsMany listOf(headWindow, nextWindow)
+        coEvery { documentRepository.loadDocuments() } returns documentList
+        coEvery { documentRepository.loadDocument(selected) } returns head
+        coEvery { documentRepository.loadPreview(selected, PreviewPage.NEXT) } returns next
+
+        // When
+        val viewModel = createViewModel()
+        viewModel.onPreviewPageClicked(PreviewPage.NEXT)
+
+        // Then
+        val documents = listOf(
+            DocumentState(document = selected, content = next, preview = nextWindow),
+        )
+        assertEquals(documents, viewModel.viewState.value.documents)
+        assertEquals(false, viewModel.viewState.value.isLoading)
+        coVerify(exactly = 1) { documentRepository.loadPreview(selected, PreviewPage.NEXT) }
+    }
+
+    @Test
+    fun `When line outside of preview window selected Then load window at line`() = runTest {
+        // Given
+        val documentList = listOf(
+            createDocument(uuid = "1", fileName = "file.log", position = 0)
+        )
+        val selected = documentList[0]
+        val head = Content("head")
+        val line = Content("line")
+        val headWindow = PreviewWindow(
+            start = 0L,
+            end = 1024L,
+            fileSize = 65536L,
+            startLine = 0,
+            endLine = 100,
+            lineCount = 6400,
+        )
+        val lineWindow = headWindow.copy(start = 30720L, end = 31744L, startLine = 3000, endLine = 3100)
+
+        every { settingsManager.selectedUuid } returns selected.uuid
+        every { documentRepository.previewWindow(selected) } returnsMany listOf(headWindow, headWindow, lineWindow)
+        coEvery { documentRepository.loadDocuments() } returns documentList
+        coEvery { documentRepository.loadDocument(selected) } returns head
+        coEvery { documentRepository.loadPreview(selected, 3000) } returns line
+
+        // When
+        val viewModel = createViewModel()
+        viewModel.onLineSelected(3000)
+
+        // Then
+        val documents = listOf(
+            DocumentState(document = selected, content = line, preview = lineWindow),
+        )
+        assertEquals(documents, viewModel.viewState.value.documents)
+        coVerify(exactly = 1) { documentRepository.loadPreview(selected, 3000) }
+    }
+
     private fun createViewModel(): EditorViewModel {
         return EditorViewModel(
             stringProvider = stringProvider,
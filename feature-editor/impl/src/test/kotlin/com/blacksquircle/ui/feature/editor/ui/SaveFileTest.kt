@@ -16,12 +16,15 @@
 
 package com.blacksquircle.ui.feature.editor.ui
 
+import android.net.Uri
+import com.blacksquircle.ui.core.mvi.ViewEvent
 import com.blacksquircle.ui.core.provider.resources.StringProvider
 import com.blacksquircle.ui.core.provider.typeface.TypefaceProvider
 import com.blacksquircle.ui.core.settings.SettingsManager
 import com.blacksquircle.ui.feature.editor.api.interactor.EditorInteractor
 import com.blacksquircle.ui.feature.editor.createDocument
 import com.blacksquircle.ui.feature.editor.domain.interactor.LanguageInteractor
+import com.blacksquircle.ui.feature.editor.domain.model.PreviewWindow
 import com.blacksquircle.ui.feature.editor.domain.repository.DocumentRepository
 import com.blacksquircle.ui.feature.editor.ui.editor.EditorViewModel
 import com.blacksquircle.ui.feature.editor.ui.editor.model.DocumentState
@@ -34,9 +37,11 @@ import com.blacksquircle.ui.test.rule.MainDispatcherRule
 import com.blacksquircle.ui.test.rule.TimberConsoleRule
 import io.github.rosemoe.sora.text.Content
 import io.mockk.coEvery
+import io.mockk.coVerify
 import io.mockk.every
 import io.mockk.mockk
 import io.mockk.mockkObject
+import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.test.runTest
 import org.junit.Assert.assertEquals
 import org.junit.Before
@@ -66,6 +71,7 @@ class SaveFileTest {
     fun setup() {
         mockkObject(TypefaceProvider)
         every { TypefaceProvider.DEFAULT } returns mockk()
+        every { documentRepository.previewWindow(any()) } returns null
     }
 
     @Test
@@ -180,6 +186,60 @@ class SaveFileTest {
         assertEquals(documents, viewModel.viewState.value.documents)
     }
 
+    @Test
+    fun `When saving a preview of large file Then skip saving`() = runTest {
+        // Given
+        val documentList = listOf(
+            createDocument(uuid = "1", fileName = "file.log", position = 0, modified = false)
+        )
+        val selected = documentList[0]
+        val content = Content()
+        val preview = PreviewWindow(start = 0L, end = 1024L, fileSize = 4096L)
+
+        every { settingsManager.selectedUuid } returns selected.uuid
+        every { settingsManager.autoSaveFiles } returns true
+        every { documentRepository.previewWindow(selected) } returns preview
+
+        coEvery { documentRepository.loadDocuments() } returns documentList
+        coEvery { documentRepository.loadDocument(selected) } returns content
+
+        // When
+        val viewModel = createViewModel()
+        viewModel.onSaveFileClicked()
+        viewModel.onPaused()
+
+        // Then
+        coVerify(exactly = 0) { documentRepository.saveDocument(any(), any()) }
+        coVerify(exactly = 0) { documentRepository.cacheDocument(any(), any()) }
+    }
+
+    @Test
+    fun `When saving a preview of large file as another file Then skip saving`() = runTest {
+        // Given
+        val documentList = listOf(
+            createDocument(uuid = "1", fileName = "file.log", position = 0, modified = false)
+        )
+        val selected = documentList[0]
+        val content = Content()
+        val preview = PreviewWindow(start = 0L, end = 1024L, fileSize = 4096L)
+        val message = "Preview is read-only"
+
+        every { settingsManager.selectedUuid } returns selected.uuid
+        every { documentRepository.previewWindow(selected) } returns preview
+        every { stringProvider.getString(any()) } returns message
+
+        coEvery { documentRepository.loadDocuments() } returns documentList
+        coEvery { documentRepository.loadDocument(selected) } returns content
+
+        // When
+        val viewModel = createViewModel()
+        viewModel.onSaveFileSelected(mockk<Uri>())
+
+        // Then
+        assertEquals(ViewEvent.Toast(message), viewModel.viewEvent.first())
+        coVerify(exactly = 0) { documentRepository.saveExternal(any(), any(), any()) }
+    }
+
     private fun createViewModel(): EditorViewModel {
         return EditorViewModel(
             stringProvider = stringProvider,
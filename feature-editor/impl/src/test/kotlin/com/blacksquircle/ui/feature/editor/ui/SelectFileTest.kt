@@ -77,6 +77,7 @@ class SelectFileTest {
     fun setup() {
         mockkObject(TypefaceProvider)
         every { TypefaceProvider.DEFAULT } returns mockk()
+        every { documentRepository.previewWindow(any()) } returns null
 
         every { editorInteractor.eventBus } returns eventBus
     }
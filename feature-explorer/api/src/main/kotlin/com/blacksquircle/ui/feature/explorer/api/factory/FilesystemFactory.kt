@@ -19,5 +19,12 @@ package com.blacksquircle.ui.feature.explorer.api.factory
 import com.blacksquircle.ui.filesystem.base.Filesystem
 
 interface FilesystemFactory {
+
+    /** Number of [create] calls served by an instance that was already live */
+    val hitCount: Long
+
+    /** Number of [create] calls that had to build a new instance */
+    val missCount: Long
+
     suspend fun create(uuid: String): Filesystem
 }
\ No newline at end of file
@@ -18,27 +18,60 @@ package com.blacksquircle.ui.feature.explorer.data.factory
 
 import android.content.Context
 import com.blacksquircle.ui.feature.explorer.api.factory.FilesystemFactory
+import com.blacksquircle.ui.feature.explorer.data.factory.FilesystemRegistry.Entry
 import com.blacksquircle.ui.feature.servers.api.factory.ServerFactory
 import com.blacksquircle.ui.feature.servers.api.interactor.ServerInteractor
 import com.blacksquircle.ui.filesystem.base.Filesystem
+import com.blacksquircle.ui.filesystem.base.cache.CachingFilesystem
+import com.blacksquircle.ui.filesystem.base.cache.DirectoryCache
+import com.blacksquircle.ui.filesystem.local.ArchiveFilesystem
 import com.blacksquircle.ui.filesystem.local.LocalFilesystem
 import com.blacksquircle.ui.filesystem.root.RootFilesystem
 import com.blacksquircle.ui.filesystem.saf.SAFFilesystem
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.flow.launchIn
+import kotlinx.coroutines.flow.onEach
+import java.io.File
 
 internal class FilesystemFactoryImpl(
     private val serverFactory: ServerFactory,
     private val serverInteractor: ServerInteractor,
+    private val applicationScope: CoroutineScope,
     private val context: Context,
 ) : FilesystemFactory {
 
+    override val hitCount: Long
+        get() = registry.hitCount
+    override val missCount: Long
+        get() = registry.missCount
+
+    private val registry = FilesystemRegistry()
+    private val directoryCache = DirectoryCache()
+
+    init {
+        serverInteractor.flowAll()
+            .onEach { serverConfigs ->
+                registry.invalidate(serverConfigs)
+                    .forEach(directoryCache::invalidate)
+            }
+            .launchIn(applicationScope)
+    }
+
     override suspend fun create(uuid: String): Filesystem {
-        return when (uuid) {
-            LocalFilesystem.LOCAL_UUID -> LocalFilesystem()
-            RootFilesystem.ROOT_UUID -> RootFilesystem()
-            SAFFilesystem.SAF_UUID -> SAFFilesystem(context)
-            else -> {
-                val serverConfig = serverInteractor.loadServer(uuid)
-                serverFactory.create(serverConfig)
+        return registry.getOrCreate(uuid) {
+            when {
+                uuid == LocalFilesystem.LOCAL_UUID -> Entry(LocalFilesystem())
+                uuid == RootFilesystem.ROOT_UUID -> Entry(RootFilesystem())
+                uuid == SAFFilesystem.SAF_UUID -> Entry(SAFFilesystem(context))
+                uuid.startsWith(ArchiveFilesystem.ARCHIVE_UUID) -> {
+                    val archive = File(uuid.removePrefix(ArchiveFilesystem.ARCHIVE_UUID))
+                    Entry(ArchiveFilesystem(archive))
+                }
+                else -> {
+                    val serverConfig = serverInteractor.loadServer(uuid)
+                    val filesystem = CachingFilesystem(serverFactory.create(serverConfig), directoryCache)
+                    Entry(filesystem, serverConfig)
+                }
             }
         }
     }
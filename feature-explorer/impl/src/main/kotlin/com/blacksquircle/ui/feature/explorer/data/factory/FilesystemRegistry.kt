@@ -0,0 +1,120 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.feature.explorer.data.factory
+
+import com.blacksquircle.ui.filesystem.base.Filesystem
+import com.blacksquircle.ui.filesystem.base.model.ServerConfig
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Keeps live [Filesystem] instances per uuid, so repeated operations don't pay
+ * construction and authentication costs. Entries that weren't used for
+ * [idleTimeout] ms are dropped on the next lookup; callers still holding an
+ * evicted instance can keep using it. Concurrent lookups of a missing uuid
+ * wait for a single instance to be built, the lock they share is dropped
+ * once the last of them is done.
+ */
+internal class FilesystemRegistry(private val idleTimeout: Long = IDLE_TIMEOUT) {
+
+    val hitCount: Long
+        get() = hits.get()
+    val missCount: Long
+        get() = misses.get()
+
+    private val entries = HashMap<String, Entry>()
+    private val locks = HashMap<String, Lock>()
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    suspend fun getOrCreate(uuid: String, create: suspend () -> Entry): Filesystem {
+        val lock = synchronized(locks) {
+            locks.getOrPut(uuid, ::Lock).also { it.users++ }
+        }
+        try {
+            return lock.mutex.withLock {
+                val filesystem = get(uuid)
+                if (filesystem != null) {
+                    hits.incrementAndGet()
+                    return@withLock filesystem
+                }
+                misses.incrementAndGet()
+                put(uuid, create())
+            }
+        } finally {
+            synchronized(locks) {
+                if (--lock.users == 0) {
+                    locks.remove(uuid)
+                }
+            }
+        }
+    }
+
+    @Synchronized
+    private fun get(uuid: String): Filesystem? {
+        evictIdle()
+        val entry = entries[uuid] ?: return null
+        entry.lastAccess = System.currentTimeMillis()
+        return entry.filesystem
+    }
+
+    @Synchronized
+    private fun put(uuid: String, entry: Entry): Filesystem {
+        entry.lastAccess = System.currentTimeMillis()
+        entries[uuid] = entry
+        return entry.filesystem
+    }
+
+    /**
+     * Drops server entries whose config is missing from [serverConfigs] or was changed,
+     * returns the uuids of the dropped entries.
+     */
+    @Synchronized
+    fun invalidate(serverConfigs: List<ServerConfig>): List<String> {
+        val configs = serverConfigs.associateBy(ServerConfig::uuid)
+        val invalidated = entries.filter { (uuid, entry) ->
+            entry.serverConfig != null && entry.serverConfig != configs[uuid]
+        }.keys.toList()
+        entries.keys.removeAll(invalidated.toSet())
+        return invalidated
+    }
+
+    private fun evictIdle() {
+        val now = System.currentTimeMillis()
+        entries.values.removeAll { entry ->
+            now - entry.lastAccess > idleTimeout
+        }
+    }
+
+    class Entry(
+        val filesystem: Filesystem,
+        val serverConfig: ServerConfig? = null,
+    ) {
+        internal var lastAccess = 0L
+    }
+
+    /** Guarded by [locks], [users] counts the lookups holding or waiting for [mutex] */
+    private class Lock {
+        val mutex = Mutex()
+        var users = 0
+    }
+
+    companion object {
+        private const val IDLE_TIMEOUT = 10 * 60 * 1000L
+    }
+}
\ No newline at end of file
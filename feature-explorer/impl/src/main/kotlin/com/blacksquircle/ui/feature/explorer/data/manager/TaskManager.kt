@@ -23,9 +23,12 @@ import com.blacksquircle.ui.feature.explorer.domain.model.TaskType
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.update
+import kotlinx.coroutines.isActive
 import kotlinx.coroutines.launch
 import timber.log.Timber
 import java.util.UUID
@@ -47,12 +50,30 @@ internal class TaskManager(dispatcherProvider: DispatcherProvider) {
             MutableStateFlow(initialValue)
         }
         jobs[taskId] = scope.launch {
+            // Operations report at full speed, the UI only sees one update per frame
+            val latestStatus = MutableStateFlow<TaskStatus>(TaskStatus.Pending)
+            val publisher = launch {
+                var publishedStatus = latestStatus.value
+                while (isActive) {
+                    val status = latestStatus.value
+                    if (status != publishedStatus) {
+                        // Never overwrite the final status with a stale progress
+                        taskFlow.update { task ->
+                            if (task.isFinished) task else task.copy(status = status)
+                        }
+                        publishedStatus = status
+                    }
+                    delay(UPDATE_INTERVAL)
+                }
+            }
             try {
                 action { status ->
-                    taskFlow.value = Task(taskId, taskType, status, timestamp)
+                    latestStatus.value = status
                 }
+                publisher.cancel()
                 taskFlow.value = Task(taskId, taskType, TaskStatus.Done, timestamp)
             } catch (e: Exception) {
+                publisher.cancel()
                 Timber.e(e, e.message)
                 taskFlow.value = Task(taskId, taskType, TaskStatus.Error(e), timestamp)
             } finally {
@@ -80,4 +101,8 @@ internal class TaskManager(dispatcherProvider: DispatcherProvider) {
     fun isIdle(): Boolean {
         return jobs.isEmpty() || tasks.isEmpty()
     }
+
+    companion object {
+        private const val UPDATE_INTERVAL = 100L
+    }
 }
\ No newline at end of file
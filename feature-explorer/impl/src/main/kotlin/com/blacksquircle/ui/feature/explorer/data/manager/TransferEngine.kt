@@ -0,0 +1,360 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.feature.explorer.data.manager
+
+import com.blacksquircle.ui.core.settings.SettingsManager
+import com.blacksquircle.ui.feature.explorer.api.factory.FilesystemFactory
+import com.blacksquircle.ui.filesystem.base.Filesystem
+import com.blacksquircle.ui.filesystem.base.exception.FileAlreadyExistsException
+import com.blacksquircle.ui.filesystem.base.exception.FilesystemException
+import com.blacksquircle.ui.filesystem.base.exception.RecursiveTransferException
+import com.blacksquircle.ui.filesystem.base.model.FileModel
+import com.blacksquircle.ui.filesystem.base.model.TransferProgress
+import com.blacksquircle.ui.filesystem.base.utils.cancellable
+import com.blacksquircle.ui.filesystem.base.utils.commit
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.currentCoroutineContext
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.buffer
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.update
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import java.io.File
+import java.io.InputStream
+import java.io.OutputStream
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Streams files between two filesystems of any kind, e.g. from a server into
+ * device storage. Files are transferred in parallel, but at most
+ * [SettingsManager.transferConcurrency] at a time per filesystem, across all
+ * running tasks. A file that fails midway is resumed from the bytes that
+ * already reached the destination, and removed once it can't be completed.
+ */
+internal class TransferEngine(
+    private val filesystemFactory: FilesystemFactory,
+    private val settingsManager: SettingsManager,
+) {
+
+    private val limits = HashMap<String, Limit>()
+
+    fun copy(source: List<FileModel>, dest: FileModel): Flow<TransferProgress> {
+        return transfer(source, dest, isMove = false)
+    }
+
+    /** Sources are deleted only after every file has been transferred */
+    fun move(source: List<FileModel>, dest: FileModel): Flow<TransferProgress> {
+        return transfer(source, dest, isMove = true)
+    }
+
+    private fun transfer(
+        source: List<FileModel>,
+        dest: FileModel,
+        isMove: Boolean,
+    ): Flow<TransferProgress> = channelFlow {
+        val filesystems = (source.map(FileModel::filesystemUuid) + dest.filesystemUuid)
+            .distinct()
+            .associateWith { filesystemFactory.create(it) }
+        val destFilesystem = filesystems.getValue(dest.filesystemUuid)
+
+        for (fileModel in source) {
+            val isSameFilesystem = fileModel.filesystemUuid == dest.filesystemUuid
+            if (isSameFilesystem && (dest.fileUri + File.separator).startsWith(fileModel.fileUri + File.separator)) {
+                throw RecursiveTransferException(fileModel.path)
+            }
+        }
+        val roots = source.map { Transfer(it, childOf(dest, it)) }
+        val conflict = cancellable { destFilesystem.stat(roots.map(Transfer::target)) }
+        if (conflict.isNotEmpty()) {
+            throw FileAlreadyExistsException(conflict.first().path)
+        }
+
+        // Walk the source trees level by level, listing sibling directories in parallel
+        val files = ArrayList<Transfer>()
+        val directories = ArrayList<List<FileModel>>()
+        var level = roots
+        while (level.isNotEmpty()) {
+            val (folders, plainFiles) = level.partition { it.source.isDirectory }
+            files += plainFiles
+            if (folders.isNotEmpty()) {
+                directories += folders.map(Transfer::target)
+            }
+            level = folders.map { folder ->
+                async {
+                    val sourceFilesystem = filesystems.getValue(folder.source.filesystemUuid)
+                    val children = withPermits(folder.source.filesystemUuid) {
+                        cancellable { sourceFilesystem.listFiles(folder.source) }
+                    }
+                    children.map { Transfer(it, childOf(folder.target, it)) }
+                }
+            }.awaitAll().flatten()
+        }
+
+        val totalBytes = files.sumOf { it.source.size }
+        val fileCount = AtomicInteger(0)
+        val bytesCount = AtomicLong(0L)
+        val report = { path: String ->
+            val progress = TransferProgress(
+                path = path,
+                fileCount = fileCount.get(),
+                totalFiles = files.size,
+                bytesCount = bytesCount.get(),
+                totalBytes = totalBytes,
+            )
+            trySend(progress)
+        }
+        report(dest.path)
+
+        // Parents are created before their children, one batch per level
+        for (targets in directories) {
+            cancellable { destFilesystem.createFiles(targets) }
+        }
+        // A fixed number of workers take files from the queue, however many there are
+        val queue = ConcurrentLinkedQueue(files)
+        coroutineScope {
+            repeat(files.size.coerceAtMost(MAX_CONCURRENCY)) {
+                launch {
+                    while (true) {
+                        val file = queue.poll() ?: break
+                        val sourceFilesystem = filesystems.getValue(file.source.filesystemUuid)
+                        withPermits(file.source.filesystemUuid, dest.filesystemUuid) {
+                            transferFile(sourceFilesystem, destFilesystem, file) { bytes ->
+                                bytesCount.addAndGet(bytes)
+                                report(file.source.path)
+                            }
+                        }
+                        fileCount.incrementAndGet()
+                        report(file.source.path)
+                    }
+                }
+            }
+        }
+
+        if (isMove) {
+            for ((filesystemUuid, fileModels) in source.groupBy(FileModel::filesystemUuid)) {
+                val sourceFilesystem = filesystems.getValue(filesystemUuid)
+                cancellable { sourceFilesystem.deleteFiles(fileModels) }
+            }
+        }
+    }.buffer(Channel.CONFLATED)
+
+    /**
+     * Retries failed transfers. The bytes written before a failure are committed explicitly,
+     * the next attempt appends the rest to them if the destination allows it and starts over
+     * otherwise. Whatever was written is deleted once the file is given up on.
+     */
+    private suspend fun transferFile(
+        sourceFilesystem: Filesystem,
+        destFilesystem: Filesystem,
+        file: Transfer,
+        onProgress: (Long) -> Unit,
+    ) {
+        var transferred = 0L
+        var isCreated = false
+        var attempt = 1
+        while (true) {
+            try {
+                var offset = 0L
+                if (isCreated) {
+                    val written = cancellable { destFilesystem.stat(listOf(file.target)) }
+                    offset = written.firstOrNull()?.size?.coerceAtMost(file.source.size) ?: 0L
+                }
+                val outputStream = cancellable {
+                    if (offset > 0) {
+                        try {
+                            destFilesystem.openAppendStream(file.target)
+                        } catch (e: UnsupportedOperationException) {
+                            offset = 0L
+                            destFilesystem.openOutputStream(file.target)
+                        }
+                    } else {
+                        destFilesystem.openOutputStream(file.target)
+                    }
+                }
+                isCreated = true
+                outputStream.use {
+                    val inputStream = cancellable {
+                        sourceFilesystem.openInputStream(file.source, offset)
+                    }
+                    onProgress(offset - transferred)
+                    transferred = offset
+
+                    try {
+                        inputStream.use {
+                            pipe(inputStream, outputStream) { bytes ->
+                                transferred += bytes
+                                onProgress(bytes.toLong())
+                            }
+                        }
+                    } catch (e: Exception) {
+                        commitPartial(outputStream)
+                        throw e
+                    }
+                    outputStream.commit()
+                }
+                return
+            } catch (e: Exception) {
+                val isRetryable = e !is FilesystemException && e !is UnsupportedOperationException
+                if (isRetryable && attempt++ < MAX_ATTEMPTS && currentCoroutineContext().isActive) {
+                    continue
+                }
+                if (isCreated) {
+                    deletePartial(destFilesystem, file.target)
+                }
+                throw e
+            }
+        }
+    }
+
+    /** Keeps what was written so far, e.g. an atomic output would drop it on close */
+    private fun commitPartial(outputStream: OutputStream) {
+        try {
+            outputStream.commit()
+        } catch (e: Exception) {
+            // The next attempt checks how much of the file actually exists
+        }
+    }
+
+    /** A truncated file must not be mistaken for a complete one */
+    private fun deletePartial(filesystem: Filesystem, fileModel: FileModel) {
+        try {
+            filesystem.deleteFiles(listOf(fileModel))
+        } catch (e: Exception) {
+            // The file may not exist, the original error is reported anyway
+        }
+    }
+
+    /**
+     * Reads and writes on separate threads through a fixed number of buffers,
+     * so a slow download and a slow upload overlap instead of adding up.
+     */
+    private suspend fun pipe(
+        inputStream: InputStream,
+        outputStream: OutputStream,
+        onProgress: (Int) -> Unit,
+    ) {
+        val free: BlockingQueue<Chunk> = ArrayBlockingQueue(PIPE_CHUNKS)
+        val filled: BlockingQueue<Chunk> = ArrayBlockingQueue(PIPE_CHUNKS)
+        repeat(PIPE_CHUNKS) { free.put(Chunk(ByteArray(BUFFER_SIZE))) }
+        coroutineScope {
+            launch {
+                cancellable(onCancel = inputStream::close) {
+                    do {
+                        val chunk = free.take()
+                        chunk.length = inputStream.read(chunk.bytes)
+                        filled.put(chunk)
+                    } while (chunk.length >= 0)
+                }
+            }
+            cancellable {
+                while (true) {
+                    val chunk = filled.take()
+                    if (chunk.length < 0) {
+                        break
+                    }
+                    outputStream.write(chunk.bytes, 0, chunk.length)
+                    onProgress(chunk.length)
+                    free.put(chunk)
+                }
+            }
+        }
+    }
+
+    /** Acquires permits in a fixed order, so two transfers in opposite directions can't deadlock */
+    private suspend fun <T> withPermits(vararg filesystemUuids: String, block: suspend () -> T): T {
+        val limits = filesystemUuids.distinct().sorted().map(::limit)
+        val acquired = ArrayList<Limit>(limits.size)
+        try {
+            for (limit in limits) {
+                limit.acquire(::maxPermits)
+                acquired += limit
+            }
+            return block()
+        } finally {
+            acquired.forEach(Limit::release)
+        }
+    }
+
+    private fun limit(filesystemUuid: String): Limit {
+        return synchronized(limits) {
+            limits.getOrPut(filesystemUuid, ::Limit)
+        }
+    }
+
+    private fun maxPermits(): Int {
+        return settingsManager.transferConcurrency.coerceIn(1, MAX_CONCURRENCY)
+    }
+
+    private fun childOf(parent: FileModel, child: FileModel): FileModel {
+        return FileModel(
+            fileUri = parent.fileUri + File.separator + child.name,
+            filesystemUuid = parent.filesystemUuid,
+            size = child.size,
+            lastModified = child.lastModified,
+            isDirectory = child.isDirectory,
+        )
+    }
+
+    private data class Transfer(val source: FileModel, val target: FileModel)
+
+    private class Chunk(val bytes: ByteArray) {
+        var length = 0
+    }
+
+    /**
+     * Counts the running transfers of one filesystem. The setting is read on every acquire,
+     * so a changed value applies to the next transfers and the total never goes above it.
+     */
+    private class Limit {
+
+        private val running = MutableStateFlow(0)
+
+        suspend fun acquire(maxPermits: () -> Int) {
+            while (true) {
+                val count = running.value
+                if (count < maxPermits()) {
+                    if (running.compareAndSet(count, count + 1)) {
+                        return
+                    }
+                } else {
+                    running.first { it < maxPermits() }
+                }
+            }
+        }
+
+        fun release() {
+            running.update { it - 1 }
+        }
+    }
+
+    companion object {
+        private const val MAX_ATTEMPTS = 3
+        private const val MAX_CONCURRENCY = 8
+        private const val PIPE_CHUNKS = 4
+        private const val BUFFER_SIZE = 64 * 1024
+    }
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.feature.explorer.data.manager
+
+import com.blacksquircle.ui.feature.explorer.domain.model.TaskStatus
+import com.blacksquircle.ui.filesystem.base.model.TransferProgress
+
+/**
+ * Turns raw [TransferProgress] into [TaskStatus.Progress] with throughput and ETA.
+ * Samples are rate-limited to one per [interval] ms, so the UI isn't flooded
+ * with updates when thousands of small files are transferred.
+ */
+internal class TransferMeter(
+    private val interval: Long = SAMPLE_INTERVAL,
+    private val clock: () -> Long = System::currentTimeMillis,
+) {
+
+    private val startTime = clock()
+    private var sampleTime = startTime
+    private var sampleBytes = 0L
+    private var throughput = -1.0
+
+    /** Returns `null` if the previous sample was taken less than [interval] ms ago */
+    fun sample(progress: TransferProgress): TaskStatus.Progress? {
+        val now = clock()
+        val isFinished = progress.fileCount == progress.totalFiles
+        if (now - sampleTime < interval && !isFinished) {
+            return null
+        }
+        val elapsed = now - sampleTime
+        if (elapsed > 0) {
+            val speed = (progress.bytesCount - sampleBytes) * 1000.0 / elapsed
+            throughput = if (throughput < 0) speed else SMOOTHING * speed + (1 - SMOOTHING) * throughput
+        }
+        sampleTime = now
+        sampleBytes = progress.bytesCount
+
+        val remainingBytes = progress.totalBytes - progress.bytesCount
+        return TaskStatus.Progress(
+            count = progress.fileCount,
+            totalCount = progress.totalFiles,
+            details = progress.path,
+            bytesCount = progress.bytesCount,
+            totalBytes = progress.totalBytes,
+            throughput = throughput.toLong(),
+            eta = if (throughput > 0) (remainingBytes * 1000 / throughput).toLong() else -1L,
+        )
+    }
+
+    companion object {
+        private const val SAMPLE_INTERVAL = 250L
+        private const val SMOOTHING = 0.3
+    }
+}
\ No newline at end of file
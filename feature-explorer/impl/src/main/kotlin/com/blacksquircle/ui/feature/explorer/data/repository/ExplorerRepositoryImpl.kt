@@ -26,6 +26,8 @@ import com.blacksquircle.ui.core.provider.coroutine.DispatcherProvider
 import com.blacksquircle.ui.core.settings.SettingsManager
 import com.blacksquircle.ui.feature.explorer.api.factory.FilesystemFactory
 import com.blacksquircle.ui.feature.explorer.data.manager.TaskManager
+import com.blacksquircle.ui.feature.explorer.data.manager.TransferEngine
+import com.blacksquircle.ui.feature.explorer.data.manager.TransferMeter
 import com.blacksquircle.ui.feature.explorer.data.mapper.WorkspaceMapper
 import com.blacksquircle.ui.feature.explorer.data.workspace.DefaultWorkspaceSource
 import com.blacksquircle.ui.feature.explorer.data.workspace.ServerWorkspaceSource
@@ -38,16 +40,17 @@ import com.blacksquircle.ui.feature.explorer.domain.model.WorkspaceType
 import com.blacksquircle.ui.feature.explorer.domain.repository.ExplorerRepository
 import com.blacksquircle.ui.feature.git.api.interactor.GitInteractor
 import com.blacksquircle.ui.filesystem.base.Filesystem
+import com.blacksquircle.ui.filesystem.base.cache.CachingFilesystem
 import com.blacksquircle.ui.filesystem.base.exception.FileNotFoundException
 import com.blacksquircle.ui.filesystem.base.model.FileModel
+import com.blacksquircle.ui.filesystem.base.utils.cancellable
 import com.blacksquircle.ui.filesystem.local.LocalFilesystem
-import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.Flow
-import kotlinx.coroutines.flow.collect
-import kotlinx.coroutines.flow.collectIndexed
 import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
 import kotlinx.coroutines.flow.onEach
-import kotlinx.coroutines.flow.onStart
 import kotlinx.coroutines.withContext
 import java.io.File
 import java.util.UUID
@@ -56,6 +59,7 @@ internal class ExplorerRepositoryImpl(
     private val dispatcherProvider: DispatcherProvider,
     private val settingsManager: SettingsManager,
     private val taskManager: TaskManager,
+    private val transferEngine: TransferEngine,
     private val gitInteractor: GitInteractor,
     private val filesystemFactory: FilesystemFactory,
     private val workspaceDao: WorkspaceDao,
@@ -120,13 +124,22 @@ internal class ExplorerRepositoryImpl(
         }
     }
 
-    override suspend fun listFiles(parent: FileModel): List<FileModel> {
-        return withContext(dispatcherProvider.io()) {
+    override fun listFiles(parent: FileModel): Flow<List<FileModel>> {
+        return flow {
             if (!context.isStorageAccessGranted()) {
                 throw PermissionException()
             }
             val filesystem = currentFilesystem()
-            filesystem.listFiles(parent)
+            emitAll(filesystem.streamFiles(parent))
+        }.flowOn(dispatcherProvider.io())
+    }
+
+    override suspend fun refreshFiles(parent: FileModel) {
+        withContext(dispatcherProvider.io()) {
+            val filesystem = currentFilesystem()
+            if (filesystem is CachingFilesystem) {
+                filesystem.invalidate(parent)
+            }
         }
     }
 
@@ -146,8 +159,7 @@ internal class ExplorerRepositoryImpl(
             )
             update(progress)
 
-            filesystem.createFile(fileModel)
-            delay(100)
+            cancellable { filesystem.createFile(fileModel) }
         }
     }
 
@@ -161,24 +173,25 @@ internal class ExplorerRepositoryImpl(
             )
             update(progress)
 
-            filesystem.renameFile(source, fileName)
-            delay(100)
+            cancellable { filesystem.renameFile(source, fileName) }
         }
     }
 
     override fun deleteFiles(source: List<FileModel>): String {
         return taskManager.execute(TaskType.DELETE) { update ->
             val filesystem = currentFilesystem()
-            source.forEachIndexed { index, fileModel ->
+            var count = 0
+            // Batches let remote filesystems spread the work over pooled connections
+            for (batch in source.chunked(BATCH_SIZE)) {
                 val progress = TaskStatus.Progress(
-                    count = index + 1,
+                    count = count + 1,
                     totalCount = source.size,
-                    details = fileModel.path,
+                    details = batch.first().path,
                 )
                 update(progress)
 
-                filesystem.deleteFile(fileModel)
-                delay(100)
+                cancellable { filesystem.deleteFiles(batch) }
+                count += batch.size
             }
         }
     }
@@ -186,7 +199,9 @@ internal class ExplorerRepositoryImpl(
     override fun copyFiles(source: List<FileModel>, dest: FileModel): String {
         return taskManager.execute(TaskType.COPY) { update ->
             val filesystem = currentFilesystem()
-            source.forEachIndexed { index, fileModel ->
+            val (native, foreign) = source.partition { it.filesystemUuid == dest.filesystemUuid }
+            val streamed = foreign.toMutableList()
+            native.forEachIndexed { index, fileModel ->
                 val progress = TaskStatus.Progress(
                     count = index + 1,
                     totalCount = source.size,
@@ -194,8 +209,23 @@ internal class ExplorerRepositoryImpl(
                 )
                 update(progress)
 
-                filesystem.copyFile(fileModel, dest)
-                delay(100)
+                val transfer = try {
+                    filesystem.copyFile(fileModel, dest)
+                } catch (e: UnsupportedOperationException) {
+                    // Remote backends can't copy server-side, the engine copies through the device
+                    streamed += fileModel
+                    return@forEachIndexed
+                }
+                val transferMeter = TransferMeter()
+                transfer.collect { transferProgress ->
+                    transferMeter.sample(transferProgress)?.let { update(it) }
+                }
+            }
+            if (streamed.isNotEmpty()) {
+                val transferMeter = TransferMeter()
+                transferEngine.copy(streamed, dest).collect { transfer ->
+                    transferMeter.sample(transfer)?.let { update(it) }
+                }
             }
         }
     }
@@ -203,7 +233,9 @@ internal class ExplorerRepositoryImpl(
     override fun moveFiles(source: List<FileModel>, dest: FileModel): String {
         return taskManager.execute(TaskType.MOVE) { update ->
             val filesystem = currentFilesystem()
-            source.forEachIndexed { index, fileModel ->
+            val (native, foreign) = source.partition { it.filesystemUuid == dest.filesystemUuid }
+            val streamed = foreign.toMutableList()
+            native.forEachIndexed { index, fileModel ->
                 val progress = TaskStatus.Progress(
                     count = index + 1,
                     totalCount = source.size,
@@ -211,9 +243,18 @@ internal class ExplorerRepositoryImpl(
                 )
                 update(progress)
 
-                filesystem.copyFile(fileModel, dest)
-                filesystem.deleteFile(fileModel)
-                delay(100)
+                try {
+                    cancellable { filesystem.moveFile(fileModel, dest) }
+                } catch (e: UnsupportedOperationException) {
+                    // Backends that can't move in place, the engine copies and then deletes
+                    streamed += fileModel
+                }
+            }
+            if (streamed.isNotEmpty()) {
+                val transferMeter = TransferMeter()
+                transferEngine.move(streamed, dest).collect { transfer ->
+                    transferMeter.sample(transfer)?.let { update(it) }
+                }
             }
         }
     }
@@ -227,32 +268,27 @@ internal class ExplorerRepositoryImpl(
                 isDirectory = false,
             )
 
-            filesystem.compressFiles(source, child)
-                .collectIndexed { index, fileModel ->
-                    val progress = TaskStatus.Progress(
-                        count = index + 1,
-                        totalCount = source.size,
-                        details = fileModel.path,
-                    )
-                    update(progress)
-                    delay(100)
-                }
+            val transferMeter = TransferMeter()
+            filesystem.compressFiles(source, child).collect { transfer ->
+                transferMeter.sample(transfer)?.let { update(it) }
+            }
         }
     }
 
     override fun extractFiles(source: FileModel, dest: FileModel): String {
         return taskManager.execute(TaskType.EXTRACT) { update ->
             val filesystem = currentFilesystem()
-            filesystem.extractFiles(source, dest)
-                .onStart {
-                    val progress = TaskStatus.Progress(
-                        count = -1,
-                        totalCount = -1,
-                        details = source.path
-                    )
-                    update(progress)
-                }
-                .collect()
+            val progress = TaskStatus.Progress(
+                count = -1,
+                totalCount = -1,
+                details = source.path
+            )
+            update(progress)
+
+            val transferMeter = TransferMeter()
+            filesystem.extractFiles(source, dest).collect { transfer ->
+                transferMeter.sample(transfer)?.let { update(it) }
+            }
         }
     }
 
@@ -273,4 +309,8 @@ internal class ExplorerRepositoryImpl(
         val filesystemUuid = currentWorkspace.defaultLocation.filesystemUuid
         return filesystemFactory.create(filesystemUuid)
     }
+
+    companion object {
+        private const val BATCH_SIZE = 100
+    }
 }
\ No newline at end of file
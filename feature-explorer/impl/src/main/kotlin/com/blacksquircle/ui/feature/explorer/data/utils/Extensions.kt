@@ -66,6 +66,15 @@ internal fun Long.formatDate(pattern: String): String {
     return dateFormat.format(this)
 }
 
+internal fun Long.formatDuration(): String {
+    val seconds = this / 1000
+    return if (seconds >= 3600) {
+        String.format(Locale.US, "%d:%02d:%02d", seconds / 3600, seconds % 3600 / 60, seconds % 60)
+    } else {
+        String.format(Locale.US, "%02d:%02d", seconds / 60, seconds % 60)
+    }
+}
+
 internal fun Long.formatSize(): String {
     if (this <= 0) {
         return "0 B"
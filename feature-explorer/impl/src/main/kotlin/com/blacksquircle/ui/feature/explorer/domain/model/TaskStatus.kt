@@ -21,7 +21,17 @@ import java.lang.Exception
 internal sealed class TaskStatus {
 
     data object Pending : TaskStatus()
-    data class Progress(val count: Int, val totalCount: Int, val details: String) : TaskStatus()
+    data class Progress(
+        val count: Int,
+        val totalCount: Int,
+        val details: String,
+        val bytesCount: Long = -1L,
+        val totalBytes: Long = -1L,
+        /** Bytes per second */
+        val throughput: Long = -1L,
+        /** Estimated time remaining in ms */
+        val eta: Long = -1L,
+    ) : TaskStatus()
     data class Error(val exception: Exception) : TaskStatus()
     data object Done : TaskStatus()
 }
\ No newline at end of file
@@ -31,7 +31,8 @@ internal interface ExplorerRepository {
     suspend fun createWorkspace(filePath: String)
     suspend fun deleteWorkspace(uuid: String)
 
-    suspend fun listFiles(parent: FileModel): List<FileModel>
+    fun listFiles(parent: FileModel): Flow<List<FileModel>>
+    suspend fun refreshFiles(parent: FileModel)
 
     fun createFile(parent: FileModel, fileName: String, isFolder: Boolean): String
     fun renameFile(source: FileModel, fileName: String): String
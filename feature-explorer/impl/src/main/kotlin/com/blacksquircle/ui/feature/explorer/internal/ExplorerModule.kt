@@ -23,6 +23,7 @@ import com.blacksquircle.ui.core.provider.coroutine.DispatcherProvider
 import com.blacksquircle.ui.core.settings.SettingsManager
 import com.blacksquircle.ui.feature.explorer.api.factory.FilesystemFactory
 import com.blacksquircle.ui.feature.explorer.data.manager.TaskManager
+import com.blacksquircle.ui.feature.explorer.data.manager.TransferEngine
 import com.blacksquircle.ui.feature.explorer.data.node.async.AsyncNodeBuilder
 import com.blacksquircle.ui.feature.explorer.data.repository.ExplorerRepositoryImpl
 import com.blacksquircle.ui.feature.explorer.data.workspace.DefaultWorkspaceSource
@@ -50,12 +51,22 @@ internal object ExplorerModule {
         return TaskManager(dispatcherProvider)
     }
 
+    @Provides
+    @ExplorerScope
+    fun provideTransferEngine(
+        filesystemFactory: FilesystemFactory,
+        settingsManager: SettingsManager,
+    ): TransferEngine {
+        return TransferEngine(filesystemFactory, settingsManager)
+    }
+
     @Provides
     @ExplorerScope
     fun provideExplorerRepository(
         dispatcherProvider: DispatcherProvider,
         settingsManager: SettingsManager,
         taskManager: TaskManager,
+        transferEngine: TransferEngine,
         gitInteractor: GitInteractor,
         filesystemFactory: FilesystemFactory,
         workspaceDao: WorkspaceDao,
@@ -68,6 +79,7 @@ internal object ExplorerModule {
             dispatcherProvider = dispatcherProvider,
             settingsManager = settingsManager,
             taskManager = taskManager,
+            transferEngine = transferEngine,
             gitInteractor = gitInteractor,
             filesystemFactory = filesystemFactory,
             workspaceDao = workspaceDao,
@@ -26,6 +26,7 @@ import com.blacksquircle.ui.navigation.api.provider.EntryProvider
 import dagger.Module
 import dagger.Provides
 import dagger.multibindings.IntoSet
+import kotlinx.coroutines.CoroutineScope
 import javax.inject.Singleton
 
 @Module
@@ -36,11 +37,13 @@ object ExplorerApiModule {
     fun provideFilesystemFactory(
         serverFactory: ServerFactory,
         serverInteractor: ServerInteractor,
+        applicationScope: CoroutineScope,
         context: Context,
     ): FilesystemFactory {
         return FilesystemFactoryImpl(
             serverFactory = serverFactory,
             serverInteractor = serverInteractor,
+            applicationScope = applicationScope,
             context = context,
         )
     }
@@ -71,12 +71,15 @@ import com.blacksquircle.ui.filesystem.base.exception.EncryptedArchiveException
 import com.blacksquircle.ui.filesystem.base.exception.FileAlreadyExistsException
 import com.blacksquircle.ui.filesystem.base.exception.FileNotFoundException
 import com.blacksquircle.ui.filesystem.base.exception.InvalidArchiveException
+import com.blacksquircle.ui.filesystem.base.exception.RecursiveTransferException
 import com.blacksquircle.ui.filesystem.base.exception.SplitArchiveException
 import com.blacksquircle.ui.filesystem.base.exception.UnsupportedArchiveException
 import com.blacksquircle.ui.filesystem.base.model.AuthMethod
 import com.blacksquircle.ui.filesystem.base.model.FileType
 import com.blacksquircle.ui.navigation.api.Navigator
 import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableStateFlow
@@ -84,6 +87,7 @@ import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
 import kotlinx.coroutines.flow.receiveAsFlow
 import kotlinx.coroutines.flow.update
+import kotlinx.coroutines.job
 import kotlinx.coroutines.launch
 import timber.log.Timber
 import javax.inject.Inject
@@ -110,6 +114,7 @@ internal class ExplorerViewModel @Inject constructor(
     val viewEvent: Flow<ViewEvent> = _viewEvent.receiveAsFlow()
 
     private val cache = HashMap<NodeKey, List<FileNode>>(128)
+    private val loadingJobs = HashMap<NodeKey, Job>()
     private var selectedNodes: List<FileNode> = emptyList()
     private var taskType: TaskType = TaskType.CREATE
     private var taskBuffer: List<FileNode> = emptyList()
@@ -155,7 +160,11 @@ internal class ExplorerViewModel @Inject constructor(
                 val currentFilesystem = selectedWorkspace?.defaultLocation?.filesystemUuid
                 val selectedFilesystem = workspace.defaultLocation.filesystemUuid
                 if (currentFilesystem != selectedFilesystem) {
-                    resetBuffer()
+                    // Copied files are kept, so they can be pasted into another filesystem
+                    selectedNodes = emptyList()
+                    _viewState.update {
+                        it.copy(selectedNodes = selectedNodes)
+                    }
                 }
 
                 explorerRepository.selectWorkspace(workspace)
@@ -266,6 +275,20 @@ internal class ExplorerViewModel @Inject constructor(
         }
         viewModelScope.launch {
             if (fileNode.isDirectory) {
+                val loadingJob = loadingJobs[fileNode.key]
+                if (fileNode.isExpanded && loadingJob?.isActive == true) {
+                    // Stop the listing, partial results will be reloaded on next expand
+                    loadingJob.cancel()
+                    cache.remove(fileNode.key)
+                    cache.updateNode(fileNode) {
+                        it.copy(
+                            isExpanded = false,
+                            isLoading = false,
+                        )
+                    }
+                    updateNodeList()
+                    return@launch
+                }
                 val cacheNode = cache[fileNode.key]
                 if (cacheNode != null) {
                     cache.updateNode(fileNode) {
@@ -313,6 +336,7 @@ internal class ExplorerViewModel @Inject constructor(
     fun onRefreshClicked() {
         viewModelScope.launch {
             val fileNode = selectedNodes.firstOrNull() ?: return@launch
+            explorerRepository.refreshFiles(fileNode.file)
             loadFiles(fileNode)
 
             selectedNodes = emptyList()
@@ -812,7 +836,8 @@ internal class ExplorerViewModel @Inject constructor(
     }
 
     private fun loadFiles(fileNode: FileNode) {
-        viewModelScope.launch {
+        loadingJobs[fileNode.key]?.cancel()
+        val loadingJob = viewModelScope.launch(start = CoroutineStart.LAZY) {
             try {
                 cache.updateNode(fileNode) {
                     it.copy(
@@ -822,20 +847,31 @@ internal class ExplorerViewModel @Inject constructor(
                 }
                 updateNodeList()
 
-                val fileList = explorerRepository.listFiles(fileNode.file)
                 val currentNodes = cache[fileNode.key].orEmpty()
-                val updatedNodes = fileList.map { fileModel ->
-                    val currentNode = currentNodes.find { it.file.fileUri == fileModel.fileUri }
-                    FileNode(
-                        file = fileModel,
-                        depth = currentNode?.depth ?: (fileNode.depth + 1),
-                        displayName = currentNode?.displayName ?: fileModel.name,
-                        displayDepth = currentNode?.displayDepth ?: (fileNode.depth + 1),
-                        displayIcon = fileIconProvider.fileIcon(fileModel),
-                        isExpanded = currentNode?.isExpanded ?: false,
-                        isLoading = currentNode?.isLoading ?: false,
-                        errorState = currentNode?.errorState,
-                    )
+                    .associateBy { it.file.fileUri }
+                val updatedNodes = ArrayList<FileNode>()
+                var renderedCount = 0
+                explorerRepository.listFiles(fileNode.file).collect { fileList ->
+                    fileList.mapTo(updatedNodes) { fileModel ->
+                        val currentNode = currentNodes[fileModel.fileUri]
+                        FileNode(
+                            file = fileModel,
+                            depth = currentNode?.depth ?: (fileNode.depth + 1),
+                            displayName = currentNode?.displayName ?: fileModel.name,
+                            displayDepth = currentNode?.displayDepth ?: (fileNode.depth + 1),
+                            displayIcon = fileIconProvider.fileIcon(fileModel),
+                            isExpanded = currentNode?.isExpanded ?: false,
+                            isLoading = currentNode?.isLoading ?: false,
+                            errorState = currentNode?.errorState,
+                        )
+                    }
+                    // Render partial results of a first listing, a refresh keeps showing the
+                    // previous ones until it completes. Each render waits for the list to double
+                    if (currentNodes.isEmpty() && updatedNodes.size >= renderedCount * 2) {
+                        renderedCount = updatedNodes.size
+                        cache[fileNode.key] = updatedNodes.toList()
+                        updateNodeList()
+                    }
                 }
                 cache[fileNode.key] = updatedNodes
 
@@ -878,8 +914,12 @@ internal class ExplorerViewModel @Inject constructor(
                     )
                 }
                 updateNodeList()
+            } finally {
+                loadingJobs.remove(fileNode.key, coroutineContext.job)
             }
         }
+        loadingJobs[fileNode.key] = loadingJob
+        loadingJob.start()
     }
 
     private fun loadWorkspaces() {
@@ -1067,6 +1107,11 @@ internal class ExplorerViewModel @Inject constructor(
                 _viewEvent.send(ViewEvent.Toast(message))
             }
 
+            is RecursiveTransferException -> {
+                val message = stringProvider.getString(R.string.explorer_toast_paste_into_itself)
+                _viewEvent.send(ViewEvent.Toast(message))
+            }
+
             is UnsupportedArchiveException -> {
                 val message = stringProvider.getString(R.string.explorer_toast_unsupported_archive)
                 _viewEvent.send(ViewEvent.Toast(message))
@@ -54,6 +54,8 @@ import com.blacksquircle.ui.ds.progress.LinearProgress
 import com.blacksquircle.ui.feature.explorer.R
 import com.blacksquircle.ui.feature.explorer.api.navigation.TaskRoute
 import com.blacksquircle.ui.feature.explorer.data.utils.formatDate
+import com.blacksquircle.ui.feature.explorer.data.utils.formatDuration
+import com.blacksquircle.ui.feature.explorer.data.utils.formatSize
 import com.blacksquircle.ui.feature.explorer.domain.model.TaskType
 import com.blacksquircle.ui.feature.explorer.internal.ExplorerComponent
 import com.blacksquircle.ui.feature.explorer.ui.explorer.ExplorerViewEvent
@@ -173,6 +175,15 @@ private fun TaskScreen(
                     Spacer(Modifier.height(16.dp))
                 }
 
+                if (viewState.totalBytes > 0) {
+                    Text(
+                        text = transferSummary(viewState),
+                        color = SquircleTheme.colors.colorTextAndIconSecondary,
+                        style = SquircleTheme.typography.text14Regular,
+                    )
+                    Spacer(Modifier.height(16.dp))
+                }
+
                 Row(verticalAlignment = Alignment.CenterVertically) {
                     if (viewState.count > 0 && viewState.totalCount > 0) {
                         Text(
@@ -189,7 +200,11 @@ private fun TaskScreen(
                     }
 
                     LinearProgress(
-                        progress = viewState.count / viewState.totalCount.toFloat(),
+                        progress = if (viewState.totalBytes > 0) {
+                            viewState.bytesCount / viewState.totalBytes.toFloat()
+                        } else {
+                            viewState.count / viewState.totalCount.toFloat()
+                        },
                         indeterminate = viewState.count == -1 || viewState.totalCount == -1,
                         modifier = Modifier.fillMaxWidth(),
                     )
@@ -203,6 +218,30 @@ private fun TaskScreen(
     )
 }
 
+@Composable
+private fun transferSummary(viewState: TaskViewState): String {
+    val parts = mutableListOf(
+        stringResource(
+            R.string.explorer_task_dialog_progress_bytes,
+            viewState.bytesCount.formatSize(),
+            viewState.totalBytes.formatSize(),
+        )
+    )
+    if (viewState.throughput > 0) {
+        parts += stringResource(
+            R.string.explorer_task_dialog_progress_throughput,
+            viewState.throughput.formatSize(),
+        )
+    }
+    if (viewState.eta >= 0) {
+        parts += stringResource(
+            R.string.explorer_task_dialog_progress_eta,
+            viewState.eta.formatDuration(),
+        )
+    }
+    return parts.joinToString(" • ")
+}
+
 @PreviewLightDark
 @Composable
 private fun ProgressScreenPreview() {
@@ -213,6 +252,10 @@ private fun ProgressScreenPreview() {
                 count = 3,
                 totalCount = 5,
                 details = "/storage/emulated/0/Download/JavaScriptAPI.js",
+                bytesCount = 734_003_200L,
+                totalBytes = 2_147_483_648L,
+                throughput = 47_185_920L,
+                eta = 30_000L,
                 timestamp = System.currentTimeMillis() - 5000L,
             )
         )
@@ -29,6 +29,8 @@ import com.blacksquircle.ui.core.extensions.createChannel
 import com.blacksquircle.ui.core.service.ComponentService
 import com.blacksquircle.ui.feature.explorer.R
 import com.blacksquircle.ui.feature.explorer.data.manager.TaskManager
+import com.blacksquircle.ui.feature.explorer.data.utils.formatDuration
+import com.blacksquircle.ui.feature.explorer.data.utils.formatSize
 import com.blacksquircle.ui.feature.explorer.domain.model.Task
 import com.blacksquircle.ui.feature.explorer.domain.model.TaskStatus
 import com.blacksquircle.ui.feature.explorer.domain.model.TaskType
@@ -109,12 +111,35 @@ internal class TaskService : ComponentService() {
     }
 
     private fun createTaskNotification(task: Task): Notification {
-        val count = (task.status as? TaskStatus.Progress)
-            ?.count ?: -1
-        val totalCount = (task.status as? TaskStatus.Progress)
-            ?.totalCount ?: -1
-        val details = (task.status as? TaskStatus.Progress)
-            ?.details
+        val progress = task.status as? TaskStatus.Progress
+        val hasBytes = progress != null && progress.totalBytes > 0
+        val count = when {
+            hasBytes -> (progress.bytesCount * PROGRESS_MAX / progress.totalBytes).toInt()
+            else -> progress?.count ?: -1
+        }
+        val totalCount = when {
+            hasBytes -> PROGRESS_MAX
+            else -> progress?.totalCount ?: -1
+        }
+        val details = progress?.details
+        val summary = if (hasBytes) {
+            val bytes = getString(
+                R.string.explorer_task_dialog_progress_bytes,
+                progress.bytesCount.formatSize(),
+                progress.totalBytes.formatSize(),
+            )
+            if (progress.eta >= 0) {
+                val eta = getString(
+                    R.string.explorer_task_dialog_progress_eta,
+                    progress.eta.formatDuration(),
+                )
+                "$bytes • $eta"
+            } else {
+                bytes
+            }
+        } else {
+            null
+        }
 
         return buildNotification(
             channelId = CHANNEL_ID,
@@ -129,6 +154,7 @@ internal class TaskService : ComponentService() {
                 TaskType.CLONE -> getString(R.string.explorer_task_dialog_title_cloning)
             },
             notificationMessage = details,
+            subText = summary,
             smallIcon = UiR.drawable.ic_file_clock,
             progress = count,
             progressMax = totalCount,
@@ -161,5 +187,6 @@ internal class TaskService : ComponentService() {
 
         private const val CHANNEL_ID = "file-explorer"
         private const val NOTIFICATION_ID = 1
+        private const val PROGRESS_MAX = 1000
     }
 }
\ No newline at end of file
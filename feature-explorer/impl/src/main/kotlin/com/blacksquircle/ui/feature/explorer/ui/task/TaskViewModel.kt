@@ -53,11 +53,16 @@ internal class TaskViewModel @AssistedInject constructor(
             }
         }
         .map(viewModelScope) { task ->
+            val progress = task.status as? TaskStatus.Progress
             TaskViewState(
                 type = task.type,
-                count = (task.status as? TaskStatus.Progress)?.count ?: -1,
-                totalCount = (task.status as? TaskStatus.Progress)?.totalCount ?: -1,
-                details = (task.status as? TaskStatus.Progress)?.details.orEmpty(),
+                count = progress?.count ?: -1,
+                totalCount = progress?.totalCount ?: -1,
+                details = progress?.details.orEmpty(),
+                bytesCount = progress?.bytesCount ?: -1L,
+                totalBytes = progress?.totalBytes ?: -1L,
+                throughput = progress?.throughput ?: -1L,
+                eta = progress?.eta ?: -1L,
                 timestamp = task.timestamp,
             )
         }
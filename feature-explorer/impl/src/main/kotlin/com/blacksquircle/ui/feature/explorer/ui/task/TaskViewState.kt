@@ -26,5 +26,9 @@ internal data class TaskViewState(
     val count: Int = -1,
     val totalCount: Int = -1,
     val details: String = "",
+    val bytesCount: Long = -1L,
+    val totalBytes: Long = -1L,
+    val throughput: Long = -1L,
+    val eta: Long = -1L,
     val timestamp: Long = System.currentTimeMillis(),
 ) : ViewState
\ No newline at end of file
@@ -20,26 +20,48 @@ import android.content.Context
 import com.blacksquircle.ui.feature.explorer.data.factory.FilesystemFactoryImpl
 import com.blacksquircle.ui.feature.servers.api.factory.ServerFactory
 import com.blacksquircle.ui.feature.servers.api.interactor.ServerInteractor
+import com.blacksquircle.ui.filesystem.base.Filesystem
+import com.blacksquircle.ui.filesystem.base.cache.CachingFilesystem
+import com.blacksquircle.ui.filesystem.base.model.FileModel
+import com.blacksquircle.ui.filesystem.base.model.ServerConfig
+import com.blacksquircle.ui.filesystem.local.ArchiveFilesystem
 import com.blacksquircle.ui.filesystem.local.LocalFilesystem
 import com.blacksquircle.ui.filesystem.root.RootFilesystem
 import com.blacksquircle.ui.filesystem.saf.SAFFilesystem
+import io.mockk.coEvery
 import io.mockk.coVerify
+import io.mockk.every
 import io.mockk.mockk
-import junit.framework.TestCase.assertNotNull
+import junit.framework.TestCase.assertEquals
+import junit.framework.TestCase.assertNotSame
+import junit.framework.TestCase.assertSame
 import junit.framework.TestCase.assertTrue
+import kotlinx.coroutines.async
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.UnconfinedTestDispatcher
 import kotlinx.coroutines.test.runTest
 import org.junit.Ignore
 import org.junit.Test
+import java.io.File
 
 class FilesystemFactoryImplTest {
 
     private val serverFactory = mockk<ServerFactory>(relaxed = true)
     private val serverInteractor = mockk<ServerInteractor>(relaxed = true)
+    private val serverConfigs = MutableStateFlow<List<ServerConfig>>(emptyList())
+    private val applicationScope = TestScope(UnconfinedTestDispatcher())
     private val context = mockk<Context>(relaxed = true)
 
+    init {
+        every { serverInteractor.flowAll() } returns serverConfigs
+    }
+
     private val filesystemFactory = FilesystemFactoryImpl(
         serverFactory = serverFactory,
         serverInteractor = serverInteractor,
+        applicationScope = applicationScope,
         context = context
     )
 
@@ -80,6 +102,19 @@ class FilesystemFactoryImplTest {
         assertTrue(filesystem is SAFFilesystem)
     }
 
+    @Test
+    fun `When uuid is archive uuid Then create ArchiveFilesystem`() = runTest {
+        // Given
+        val uuid = ArchiveFilesystem.createUuid(File("/storage/emulated/0/archive.zip"))
+
+        // When
+        val filesystem = filesystemFactory.create(uuid)
+
+        // Then
+        assertTrue(filesystem is ArchiveFilesystem)
+        coVerify(exactly = 0) { serverInteractor.loadServer(any()) }
+    }
+
     @Test
     fun `When uuid is other Then create server filesystem`() = runTest {
         // Given
@@ -89,8 +124,94 @@ class FilesystemFactoryImplTest {
         val filesystem = filesystemFactory.create(uuid)
 
         // Then
-        assertNotNull(filesystem)
+        assertTrue(filesystem is CachingFilesystem)
+        coVerify(exactly = 1) { serverInteractor.loadServer(uuid) }
+        coVerify(exactly = 1) { serverFactory.create(any()) }
+    }
+
+    @Test
+    fun `When uuid is requested twice Then reuse server filesystem`() = runTest {
+        // Given
+        val uuid = "server_uuid"
+
+        // When
+        val first = filesystemFactory.create(uuid)
+        val second = filesystemFactory.create(uuid)
+
+        // Then
+        assertSame(first, second)
         coVerify(exactly = 1) { serverInteractor.loadServer(uuid) }
         coVerify(exactly = 1) { serverFactory.create(any()) }
     }
+
+    @Test
+    fun `When uuid is requested concurrently Then create server filesystem once`() = runTest {
+        // Given
+        val uuid = "server_uuid"
+        coEvery { serverInteractor.loadServer(uuid) } coAnswers {
+            delay(100)
+            mockk(relaxed = true)
+        }
+
+        // When
+        val first = async { filesystemFactory.create(uuid) }
+        val second = async { filesystemFactory.create(uuid) }
+
+        // Then
+        assertSame(first.await(), second.await())
+        coVerify(exactly = 1) { serverInteractor.loadServer(uuid) }
+        coVerify(exactly = 1) { serverFactory.create(any()) }
+    }
+
+    @Test
+    fun `When server config changes Then create server filesystem again`() = runTest {
+        // Given
+        val uuid = "server_uuid"
+        val edited = mockk<ServerConfig>(relaxed = true)
+        every { edited.uuid } returns uuid
+        val first = filesystemFactory.create(uuid)
+
+        // When
+        serverConfigs.value = listOf(edited)
+        val second = filesystemFactory.create(uuid)
+
+        // Then
+        assertNotSame(first, second)
+        coVerify(exactly = 2) { serverInteractor.loadServer(uuid) }
+    }
+
+    @Test
+    fun `When uuid is requested again Then count hits and misses`() = runTest {
+        // Given
+        val uuid = LocalFilesystem.LOCAL_UUID
+
+        // When
+        repeat(3) { filesystemFactory.create(uuid) }
+
+        // Then
+        assertEquals(2L, filesystemFactory.hitCount)
+        assertEquals(1L, filesystemFactory.missCount)
+    }
+
+    @Test
+    fun `When servers share a path Then keep their listings apart`() = runTest {
+        // Given
+        val firstServer = mockk<Filesystem>()
+        val secondServer = mockk<Filesystem>()
+        val firstHome = FileModel("sftp:///home", "first")
+        val secondHome = FileModel("sftp:///home", "second")
+        val firstChildren = listOf(FileModel("sftp:///home/first.txt", "first"))
+        val secondChildren = listOf(FileModel("sftp:///home/second.txt", "second"))
+        every { firstServer.listFiles(firstHome) } returns firstChildren
+        every { secondServer.listFiles(secondHome) } returns secondChildren
+        coEvery { serverFactory.create(any()) } returnsMany listOf(firstServer, secondServer)
+
+        // When
+        val first = filesystemFactory.create("first").listFiles(firstHome)
+        val second = filesystemFactory.create("second").listFiles(secondHome)
+
+        // Then
+        assertEquals(firstChildren, first)
+        assertEquals(secondChildren, second)
+    }
 }
\ No newline at end of file
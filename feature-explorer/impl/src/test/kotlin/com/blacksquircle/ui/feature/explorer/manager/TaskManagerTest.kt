@@ -28,6 +28,7 @@ import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.test.advanceTimeBy
 import kotlinx.coroutines.test.advanceUntilIdle
+import kotlinx.coroutines.test.currentTime
 import kotlinx.coroutines.test.runTest
 import org.junit.Rule
 import org.junit.Test
@@ -80,6 +81,32 @@ class TaskManagerTest {
         assertTrue(taskManager.isIdle())
     }
 
+    @Test
+    fun `When reporting progress for 10k files Then task is done in bounded time`() = runTest(testDispatcher) {
+        // Given
+        val fileCount = 10_000
+        val action: TaskAction = { update ->
+            repeat(fileCount) { index ->
+                val progress = TaskStatus.Progress(
+                    count = index + 1,
+                    totalCount = fileCount,
+                    details = "/storage/emulated/0/Documents/file_$index.txt",
+                )
+                update(progress)
+            }
+        }
+
+        // When
+        val taskId = taskManager.execute(TaskType.DELETE, action)
+        val taskMonitor = taskManager.monitor(taskId)
+        advanceUntilIdle()
+
+        // Then
+        assertEquals(TaskStatus.Done, taskMonitor.value.status)
+        assertTrue(currentTime < 1000L)
+        assertTrue(taskManager.isIdle())
+    }
+
     @Test
     fun `When cancelling a task Then task is removed`() = runTest {
         // Given
@@ -0,0 +1,249 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.feature.explorer.manager
+
+import com.blacksquircle.ui.core.settings.SettingsManager
+import com.blacksquircle.ui.feature.explorer.api.factory.FilesystemFactory
+import com.blacksquircle.ui.feature.explorer.createFile
+import com.blacksquircle.ui.feature.explorer.createFolder
+import com.blacksquircle.ui.feature.explorer.data.manager.TransferEngine
+import com.blacksquircle.ui.filesystem.base.Filesystem
+import com.blacksquircle.ui.filesystem.base.exception.FileAlreadyExistsException
+import com.blacksquircle.ui.filesystem.base.exception.RecursiveTransferException
+import com.blacksquircle.ui.filesystem.base.model.FileModel
+import com.blacksquircle.ui.filesystem.local.LocalFilesystem
+import io.mockk.coEvery
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import junit.framework.TestCase.assertEquals
+import junit.framework.TestCase.assertTrue
+import kotlinx.coroutines.flow.last
+import kotlinx.coroutines.test.runTest
+import org.junit.Before
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.FilterInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.random.Random
+
+class TransferEngineTest {
+
+    private val filesystemFactory = mockk<FilesystemFactory>(relaxed = true)
+    private val settingsManager = mockk<SettingsManager>(relaxed = true)
+    private val serverFilesystem = mockk<Filesystem>(relaxed = true)
+    private val localFilesystem = mockk<Filesystem>(relaxed = true)
+
+    private val transferEngine = TransferEngine(filesystemFactory, settingsManager)
+
+    @Before
+    fun setup() {
+        every { settingsManager.transferConcurrency } returns 3
+        coEvery { filesystemFactory.create(SERVER_UUID) } returns serverFilesystem
+        coEvery { filesystemFactory.create(LocalFilesystem.LOCAL_UUID) } returns localFilesystem
+        every { localFilesystem.stat(any()) } returns emptyList()
+    }
+
+    @Test
+    fun `When copying from server Then stream file into local storage`() = runTest {
+        // Given
+        val data = Random.nextBytes(200_000)
+        val source = createServerFile("data.bin", data.size.toLong())
+        val dest = createFolder("Documents")
+        val outputStream = ByteArrayOutputStream()
+
+        every { serverFilesystem.openInputStream(source, 0L) } returns ByteArrayInputStream(data)
+        every { localFilesystem.openOutputStream(any()) } returns outputStream
+
+        // When
+        val progress = transferEngine.copy(listOf(source), dest).last()
+
+        // Then
+        assertTrue(data.contentEquals(outputStream.toByteArray()))
+        assertEquals(1, progress.fileCount)
+        assertEquals(data.size.toLong(), progress.bytesCount)
+        verify(exactly = 0) { serverFilesystem.deleteFiles(any()) }
+    }
+
+    @Test
+    fun `When connection drops midway Then resume from written bytes`() = runTest {
+        // Given
+        val data = Random.nextBytes(300_000)
+        val source = createServerFile("data.bin", data.size.toLong())
+        val dest = createFolder("Documents")
+        val firstOutput = ByteArrayOutputStream()
+        val secondOutput = ByteArrayOutputStream()
+
+        every { serverFilesystem.openInputStream(source, 0L) } returns
+            FailingInputStream(ByteArrayInputStream(data), failAt = 150_000)
+        every { serverFilesystem.openInputStream(source, more(0L)) } answers {
+            val offset = secondArg<Long>().toInt()
+            ByteArrayInputStream(data, offset, data.size - offset)
+        }
+        every { localFilesystem.stat(any()) } answers {
+            // Nothing exists before the transfer, afterwards the partial file does
+            if (firstOutput.size() == 0) {
+                emptyList()
+            } else {
+                listOf(createFile("data.bin", size = firstOutput.size().toLong()))
+            }
+        }
+        every { localFilesystem.openOutputStream(any()) } returns firstOutput
+        every { localFilesystem.openAppendStream(any()) } returns secondOutput
+
+        // When
+        val progress = transferEngine.copy(listOf(source), dest).last()
+
+        // Then
+        val written = firstOutput.toByteArray() + secondOutput.toByteArray()
+        assertTrue(data.contentEquals(written))
+        assertEquals(data.size.toLong(), progress.bytesCount)
+        verify(exactly = 1) { localFilesystem.openOutputStream(any()) }
+        verify(exactly = 1) { localFilesystem.openAppendStream(any()) }
+        verify(exactly = 1) {
+            serverFilesystem.openInputStream(source, firstOutput.size().toLong())
+        }
+    }
+
+    @Test
+    fun `When every attempt fails Then delete partial target`() = runTest {
+        // Given
+        val data = Random.nextBytes(300_000)
+        val source = createServerFile("data.bin", data.size.toLong())
+        val dest = createFolder("Documents")
+
+        every { serverFilesystem.openInputStream(source, any()) } answers {
+            FailingInputStream(ByteArrayInputStream(data), failAt = 100_000)
+        }
+        every { localFilesystem.openOutputStream(any()) } answers { ByteArrayOutputStream() }
+
+        // When
+        val result = runCatching { transferEngine.copy(listOf(source), dest).last() }
+
+        // Then
+        assertTrue(result.exceptionOrNull() is IOException)
+        verify(exactly = 3) { serverFilesystem.openInputStream(source, any()) }
+        verify(exactly = 1) {
+            localFilesystem.deleteFiles(match { it.single().name == "data.bin" })
+        }
+    }
+
+    @Test(expected = RecursiveTransferException::class)
+    fun `When copying folder into itself Then throw RecursiveTransferException`() = runTest {
+        // Given
+        val source = createFolder("Documents")
+        val dest = createFolder("Documents/Backup")
+
+        // When
+        transferEngine.copy(listOf(source), dest).last()
+    }
+
+    @Test(expected = FileAlreadyExistsException::class)
+    fun `When target already exists Then throw FileAlreadyExistsException`() = runTest {
+        // Given
+        val source = createServerFile("data.bin", 100L)
+        val dest = createFolder("Documents")
+
+        every { localFilesystem.stat(any()) } returns listOf(createFile("Documents/data.bin"))
+
+        // When
+        transferEngine.copy(listOf(source), dest).last()
+    }
+
+    @Test
+    fun `When moving from server Then delete sources after transfer`() = runTest {
+        // Given
+        val source = listOf(
+            createServerFile("file_1.txt", 3L),
+            createServerFile("file_2.txt", 3L),
+        )
+        val dest = createFolder("Documents")
+
+        every { serverFilesystem.openInputStream(any(), any()) } answers {
+            ByteArrayInputStream(byteArrayOf(1, 2, 3))
+        }
+        every { localFilesystem.openOutputStream(any()) } answers { ByteArrayOutputStream() }
+
+        // When
+        val progress = transferEngine.move(source, dest).last()
+
+        // Then
+        assertEquals(2, progress.fileCount)
+        verify(exactly = 1) { serverFilesystem.deleteFiles(source) }
+    }
+
+    @Test
+    fun `When copying many files Then respect concurrency limit`() = runTest {
+        // Given
+        val source = List(12) { index -> createServerFile("file_$index.txt", 3L) }
+        val dest = createFolder("Documents")
+        val running = AtomicInteger(0)
+        val maxRunning = AtomicInteger(0)
+
+        every { settingsManager.transferConcurrency } returns 2
+        every { serverFilesystem.openInputStream(any(), any()) } answers {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), ::maxOf)
+            Thread.sleep(20)
+            object : FilterInputStream(ByteArrayInputStream(byteArrayOf(1, 2, 3))) {
+                override fun close() {
+                    running.decrementAndGet()
+                    super.close()
+                }
+            }
+        }
+        every { localFilesystem.openOutputStream(any()) } answers { ByteArrayOutputStream() }
+
+        // When
+        val progress = transferEngine.copy(source, dest).last()
+
+        // Then
+        assertEquals(12, progress.fileCount)
+        assertTrue(maxRunning.get() in 1..2)
+    }
+
+    private fun createServerFile(name: String, size: Long): FileModel {
+        return FileModel(
+            fileUri = "sftp:///home/user/$name",
+            filesystemUuid = SERVER_UUID,
+            size = size,
+        )
+    }
+
+    private class FailingInputStream(
+        inputStream: InputStream,
+        private val failAt: Int,
+    ) : FilterInputStream(inputStream) {
+
+        private var position = 0
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            if (position >= failAt) {
+                throw IOException("Connection reset")
+            }
+            val count = super.read(b, off, minOf(len, failAt - position))
+            position += count
+            return count
+        }
+    }
+
+    companion object {
+        private const val SERVER_UUID = "server"
+    }
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.feature.explorer.manager
+
+import com.blacksquircle.ui.feature.explorer.data.manager.TransferMeter
+import com.blacksquircle.ui.filesystem.base.model.TransferProgress
+import junit.framework.TestCase.assertEquals
+import junit.framework.TestCase.assertNotNull
+import junit.framework.TestCase.assertNull
+import org.junit.Test
+
+class TransferMeterTest {
+
+    private var currentTime = 0L
+    private val transferMeter = TransferMeter(interval = 250L, clock = { currentTime })
+
+    @Test
+    fun `When sampled too often Then skip intermediate progress`() {
+        // Given
+        currentTime = 100L
+
+        // When
+        val progress = transferMeter.sample(createProgress(bytesCount = 1024L))
+
+        // Then
+        assertNull(progress)
+    }
+
+    @Test
+    fun `When transfer is finished Then always report progress`() {
+        // Given
+        currentTime = 100L
+
+        // When
+        val progress = transferMeter.sample(
+            createProgress(fileCount = 10, bytesCount = 10_000L)
+        )
+
+        // Then
+        assertNotNull(progress)
+        assertEquals(10_000L, progress?.bytesCount)
+    }
+
+    @Test
+    fun `When sampled after interval Then report throughput and eta`() {
+        // Given
+        currentTime = 1000L
+
+        // When
+        val progress = transferMeter.sample(createProgress(bytesCount = 2_500L))
+
+        // Then
+        assertEquals(2_500L, progress?.throughput)
+        assertEquals(3_000L, progress?.eta)
+    }
+
+    private fun createProgress(
+        fileCount: Int = 1,
+        bytesCount: Long,
+    ): TransferProgress {
+        return TransferProgress(
+            path = "/storage/emulated/0/Documents/untitled.txt",
+            fileCount = fileCount,
+            totalFiles = 10,
+            bytesCount = bytesCount,
+            totalBytes = 10_000L,
+        )
+    }
+}
\ No newline at end of file
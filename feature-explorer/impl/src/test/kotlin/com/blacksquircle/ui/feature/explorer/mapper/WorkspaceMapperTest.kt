@@ -101,6 +101,7 @@ class WorkspaceMapperTest {
             password = null,
             keyId = null,
             passphrase = null,
+            protectData = false,
         )
 
         // When
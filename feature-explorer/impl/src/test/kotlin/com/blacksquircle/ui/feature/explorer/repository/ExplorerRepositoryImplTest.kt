@@ -26,6 +26,7 @@ import com.blacksquircle.ui.feature.explorer.createFile
 import com.blacksquircle.ui.feature.explorer.createFolder
 import com.blacksquircle.ui.feature.explorer.data.manager.TaskAction
 import com.blacksquircle.ui.feature.explorer.data.manager.TaskManager
+import com.blacksquircle.ui.feature.explorer.data.manager.TransferEngine
 import com.blacksquircle.ui.feature.explorer.data.repository.ExplorerRepositoryImpl
 import com.blacksquircle.ui.feature.explorer.data.workspace.DefaultWorkspaceSource
 import com.blacksquircle.ui.feature.explorer.data.workspace.ServerWorkspaceSource
@@ -34,6 +35,7 @@ import com.blacksquircle.ui.feature.explorer.defaultWorkspaces
 import com.blacksquircle.ui.feature.explorer.domain.model.TaskType
 import com.blacksquircle.ui.feature.git.api.interactor.GitInteractor
 import com.blacksquircle.ui.filesystem.base.Filesystem
+import com.blacksquircle.ui.filesystem.base.model.FileModel
 import com.blacksquircle.ui.filesystem.local.LocalFilesystem
 import com.blacksquircle.ui.test.provider.TestDispatcherProvider
 import io.mockk.coEvery
@@ -44,17 +46,28 @@ import io.mockk.mockkStatic
 import io.mockk.slot
 import io.mockk.verify
 import junit.framework.TestCase.assertEquals
+import junit.framework.TestCase.assertTrue
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.flow.collect
 import kotlinx.coroutines.flow.emptyFlow
+import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.test.currentTime
 import kotlinx.coroutines.test.runTest
 import org.junit.Before
 import org.junit.Test
+import java.util.concurrent.atomic.AtomicBoolean
 
 class ExplorerRepositoryImplTest {
 
     private val dispatcherProvider = TestDispatcherProvider()
     private val settingsManager = mockk<SettingsManager>(relaxed = true)
     private val taskManager = mockk<TaskManager>(relaxed = true)
+    private val transferEngine = mockk<TransferEngine>(relaxed = true)
     private val gitInteractor = mockk<GitInteractor>(relaxed = true)
     private val filesystemFactory = mockk<FilesystemFactory>(relaxed = true)
     private val workspaceDao = mockk<WorkspaceDao>(relaxed = true)
@@ -71,6 +84,7 @@ class ExplorerRepositoryImplTest {
         dispatcherProvider = dispatcherProvider,
         settingsManager = settingsManager,
         taskManager = taskManager,
+        transferEngine = transferEngine,
         gitInteractor = gitInteractor,
         filesystemFactory = filesystemFactory,
         workspaceDao = workspaceDao,
@@ -85,6 +99,11 @@ class ExplorerRepositoryImplTest {
         every { defaultWorkspaceSource.workspaceFlow } returns flowOf(workspaces)
         every { userWorkspaceSource.workspaceFlow } returns emptyFlow()
         every { serverWorkspaceSource.workspaceFlow } returns emptyFlow()
+
+        // Same as the default implementation, which a relaxed mock would skip
+        every { filesystem.deleteFiles(any()) } answers {
+            firstArg<List<FileModel>>().forEach(filesystem::deleteFile)
+        }
     }
 
     @Test
@@ -106,7 +125,7 @@ class ExplorerRepositoryImplTest {
 
         // When
         val fileModel = createFolder("Documents")
-        explorerRepository.listFiles(fileModel)
+        explorerRepository.listFiles(fileModel).collect()
 
         // Then - throws exception
     }
@@ -123,17 +142,17 @@ class ExplorerRepositoryImplTest {
             createFile("file_2.txt"),
             createFile("file_3.txt"),
         )
-        every { filesystem.listFiles(parent) } returns children
+        every { filesystem.streamFiles(parent) } returns flowOf(children)
         coEvery { filesystemFactory.create(any()) } returns filesystem
 
         explorerRepository.selectWorkspace(selectedWorkspace)
 
         // When
-        val fileList = explorerRepository.listFiles(parent)
+        val fileList = explorerRepository.listFiles(parent).first()
 
         // Then
         assertEquals(children, fileList)
-        verify(exactly = 1) { filesystem.listFiles(parent) }
+        verify(exactly = 1) { filesystem.streamFiles(parent) }
     }
 
     @Test
@@ -217,6 +236,74 @@ class ExplorerRepositoryImplTest {
         verify(exactly = 1) { filesystem.deleteFile(source[2]) }
     }
 
+    @Test
+    fun `When delete task is cancelled Then interrupt blocking call`() = runTest {
+        // Given
+        val filesystemUuid = LocalFilesystem.LOCAL_UUID
+        val source = listOf(
+            createFile("file_1.txt"),
+            createFile("file_2.txt"),
+        )
+        val isStarted = CompletableDeferred<Unit>()
+        val isInterrupted = AtomicBoolean(false)
+
+        every { settingsManager.workspace } returns filesystemUuid
+        coEvery { filesystemFactory.create(filesystemUuid) } returns filesystem
+        every { filesystem.deleteFile(any()) } answers {
+            isStarted.complete(Unit)
+            try {
+                Thread.sleep(60_000)
+            } catch (e: InterruptedException) {
+                isInterrupted.set(true)
+                throw e
+            }
+        }
+
+        val taskActionSlot = slot<TaskAction>()
+        every { taskManager.execute(TaskType.DELETE, capture(taskActionSlot)) } returns "12345"
+
+        explorerRepository.selectWorkspace(selectedWorkspace)
+
+        // When
+        explorerRepository.deleteFiles(source)
+        val job = launch(Dispatchers.Default) {
+            taskActionSlot.captured.invoke { /* no-op */ }
+        }
+        isStarted.await()
+        job.cancelAndJoin()
+
+        // Then
+        assertTrue(isInterrupted.get())
+        verify(exactly = 1) { filesystem.deleteFile(source[0]) }
+        verify(exactly = 0) { filesystem.deleteFile(source[1]) }
+    }
+
+    @Test
+    @OptIn(ExperimentalCoroutinesApi::class)
+    fun `When deleting 10k files Then finish without artificial delays`() = runTest {
+        // Given
+        val filesystemUuid = LocalFilesystem.LOCAL_UUID
+        val source = List(10_000) { index ->
+            createFile("file_$index.txt")
+        }
+
+        every { settingsManager.workspace } returns filesystemUuid
+        coEvery { filesystemFactory.create(filesystemUuid) } returns filesystem
+
+        val taskActionSlot = slot<TaskAction>()
+        every { taskManager.execute(TaskType.DELETE, capture(taskActionSlot)) } returns "12345"
+
+        explorerRepository.selectWorkspace(selectedWorkspace)
+
+        // When
+        explorerRepository.deleteFiles(source)
+        taskActionSlot.captured.invoke { /* no-op */ }
+
+        // Then
+        assertEquals(0L, currentTime)
+        verify(exactly = 10_000) { filesystem.deleteFile(any()) }
+    }
+
     @Test
     fun `When copy files called Then execute task`() = runTest {
         // Given
@@ -249,6 +336,62 @@ class ExplorerRepositoryImplTest {
         verify(exactly = 1) { filesystem.copyFile(source[2], dest) }
     }
 
+    @Test
+    fun `When copy files from another filesystem Then stream them with transfer engine`() = runTest {
+        // Given
+        val filesystemUuid = LocalFilesystem.LOCAL_UUID
+        val source = listOf(
+            createFile("file_1.txt").copy(filesystemUuid = "server"),
+            createFile("file_2.txt").copy(filesystemUuid = "server"),
+        )
+        val dest = createFolder("Documents")
+
+        every { settingsManager.workspace } returns filesystemUuid
+        coEvery { filesystemFactory.create(filesystemUuid) } returns filesystem
+        every { transferEngine.copy(any(), any()) } returns emptyFlow()
+
+        val taskActionSlot = slot<TaskAction>()
+        every { taskManager.execute(TaskType.COPY, capture(taskActionSlot)) } returns "12345"
+
+        explorerRepository.selectWorkspace(selectedWorkspace)
+
+        // When
+        explorerRepository.copyFiles(source, dest)
+        taskActionSlot.captured.invoke { /* no-op */ }
+
+        // Then
+        verify(exactly = 1) { transferEngine.copy(source, dest) }
+        verify(exactly = 0) { filesystem.copyFile(any(), any()) }
+    }
+
+    @Test
+    fun `When filesystem can't copy Then fall back to transfer engine`() = runTest {
+        // Given
+        val filesystemUuid = LocalFilesystem.LOCAL_UUID
+        val source = listOf(
+            createFile("file_1.txt"),
+            createFile("file_2.txt"),
+        )
+        val dest = createFolder("Documents")
+
+        every { settingsManager.workspace } returns filesystemUuid
+        coEvery { filesystemFactory.create(filesystemUuid) } returns filesystem
+        every { filesystem.copyFile(any(), any()) } throws UnsupportedOperationException()
+        every { transferEngine.copy(any(), any()) } returns emptyFlow()
+
+        val taskActionSlot = slot<TaskAction>()
+        every { taskManager.execute(TaskType.COPY, capture(taskActionSlot)) } returns "12345"
+
+        explorerRepository.selectWorkspace(selectedWorkspace)
+
+        // When
+        explorerRepository.copyFiles(source, dest)
+        taskActionSlot.captured.invoke { /* no-op */ }
+
+        // Then
+        verify(exactly = 1) { transferEngine.copy(source, dest) }
+    }
+
     @Test
     fun `When move files called Then execute task`() = runTest {
         // Given
@@ -276,13 +419,68 @@ class ExplorerRepositoryImplTest {
         verify(exactly = 1) { taskManager.execute(TaskType.MOVE, any()) }
         coVerify(exactly = 1) { filesystemFactory.create(filesystemUuid) }
 
-        verify(exactly = 1) { filesystem.copyFile(source[0], dest) }
-        verify(exactly = 1) { filesystem.copyFile(source[1], dest) }
-        verify(exactly = 1) { filesystem.copyFile(source[2], dest) }
+        verify(exactly = 1) { filesystem.moveFile(source[0], dest) }
+        verify(exactly = 1) { filesystem.moveFile(source[1], dest) }
+        verify(exactly = 1) { filesystem.moveFile(source[2], dest) }
 
-        verify(exactly = 1) { filesystem.deleteFile(source[0]) }
-        verify(exactly = 1) { filesystem.deleteFile(source[1]) }
-        verify(exactly = 1) { filesystem.deleteFile(source[2]) }
+        verify(exactly = 0) { filesystem.copyFile(any(), any()) }
+        verify(exactly = 0) { filesystem.deleteFile(any()) }
+    }
+
+    @Test
+    fun `When move files from another filesystem Then stream them with transfer engine`() = runTest {
+        // Given
+        val filesystemUuid = LocalFilesystem.LOCAL_UUID
+        val source = listOf(
+            createFile("file_1.txt").copy(filesystemUuid = "server"),
+            createFile("file_2.txt").copy(filesystemUuid = "server"),
+        )
+        val dest = createFolder("Documents")
+
+        every { settingsManager.workspace } returns filesystemUuid
+        coEvery { filesystemFactory.create(filesystemUuid) } returns filesystem
+        every { transferEngine.move(any(), any()) } returns emptyFlow()
+
+        val taskActionSlot = slot<TaskAction>()
+        every { taskManager.execute(TaskType.MOVE, capture(taskActionSlot)) } returns "12345"
+
+        explorerRepository.selectWorkspace(selectedWorkspace)
+
+        // When
+        explorerRepository.moveFiles(source, dest)
+        taskActionSlot.captured.invoke { /* no-op */ }
+
+        // Then
+        verify(exactly = 1) { transferEngine.move(source, dest) }
+        verify(exactly = 0) { filesystem.moveFile(any(), any()) }
+    }
+
+    @Test
+    fun `When filesystem can't move Then fall back to transfer engine`() = runTest {
+        // Given
+        val filesystemUuid = LocalFilesystem.LOCAL_UUID
+        val source = listOf(
+            createFile("file_1.txt"),
+            createFile("file_2.txt"),
+        )
+        val dest = createFolder("Documents")
+
+        every { settingsManager.workspace } returns filesystemUuid
+        coEvery { filesystemFactory.create(filesystemUuid) } returns filesystem
+        every { filesystem.moveFile(any(), any()) } throws UnsupportedOperationException()
+        every { transferEngine.move(any(), any()) } returns emptyFlow()
+
+        val taskActionSlot = slot<TaskAction>()
+        every { taskManager.execute(TaskType.MOVE, capture(taskActionSlot)) } returns "12345"
+
+        explorerRepository.selectWorkspace(selectedWorkspace)
+
+        // When
+        explorerRepository.moveFiles(source, dest)
+        taskActionSlot.captured.invoke { /* no-op */ }
+
+        // Then
+        verify(exactly = 1) { transferEngine.move(source, dest) }
     }
 
     @Test
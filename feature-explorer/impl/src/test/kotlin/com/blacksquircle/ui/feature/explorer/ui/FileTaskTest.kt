@@ -86,7 +86,7 @@ class FileTaskTest {
     fun setup() {
         every { explorerRepository.currentWorkspace } returns selectedWorkspace
         coEvery { explorerRepository.loadWorkspaces() } returns flowOf(workspaces)
-        coEvery { explorerRepository.listFiles(any()) } returns fileList
+        every { explorerRepository.listFiles(any()) } returns flowOf(fileList)
 
         every { settingsManager.workspace } returns selectedWorkspace.uuid
         every { settingsManager.workspace = any() } answers {
@@ -289,8 +289,8 @@ class FileTaskTest {
             createFile(name = "Documents/one.txt"),
             createFile(name = "Documents/two.txt"),
         )
-        coEvery { explorerRepository.listFiles(defaultLocation) } returns parentList
-        coEvery { explorerRepository.listFiles(parentList[0]) } returns childList
+        every { explorerRepository.listFiles(defaultLocation) } returns flowOf(parentList)
+        every { explorerRepository.listFiles(parentList[0]) } returns flowOf(childList)
 
         val viewModel = createViewModel()
         val fileTask = Task(taskId, TaskType.COMPRESS)
@@ -318,7 +318,7 @@ class FileTaskTest {
     fun `When extract file clicked Then execute task`() = runTest {
         // Given
         val fileModel = createFile("archive.zip")
-        coEvery { explorerRepository.listFiles(any()) } returns listOf(fileModel)
+        every { explorerRepository.listFiles(any()) } returns flowOf(listOf(fileModel))
 
         val viewModel = createViewModel()
         val fileTask = Task(taskId, TaskType.EXTRACT)
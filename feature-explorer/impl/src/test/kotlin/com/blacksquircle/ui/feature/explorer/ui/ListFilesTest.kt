@@ -38,9 +38,14 @@ import io.mockk.coEvery
 import io.mockk.coVerify
 import io.mockk.every
 import io.mockk.mockk
+import io.mockk.verify
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.flow.flow
 import kotlinx.coroutines.flow.flowOf
 import kotlinx.coroutines.test.runTest
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Rule
 import org.junit.Test
@@ -73,7 +78,7 @@ class ListFilesTest {
     fun setup() {
         every { explorerRepository.currentWorkspace } returns selectedWorkspace
         coEvery { explorerRepository.loadWorkspaces() } returns flowOf(workspaces)
-        coEvery { explorerRepository.listFiles(any()) } returns emptyList()
+        every { explorerRepository.listFiles(any()) } returns flowOf(emptyList())
 
         every { settingsManager.workspace } returns selectedWorkspace.uuid
         every { settingsManager.workspace = any() } answers {
@@ -98,8 +103,8 @@ class ListFilesTest {
         )
         val selectedDirectory = parentList[0]
 
-        coEvery { explorerRepository.listFiles(defaultLocation) } returns parentList
-        coEvery { explorerRepository.listFiles(selectedDirectory) } returns childList
+        every { explorerRepository.listFiles(defaultLocation) } returns flowOf(parentList)
+        every { explorerRepository.listFiles(selectedDirectory) } returns flowOf(childList)
 
         // When
         val viewModel = createViewModel()
@@ -120,7 +125,7 @@ class ListFilesTest {
         )
         assertEquals(expected, viewModel.viewState.value.fileNodes)
 
-        coVerify(exactly = 1) { explorerRepository.listFiles(selectedDirectory) }
+        verify(exactly = 1) { explorerRepository.listFiles(selectedDirectory) }
     }
 
     @Test
@@ -138,8 +143,8 @@ class ListFilesTest {
         )
         val selectedDirectory = parentList[0]
 
-        coEvery { explorerRepository.listFiles(defaultLocation) } returns parentList
-        coEvery { explorerRepository.listFiles(selectedDirectory) } returns childList
+        every { explorerRepository.listFiles(defaultLocation) } returns flowOf(parentList)
+        every { explorerRepository.listFiles(selectedDirectory) } returns flowOf(childList)
 
         // When
         val viewModel = createViewModel()
@@ -161,7 +166,66 @@ class ListFilesTest {
         )
         assertEquals(expected, viewModel.viewState.value.fileNodes)
 
-        coVerify(exactly = 1) { explorerRepository.listFiles(selectedDirectory) }
+        verify(exactly = 1) { explorerRepository.listFiles(selectedDirectory) }
+    }
+
+    @Test
+    fun `When user closes a folder during listing Then cancel listing and remove partial nodes`() = runTest {
+        // Given
+        val parentList = listOf(
+            createFolder(name = "Documents/folder_1"),
+            createFolder(name = "Documents/folder_2"),
+        )
+        val childList = listOf(
+            createFile(name = "Documents/folder_1/test_1.txt"),
+            createFile(name = "Documents/folder_1/test_2.txt"),
+        )
+        val selectedDirectory = parentList[0]
+        val listingCancelled = CompletableDeferred<Unit>()
+        val partialFlow = flow {
+            emit(childList.subList(0, 1))
+            try {
+                awaitCancellation()
+            } finally {
+                listingCancelled.complete(Unit)
+            }
+        }
+
+        every { explorerRepository.listFiles(defaultLocation) } returns flowOf(parentList)
+        every { explorerRepository.listFiles(selectedDirectory) } returnsMany
+            listOf(partialFlow, flowOf(childList))
+
+        // When
+        val viewModel = createViewModel()
+        viewModel.onFileClicked(
+            fileNode = viewModel.viewState.value.fileNodes
+                .first { it.file == selectedDirectory }
+        )
+        val duringListing = viewModel.viewState.value.fileNodes.map { it.file }
+        viewModel.onFileClicked(
+            fileNode = viewModel.viewState.value.fileNodes
+                .first { it.file == selectedDirectory }
+        )
+
+        // Then
+        assertEquals(listOf(defaultLocation, parentList[0], childList[0], parentList[1]), duringListing)
+        assertTrue(listingCancelled.isCompleted)
+
+        val expected = listOf(
+            createNode(file = defaultLocation, depth = 0, isExpanded = true),
+            createNode(file = parentList[0], depth = 1, isExpanded = false),
+            createNode(file = parentList[1], depth = 1, isExpanded = false),
+        )
+        assertEquals(expected, viewModel.viewState.value.fileNodes)
+
+        viewModel.onFileClicked(
+            fileNode = viewModel.viewState.value.fileNodes
+                .first { it.file == selectedDirectory }
+        )
+        val reopened = viewModel.viewState.value.fileNodes.map { it.file }
+        assertEquals(listOf(defaultLocation, parentList[0]) + childList + parentList[1], reopened)
+
+        verify(exactly = 2) { explorerRepository.listFiles(selectedDirectory) }
     }
 
     @Test
@@ -181,10 +245,10 @@ class ListFilesTest {
             createFile(name = "com/blacksquircle/ui/untitled.txt"),
         )
 
-        coEvery { explorerRepository.listFiles(defaultLocation) } returns parentList
-        coEvery { explorerRepository.listFiles(parentList[0]) } returns subList1
-        coEvery { explorerRepository.listFiles(subList1[0]) } returns subList2
-        coEvery { explorerRepository.listFiles(subList2[0]) } returns subList3
+        every { explorerRepository.listFiles(defaultLocation) } returns flowOf(parentList)
+        every { explorerRepository.listFiles(parentList[0]) } returns flowOf(subList1)
+        every { explorerRepository.listFiles(subList1[0]) } returns flowOf(subList2)
+        every { explorerRepository.listFiles(subList2[0]) } returns flowOf(subList3)
 
         every { settingsManager.compactPackages } returns true
 
@@ -222,10 +286,10 @@ class ListFilesTest {
         )
         assertEquals(expected, viewModel.viewState.value.fileNodes)
 
-        coVerify(exactly = 1) { explorerRepository.listFiles(defaultLocation) }
-        coVerify(exactly = 1) { explorerRepository.listFiles(parentList[0]) }
-        coVerify(exactly = 1) { explorerRepository.listFiles(subList1[0]) }
-        coVerify(exactly = 1) { explorerRepository.listFiles(subList2[0]) }
+        verify(exactly = 1) { explorerRepository.listFiles(defaultLocation) }
+        verify(exactly = 1) { explorerRepository.listFiles(parentList[0]) }
+        verify(exactly = 1) { explorerRepository.listFiles(subList1[0]) }
+        verify(exactly = 1) { explorerRepository.listFiles(subList2[0]) }
     }
 
     @Test
@@ -234,7 +298,7 @@ class ListFilesTest {
         val parentList = listOf(
             createFolder(name = "Documents"),
         )
-        coEvery { explorerRepository.listFiles(defaultLocation) } returns parentList
+        every { explorerRepository.listFiles(defaultLocation) } returns flowOf(parentList)
 
         // When
         val viewModel = createViewModel()
@@ -242,7 +306,8 @@ class ListFilesTest {
         viewModel.onRefreshClicked()
 
         // Then
-        coVerify(exactly = 2) { explorerRepository.listFiles(defaultLocation) }
+        coVerify(exactly = 1) { explorerRepository.refreshFiles(defaultLocation) }
+        verify(exactly = 2) { explorerRepository.listFiles(defaultLocation) }
     }
 
     @Test
@@ -257,8 +322,8 @@ class ListFilesTest {
         )
         val selectedDirectory = parentList[0]
 
-        coEvery { explorerRepository.listFiles(defaultLocation) } returns parentList
-        coEvery { explorerRepository.listFiles(selectedDirectory) } returns childList
+        every { explorerRepository.listFiles(defaultLocation) } returns flowOf(parentList)
+        every { explorerRepository.listFiles(selectedDirectory) } returns flowOf(childList)
 
         // When
         val viewModel = createViewModel()
@@ -278,8 +343,42 @@ class ListFilesTest {
         )
         assertEquals(expected, viewModel.viewState.value.fileNodes)
 
-        coVerify(exactly = 2) { explorerRepository.listFiles(defaultLocation) }
-        coVerify(exactly = 1) { explorerRepository.listFiles(selectedDirectory) }
+        verify(exactly = 2) { explorerRepository.listFiles(defaultLocation) }
+        verify(exactly = 1) { explorerRepository.listFiles(selectedDirectory) }
+    }
+
+    @Test
+    fun `When refresh is in progress Then keep previous files until it completes`() = runTest {
+        // Given
+        val previousList = listOf(
+            createFolder(name = "Documents"),
+            createFolder(name = "Downloads"),
+        )
+        val updatedList = listOf(
+            createFolder(name = "Documents"),
+            createFolder(name = "Music"),
+        )
+        val lastChunk = CompletableDeferred<Unit>()
+        val refreshFlow = flow {
+            emit(updatedList.subList(0, 1))
+            lastChunk.await()
+            emit(updatedList.subList(1, 2))
+        }
+        every { explorerRepository.listFiles(defaultLocation) } returnsMany
+            listOf(flowOf(previousList), refreshFlow)
+
+        // When
+        val viewModel = createViewModel()
+        viewModel.onFileSelected(viewModel.viewState.value.fileNodes.first())
+        viewModel.onRefreshClicked()
+
+        // Then
+        val duringRefresh = viewModel.viewState.value.fileNodes.map { it.file }
+        assertEquals(listOf(defaultLocation) + previousList, duringRefresh)
+
+        lastChunk.complete(Unit)
+        val afterRefresh = viewModel.viewState.value.fileNodes.map { it.file }
+        assertEquals(listOf(defaultLocation) + updatedList, afterRefresh)
     }
 
     private fun createViewModel(): ExplorerViewModel {
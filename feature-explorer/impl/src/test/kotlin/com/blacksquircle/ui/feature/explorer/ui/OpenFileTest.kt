@@ -74,7 +74,7 @@ class OpenFileTest {
     fun setup() {
         every { explorerRepository.currentWorkspace } returns selectedWorkspace
         coEvery { explorerRepository.loadWorkspaces() } returns flowOf(workspaces)
-        coEvery { explorerRepository.listFiles(any()) } returns emptyList()
+        every { explorerRepository.listFiles(any()) } returns flowOf(emptyList())
 
         every { settingsManager.workspace } returns selectedWorkspace.uuid
         every { settingsManager.workspace = any() } answers {
@@ -88,7 +88,7 @@ class OpenFileTest {
     fun `When text file clicked Then open it in the editor`() = runTest {
         // Given
         val fileModel = createFile(name = "file.txt")
-        coEvery { explorerRepository.listFiles(defaultLocation) } returns listOf(fileModel)
+        every { explorerRepository.listFiles(defaultLocation) } returns flowOf(listOf(fileModel))
 
         // When
         val viewModel = createViewModel()
@@ -103,7 +103,7 @@ class OpenFileTest {
     fun `When image file clicked Then open system application chooser`() = runTest {
         // Given
         val fileModel = createFile(name = "file.png")
-        coEvery { explorerRepository.listFiles(defaultLocation) } returns listOf(fileModel)
+        every { explorerRepository.listFiles(defaultLocation) } returns flowOf(listOf(fileModel))
 
         // When
         val viewModel = createViewModel()
@@ -120,7 +120,7 @@ class OpenFileTest {
     fun `When image file selected Then open system application chooser`() = runTest {
         // Given
         val fileModel = createFile(name = "file.png")
-        coEvery { explorerRepository.listFiles(defaultLocation) } returns listOf(fileModel)
+        every { explorerRepository.listFiles(defaultLocation) } returns flowOf(listOf(fileModel))
 
         // When
         val viewModel = createViewModel()
@@ -138,7 +138,7 @@ class OpenFileTest {
     fun `When copy path clicked Then send copy path event`() = runTest {
         // Given
         val fileModel = createFile(name = "file.txt")
-        coEvery { explorerRepository.listFiles(defaultLocation) } returns listOf(fileModel)
+        every { explorerRepository.listFiles(defaultLocation) } returns flowOf(listOf(fileModel))
 
         // When
         val viewModel = createViewModel()
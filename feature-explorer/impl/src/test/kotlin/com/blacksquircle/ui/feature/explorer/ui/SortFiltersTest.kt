@@ -86,7 +86,7 @@ class SortFiltersTest {
     fun setup() {
         every { explorerRepository.currentWorkspace } returns selectedWorkspace
         coEvery { explorerRepository.loadWorkspaces() } returns flowOf(workspaces)
-        coEvery { explorerRepository.listFiles(defaultLocation) } returns fileList
+        every { explorerRepository.listFiles(defaultLocation) } returns flowOf(fileList)
 
         every { settingsManager.workspace } returns selectedWorkspace.uuid
         every { settingsManager.workspace = any() } answers {
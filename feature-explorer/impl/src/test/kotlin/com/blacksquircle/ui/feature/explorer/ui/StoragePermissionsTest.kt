@@ -38,7 +38,6 @@ import com.blacksquircle.ui.test.rule.MainDispatcherRule
 import com.blacksquircle.ui.test.rule.TimberConsoleRule
 import io.mockk.clearMocks
 import io.mockk.coEvery
-import io.mockk.coVerify
 import io.mockk.every
 import io.mockk.mockk
 import io.mockk.verify
@@ -77,7 +76,7 @@ class StoragePermissionsTest {
     fun setup() {
         every { explorerRepository.currentWorkspace } returns selectedWorkspace
         coEvery { explorerRepository.loadWorkspaces() } returns flowOf(workspaces)
-        coEvery { explorerRepository.listFiles(any()) } returns emptyList()
+        every { explorerRepository.listFiles(any()) } returns flowOf(emptyList())
 
         every { settingsManager.workspace } returns selectedWorkspace.uuid
         every { settingsManager.workspace = any() } answers {
@@ -90,7 +89,7 @@ class StoragePermissionsTest {
     @Test
     fun `When storage permission is missing Then display error state`() = runTest {
         // Given
-        coEvery { explorerRepository.listFiles(any()) } throws PermissionException()
+        every { explorerRepository.listFiles(any()) } throws PermissionException()
 
         // When
         val viewModel = createViewModel() // init {}
@@ -128,7 +127,7 @@ class StoragePermissionsTest {
         viewModel.onPermissionGranted()
 
         // Then
-        coVerify(exactly = 1) { explorerRepository.listFiles(selectedWorkspace.defaultLocation) }
+        verify(exactly = 1) { explorerRepository.listFiles(selectedWorkspace.defaultLocation) }
     }
 
     private fun createViewModel(): ExplorerViewModel {
@@ -40,6 +40,7 @@ import io.mockk.coEvery
 import io.mockk.coVerify
 import io.mockk.every
 import io.mockk.mockk
+import io.mockk.verify
 import junit.framework.TestCase.assertEquals
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.flowOf
@@ -76,7 +77,7 @@ class WorkspacesTest {
     fun setup() {
         every { explorerRepository.currentWorkspace } returns selectedWorkspace
         coEvery { explorerRepository.loadWorkspaces() } returns flowOf(workspaces)
-        coEvery { explorerRepository.listFiles(any()) } returns emptyList()
+        every { explorerRepository.listFiles(any()) } returns flowOf(emptyList())
 
         every { fileIconProvider.fileIcon(any()) } returns -1
     }
@@ -91,7 +92,7 @@ class WorkspacesTest {
         assertEquals(selectedWorkspace, viewModel.viewState.value.selectedWorkspace)
 
         coVerify(exactly = 1) { explorerRepository.loadWorkspaces() }
-        coVerify(exactly = 1) { explorerRepository.listFiles(selectedWorkspace.defaultLocation) }
+        verify(exactly = 1) { explorerRepository.listFiles(selectedWorkspace.defaultLocation) }
     }
 
     @Test
@@ -109,7 +110,7 @@ class WorkspacesTest {
         assertEquals(selectedWorkspace, viewModel.viewState.value.selectedWorkspace)
 
         coVerify(exactly = 0) { explorerRepository.selectWorkspace(selectedWorkspace) }
-        coVerify(exactly = 0) { explorerRepository.listFiles(selectedWorkspace.defaultLocation) }
+        verify(exactly = 0) { explorerRepository.listFiles(selectedWorkspace.defaultLocation) }
     }
 
     @Test
@@ -126,11 +127,11 @@ class WorkspacesTest {
         assertEquals(nextSelected, viewModel.viewState.value.selectedWorkspace)
 
         coVerify(exactly = 1) { explorerRepository.selectWorkspace(nextSelected) }
-        coVerify(exactly = 1) { explorerRepository.listFiles(selectedWorkspace.defaultLocation) }
+        verify(exactly = 1) { explorerRepository.listFiles(selectedWorkspace.defaultLocation) }
     }
 
     @Test
-    fun `When workspace changed with different filesystemUuid Then reset buffer`() = runTest {
+    fun `When workspace changed with different filesystemUuid Then keep buffer`() = runTest {
         // Given
         val viewModel = createViewModel()
         val fileNode = createFileNode(name = "untitled.txt")
@@ -149,7 +150,7 @@ class WorkspacesTest {
         viewModel.onWorkspaceClicked(workspace2)
 
         // Then
-        assertEquals(TaskType.CREATE, viewModel.viewState.value.taskType)
+        assertEquals(TaskType.COPY, viewModel.viewState.value.taskType)
         assertEquals(emptyList<FileNode>(), viewModel.viewState.value.selectedNodes)
     }
 
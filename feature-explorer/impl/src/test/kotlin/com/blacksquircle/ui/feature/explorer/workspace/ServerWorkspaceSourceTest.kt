@@ -51,6 +51,7 @@ class ServerWorkspaceSourceTest {
             password = "secret",
             keyId = null,
             passphrase = null,
+            protectData = false,
         )
         coEvery { serverInteractor.flowAll() } returns flowOf(listOf(server))
 
@@ -16,19 +16,27 @@
 
 package com.blacksquircle.ui.feature.servers.data.cache
 
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.update
+
 internal object ServerCredentials {
 
-    private val credentials = HashMap<String, String>()
+    private val credentials = MutableStateFlow<Map<String, String>>(emptyMap())
+
+    /** Emits every time credentials are entered or cleared */
+    val credentialsFlow: StateFlow<Map<String, String>>
+        get() = credentials
 
     fun put(uuid: String, password: String) {
-        credentials[uuid] = password
+        credentials.update { it + (uuid to password) }
     }
 
     fun get(uuid: String): String? {
-        return credentials[uuid]
+        return credentials.value[uuid]
     }
 
     fun remove(uuid: String) {
-        credentials.remove(uuid)
+        credentials.update { it - uuid }
     }
 }
\ No newline at end of file
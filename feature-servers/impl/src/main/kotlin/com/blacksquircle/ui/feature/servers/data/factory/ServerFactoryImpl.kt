@@ -20,22 +20,28 @@ import com.blacksquircle.ui.feature.servers.api.factory.ServerFactory
 import com.blacksquircle.ui.filesystem.base.Filesystem
 import com.blacksquircle.ui.filesystem.base.model.ServerConfig
 import com.blacksquircle.ui.filesystem.base.model.ServerType
+import com.blacksquircle.ui.filesystem.ftp.FTPClientPool
 import com.blacksquircle.ui.filesystem.ftp.FTPFilesystem
+import com.blacksquircle.ui.filesystem.ftps.FTPSClientPool
 import com.blacksquircle.ui.filesystem.ftps.FTPSFilesystem
 import com.blacksquircle.ui.filesystem.sftp.SFTPFilesystem
+import com.blacksquircle.ui.filesystem.sftp.SFTPSessionPool
 import java.io.File
 
 internal class ServerFactoryImpl(
-    private val cacheDir: File,
-    private val keysDir: File,
+    keysDir: File,
 ) : ServerFactory {
 
+    private val ftpClientPool = FTPClientPool()
+    private val ftpsClientPool = FTPSClientPool()
+    private val sftpSessionPool = SFTPSessionPool(keysDir)
+
     override fun create(serverConfig: ServerConfig): Filesystem {
         return when (serverConfig.scheme) {
-            ServerType.FTP -> FTPFilesystem(serverConfig, cacheDir)
-            ServerType.FTPS -> FTPSFilesystem(serverConfig, cacheDir, isImplicit = true)
-            ServerType.FTPES -> FTPSFilesystem(serverConfig, cacheDir, isImplicit = false)
-            ServerType.SFTP -> SFTPFilesystem(serverConfig, cacheDir, keysDir)
+            ServerType.FTP -> FTPFilesystem(serverConfig, ftpClientPool)
+            ServerType.FTPS -> FTPSFilesystem(serverConfig, ftpsClientPool)
+            ServerType.FTPES -> FTPSFilesystem(serverConfig, ftpsClientPool)
+            ServerType.SFTP -> SFTPFilesystem(serverConfig, sftpSessionPool)
         }
     }
 }
\ No newline at end of file
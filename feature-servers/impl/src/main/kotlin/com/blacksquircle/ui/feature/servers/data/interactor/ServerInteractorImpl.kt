@@ -24,7 +24,7 @@ import com.blacksquircle.ui.feature.servers.data.mapper.ServerMapper
 import com.blacksquircle.ui.filesystem.base.model.AuthMethod
 import com.blacksquircle.ui.filesystem.base.model.ServerConfig
 import kotlinx.coroutines.flow.Flow
-import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.combine
 import kotlinx.coroutines.withContext
 
 internal class ServerInteractorImpl(
@@ -33,8 +33,14 @@ internal class ServerInteractorImpl(
 ) : ServerInteractor {
 
     override fun flowAll(): Flow<List<ServerConfig>> {
-        return serverDao.flowAll().map { servers ->
-            servers.map(ServerMapper::toModel)
+        return combine(
+            serverDao.flowAll(),
+            ServerCredentials.credentialsFlow,
+        ) { servers, credentials ->
+            servers.map { serverEntity ->
+                ServerMapper.toModel(serverEntity)
+                    .withCredentials(credentials[serverEntity.uuid])
+            }
         }
     }
 
@@ -46,16 +52,14 @@ internal class ServerInteractorImpl(
         return withContext(dispatcherProvider.io()) {
             val serverEntity = serverDao.load(uuid)
             val serverConfig = ServerMapper.toModel(serverEntity)
-            when (serverConfig.authMethod) {
-                AuthMethod.PASSWORD -> serverConfig.copy(
-                    password = ServerCredentials.get(uuid)
-                        ?: serverConfig.password
-                )
-                AuthMethod.KEY -> serverConfig.copy(
-                    passphrase = ServerCredentials.get(uuid)
-                        ?: serverConfig.passphrase
-                )
-            }
+            serverConfig.withCredentials(ServerCredentials.get(uuid))
+        }
+    }
+
+    private fun ServerConfig.withCredentials(credentials: String?): ServerConfig {
+        return when (authMethod) {
+            AuthMethod.PASSWORD -> copy(password = credentials ?: password)
+            AuthMethod.KEY -> copy(passphrase = credentials ?: passphrase)
         }
     }
 }
\ No newline at end of file
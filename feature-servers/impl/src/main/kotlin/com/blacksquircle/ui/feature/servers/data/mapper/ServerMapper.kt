@@ -36,6 +36,7 @@ internal object ServerMapper {
             password = serverEntity.password,
             keyId = serverEntity.keyId,
             passphrase = serverEntity.passphrase,
+            protectData = serverEntity.protectData,
         )
     }
 
@@ -52,6 +53,7 @@ internal object ServerMapper {
             password = serverConfig.password,
             keyId = serverConfig.keyId,
             passphrase = serverConfig.passphrase,
+            protectData = serverConfig.protectData,
         )
     }
 }
\ No newline at end of file
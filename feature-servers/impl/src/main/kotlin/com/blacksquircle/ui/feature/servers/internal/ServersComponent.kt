@@ -19,6 +19,8 @@ package com.blacksquircle.ui.feature.servers.internal
 import android.content.Context
 import com.blacksquircle.ui.core.internal.CoreApi
 import com.blacksquircle.ui.core.internal.provideCoreApi
+import com.blacksquircle.ui.feature.servers.api.internal.ServersApi
+import com.blacksquircle.ui.feature.servers.api.internal.provideServersApi
 import com.blacksquircle.ui.feature.servers.ui.details.ServerDetailsViewModel
 import com.blacksquircle.ui.feature.servers.ui.list.ServerListViewModel
 import com.blacksquircle.ui.navigation.api.internal.NavigationApi
@@ -33,6 +35,7 @@ import dagger.Component
     dependencies = [
         CoreApi::class,
         NavigationApi::class,
+        ServersApi::class,
     ]
 )
 internal interface ServersComponent {
@@ -45,6 +48,7 @@ internal interface ServersComponent {
         fun create(
             coreApi: CoreApi,
             navigationApi: NavigationApi,
+            serversApi: ServersApi,
         ): ServersComponent
     }
 
@@ -56,6 +60,7 @@ internal interface ServersComponent {
             return component ?: DaggerServersComponent.factory().create(
                 coreApi = context.provideCoreApi(),
                 navigationApi = context.provideNavigationApi(),
+                serversApi = context.provideServersApi(),
             ).also {
                 component = it
             }
@@ -19,11 +19,9 @@ package com.blacksquircle.ui.feature.servers.internal
 import android.content.Context
 import com.blacksquircle.ui.core.database.AppDatabase
 import com.blacksquircle.ui.core.database.dao.server.ServerDao
-import com.blacksquircle.ui.core.files.Directories
 import com.blacksquircle.ui.core.provider.coroutine.DispatcherProvider
 import com.blacksquircle.ui.core.settings.SettingsManager
 import com.blacksquircle.ui.feature.servers.api.factory.ServerFactory
-import com.blacksquircle.ui.feature.servers.data.factory.ServerFactoryImpl
 import com.blacksquircle.ui.feature.servers.data.repository.ServerRepositoryImpl
 import com.blacksquircle.ui.feature.servers.domain.repository.ServerRepository
 import dagger.Module
@@ -32,15 +30,6 @@ import dagger.Provides
 @Module
 internal object ServersModule {
 
-    @Provides
-    @ServersScope
-    fun provideServerFilesystemFactory(context: Context): ServerFactory {
-        return ServerFactoryImpl(
-            cacheDir = Directories.tmpDir(context),
-            keysDir = Directories.keysDir(context),
-        )
-    }
-
     @Provides
     @ServersScope
     fun provideServerRepository(
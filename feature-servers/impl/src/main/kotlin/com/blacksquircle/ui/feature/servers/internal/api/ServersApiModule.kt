@@ -39,7 +39,6 @@ object ServersApiModule {
     @Singleton
     fun provideServerFilesystemFactory(context: Context): ServerFactory {
         return ServerFactoryImpl(
-            cacheDir = Directories.tmpDir(context),
             keysDir = Directories.keysDir(context),
         )
     }
@@ -34,6 +34,7 @@ import com.blacksquircle.ui.core.contract.rememberOpenFileContract
 import com.blacksquircle.ui.core.effect.ResultEventBus
 import com.blacksquircle.ui.core.extensions.daggerViewModel
 import com.blacksquircle.ui.ds.PreviewBackground
+import com.blacksquircle.ui.ds.checkbox.CheckBox
 import com.blacksquircle.ui.ds.dialog.AlertDialog
 import com.blacksquircle.ui.feature.servers.R
 import com.blacksquircle.ui.feature.servers.api.navigation.ServerDetailsRoute
@@ -78,6 +79,7 @@ internal fun ServerDetailsScreen(
         onPasswordChanged = viewModel::onPasswordChanged,
         onPassphraseChanged = viewModel::onPassphraseChanged,
         onInitialDirChanged = viewModel::onInitialDirChanged,
+        onProtectDataClicked = viewModel::onProtectDataClicked,
         onSaveClicked = viewModel::onSaveClicked,
         onDeleteClicked = viewModel::onDeleteClicked,
         onCancelClicked = viewModel::onCancelClicked,
@@ -122,6 +124,7 @@ private fun ServerDetailsScreen(
     onPasswordChanged: (String) -> Unit = {},
     onPassphraseChanged: (String) -> Unit = {},
     onInitialDirChanged: (String) -> Unit = {},
+    onProtectDataClicked: () -> Unit = {},
     onSaveClicked: () -> Unit = {},
     onDeleteClicked: () -> Unit = {},
     onCancelClicked: () -> Unit = {},
@@ -235,6 +238,16 @@ private fun ServerDetailsScreen(
                     initialDir = viewState.initialDir,
                     onInitialDirChanged = onInitialDirChanged,
                 )
+
+                if (viewState.scheme == ServerType.FTPS || viewState.scheme == ServerType.FTPES) {
+                    Spacer(Modifier.height(8.dp))
+
+                    CheckBox(
+                        title = stringResource(R.string.servers_edit_dialog_checkbox_protect_data),
+                        checked = viewState.protectData,
+                        onClick = onProtectDataClicked,
+                    )
+                }
             }
         },
         confirmButton = stringResource(UiR.string.common_save),
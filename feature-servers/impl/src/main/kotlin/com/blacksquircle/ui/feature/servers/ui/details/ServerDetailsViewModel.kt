@@ -163,6 +163,12 @@ internal class ServerDetailsViewModel @AssistedInject constructor(
         }
     }
 
+    fun onProtectDataClicked() {
+        _viewState.update {
+            it.copy(protectData = !it.protectData)
+        }
+    }
+
     fun onSaveClicked() {
         val isServerNameValid = viewState.value.name.isNotBlank()
         val isServerAddressValid = viewState.value.address.isNotBlank()
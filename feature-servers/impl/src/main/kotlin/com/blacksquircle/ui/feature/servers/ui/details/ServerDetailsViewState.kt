@@ -40,6 +40,7 @@ internal data class ServerDetailsViewState(
     val password: String = "",
     val keyId: String = "",
     val passphrase: String = "",
+    val protectData: Boolean = false,
     val invalidName: Boolean = false,
     val invalidAddress: Boolean = false,
 ) : ViewState {
@@ -76,6 +77,7 @@ internal data class ServerDetailsViewState(
             } else {
                 null
             },
+            protectData = protectData && (scheme == ServerType.FTPS || scheme == ServerType.FTPES),
         )
     }
 
@@ -107,6 +109,7 @@ internal data class ServerDetailsViewState(
                 password = serverConfig.password.orEmpty(),
                 keyId = serverConfig.keyId.orEmpty(),
                 passphrase = serverConfig.passphrase.orEmpty(),
+                protectData = serverConfig.protectData,
             )
         }
     }
@@ -156,6 +156,7 @@ private fun ServerListScreenPreview() {
                             password = "example",
                             keyId = null,
                             passphrase = null,
+                            protectData = false,
                         ),
                         status = ServerStatus.Available(1000L),
                     )
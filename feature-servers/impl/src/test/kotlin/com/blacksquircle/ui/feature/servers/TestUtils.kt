@@ -33,6 +33,7 @@ internal fun createServerConfig(
     password: String? = null,
     keyId: String? = null,
     passphrase: String? = null,
+    protectData: Boolean = false,
 ): ServerConfig {
     return ServerConfig(
         uuid = uuid,
@@ -46,6 +47,7 @@ internal fun createServerConfig(
         password = password,
         keyId = keyId,
         passphrase = passphrase,
+        protectData = protectData,
     )
 }
 
@@ -61,6 +63,7 @@ internal fun createServerEntity(
     password: String? = null,
     keyId: String? = null,
     passphrase: String? = null,
+    protectData: Boolean = false,
 ): ServerEntity {
     return ServerEntity(
         uuid = uuid,
@@ -74,5 +77,6 @@ internal fun createServerEntity(
         password = password,
         keyId = keyId,
         passphrase = passphrase,
+        protectData = protectData,
     )
 }
\ No newline at end of file
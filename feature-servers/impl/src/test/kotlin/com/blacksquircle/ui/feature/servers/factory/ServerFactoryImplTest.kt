@@ -30,11 +30,9 @@ import java.io.File
 
 class ServerFactoryImplTest {
 
-    private val cacheDir = mockk<File>()
     private val keysDir = mockk<File>()
 
     private val serverFilesystemFactory = ServerFactoryImpl(
-        cacheDir = cacheDir,
         keysDir = keysDir
     )
 
@@ -30,6 +30,8 @@ import io.mockk.mockkObject
 import io.mockk.unmockkObject
 import io.mockk.verify
 import junit.framework.TestCase.assertEquals
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.flowOf
 import kotlinx.coroutines.test.runTest
 import org.junit.After
 import org.junit.Before
@@ -126,4 +128,27 @@ class ServerInteractorImplTest {
         assertEquals(serverConfig, server)
         coVerify(exactly = 1) { serverDao.load(serverId) }
     }
+
+    @Test
+    fun `When servers are observed Then apply passwords from memory`() = runTest {
+        // Given
+        val serverEntity = createServerEntity(
+            uuid = serverId,
+            authMethod = AuthMethod.PASSWORD,
+            password = null, // requires authentication
+        )
+        coEvery { serverDao.flowAll() } returns flowOf(listOf(serverEntity))
+        ServerCredentials.put(serverId, serverPassword)
+
+        // When
+        val servers = serverInteractor.flowAll().first()
+
+        // Then
+        val expected = createServerConfig(
+            uuid = serverId,
+            authMethod = AuthMethod.PASSWORD,
+            password = serverPassword,
+        )
+        assertEquals(listOf(expected), servers)
+    }
 }
\ No newline at end of file
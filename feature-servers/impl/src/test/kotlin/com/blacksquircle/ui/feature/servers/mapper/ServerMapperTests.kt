@@ -41,6 +41,7 @@ class ServerMapperTests {
             password = "password",
             keyId = null,
             passphrase = "test",
+            protectData = true,
         )
         val expected = ServerConfig(
             uuid = "1234567890",
@@ -54,6 +55,7 @@ class ServerMapperTests {
             password = "password",
             keyId = null,
             passphrase = "test",
+            protectData = true,
         )
 
         // When
@@ -78,6 +80,7 @@ class ServerMapperTests {
             password = "password",
             keyId = null,
             passphrase = "test",
+            protectData = true,
         )
         val expected = ServerEntity(
             uuid = "1234567890",
@@ -91,6 +94,7 @@ class ServerMapperTests {
             password = "password",
             keyId = null,
             passphrase = "test",
+            protectData = true,
         )
 
         // When
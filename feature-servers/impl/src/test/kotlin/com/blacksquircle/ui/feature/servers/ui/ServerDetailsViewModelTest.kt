@@ -281,6 +281,38 @@ class ServerDetailsViewModelTest {
         assertEquals(viewState, viewModel.viewState.value)
     }
 
+    @Test
+    fun `When protect data clicked Then update view state`() = runTest {
+        // Given
+        val viewModel = createViewModel()
+
+        // When
+        viewModel.onProtectDataClicked()
+
+        // Then
+        val viewState = ServerDetailsViewState(protectData = true)
+        assertEquals(viewState, viewModel.viewState.value)
+    }
+
+    @Test
+    fun `When saving ftp config with protected data Then save it unprotected`() = runTest {
+        // Given
+        val viewModel = createViewModel()
+        viewModel.onSchemeChanged(ServerType.FTPES.value)
+        viewModel.onProtectDataClicked()
+        viewModel.onSchemeChanged(ServerType.FTP.value)
+        viewModel.onNameChanged("Server Name")
+        viewModel.onAddressChanged("192.168.1.1")
+
+        // When
+        viewModel.onSaveClicked()
+
+        // Then
+        coVerify(exactly = 1) {
+            serverRepository.upsertServer(match { !it.protectData })
+        }
+    }
+
     @Test
     fun `When save valid config clicked Then save config`() = runTest {
         // Given
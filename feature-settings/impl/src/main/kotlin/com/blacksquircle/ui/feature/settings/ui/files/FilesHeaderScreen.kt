@@ -39,6 +39,7 @@ import com.blacksquircle.ui.ds.divider.HorizontalDivider
 import com.blacksquircle.ui.ds.preference.ListPreference
 import com.blacksquircle.ui.ds.preference.Preference
 import com.blacksquircle.ui.ds.preference.PreferenceGroup
+import com.blacksquircle.ui.ds.preference.SliderPreference
 import com.blacksquircle.ui.ds.preference.SwitchPreference
 import com.blacksquircle.ui.ds.scaffold.ScaffoldSuite
 import com.blacksquircle.ui.ds.toolbar.Toolbar
@@ -62,11 +63,13 @@ internal fun FilesHeaderScreen(
         onEncodingForOpeningChanged = viewModel::onEncodingForOpeningChanged,
         onEncodingForSavingChanged = viewModel::onEncodingForSavingChanged,
         onLineBreaksForSavingChanged = viewModel::onLineBreakForSavingChanged,
+        onLargeFileThresholdChanged = viewModel::onLargeFileThresholdChanged,
         onStorageAccessClicked = context::openStorageSettings,
         onShowHiddenChanged = viewModel::onShowHiddenChanged,
         onCompactPackagesChanged = viewModel::onCompactPackagesChanged,
         onFoldersOnTopChanged = viewModel::onFoldersOnTopChanged,
         onSortModeChanged = viewModel::onSortModeChanged,
+        onTransferConcurrencyChanged = viewModel::onTransferConcurrencyChanged,
     )
 
     LaunchedEffect(Unit) {
@@ -86,11 +89,13 @@ private fun FilesHeaderScreen(
     onEncodingForOpeningChanged: (String) -> Unit = {},
     onEncodingForSavingChanged: (String) -> Unit = {},
     onLineBreaksForSavingChanged: (String) -> Unit = {},
+    onLargeFileThresholdChanged: (Int) -> Unit = {},
     onStorageAccessClicked: () -> Unit = {},
     onShowHiddenChanged: (Boolean) -> Unit = {},
     onCompactPackagesChanged: (Boolean) -> Unit = {},
     onFoldersOnTopChanged: (Boolean) -> Unit = {},
     onSortModeChanged: (String) -> Unit = {},
+    onTransferConcurrencyChanged: (Int) -> Unit = {},
 ) {
     ScaffoldSuite(
         topBar = {
@@ -156,6 +161,21 @@ private fun FilesHeaderScreen(
                 onValueSelected = onLineBreaksForSavingChanged,
             )
             HorizontalDivider()
+            PreferenceGroup(
+                title = stringResource(R.string.settings_category_large_files)
+            )
+            SliderPreference(
+                title = stringResource(R.string.settings_large_file_threshold_title),
+                subtitle = stringResource(R.string.settings_large_file_threshold_subtitle),
+                minValue = 4f,
+                maxValue = 64f,
+                stepCount = 14,
+                currentValue = viewState.largeFileThreshold.toFloat(),
+                onValueChanged = { largeFileThreshold ->
+                    onLargeFileThresholdChanged(largeFileThreshold.toInt())
+                }
+            )
+            HorizontalDivider()
             PreferenceGroup(
                 title = stringResource(R.string.settings_category_file_manager)
             )
@@ -185,6 +205,17 @@ private fun FilesHeaderScreen(
                 selectedValue = viewState.sortMode,
                 onValueSelected = onSortModeChanged,
             )
+            SliderPreference(
+                title = stringResource(R.string.settings_transfer_concurrency_title),
+                subtitle = stringResource(R.string.settings_transfer_concurrency_subtitle),
+                minValue = 1f,
+                maxValue = 8f,
+                stepCount = 6,
+                currentValue = viewState.transferConcurrency.toFloat(),
+                onValueChanged = { transferConcurrency ->
+                    onTransferConcurrencyChanged(transferConcurrency.toInt())
+                }
+            )
         }
     }
 }
@@ -200,10 +231,12 @@ private fun FilesHeaderScreenPreview() {
                 encodingForSaving = "UTF-8",
                 encodingList = emptyList(),
                 lineBreakForSaving = "lf",
+                largeFileThreshold = 8,
                 showHidden = true,
                 compactPackages = true,
                 foldersOnTop = true,
                 sortMode = "sort_by_name",
+                transferConcurrency = 3,
             ),
         )
     }
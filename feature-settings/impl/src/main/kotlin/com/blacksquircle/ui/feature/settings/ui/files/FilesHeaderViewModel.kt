@@ -90,6 +90,13 @@ internal class FilesHeaderViewModel @Inject constructor(
         }
     }
 
+    fun onLargeFileThresholdChanged(largeFileThreshold: Int) {
+        viewModelScope.launch {
+            settingsManager.largeFileThreshold = largeFileThreshold
+            _viewState.value = updateViewState()
+        }
+    }
+
     fun onFoldersOnTopChanged(foldersOnTop: Boolean) {
         viewModelScope.launch {
             settingsManager.foldersOnTop = foldersOnTop
@@ -104,6 +111,13 @@ internal class FilesHeaderViewModel @Inject constructor(
         }
     }
 
+    fun onTransferConcurrencyChanged(transferConcurrency: Int) {
+        viewModelScope.launch {
+            settingsManager.transferConcurrency = transferConcurrency
+            _viewState.value = updateViewState()
+        }
+    }
+
     private fun updateViewState(): FilesHeaderViewState {
         return FilesHeaderViewState(
             encodingAutoDetect = settingsManager.encodingAutoDetect,
@@ -112,10 +126,12 @@ internal class FilesHeaderViewModel @Inject constructor(
             encodingList = Charset.availableCharsets()
                 .map(Map.Entry<String, Charset>::key),
             lineBreakForSaving = settingsManager.lineBreakForSaving,
+            largeFileThreshold = settingsManager.largeFileThreshold,
             showHidden = settingsManager.showHidden,
             foldersOnTop = settingsManager.foldersOnTop,
             compactPackages = settingsManager.compactPackages,
             sortMode = settingsManager.sortMode,
+            transferConcurrency = settingsManager.transferConcurrency,
         )
     }
 
@@ -26,8 +26,10 @@ internal data class FilesHeaderViewState(
     val encodingForSaving: String,
     val encodingList: List<String>,
     val lineBreakForSaving: String,
+    val largeFileThreshold: Int,
     val showHidden: Boolean,
     val compactPackages: Boolean,
     val foldersOnTop: Boolean,
     val sortMode: String,
+    val transferConcurrency: Int,
 ) : ViewState
\ No newline at end of file
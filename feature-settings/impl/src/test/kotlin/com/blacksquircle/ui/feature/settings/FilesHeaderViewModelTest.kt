@@ -50,10 +50,12 @@ class FilesHeaderViewModelTest {
         every { settingsManager.encodingForOpening } returns Charsets.UTF_8.name()
         every { settingsManager.encodingForSaving } returns Charsets.UTF_8.name()
         every { settingsManager.lineBreakForSaving } returns LineBreak.LF.value
+        every { settingsManager.largeFileThreshold } returns 8
         every { settingsManager.showHidden } returns true
         every { settingsManager.compactPackages } returns true
         every { settingsManager.foldersOnTop } returns true
         every { settingsManager.sortMode } returns "sort_by_name"
+        every { settingsManager.transferConcurrency } returns 3
 
         // When
         val viewModel = createViewModel() // init {}
@@ -66,10 +68,12 @@ class FilesHeaderViewModelTest {
             encodingList = Charset.availableCharsets()
                 .map(Map.Entry<String, Charset>::key),
             lineBreakForSaving = LineBreak.LF.value,
+            largeFileThreshold = 8,
             showHidden = true,
             compactPackages = true,
             foldersOnTop = true,
             sortMode = "sort_by_name",
+            transferConcurrency = 3,
         )
         assertEquals(viewState, viewModel.viewState.value)
     }
@@ -189,6 +193,34 @@ class FilesHeaderViewModelTest {
         verify(exactly = 1) { settingsManager.sortMode = "sort_by_date" }
     }
 
+    @Test
+    fun `When large file threshold changed Then update view state`() = runTest {
+        // Given
+        every { settingsManager.largeFileThreshold } returns 8 andThen 32
+
+        // When
+        val viewModel = createViewModel()
+        viewModel.onLargeFileThresholdChanged(32)
+
+        // Then
+        assertEquals(32, viewModel.viewState.value.largeFileThreshold)
+        verify(exactly = 1) { settingsManager.largeFileThreshold = 32 }
+    }
+
+    @Test
+    fun `When transfer concurrency changed Then update view state`() = runTest {
+        // Given
+        every { settingsManager.transferConcurrency } returns 3 andThen 6
+
+        // When
+        val viewModel = createViewModel()
+        viewModel.onTransferConcurrencyChanged(6)
+
+        // Then
+        assertEquals(6, viewModel.viewState.value.transferConcurrency)
+        verify(exactly = 1) { settingsManager.transferConcurrency = 6 }
+    }
+
     private fun createViewModel(): FilesHeaderViewModel {
         return FilesHeaderViewModel(
             settingsManager = settingsManager,
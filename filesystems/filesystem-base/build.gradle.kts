@@ -19,5 +19,8 @@ plugins {
 }
 
 dependencies {
+    implementation(libs.ibm.icu4j)
     implementation(libs.kotlinx.coroutines.core)
+
+    testImplementation(libs.test.junit)
 }
\ No newline at end of file
@@ -16,28 +16,106 @@
 
 package com.blacksquircle.ui.filesystem.base
 
+import com.blacksquircle.ui.filesystem.base.charset.EncodingDetector
+import com.blacksquircle.ui.filesystem.base.exception.FileNotFoundException
 import com.blacksquircle.ui.filesystem.base.model.FileModel
 import com.blacksquircle.ui.filesystem.base.model.FileParams
+import com.blacksquircle.ui.filesystem.base.model.TransferProgress
+import com.blacksquircle.ui.filesystem.base.utils.skipFully
 import kotlinx.coroutines.flow.Flow
+import java.io.File
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.charset.Charset
 
 interface Filesystem {
 
     fun ping()
 
     fun listFiles(parent: FileModel): List<FileModel>
+    fun streamFiles(parent: FileModel): Flow<List<FileModel>>
     fun createFile(fileModel: FileModel)
     fun renameFile(source: FileModel, name: String)
     fun deleteFile(fileModel: FileModel)
-    fun copyFile(source: FileModel, dest: FileModel)
+    fun copyFile(source: FileModel, dest: FileModel): Flow<TransferProgress>
+    fun moveFile(source: FileModel, dest: FileModel)
 
-    fun compressFiles(source: List<FileModel>, dest: FileModel): Flow<FileModel>
-    fun extractFiles(source: FileModel, dest: FileModel): Flow<FileModel>
+    /**
+     * Returns fresh attributes of the files that still exist, in the given order.
+     * By default costs one listing per distinct parent.
+     */
+    fun stat(fileModels: List<FileModel>): List<FileModel> {
+        val found = HashMap<String, FileModel>(fileModels.size)
+        val parents = fileModels.groupBy { it.fileUri.substringBeforeLast(File.separator) }
+        for ((parentUri, children) in parents) {
+            val parent = FileModel(
+                fileUri = parentUri,
+                filesystemUuid = children.first().filesystemUuid,
+                isDirectory = true,
+            )
+            try {
+                listFiles(parent).associateByTo(found, FileModel::fileUri)
+            } catch (e: FileNotFoundException) {
+                // none of the children exist anymore
+            }
+        }
+        return fileModels.mapNotNull { found[it.fileUri] }
+    }
+
+    fun deleteFiles(fileModels: List<FileModel>) {
+        fileModels.forEach(::deleteFile)
+    }
+
+    fun createFiles(fileModels: List<FileModel>) {
+        fileModels.forEach(::createFile)
+    }
+
+    fun compressFiles(source: List<FileModel>, dest: FileModel): Flow<TransferProgress>
+    fun extractFiles(source: FileModel, dest: FileModel): Flow<TransferProgress>
 
     fun loadFile(fileModel: FileModel, fileParams: FileParams): String
     fun saveFile(fileModel: FileModel, text: String, fileParams: FileParams)
 
+    fun openInputStream(fileModel: FileModel): InputStream
+    fun openOutputStream(fileModel: FileModel): OutputStream
+
+    /**
+     * Reads [fileModel] starting at [offset] bytes. Backends able to seek override this,
+     * by default the leading bytes are downloaded and thrown away.
+     */
+    fun openInputStream(fileModel: FileModel, offset: Long): InputStream {
+        val inputStream = openInputStream(fileModel)
+        try {
+            inputStream.skipFully(offset)
+        } catch (e: Exception) {
+            inputStream.close()
+            throw e
+        }
+        return inputStream
+    }
+
+    /**
+     * Detects the charset of [fileModel] before it's read from [inputStream], which must be
+     * rewound to the start afterwards. Backends with random access override this to sample
+     * more than the head of the file and to reuse results for unchanged files.
+     */
+    fun detectCharset(fileModel: FileModel, inputStream: InputStream): Charset {
+        return EncodingDetector.detect(inputStream)
+    }
+
+    /** Writes past the end of an existing file, so an interrupted transfer can be resumed */
+    fun openAppendStream(fileModel: FileModel): OutputStream {
+        throw UnsupportedOperationException()
+    }
+
     interface Mapper<T> {
         fun toFileModel(fileObject: T): FileModel
         fun toFileObject(fileModel: FileModel): T
     }
+
+    companion object {
+
+        /** Max number of entries emitted at once by [streamFiles] */
+        const val CHUNK_SIZE = 256
+    }
 }
\ No newline at end of file
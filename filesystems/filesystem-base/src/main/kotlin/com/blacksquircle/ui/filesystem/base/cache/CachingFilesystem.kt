@@ -0,0 +1,170 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.base.cache
+
+import com.blacksquircle.ui.filesystem.base.Filesystem
+import com.blacksquircle.ui.filesystem.base.model.FileModel
+import com.blacksquircle.ui.filesystem.base.model.FileParams
+import com.blacksquircle.ui.filesystem.base.model.TransferProgress
+import com.blacksquircle.ui.filesystem.base.utils.onClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.onCompletion
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.charset.Charset
+
+/**
+ * Serves directory listings of [delegate] from [directoryCache], and
+ * invalidates them whenever an operation modifies the directory.
+ */
+class CachingFilesystem(
+    private val delegate: Filesystem,
+    private val directoryCache: DirectoryCache,
+) : Filesystem {
+
+    override fun ping() {
+        delegate.ping()
+    }
+
+    override fun listFiles(parent: FileModel): List<FileModel> {
+        directoryCache.get(parent)?.let { return it }
+        return delegate.listFiles(parent).also {
+            directoryCache.put(parent, it)
+        }
+    }
+
+    override fun streamFiles(parent: FileModel): Flow<List<FileModel>> {
+        directoryCache.get(parent)?.let { return flowOf(it) }
+        return flow {
+            val children = ArrayList<FileModel>()
+            delegate.streamFiles(parent).collect { chunk ->
+                children += chunk
+                emit(chunk)
+            }
+            directoryCache.put(parent, children)
+        }
+    }
+
+    override fun createFile(fileModel: FileModel) {
+        try {
+            delegate.createFile(fileModel)
+        } finally {
+            directoryCache.invalidate(fileModel)
+        }
+    }
+
+    override fun renameFile(source: FileModel, name: String) {
+        try {
+            delegate.renameFile(source, name)
+        } finally {
+            directoryCache.invalidate(source)
+        }
+    }
+
+    override fun deleteFile(fileModel: FileModel) {
+        try {
+            delegate.deleteFile(fileModel)
+        } finally {
+            directoryCache.invalidate(fileModel)
+        }
+    }
+
+    override fun copyFile(source: FileModel, dest: FileModel): Flow<TransferProgress> {
+        return delegate.copyFile(source, dest)
+            .onCompletion { directoryCache.invalidate(dest) }
+    }
+
+    override fun moveFile(source: FileModel, dest: FileModel) {
+        try {
+            delegate.moveFile(source, dest)
+        } finally {
+            directoryCache.invalidate(source)
+            directoryCache.invalidate(dest)
+        }
+    }
+
+    override fun stat(fileModels: List<FileModel>): List<FileModel> {
+        return delegate.stat(fileModels)
+    }
+
+    override fun deleteFiles(fileModels: List<FileModel>) {
+        try {
+            delegate.deleteFiles(fileModels)
+        } finally {
+            fileModels.forEach(directoryCache::invalidate)
+        }
+    }
+
+    override fun createFiles(fileModels: List<FileModel>) {
+        try {
+            delegate.createFiles(fileModels)
+        } finally {
+            fileModels.forEach(directoryCache::invalidate)
+        }
+    }
+
+    override fun compressFiles(source: List<FileModel>, dest: FileModel): Flow<TransferProgress> {
+        return delegate.compressFiles(source, dest)
+            .onCompletion { directoryCache.invalidate(dest) }
+    }
+
+    override fun extractFiles(source: FileModel, dest: FileModel): Flow<TransferProgress> {
+        return delegate.extractFiles(source, dest)
+            .onCompletion { directoryCache.invalidate(dest) }
+    }
+
+    override fun loadFile(fileModel: FileModel, fileParams: FileParams): String {
+        return delegate.loadFile(fileModel, fileParams)
+    }
+
+    override fun saveFile(fileModel: FileModel, text: String, fileParams: FileParams) {
+        try {
+            delegate.saveFile(fileModel, text, fileParams)
+        } finally {
+            directoryCache.invalidate(fileModel)
+        }
+    }
+
+    override fun openInputStream(fileModel: FileModel): InputStream {
+        return delegate.openInputStream(fileModel)
+    }
+
+    override fun openInputStream(fileModel: FileModel, offset: Long): InputStream {
+        return delegate.openInputStream(fileModel, offset)
+    }
+
+    override fun detectCharset(fileModel: FileModel, inputStream: InputStream): Charset {
+        return delegate.detectCharset(fileModel, inputStream)
+    }
+
+    override fun openOutputStream(fileModel: FileModel): OutputStream {
+        return delegate.openOutputStream(fileModel)
+            .onClose { directoryCache.invalidate(fileModel) }
+    }
+
+    override fun openAppendStream(fileModel: FileModel): OutputStream {
+        return delegate.openAppendStream(fileModel)
+            .onClose { directoryCache.invalidate(fileModel) }
+    }
+
+    /** Forces the next listing of [fileModel] to hit the [delegate] */
+    fun invalidate(fileModel: FileModel) {
+        directoryCache.invalidate(fileModel)
+    }
+}
\ No newline at end of file
@@ -0,0 +1,117 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.base.cache
+
+import com.blacksquircle.ui.filesystem.base.model.FileModel
+
+/**
+ * LRU cache of directory listings, keyed by the filesystem uuid and the
+ * directory uri, since remote uris don't tell servers apart. Entries
+ * expire after [timeToLive] ms, and the cache holds at most [maxFiles]
+ * children in total. When [revalidate] is set, a listing is also dropped
+ * once the directory's modification time differs from the cached one.
+ */
+class DirectoryCache(
+    private val timeToLive: Long = TIME_TO_LIVE,
+    private val maxFiles: Int = MAX_FILES,
+    private val revalidate: Boolean = true,
+) {
+
+    private val entries = LinkedHashMap<String, Entry>(16, 0.75f, true)
+    private var fileCount = 0
+
+    @Synchronized
+    fun get(parent: FileModel): List<FileModel>? {
+        val entry = entries[keyOf(parent)] ?: return null
+        val isExpired = System.currentTimeMillis() - entry.timestamp > timeToLive
+        val isModified = revalidate && parent.lastModified > 0 &&
+            entry.lastModified > 0 && parent.lastModified != entry.lastModified
+        if (isExpired || isModified) {
+            remove(keyOf(parent))
+            return null
+        }
+        return entry.children
+    }
+
+    @Synchronized
+    fun put(parent: FileModel, children: List<FileModel>) {
+        remove(keyOf(parent))
+        if (children.size > maxFiles) {
+            return
+        }
+        entries[keyOf(parent)] = Entry(children, parent.lastModified, System.currentTimeMillis())
+        fileCount += children.size
+        val iterator = entries.values.iterator()
+        while (fileCount > maxFiles && iterator.hasNext()) {
+            fileCount -= iterator.next().children.size
+            iterator.remove()
+        }
+    }
+
+    /** Drops the listing of [fileModel]'s parent, and of [fileModel] itself with its subdirectories */
+    @Synchronized
+    fun invalidate(fileModel: FileModel) {
+        val key = keyOf(fileModel)
+        remove(key.substringBeforeLast('/'))
+        removeAll { it == key || it.startsWith("$key/") }
+    }
+
+    /** Drops every listing of the filesystem, e.g. once its server config changes */
+    @Synchronized
+    fun invalidate(filesystemUuid: String) {
+        val prefix = filesystemUuid + KEY_SEPARATOR
+        removeAll { it.startsWith(prefix) }
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+        fileCount = 0
+    }
+
+    private fun remove(key: String) {
+        val entry = entries.remove(key) ?: return
+        fileCount -= entry.children.size
+    }
+
+    private inline fun removeAll(predicate: (String) -> Boolean) {
+        val iterator = entries.entries.iterator()
+        while (iterator.hasNext()) {
+            val (key, entry) = iterator.next()
+            if (predicate(key)) {
+                fileCount -= entry.children.size
+                iterator.remove()
+            }
+        }
+    }
+
+    private fun keyOf(fileModel: FileModel): String {
+        return fileModel.filesystemUuid + KEY_SEPARATOR + fileModel.fileUri
+    }
+
+    private class Entry(
+        val children: List<FileModel>,
+        val lastModified: Long,
+        val timestamp: Long,
+    )
+
+    companion object {
+        private const val TIME_TO_LIVE = 5 * 60 * 1000L
+        private const val MAX_FILES = 50_000
+        private const val KEY_SEPARATOR = '|'
+    }
+}
\ No newline at end of file
@@ -0,0 +1,130 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.base.charset
+
+import com.ibm.icu.text.CharsetDetector
+import java.io.InputStream
+import java.io.RandomAccessFile
+import java.nio.charset.Charset
+
+/**
+ * Detects the charset of a file from a bounded number of bytes, so
+ * detection takes the same time regardless of the file size.
+ */
+object EncodingDetector {
+
+    private const val SAMPLE_SIZE = 8 * 1024
+    private const val CACHE_SIZE = 64
+
+    private val cache = object : LinkedHashMap<CacheKey, Charset>(CACHE_SIZE, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<CacheKey, Charset>?): Boolean {
+            return size > CACHE_SIZE
+        }
+    }
+
+    /** Stream must support mark/reset, it is rewound to the start afterwards */
+    fun detect(inputStream: InputStream): Charset {
+        val sample = ByteArray(SAMPLE_SIZE)
+        inputStream.mark(SAMPLE_SIZE)
+        val length = try {
+            inputStream.readSample(sample)
+        } finally {
+            inputStream.reset()
+        }
+        return detect(sample, length)
+    }
+
+    /** If the head of the file is plain ASCII, the middle and the tail are sampled too */
+    fun detect(file: RandomAccessFile): Charset {
+        val fileSize = file.length()
+        val head = ByteArray(SAMPLE_SIZE)
+        file.seek(0)
+        val headLength = file.readSample(head)
+        if (fileSize <= SAMPLE_SIZE * 3 || !head.isAscii(headLength)) {
+            return detect(head, headLength)
+        }
+        val sample = head.copyOf(SAMPLE_SIZE * 3)
+        file.seek(fileSize / 2 - SAMPLE_SIZE / 2)
+        file.readSample(sample, SAMPLE_SIZE)
+        file.seek(fileSize - SAMPLE_SIZE)
+        file.readSample(sample, SAMPLE_SIZE * 2)
+        return detect(sample, sample.size)
+    }
+
+    fun detect(sample: ByteArray, length: Int = sample.size): Charset {
+        detectBom(sample, length)?.let { return it }
+        return try {
+            val charsetMatch = CharsetDetector()
+                .setText(sample.copyOf(length))
+                .detect()
+            charset(charsetMatch.name)
+        } catch (e: Exception) {
+            Charsets.UTF_8
+        }
+    }
+
+    /** Reuses the result of [detect] until the file size or modification time changes */
+    fun cached(fileUri: String, size: Long, lastModified: Long, detect: () -> Charset): Charset {
+        val key = CacheKey(fileUri, size, lastModified)
+        synchronized(cache) { cache[key] }?.let { return it }
+        val charset = detect()
+        synchronized(cache) { cache[key] = charset }
+        return charset
+    }
+
+    private fun detectBom(sample: ByteArray, length: Int): Charset? {
+        fun byteAt(index: Int) = if (index < length) sample[index].toInt() and 0xFF else -1
+        return when {
+            byteAt(0) == 0xEF && byteAt(1) == 0xBB && byteAt(2) == 0xBF -> Charsets.UTF_8
+            byteAt(0) == 0x00 && byteAt(1) == 0x00 && byteAt(2) == 0xFE && byteAt(3) == 0xFF -> Charsets.UTF_32BE
+            byteAt(0) == 0xFF && byteAt(1) == 0xFE && byteAt(2) == 0x00 && byteAt(3) == 0x00 -> Charsets.UTF_32LE
+            byteAt(0) == 0xFE && byteAt(1) == 0xFF -> Charsets.UTF_16BE
+            byteAt(0) == 0xFF && byteAt(1) == 0xFE -> Charsets.UTF_16LE
+            else -> null
+        }
+    }
+
+    private fun ByteArray.isAscii(length: Int): Boolean {
+        for (i in 0 until length) {
+            if (this[i] < 0) return false
+        }
+        return true
+    }
+
+    private fun InputStream.readSample(buffer: ByteArray): Int {
+        var offset = 0
+        while (offset < buffer.size) {
+            val count = read(buffer, offset, buffer.size - offset)
+            if (count < 0) break
+            offset += count
+        }
+        return offset
+    }
+
+    private fun RandomAccessFile.readSample(buffer: ByteArray, offset: Int = 0): Int {
+        var position = offset
+        val end = minOf(buffer.size, offset + SAMPLE_SIZE)
+        while (position < end) {
+            val count = read(buffer, position, end - position)
+            if (count < 0) break
+            position += count
+        }
+        return position - offset
+    }
+
+    private data class CacheKey(val fileUri: String, val size: Long, val lastModified: Long)
+}
\ No newline at end of file
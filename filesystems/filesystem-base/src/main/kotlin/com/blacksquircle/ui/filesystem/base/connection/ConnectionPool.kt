@@ -0,0 +1,233 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.base.connection
+
+import com.blacksquircle.ui.filesystem.base.model.ServerConfig
+import java.io.InterruptedIOException
+import java.nio.channels.ClosedByInterruptException
+import java.util.concurrent.CancellationException
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Keeps idle connections per [ServerConfig.uuid], so subsequent operations
+ * can reuse them instead of reconnecting every time. Connections idle for
+ * longer than [validationInterval] ms are validated before they're handed
+ * out, and closed after [idleTimeout] ms. Recently used ones are handed out
+ * as is, [use] discards them if they turn out to be broken.
+ */
+abstract class ConnectionPool<T : Any>(
+    private val maxIdleConnections: Int = MAX_IDLE_CONNECTIONS,
+    private val idleTimeout: Long = IDLE_TIMEOUT,
+    private val validationInterval: Long = VALIDATION_INTERVAL,
+) {
+
+    private val idleConnections = HashMap<String, ArrayDeque<IdleConnection<T>>>()
+    private val serverConfigs = HashMap<String, ServerConfig>()
+
+    private val executor: ScheduledExecutorService by lazy {
+        Executors.newSingleThreadScheduledExecutor { runnable ->
+            Thread(runnable, "ConnectionPool").apply { isDaemon = true }
+        }
+    }
+    private var evictionTask: ScheduledFuture<*>? = null
+
+    private val workers: ExecutorService by lazy {
+        Executors.newCachedThreadPool { runnable ->
+            Thread(runnable, "ConnectionPool-worker").apply { isDaemon = true }
+        }
+    }
+
+    /** Opens a new connection, called outside the pool lock */
+    protected abstract fun connect(serverConfig: ServerConfig): T
+
+    /** Returns `false` if the connection is no longer usable, may take a round trip */
+    protected abstract fun isAlive(connection: T): Boolean
+
+    /** Closes the connection, errors are ignored */
+    protected abstract fun disconnect(connection: T)
+
+    fun acquire(serverConfig: ServerConfig): T {
+        while (true) {
+            val idleConnection = synchronized(this) {
+                if (serverConfigs[serverConfig.uuid] != serverConfig) {
+                    // Server has been edited, pooled connections are stale
+                    serverConfigs[serverConfig.uuid] = serverConfig
+                    idleConnections.remove(serverConfig.uuid)
+                        ?.forEach { executor.execute { disconnectQuietly(it.connection) } }
+                }
+                idleConnections[serverConfig.uuid]?.removeLastOrNull()
+            } ?: break
+            val idleTime = System.currentTimeMillis() - idleConnection.lastUsed
+            if (idleTime < validationInterval || isAlive(idleConnection.connection)) {
+                return idleConnection.connection
+            }
+            disconnectQuietly(idleConnection.connection)
+        }
+        return connect(serverConfig)
+    }
+
+    fun release(serverConfig: ServerConfig, connection: T, isBroken: Boolean = false) {
+        val isPooled = !isBroken && synchronized(this) {
+            if (serverConfigs[serverConfig.uuid] != serverConfig) {
+                return@synchronized false
+            }
+            val connections = idleConnections.getOrPut(serverConfig.uuid) { ArrayDeque() }
+            if (connections.size >= maxIdleConnections) {
+                return@synchronized false
+            }
+            connections.addLast(IdleConnection(connection, System.currentTimeMillis()))
+            scheduleEviction()
+            true
+        }
+        if (!isPooled) {
+            disconnectQuietly(connection)
+        }
+    }
+
+    /**
+     * An interrupted or cancelled [block] may have left a reply unread or a transfer
+     * half done, such connections are discarded even if they still look alive.
+     */
+    fun <R> use(serverConfig: ServerConfig, block: (T) -> R): R {
+        val connection = acquire(serverConfig)
+        val result = try {
+            block(connection)
+        } catch (e: Throwable) {
+            val isBroken = e.isInterruption() || !isAlive(connection)
+            release(serverConfig, connection, isBroken)
+            throw e
+        }
+        release(serverConfig, connection)
+        return result
+    }
+
+    /**
+     * Runs [action] for every item on up to [parallelism] pooled connections,
+     * so independent requests don't wait for each other's round trip.
+     * Stops at the first failure and rethrows it. Interrupting the calling
+     * thread interrupts the other workers as well.
+     */
+    fun <E> forEachParallel(
+        serverConfig: ServerConfig,
+        items: Collection<E>,
+        parallelism: Int = maxIdleConnections,
+        action: (T, E) -> Unit,
+    ) {
+        if (items.isEmpty()) {
+            return
+        }
+        val queue = ConcurrentLinkedQueue(items)
+        val failure = AtomicReference<Throwable>()
+        val worker = Runnable {
+            try {
+                use(serverConfig) { connection ->
+                    while (failure.get() == null) {
+                        if (Thread.interrupted()) {
+                            throw InterruptedException()
+                        }
+                        val item = queue.poll() ?: break
+                        action(connection, item)
+                    }
+                }
+            } catch (e: Throwable) {
+                failure.compareAndSet(null, e)
+            }
+        }
+        val workerCount = minOf(parallelism, items.size)
+        val futures = List(workerCount - 1) { workers.submit(worker) }
+        try {
+            worker.run() // the calling thread takes part as well
+            if (failure.get() is InterruptedException) {
+                throw InterruptedException()
+            }
+            futures.forEach(Future<*>::get)
+        } catch (e: InterruptedException) {
+            futures.forEach { it.cancel(true) }
+            throw e
+        }
+        failure.get()?.let { throw it }
+    }
+
+    fun evict(uuid: String) {
+        val connections = synchronized(this) {
+            serverConfigs.remove(uuid)
+            idleConnections.remove(uuid)
+        }
+        connections?.forEach { disconnectQuietly(it.connection) }
+    }
+
+    private fun scheduleEviction() {
+        if (evictionTask?.isDone == false) {
+            return
+        }
+        evictionTask = executor.schedule(::evictIdle, idleTimeout, TimeUnit.MILLISECONDS)
+    }
+
+    private fun evictIdle() {
+        val expired = ArrayList<T>()
+        synchronized(this) {
+            val deadline = System.currentTimeMillis() - idleTimeout
+            for (connections in idleConnections.values) {
+                while (connections.firstOrNull()?.let { it.lastUsed <= deadline } == true) {
+                    expired += connections.removeFirst().connection
+                }
+            }
+            idleConnections.values.removeAll { it.isEmpty() }
+            evictionTask = null
+            if (idleConnections.isNotEmpty()) {
+                scheduleEviction()
+            }
+        }
+        expired.forEach(::disconnectQuietly)
+    }
+
+    private fun Throwable.isInterruption(): Boolean {
+        if (Thread.currentThread().isInterrupted) {
+            return true
+        }
+        // Clients often wrap the interruption in their own exception types
+        return generateSequence(this, Throwable::cause).any {
+            it is InterruptedException ||
+                it is InterruptedIOException ||
+                it is ClosedByInterruptException ||
+                it is CancellationException
+        }
+    }
+
+    private fun disconnectQuietly(connection: T) {
+        try {
+            disconnect(connection)
+        } catch (e: Exception) {
+            // ignored
+        }
+    }
+
+    private class IdleConnection<T>(val connection: T, val lastUsed: Long)
+
+    companion object {
+        private const val MAX_IDLE_CONNECTIONS = 4
+        private const val IDLE_TIMEOUT = 60_000L
+        private const val VALIDATION_INTERVAL = 10_000L
+    }
+}
\ No newline at end of file
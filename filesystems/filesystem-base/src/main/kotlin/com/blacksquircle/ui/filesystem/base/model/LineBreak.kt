@@ -18,12 +18,11 @@ package com.blacksquircle.ui.filesystem.base.model
 
 enum class LineBreak(
     val value: String,
-    val regex: Regex,
     val replacement: String
 ) {
-    LF("lf", "(\\r\\n|\\r)".toRegex(), "\n"),
-    CRLF("crlf", "[\\r\\n]".toRegex(), "\r\n"),
-    CR("cr", "(\\r\\n|\\n)".toRegex(), "\r");
+    LF("lf", "\n"),
+    CRLF("crlf", "\r\n"),
+    CR("cr", "\r");
 
     companion object {
 
@@ -28,4 +28,5 @@ data class ServerConfig(
     val password: String?,
     val keyId: String?,
     val passphrase: String?,
+    val protectData: Boolean,
 )
\ No newline at end of file
@@ -0,0 +1,129 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.base.utils
+
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.OutputStream
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.StandardOpenOption
+
+/**
+ * Writes into a temp file next to the target. [commit] fsyncs it and renames it
+ * over the target, while closing without a commit deletes it. A crash, an error
+ * or a cancellation in the middle of writing leaves the original file untouched.
+ */
+class AtomicFileOutputStream(file: File) : OutputStream(), Committable {
+
+    private val targetFile = file.canonicalFile
+    private val tempFile = File.createTempFile(".${targetFile.name}-", ".tmp", targetFile.parentFile)
+    private val output = FileOutputStream(tempFile)
+    private var isClosed = false
+
+    override fun write(b: Int) {
+        output.write(b)
+    }
+
+    override fun write(b: ByteArray, off: Int, len: Int) {
+        output.write(b, off, len)
+    }
+
+    override fun flush() {
+        if (!isClosed) {
+            output.flush()
+        }
+    }
+
+    override fun commit() {
+        check(!isClosed) { "Stream is already closed" }
+        isClosed = true
+        try {
+            output.use {
+                it.flush()
+                it.fd.sync()
+            }
+            if (targetFile.exists()) {
+                copyPermissions(targetFile, tempFile)
+            }
+            if (!tempFile.renameTo(targetFile)) {
+                throw IOException("Unable to replace ${targetFile.path}")
+            }
+        } catch (e: IOException) {
+            tempFile.delete()
+            throw e
+        }
+        // The rename itself is durable only once the directory entry is synced
+        syncDirectory(targetFile.parentFile)
+    }
+
+    override fun close() {
+        if (isClosed) {
+            return
+        }
+        isClosed = true
+        try {
+            output.close()
+        } finally {
+            tempFile.delete()
+        }
+    }
+
+    private companion object {
+
+        /** java.nio.file is only available since API 26 */
+        val isNioAvailable: Boolean by lazy {
+            try {
+                Class.forName("java.nio.file.Files")
+                true
+            } catch (e: ClassNotFoundException) {
+                false
+            }
+        }
+
+        fun copyPermissions(source: File, dest: File) {
+            if (isNioAvailable) {
+                try {
+                    val permissions = Files.getPosixFilePermissions(source.toPath())
+                    Files.setPosixFilePermissions(dest.toPath(), permissions)
+                    return
+                } catch (e: UnsupportedOperationException) {
+                    // not a POSIX filesystem, fall back to the owner bits
+                } catch (e: IOException) {
+                    // same as above
+                }
+            }
+            dest.setReadable(source.canRead(), true)
+            dest.setWritable(source.canWrite(), true)
+            dest.setExecutable(source.canExecute(), true)
+        }
+
+        fun syncDirectory(directory: File?) {
+            if (directory == null || !isNioAvailable) {
+                return
+            }
+            try {
+                FileChannel.open(directory.toPath(), StandardOpenOption.READ).use { channel ->
+                    channel.force(true)
+                }
+            } catch (e: IOException) {
+                // Some filesystems don't allow opening or syncing directories
+            }
+        }
+    }
+}
\ No newline at end of file
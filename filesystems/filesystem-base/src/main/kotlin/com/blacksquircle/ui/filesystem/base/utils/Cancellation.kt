@@ -0,0 +1,52 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.base.utils
+
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runInterruptible
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Runs a blocking [com.blacksquircle.ui.filesystem.base.Filesystem] call so that
+ * cancelling the coroutine actually stops it. The thread is interrupted, which aborts
+ * JSch transfers and NIO channels, and [onCancel] is invoked from another thread to
+ * close what an interrupt can't reach, such as socket streams.
+ */
+suspend fun <T> cancellable(onCancel: () -> Unit = {}, block: () -> T): T {
+    return coroutineScope {
+        val isCompleted = AtomicBoolean(false)
+        val watcher = launch(start = CoroutineStart.UNDISPATCHED) {
+            try {
+                awaitCancellation()
+            } finally {
+                if (!isCompleted.get()) {
+                    onCancel()
+                }
+            }
+        }
+        try {
+            runInterruptible(Dispatchers.IO, block)
+        } finally {
+            isCompleted.set(true)
+            watcher.cancel()
+        }
+    }
+}
\ No newline at end of file
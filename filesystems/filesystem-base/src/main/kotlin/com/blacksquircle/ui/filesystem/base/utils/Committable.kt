@@ -0,0 +1,38 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.base.utils
+
+import java.io.OutputStream
+
+/**
+ * Output whose data replaces the target only once [commit] is called.
+ * Closing it without a commit discards everything written so far.
+ */
+interface Committable {
+
+    /** Keeps the written data and closes the output */
+    fun commit()
+}
+
+/** Commits [Committable] outputs, other outputs keep their data on [OutputStream.close] anyway */
+fun OutputStream.commit() {
+    if (this is Committable) {
+        commit()
+    } else {
+        close()
+    }
+}
\ No newline at end of file
@@ -0,0 +1,91 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.base.utils
+
+import com.blacksquircle.ui.filesystem.base.model.LineBreak
+import java.io.FilterWriter
+import java.io.Writer
+
+/**
+ * Replaces `\r\n`, `\r` and `\n` with [lineBreak] while writing, so the
+ * text doesn't have to be copied to convert line endings beforehand.
+ */
+class LineBreakWriter(
+    out: Writer,
+    private val lineBreak: LineBreak,
+) : FilterWriter(out) {
+
+    /** Last written char was `\r`, a following `\n` belongs to it */
+    private var pendingCR = false
+
+    override fun write(c: Int) {
+        when (c.toChar()) {
+            '\r' -> {
+                out.write(lineBreak.replacement)
+                pendingCR = true
+            }
+            '\n' -> {
+                if (!pendingCR) {
+                    out.write(lineBreak.replacement)
+                }
+                pendingCR = false
+            }
+            else -> {
+                out.write(c)
+                pendingCR = false
+            }
+        }
+    }
+
+    override fun write(cbuf: CharArray, off: Int, len: Int) {
+        var start = off
+        for (i in off until off + len) {
+            val c = cbuf[i]
+            if (c == '\r' || c == '\n') {
+                if (i > start) {
+                    out.write(cbuf, start, i - start)
+                    pendingCR = false
+                }
+                write(c.code)
+                start = i + 1
+            }
+        }
+        if (off + len > start) {
+            out.write(cbuf, start, off + len - start)
+            pendingCR = false
+        }
+    }
+
+    override fun write(str: String, off: Int, len: Int) {
+        var start = off
+        for (i in off until off + len) {
+            val c = str[i]
+            if (c == '\r' || c == '\n') {
+                if (i > start) {
+                    out.write(str, start, i - start)
+                    pendingCR = false
+                }
+                write(c.code)
+                start = i + 1
+            }
+        }
+        if (off + len > start) {
+            out.write(str, start, off + len - start)
+            pendingCR = false
+        }
+    }
+}
\ No newline at end of file
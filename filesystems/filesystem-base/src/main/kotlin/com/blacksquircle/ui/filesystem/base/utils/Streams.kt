@@ -0,0 +1,178 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.base.utils
+
+import com.blacksquircle.ui.filesystem.base.Filesystem
+import com.blacksquircle.ui.filesystem.base.model.FileModel
+import com.blacksquircle.ui.filesystem.base.model.FileParams
+import java.io.EOFException
+import java.io.FilterInputStream
+import java.io.FilterOutputStream
+import java.io.InputStream
+import java.io.OutputStream
+import java.io.Reader
+import java.io.Writer
+import java.util.concurrent.atomic.AtomicBoolean
+
+private const val BUFFER_SIZE = 64 * 1024
+
+/**
+ * Opens a file as a character stream, so the caller can consume it
+ * without holding both raw bytes and the decoded text in memory.
+ */
+fun Filesystem.openReader(fileModel: FileModel, fileParams: FileParams): Reader {
+    return reader(fileModel, openInputStream(fileModel), fileParams)
+}
+
+/**
+ * Cancellable variant of [openReader]. Cancelling the coroutine closes the
+ * underlying stream, which aborts a transfer blocked on a slow connection.
+ */
+suspend fun <T> Filesystem.useReader(
+    fileModel: FileModel,
+    fileParams: FileParams,
+    block: (Reader) -> T,
+): T {
+    val inputStream = cancellable { openInputStream(fileModel) }
+    return inputStream.use {
+        cancellable(onCancel = inputStream::close) {
+            block(reader(fileModel, inputStream, fileParams))
+        }
+    }
+}
+
+/**
+ * Writes a file with line breaks converted to [FileParams.linebreak].
+ * The output is committed only when [block] returns normally, so an error
+ * or a cancellation never leaves a half-written file behind.
+ */
+fun <T> Filesystem.useWriter(
+    fileModel: FileModel,
+    fileParams: FileParams,
+    block: (Writer) -> T,
+): T {
+    val outputStream = openOutputStream(fileModel)
+    val writer = LineBreakWriter(
+        outputStream.buffered(BUFFER_SIZE).writer(fileParams.charset),
+        fileParams.linebreak,
+    )
+    val result = try {
+        block(writer).also { writer.flush() }
+    } catch (e: Throwable) {
+        outputStream.close()
+        throw e
+    }
+    // Buffers hold no resources of their own, committing the stream closes it
+    outputStream.commit()
+    return result
+}
+
+/**
+ * Runs [action] after the stream is closed, e.g. to release a remote connection.
+ * The action runs once, even if a cancelled transfer closes the stream twice.
+ */
+fun InputStream.onClose(action: () -> Unit): InputStream {
+    val isClosed = AtomicBoolean(false)
+    return object : FilterInputStream(this) {
+        override fun close() {
+            if (!isClosed.compareAndSet(false, true)) {
+                return
+            }
+            try {
+                super.close()
+            } finally {
+                action()
+            }
+        }
+    }
+}
+
+/** Same as above, [commit] is forwarded to the wrapped stream before the action runs */
+fun OutputStream.onClose(action: () -> Unit): OutputStream {
+    val isClosed = AtomicBoolean(false)
+    return object : FilterOutputStream(this), Committable {
+        override fun write(b: ByteArray, off: Int, len: Int) {
+            out.write(b, off, len)
+        }
+
+        override fun commit() {
+            if (!isClosed.compareAndSet(false, true)) {
+                return
+            }
+            try {
+                out.flush()
+                out.commit()
+            } finally {
+                action()
+            }
+        }
+
+        override fun close() {
+            if (!isClosed.compareAndSet(false, true)) {
+                return
+            }
+            try {
+                super.close()
+            } finally {
+                action()
+            }
+        }
+    }
+}
+
+/** Unlike [InputStream.skip], either skips exactly [count] bytes or throws */
+fun InputStream.skipFully(count: Long) {
+    var remaining = count
+    while (remaining > 0) {
+        val skipped = skip(remaining)
+        if (skipped > 0) {
+            remaining -= skipped
+        } else if (read() >= 0) {
+            remaining--
+        } else {
+            throw EOFException()
+        }
+    }
+}
+
+/** Reads up to [length] bytes, fewer only if the stream ends first */
+fun InputStream.readAtMost(length: Int): ByteArray {
+    val buffer = ByteArray(length)
+    var count = 0
+    while (count < length) {
+        val read = read(buffer, count, length - count)
+        if (read < 0) {
+            break
+        }
+        count += read
+    }
+    return if (count == length) buffer else buffer.copyOf(count)
+}
+
+private fun Filesystem.reader(
+    fileModel: FileModel,
+    inputStream: InputStream,
+    fileParams: FileParams,
+): Reader {
+    val bufferedStream = inputStream.buffered(BUFFER_SIZE)
+    val charset = if (fileParams.chardet) {
+        detectCharset(fileModel, bufferedStream)
+    } else {
+        fileParams.charset
+    }
+    return bufferedStream.reader(charset)
+}
\ No newline at end of file
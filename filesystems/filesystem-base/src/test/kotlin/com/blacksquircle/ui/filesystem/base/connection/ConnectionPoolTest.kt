@@ -0,0 +1,167 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.base.connection
+
+import com.blacksquircle.ui.filesystem.base.model.AuthMethod
+import com.blacksquircle.ui.filesystem.base.model.ServerConfig
+import com.blacksquircle.ui.filesystem.base.model.ServerType
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertThrows
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.util.concurrent.CancellationException
+
+class ConnectionPoolTest {
+
+    private val serverConfig = ServerConfig(
+        uuid = "12345",
+        scheme = ServerType.SFTP,
+        name = "server",
+        address = "localhost",
+        port = 22,
+        initialDir = "/",
+        authMethod = AuthMethod.PASSWORD,
+        username = "user",
+        password = "password",
+        keyId = null,
+        passphrase = null,
+        protectData = false,
+    )
+    private val connectionPool = FakeConnectionPool()
+
+    @Test
+    fun `When block completes Then reuse the connection`() {
+        // Given
+        val connection = connectionPool.use(serverConfig) { it }
+
+        // When
+        val reused = connectionPool.acquire(serverConfig)
+
+        // Then
+        assertSame(connection, reused)
+    }
+
+    @Test
+    fun `When block fails on a live connection Then reuse the connection`() {
+        // Given
+        var connection: FakeConnection? = null
+        assertThrows(IOException::class.java) {
+            connectionPool.use(serverConfig) {
+                connection = it
+                throw IOException()
+            }
+        }
+
+        // When
+        val reused = connectionPool.acquire(serverConfig)
+
+        // Then
+        assertSame(connection, reused)
+        assertFalse(reused.isClosed)
+    }
+
+    @Test
+    fun `When block is interrupted Then discard the connection`() {
+        // Given
+        var connection: FakeConnection? = null
+        assertThrows(InterruptedIOException::class.java) {
+            connectionPool.use(serverConfig) {
+                connection = it
+                throw InterruptedIOException()
+            }
+        }
+
+        // When
+        val reused = connectionPool.acquire(serverConfig)
+
+        // Then
+        assertTrue(connection!!.isClosed)
+        assertNotSame(connection, reused)
+    }
+
+    @Test
+    fun `When block is cancelled behind a wrapper Then discard the connection`() {
+        // Given
+        var connection: FakeConnection? = null
+        assertThrows(IOException::class.java) {
+            connectionPool.use(serverConfig) {
+                connection = it
+                throw IOException(CancellationException())
+            }
+        }
+
+        // When
+        val reused = connectionPool.acquire(serverConfig)
+
+        // Then
+        assertTrue(connection!!.isClosed)
+        assertNotSame(connection, reused)
+    }
+
+    @Test
+    fun `When connection was used recently Then reuse it without validation`() {
+        // Given
+        val connection = connectionPool.use(serverConfig) { it }
+
+        // When
+        val reused = connectionPool.acquire(serverConfig)
+
+        // Then
+        assertSame(connection, reused)
+        assertEquals(0, connectionPool.validationCount)
+    }
+
+    @Test
+    fun `When connection idled past validation interval Then validate it`() {
+        // Given
+        val connectionPool = FakeConnectionPool(validationInterval = 0L)
+        val connection = connectionPool.use(serverConfig) { it }
+        connection.isClosed = true
+
+        // When
+        val reused = connectionPool.acquire(serverConfig)
+
+        // Then
+        assertNotSame(connection, reused)
+        assertEquals(1, connectionPool.validationCount)
+    }
+
+    private class FakeConnection {
+        var isClosed = false
+    }
+
+    private class FakeConnectionPool(
+        validationInterval: Long = 10_000L,
+    ) : ConnectionPool<FakeConnection>(validationInterval = validationInterval) {
+
+        var validationCount = 0
+
+        override fun connect(serverConfig: ServerConfig) = FakeConnection()
+        override fun isAlive(connection: FakeConnection): Boolean {
+            validationCount++
+            return !connection.isClosed
+        }
+        override fun disconnect(connection: FakeConnection) {
+            connection.isClosed = true
+        }
+    }
+}
\ No newline at end of file
@@ -21,8 +21,10 @@ plugins {
 dependencies {
 
     implementation(libs.apache.ftpclient)
-    implementation(libs.ibm.icu4j)
     implementation(libs.kotlinx.coroutines.core)
 
     api(project(":filesystems:filesystem-base"))
+
+    testImplementation(libs.test.junit)
+    testImplementation(libs.test.mockftpserver)
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.ftp
+
+import com.blacksquircle.ui.filesystem.base.connection.ConnectionPool
+import com.blacksquircle.ui.filesystem.base.exception.AuthRequiredException
+import com.blacksquircle.ui.filesystem.base.exception.AuthenticationException
+import com.blacksquircle.ui.filesystem.base.exception.ConnectionException
+import com.blacksquircle.ui.filesystem.base.model.AuthMethod
+import com.blacksquircle.ui.filesystem.base.model.ServerConfig
+import org.apache.commons.net.ftp.FTP
+import org.apache.commons.net.ftp.FTPClient
+import org.apache.commons.net.ftp.FTPReply
+import java.io.IOException
+import java.time.Duration
+
+/**
+ * Pools logged-in [FTPClient] control connections. Pooled clients are
+ * checked with NOOP before reuse, long transfers keep the control
+ * connection alive with NOOPs as well.
+ */
+class FTPClientPool : ConnectionPool<StreamingFTPClient>() {
+
+    override fun connect(serverConfig: ServerConfig): StreamingFTPClient {
+        if (serverConfig.password == null) {
+            throw AuthRequiredException(AuthMethod.PASSWORD)
+        }
+        if (serverConfig.authMethod != AuthMethod.PASSWORD) {
+            throw UnsupportedOperationException()
+        }
+        val ftpClient = StreamingFTPClient()
+        ftpClient.connectTimeout = 10000
+        ftpClient.setControlKeepAliveTimeout(Duration.ofSeconds(KEEP_ALIVE_TIMEOUT))
+        try {
+            ftpClient.connect(serverConfig.address, serverConfig.port)
+            if (!FTPReply.isPositiveCompletion(ftpClient.replyCode)) {
+                throw ConnectionException()
+            }
+            ftpClient.enterLocalPassiveMode()
+            ftpClient.login(serverConfig.username, serverConfig.password)
+            if (!FTPReply.isPositiveCompletion(ftpClient.replyCode)) {
+                throw AuthenticationException(AuthMethod.PASSWORD)
+            }
+            // ASCII mode rewrites line breaks, offsets and sizes would no longer match
+            if (!ftpClient.setFileType(FTP.BINARY_FILE_TYPE)) {
+                throw ConnectionException()
+            }
+            return ftpClient
+        } catch (e: Exception) {
+            if (ftpClient.isConnected) {
+                ftpClient.disconnect()
+            }
+            throw e
+        }
+    }
+
+    override fun isAlive(connection: StreamingFTPClient): Boolean {
+        return try {
+            connection.isConnected && connection.sendNoOp()
+        } catch (e: IOException) {
+            false
+        }
+    }
+
+    override fun disconnect(connection: StreamingFTPClient) {
+        if (connection.isConnected) {
+            try {
+                connection.logout()
+            } finally {
+                connection.disconnect()
+            }
+        }
+    }
+
+    companion object {
+        private const val KEEP_ALIVE_TIMEOUT = 30L
+    }
+}
\ No newline at end of file
@@ -0,0 +1,62 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.ftp
+
+import org.apache.commons.net.ftp.FTPClient
+import org.apache.commons.net.ftp.FTPClientConfig
+import org.apache.commons.net.ftp.FTPCmd
+import org.apache.commons.net.ftp.FTPFileEntryParser
+import org.apache.commons.net.ftp.parser.DefaultFTPFileEntryParserFactory
+import org.apache.commons.net.ftp.parser.MLSxEntryParser
+import org.apache.commons.net.ftp.parser.ParserInitializationException
+import java.io.IOException
+
+/**
+ * Lists directories over a data connection that is parsed while it's being read.
+ * [initiateListParsing] downloads the whole listing before the first entry is parsed.
+ */
+class StreamingFTPClient : FTPClient() {
+
+    /**
+     * Sends MLSD, or LIST if the server doesn't support it. Returns null if the server
+     * refused to open the data connection, e.g. because [path] doesn't exist.
+     */
+    internal fun openListing(path: String): FTPListing? {
+        val isMachineReadable = hasFeature(FTPCmd.MLSD)
+        // The control connection is busy once the data connection is open, so ask for SYST first
+        val parser = if (isMachineReadable) MLSxEntryParser.getInstance() else entryParser()
+        val socket = if (isMachineReadable) {
+            _openDataConnection_(FTPCmd.MLSD, path)
+        } else {
+            _openDataConnection_(FTPCmd.LIST, getListArguments(path))
+        } ?: return null
+        return FTPListing(this, socket, parser)
+    }
+
+    private fun entryParser(): FTPFileEntryParser {
+        val type = try {
+            systemType
+        } catch (e: IOException) {
+            FTPClientConfig.SYST_UNIX
+        }
+        return try {
+            DefaultFTPFileEntryParserFactory().createFileEntryParser(type)
+        } catch (e: ParserInitializationException) {
+            DefaultFTPFileEntryParserFactory().createFileEntryParser(FTPClientConfig.SYST_UNIX)
+        }
+    }
+}
\ No newline at end of file
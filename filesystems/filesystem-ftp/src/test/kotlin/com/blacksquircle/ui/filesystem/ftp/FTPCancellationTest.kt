@@ -0,0 +1,157 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.ftp
+
+import com.blacksquircle.ui.filesystem.base.model.AuthMethod
+import com.blacksquircle.ui.filesystem.base.model.FileModel
+import com.blacksquircle.ui.filesystem.base.model.FileParams
+import com.blacksquircle.ui.filesystem.base.model.ServerConfig
+import com.blacksquircle.ui.filesystem.base.model.ServerType
+import com.blacksquircle.ui.filesystem.base.utils.cancellable
+import com.blacksquircle.ui.filesystem.base.utils.useReader
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.apache.commons.net.ftp.FTPClient
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Before
+import org.junit.Test
+import org.mockftpserver.fake.FakeFtpServer
+import org.mockftpserver.fake.UserAccount
+import org.mockftpserver.fake.filesystem.DirectoryEntry
+import org.mockftpserver.fake.filesystem.FileEntry
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem
+
+class FTPCancellationTest {
+
+    private lateinit var server: FakeFtpServer
+    private lateinit var serverConfig: ServerConfig
+    private val clientPool = FTPClientPool()
+    private lateinit var filesystem: FTPFilesystem
+
+    @Before
+    fun setup() {
+        val fileSystem = UnixFakeFileSystem().apply {
+            add(DirectoryEntry("/"))
+            add(FileEntry("/$LARGE_FILE").apply { setContents(ByteArray(LARGE_FILE_SIZE) { 'a'.code.toByte() }) })
+            add(FileEntry("/$SMALL_FILE", SMALL_TEXT))
+        }
+        server = FakeFtpServer().apply {
+            serverControlPort = 0
+            addUserAccount(UserAccount(USERNAME, PASSWORD, "/"))
+            this.fileSystem = fileSystem
+            start()
+        }
+        while (!server.isStarted) {
+            // The control port is known once the server thread has bound it
+            Thread.sleep(10)
+        }
+        serverConfig = ServerConfig(
+            uuid = "12345",
+            scheme = ServerType.FTP,
+            name = "server",
+            address = "localhost",
+            port = server.serverControlPort,
+            initialDir = "/",
+            authMethod = AuthMethod.PASSWORD,
+            username = USERNAME,
+            password = PASSWORD,
+            keyId = null,
+            passphrase = null,
+            protectData = false,
+        )
+        filesystem = FTPFilesystem(serverConfig, clientPool)
+    }
+
+    @After
+    fun cleanup() {
+        clientPool.evict(serverConfig.uuid)
+        server.stop()
+    }
+
+    @Test
+    fun `When download is cancelled midway Then discard the client`() = runBlocking {
+        // Given
+        val started = CompletableDeferred<FTPClient>()
+        val job = launch(Dispatchers.Default) {
+            cancellable {
+                clientPool.use(serverConfig) { ftpClient ->
+                    ftpClient.retrieveFileStream("/$LARGE_FILE").use { inputStream ->
+                        val buffer = ByteArray(BUFFER_SIZE)
+                        started.complete(ftpClient)
+                        while (inputStream.read(buffer) >= 0) {
+                            Thread.sleep(READ_DELAY)
+                        }
+                    }
+                }
+            }
+        }
+        val ftpClient = started.await()
+
+        // When
+        withTimeout(TIMEOUT) { job.cancelAndJoin() }
+
+        // Then
+        val reused = clientPool.acquire(serverConfig)
+        assertNotSame(ftpClient, reused)
+        clientPool.release(serverConfig, reused)
+    }
+
+    @Test
+    fun `When reader is cancelled midway Then next operations still work`() = runBlocking {
+        // Given
+        val largeFile = FileModel("ftp:///$LARGE_FILE", serverConfig.uuid)
+        val smallFile = FileModel("ftp:///$SMALL_FILE", serverConfig.uuid)
+        val started = CompletableDeferred<Unit>()
+        val job = launch(Dispatchers.Default) {
+            filesystem.useReader(largeFile, FileParams()) { reader ->
+                val buffer = CharArray(BUFFER_SIZE)
+                started.complete(Unit)
+                while (reader.read(buffer) >= 0) {
+                    Thread.sleep(READ_DELAY)
+                }
+            }
+        }
+        started.await()
+
+        // When
+        withTimeout(TIMEOUT) { job.cancelAndJoin() }
+
+        // Then
+        val root = FileModel("ftp:///", serverConfig.uuid, isDirectory = true)
+        val names = filesystem.listFiles(root).map(FileModel::name).sorted()
+        assertEquals(listOf(LARGE_FILE, SMALL_FILE), names)
+        assertEquals(SMALL_TEXT, filesystem.loadFile(smallFile, FileParams()))
+    }
+
+    companion object {
+        private const val USERNAME = "user"
+        private const val PASSWORD = "password"
+        private const val LARGE_FILE = "large.txt"
+        private const val LARGE_FILE_SIZE = 16 * 1024 * 1024
+        private const val SMALL_FILE = "small.txt"
+        private const val SMALL_TEXT = "Hello World!"
+        private const val BUFFER_SIZE = 8 * 1024
+        private const val READ_DELAY = 10L
+        private const val TIMEOUT = 5_000L
+    }
+}
\ No newline at end of file
@@ -0,0 +1,164 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.ftp
+
+import com.blacksquircle.ui.filesystem.base.Filesystem
+import com.blacksquircle.ui.filesystem.base.exception.FileNotFoundException
+import com.blacksquircle.ui.filesystem.base.model.AuthMethod
+import com.blacksquircle.ui.filesystem.base.model.FileModel
+import com.blacksquircle.ui.filesystem.base.model.ServerConfig
+import com.blacksquircle.ui.filesystem.base.model.ServerType
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.mockftpserver.fake.FakeFtpServer
+import org.mockftpserver.fake.UserAccount
+import org.mockftpserver.fake.filesystem.DirectoryEntry
+import org.mockftpserver.fake.filesystem.FileEntry
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem
+
+class FTPStreamFilesTest {
+
+    private lateinit var server: FakeFtpServer
+    private lateinit var serverConfig: ServerConfig
+    private val clientPool = FTPClientPool()
+    private lateinit var filesystem: FTPFilesystem
+
+    @Before
+    fun setup() {
+        val fileSystem = UnixFakeFileSystem().apply {
+            add(DirectoryEntry("/"))
+            add(DirectoryEntry("/$LARGE_FOLDER"))
+            add(DirectoryEntry("/$EMPTY_FOLDER"))
+            repeat(FILE_COUNT) { index ->
+                add(FileEntry("/$LARGE_FOLDER/file_$index.txt", "$index"))
+            }
+        }
+        server = FakeFtpServer().apply {
+            serverControlPort = 0
+            addUserAccount(UserAccount(USERNAME, PASSWORD, "/"))
+            this.fileSystem = fileSystem
+            start()
+        }
+        while (!server.isStarted) {
+            // The control port is known once the server thread has bound it
+            Thread.sleep(10)
+        }
+        serverConfig = ServerConfig(
+            uuid = "12345",
+            scheme = ServerType.FTP,
+            name = "server",
+            address = "localhost",
+            port = server.serverControlPort,
+            initialDir = "/",
+            authMethod = AuthMethod.PASSWORD,
+            username = USERNAME,
+            password = PASSWORD,
+            keyId = null,
+            passphrase = null,
+            protectData = false,
+        )
+        filesystem = FTPFilesystem(serverConfig, clientPool)
+    }
+
+    @After
+    fun cleanup() {
+        clientPool.evict(serverConfig.uuid)
+        server.stop()
+    }
+
+    @Test
+    fun `When listing large folder Then emit entries in chunks`() = runBlocking {
+        // Given
+        val parent = FileModel("ftp:///$LARGE_FOLDER", serverConfig.uuid, isDirectory = true)
+
+        // When
+        val chunks = filesystem.streamFiles(parent).toList()
+
+        // Then
+        val names = chunks.flatten().map(FileModel::name).toSet()
+        assertEquals(FILE_COUNT, names.size)
+        assertTrue(chunks.size > 1)
+        assertTrue(chunks.all { it.size <= Filesystem.CHUNK_SIZE })
+    }
+
+    @Test
+    fun `When listing empty folder Then emit empty chunk`() = runBlocking {
+        // Given
+        val parent = FileModel("ftp:///$EMPTY_FOLDER", serverConfig.uuid, isDirectory = true)
+
+        // When
+        val chunks = filesystem.streamFiles(parent).toList()
+
+        // Then
+        assertEquals(listOf(emptyList<FileModel>()), chunks)
+    }
+
+    @Test
+    fun `When listing completes Then keep the client`() = runBlocking {
+        // Given
+        val parent = FileModel("ftp:///$LARGE_FOLDER", serverConfig.uuid, isDirectory = true)
+        val ftpClient = clientPool.acquire(serverConfig)
+        clientPool.release(serverConfig, ftpClient)
+
+        // When
+        filesystem.streamFiles(parent).toList()
+
+        // Then
+        val reused = clientPool.acquire(serverConfig)
+        assertSame(ftpClient, reused)
+        clientPool.release(serverConfig, reused)
+    }
+
+    @Test
+    fun `When listing is abandoned after first chunk Then next listing still works`() = runBlocking {
+        // Given
+        val parent = FileModel("ftp:///$LARGE_FOLDER", serverConfig.uuid, isDirectory = true)
+
+        // When
+        val firstChunk = filesystem.streamFiles(parent).first()
+
+        // Then
+        assertTrue(firstChunk.isNotEmpty())
+        val names = filesystem.streamFiles(parent).toList().flatten()
+        assertEquals(FILE_COUNT, names.size)
+    }
+
+    @Test(expected = FileNotFoundException::class)
+    fun `When folder doesn't exist Then throw FileNotFoundException`() = runBlocking {
+        // Given
+        val parent = FileModel("ftp:///missing", serverConfig.uuid, isDirectory = true)
+
+        // When
+        filesystem.streamFiles(parent).toList()
+        Unit
+    }
+
+    companion object {
+        private const val USERNAME = "user"
+        private const val PASSWORD = "password"
+        private const val LARGE_FOLDER = "large"
+        private const val EMPTY_FOLDER = "empty"
+        private const val FILE_COUNT = 600
+    }
+}
\ No newline at end of file
@@ -21,7 +21,6 @@ plugins {
 dependencies {
 
     implementation(libs.apache.ftpclient)
-    implementation(libs.ibm.icu4j)
     implementation(libs.kotlinx.coroutines.core)
 
     api(project(":filesystems:filesystem-base"))
@@ -0,0 +1,99 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.ftps
+
+import com.blacksquircle.ui.filesystem.base.connection.ConnectionPool
+import com.blacksquircle.ui.filesystem.base.exception.AuthRequiredException
+import com.blacksquircle.ui.filesystem.base.exception.AuthenticationException
+import com.blacksquircle.ui.filesystem.base.exception.ConnectionException
+import com.blacksquircle.ui.filesystem.base.model.AuthMethod
+import com.blacksquircle.ui.filesystem.base.model.ServerConfig
+import com.blacksquircle.ui.filesystem.base.model.ServerType
+import org.apache.commons.net.ftp.FTP
+import org.apache.commons.net.ftp.FTPReply
+import org.apache.commons.net.ftp.FTPSClient
+import java.io.IOException
+import java.time.Duration
+
+/**
+ * Pools logged-in [FTPSClient] control connections, so the TLS handshake
+ * and login are paid once per connection rather than once per operation.
+ */
+class FTPSClientPool : ConnectionPool<StreamingFTPSClient>() {
+
+    override fun connect(serverConfig: ServerConfig): StreamingFTPSClient {
+        if (serverConfig.password == null) {
+            throw AuthRequiredException(AuthMethod.PASSWORD)
+        }
+        if (serverConfig.authMethod != AuthMethod.PASSWORD) {
+            throw UnsupportedOperationException()
+        }
+        val isImplicit = serverConfig.scheme == ServerType.FTPS
+        val ftpsClient = StreamingFTPSClient(isImplicit)
+        ftpsClient.connectTimeout = 10000
+        ftpsClient.setControlKeepAliveTimeout(Duration.ofSeconds(KEEP_ALIVE_TIMEOUT))
+        try {
+            ftpsClient.connect(serverConfig.address, serverConfig.port)
+            if (!FTPReply.isPositiveCompletion(ftpsClient.replyCode)) {
+                throw ConnectionException()
+            }
+            ftpsClient.enterLocalPassiveMode()
+            ftpsClient.login(serverConfig.username, serverConfig.password)
+            if (!FTPReply.isPositiveCompletion(ftpsClient.replyCode)) {
+                throw AuthenticationException(AuthMethod.PASSWORD)
+            }
+            // Data channels are encrypted only on request, as a new TLS session on them
+            // is rejected by servers that require the control session to be reused
+            if (serverConfig.protectData) {
+                ftpsClient.execPBSZ(0)
+                ftpsClient.execPROT("P")
+            }
+            // ASCII mode rewrites line breaks, offsets and sizes would no longer match
+            if (!ftpsClient.setFileType(FTP.BINARY_FILE_TYPE)) {
+                throw ConnectionException()
+            }
+            return ftpsClient
+        } catch (e: Exception) {
+            if (ftpsClient.isConnected) {
+                ftpsClient.disconnect()
+            }
+            throw e
+        }
+    }
+
+    override fun isAlive(connection: StreamingFTPSClient): Boolean {
+        return try {
+            connection.isConnected && connection.sendNoOp()
+        } catch (e: IOException) {
+            false
+        }
+    }
+
+    override fun disconnect(connection: StreamingFTPSClient) {
+        if (connection.isConnected) {
+            try {
+                connection.logout()
+            } finally {
+                connection.disconnect()
+            }
+        }
+    }
+
+    companion object {
+        private const val KEEP_ALIVE_TIMEOUT = 30L
+    }
+}
\ No newline at end of file
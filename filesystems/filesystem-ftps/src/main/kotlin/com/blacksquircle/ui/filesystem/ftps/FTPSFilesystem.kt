@@ -17,201 +17,345 @@
 package com.blacksquircle.ui.filesystem.ftps
 
 import com.blacksquircle.ui.filesystem.base.Filesystem
-import com.blacksquircle.ui.filesystem.base.exception.AuthRequiredException
-import com.blacksquircle.ui.filesystem.base.exception.AuthenticationException
-import com.blacksquircle.ui.filesystem.base.exception.ConnectionException
 import com.blacksquircle.ui.filesystem.base.exception.FileNotFoundException
 import com.blacksquircle.ui.filesystem.base.model.*
 import com.blacksquircle.ui.filesystem.base.utils.isValidFileName
+import com.blacksquircle.ui.filesystem.base.utils.onClose
+import com.blacksquircle.ui.filesystem.base.utils.openReader
 import com.blacksquircle.ui.filesystem.base.utils.plusFlag
-import com.ibm.icu.text.CharsetDetector
+import com.blacksquircle.ui.filesystem.base.utils.useWriter
 import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import org.apache.commons.net.ftp.FTPCmd
 import org.apache.commons.net.ftp.FTPFile
 import org.apache.commons.net.ftp.FTPReply
 import org.apache.commons.net.ftp.FTPSClient
 import java.io.File
-import java.util.*
+import java.io.InputStream
+import java.io.OutputStream
+import java.io.Reader
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
 
 class FTPSFilesystem(
     private val serverConfig: ServerConfig,
-    private val cacheDir: File,
-    isImplicit: Boolean,
+    private val clientPool: FTPSClientPool,
 ) : Filesystem {
 
-    private val ftpsClient = FTPSClient(isImplicit)
-    private val ftpsMapper = FTPSMapper()
-
-    init {
-        ftpsClient.connectTimeout = 10000
-    }
-
     override fun ping() {
-        try {
-            connect()
-        } finally {
-            disconnect()
-        }
+        clientPool.use(serverConfig) { }
     }
 
     override fun listFiles(parent: FileModel): List<FileModel> {
-        try {
-            connect()
+        return clientPool.use(serverConfig) { ftpsClient ->
             ftpsClient.changeWorkingDirectory(parent.path)
             if (!FTPReply.isPositiveCompletion(ftpsClient.replyCode)) {
                 throw FileNotFoundException(parent.path)
             }
-            ftpsMapper.parent(parent)
-            return ftpsClient.listFiles(parent.path)
+            val ftpsMapper = FTPSMapper(parent)
+            ftpsClient.listFiles(parent.path)
                 .filter { it.name.isValidFileName() }
                 .map(ftpsMapper::toFileModel)
-        } finally {
-            disconnect()
         }
     }
 
-    override fun createFile(fileModel: FileModel) {
-        try {
-            connect()
-            if (fileModel.isDirectory) {
-                ftpsClient.makeDirectory(fileModel.path)
-            } else {
-                ftpsClient.storeFile(fileModel.path, "".byteInputStream())
-            }
-            if (!FTPReply.isPositiveCompletion(ftpsClient.replyCode)) {
-                throw FileNotFoundException(fileModel.path)
+    override fun streamFiles(parent: FileModel): Flow<List<FileModel>> {
+        return flow {
+            val ftpsClient = clientPool.acquire(serverConfig)
+            var isBroken = true
+            try {
+                ftpsClient.changeWorkingDirectory(parent.path)
+                if (!FTPReply.isPositiveCompletion(ftpsClient.replyCode)) {
+                    isBroken = false
+                    throw FileNotFoundException(parent.path)
+                }
+                val ftpsMapper = FTPSMapper(parent)
+                val listing = ftpsClient.openListing(parent.path)
+                if (listing == null) {
+                    isBroken = false
+                    throw FileNotFoundException(parent.path)
+                }
+                listing.use {
+                    var isEmpty = true
+                    while (true) {
+                        val files = listing.next(Filesystem.CHUNK_SIZE)
+                        if (files.isEmpty()) {
+                            break
+                        }
+                        val chunk = files
+                            .filter { it.name.isValidFileName() }
+                            .map(ftpsMapper::toFileModel)
+                        emit(chunk)
+                        isEmpty = false
+                    }
+                    if (isEmpty) {
+                        emit(emptyList())
+                    }
+                }
+                // Cancelled or failed listings leave the control connection mid-reply
+                isBroken = false
+            } finally {
+                clientPool.release(serverConfig, ftpsClient, isBroken)
             }
-        } finally {
-            disconnect()
+        }
+    }
+
+    override fun createFile(fileModel: FileModel) {
+        clientPool.use(serverConfig) { ftpsClient ->
+            ftpsClient.create(fileModel)
         }
     }
 
     override fun renameFile(source: FileModel, name: String) {
-        try {
-            connect()
+        clientPool.use(serverConfig) { ftpsClient ->
             val base = source.path.substringBeforeLast(File.separator)
             ftpsClient.rename(source.path, base + File.separator + name)
             if (!FTPReply.isPositiveCompletion(ftpsClient.replyCode)) {
                 throw FileNotFoundException(source.path)
             }
-        } finally {
-            disconnect()
         }
     }
 
     override fun deleteFile(fileModel: FileModel) {
-        try {
-            connect()
-            if (fileModel.isDirectory) {
-                ftpsClient.removeDirectory(fileModel.path)
-            } else {
+        if (!fileModel.isDirectory) {
+            clientPool.use(serverConfig) { ftpsClient ->
                 ftpsClient.deleteFile(fileModel.path)
+                if (!FTPReply.isPositiveCompletion(ftpsClient.replyCode)) {
+                    throw FileNotFoundException(fileModel.path)
+                }
             }
-            if (!FTPReply.isPositiveCompletion(ftpsClient.replyCode)) {
+            return
+        }
+
+        // Walk the tree level by level, listing sibling directories in parallel
+        val files = ConcurrentLinkedQueue<String>()
+        val levels = ArrayList<List<String>>()
+        var directories = listOf(fileModel.path)
+        while (directories.isNotEmpty()) {
+            levels += directories
+            val subdirectories = ConcurrentLinkedQueue<String>()
+            clientPool.forEachParallel(serverConfig, directories) { ftpsClient, path ->
+                ftpsClient.listFiles(path)
+                    .filter { it != null && it.name.isValidFileName() }
+                    .forEach { ftpFile ->
+                        val childPath = path + File.separator + ftpFile.name
+                        if (ftpFile.isDirectory) {
+                            subdirectories += childPath
+                        } else {
+                            files += childPath
+                        }
+                    }
+            }
+            directories = subdirectories.toList()
+        }
+
+        clientPool.forEachParallel(serverConfig, files) { ftpsClient, path ->
+            if (!ftpsClient.deleteFile(path)) {
+                throw FileNotFoundException(path)
+            }
+        }
+        for (level in levels.asReversed()) {
+            clientPool.forEachParallel(serverConfig, level) { ftpsClient, path ->
+                if (!ftpsClient.removeDirectory(path)) {
+                    throw FileNotFoundException(path)
+                }
+            }
+        }
+    }
+
+    /** One MLST, or SIZE and MDTM, per file instead of a listing of every parent */
+    override fun stat(fileModels: List<FileModel>): List<FileModel> {
+        val found = ConcurrentHashMap<String, FileModel>(fileModels.size)
+        clientPool.forEachParallel(serverConfig, fileModels) { ftpsClient, fileModel ->
+            ftpsClient.stat(fileModel)?.let { found[fileModel.fileUri] = it }
+        }
+        return fileModels.mapNotNull { found[it.fileUri] }
+    }
+
+    override fun deleteFiles(fileModels: List<FileModel>) {
+        val (directories, files) = fileModels.partition(FileModel::isDirectory)
+        clientPool.forEachParallel(serverConfig, files) { ftpsClient, fileModel ->
+            if (!ftpsClient.deleteFile(fileModel.path)) {
                 throw FileNotFoundException(fileModel.path)
             }
-        } finally {
-            disconnect()
+        }
+        directories.forEach(::deleteFile)
+    }
+
+    override fun createFiles(fileModels: List<FileModel>) {
+        clientPool.forEachParallel(serverConfig, fileModels) { ftpsClient, fileModel ->
+            ftpsClient.create(fileModel)
         }
     }
 
-    override fun copyFile(source: FileModel, dest: FileModel) {
+    override fun copyFile(source: FileModel, dest: FileModel): Flow<TransferProgress> {
         throw UnsupportedOperationException()
     }
 
-    override fun compressFiles(source: List<FileModel>, dest: FileModel): Flow<FileModel> {
+    override fun moveFile(source: FileModel, dest: FileModel) {
+        clientPool.use(serverConfig) { ftpsClient ->
+            ftpsClient.rename(source.path, dest.path + File.separator + source.name)
+            if (!FTPReply.isPositiveCompletion(ftpsClient.replyCode)) {
+                throw FileNotFoundException(source.path)
+            }
+        }
+    }
+
+    override fun compressFiles(source: List<FileModel>, dest: FileModel): Flow<TransferProgress> {
         throw UnsupportedOperationException()
     }
 
-    override fun extractFiles(source: FileModel, dest: FileModel): Flow<FileModel> {
+    override fun extractFiles(source: FileModel, dest: FileModel): Flow<TransferProgress> {
         throw UnsupportedOperationException()
     }
 
     override fun loadFile(fileModel: FileModel, fileParams: FileParams): String {
-        val tempFile = File(cacheDir, UUID.randomUUID().toString())
-        try {
-            connect()
+        return openReader(fileModel, fileParams).use(Reader::readText)
+    }
 
-            tempFile.createNewFile()
-            tempFile.outputStream().use {
-                ftpsClient.retrieveFile(fileModel.path, it)
-            }
-            if (!FTPReply.isPositiveCompletion(ftpsClient.replyCode)) {
-                throw FileNotFoundException(fileModel.path)
-            }
-            val charset = if (fileParams.chardet) {
+    override fun saveFile(fileModel: FileModel, text: String, fileParams: FileParams) {
+        useWriter(fileModel, fileParams) { it.write(text) }
+    }
+
+    override fun openInputStream(fileModel: FileModel): InputStream {
+        return openInputStream(fileModel, 0L)
+    }
+
+    override fun openInputStream(fileModel: FileModel, offset: Long): InputStream {
+        val ftpsClient = clientPool.acquire(serverConfig)
+        try {
+            ftpsClient.restartOffset = offset
+            val inputStream = ftpsClient.retrieveFileStream(fileModel.path)
+                ?: throw FileNotFoundException(fileModel.path)
+            return inputStream.onClose {
+                var isBroken = true
                 try {
-                    val charsetMatch = CharsetDetector()
-                        .setText(tempFile.inputStream())
-                        .detect()
-                    charset(charsetMatch.name)
-                } catch (e: Exception) {
-                    Charsets.UTF_8
+                    val isCompleted = ftpsClient.completePendingCommand()
+                    isBroken = false
+                    // 4xx means the transfer was cut short, e.g. only a part of the file was read
+                    if (!isCompleted && !FTPReply.isNegativeTransient(ftpsClient.replyCode)) {
+                        throw FileNotFoundException(fileModel.path)
+                    }
+                } finally {
+                    clientPool.release(serverConfig, ftpsClient, isBroken)
                 }
-            } else {
-                fileParams.charset
             }
-            return tempFile.readText(charset)
-        } finally {
-            tempFile.deleteRecursively()
-            disconnect()
+        } catch (e: Exception) {
+            clientPool.release(serverConfig, ftpsClient, isBroken = e !is FileNotFoundException)
+            throw e
         }
     }
 
-    override fun saveFile(fileModel: FileModel, text: String, fileParams: FileParams) {
-        val tempFile = File(cacheDir, UUID.randomUUID().toString())
+    override fun openOutputStream(fileModel: FileModel): OutputStream {
+        val ftpsClient = clientPool.acquire(serverConfig)
         try {
-            connect()
-
-            tempFile.createNewFile()
-            tempFile.writeText(text, fileParams.charset)
-            tempFile.inputStream().use {
-                ftpsClient.storeFile(fileModel.path, it)
-            }
-            if (!FTPReply.isPositiveCompletion(ftpsClient.replyCode)) {
-                throw FileNotFoundException(fileModel.path)
+            val outputStream = ftpsClient.storeFileStream(fileModel.path)
+                ?: throw FileNotFoundException(fileModel.path)
+            return outputStream.onClose {
+                var isBroken = true
+                try {
+                    val isCompleted = ftpsClient.completePendingCommand()
+                    isBroken = false
+                    if (!isCompleted) {
+                        throw FileNotFoundException(fileModel.path)
+                    }
+                } finally {
+                    clientPool.release(serverConfig, ftpsClient, isBroken)
+                }
             }
-        } finally {
-            tempFile.deleteRecursively()
-            disconnect()
+        } catch (e: Exception) {
+            clientPool.release(serverConfig, ftpsClient, isBroken = e !is FileNotFoundException)
+            throw e
         }
     }
 
-    private fun connect() {
-        if (serverConfig.password == null) {
-            throw AuthRequiredException(AuthMethod.PASSWORD)
+    override fun openAppendStream(fileModel: FileModel): OutputStream {
+        val ftpsClient = clientPool.acquire(serverConfig)
+        try {
+            val outputStream = ftpsClient.appendFileStream(fileModel.path)
+                ?: throw FileNotFoundException(fileModel.path)
+            return outputStream.onClose {
+                var isBroken = true
+                try {
+                    val isCompleted = ftpsClient.completePendingCommand()
+                    isBroken = false
+                    if (!isCompleted) {
+                        throw FileNotFoundException(fileModel.path)
+                    }
+                } finally {
+                    clientPool.release(serverConfig, ftpsClient, isBroken)
+                }
+            }
+        } catch (e: Exception) {
+            clientPool.release(serverConfig, ftpsClient, isBroken = e !is FileNotFoundException)
+            throw e
         }
-        if (ftpsClient.isConnected) {
-            return
+    }
+
+    private fun FTPSClient.create(fileModel: FileModel) {
+        if (fileModel.isDirectory) {
+            makeDirectories(fileModel.path)
+        } else if (!storeFile(fileModel.path, "".byteInputStream())) {
+            makeDirectories(fileModel.path.substringBeforeLast(File.separator))
+            storeFile(fileModel.path, "".byteInputStream())
         }
-        ftpsClient.connect(serverConfig.address, serverConfig.port)
-        if (!FTPReply.isPositiveCompletion(ftpsClient.replyCode)) {
-            throw ConnectionException()
+        if (!FTPReply.isPositiveCompletion(replyCode)) {
+            throw FileNotFoundException(fileModel.path)
         }
-        if (serverConfig.authMethod != AuthMethod.PASSWORD) {
-            throw UnsupportedOperationException()
+    }
+
+    /** Returns null if the file doesn't exist */
+    private fun FTPSClient.stat(fileModel: FileModel): FileModel? {
+        if (hasFeature(FTPCmd.MLST)) {
+            val ftpFile = mlistFile(fileModel.path)
+            if (ftpFile != null) {
+                val parent = FileModel(
+                    fileUri = fileModel.fileUri.substringBeforeLast(PATH_SEPARATOR),
+                    filesystemUuid = serverConfig.uuid,
+                    isDirectory = true,
+                )
+                // MLST names the file by the whole path it was asked for
+                return FTPSMapper(parent).toFileModel(ftpFile)
+                    .copy(fileUri = fileModel.fileUri, name = fileModel.name)
+            }
+            if (replyCode == FTPReply.FILE_UNAVAILABLE) {
+                return null
+            }
         }
-        ftpsClient.enterLocalPassiveMode()
-        ftpsClient.login(serverConfig.username, serverConfig.password)
-        if (!FTPReply.isPositiveCompletion(ftpsClient.replyCode)) {
-            throw AuthenticationException(AuthMethod.PASSWORD)
+        // Directories have no size, permissions are unknown without a listing
+        val size = getSize(fileModel.path)?.toLongOrNull()
+        val isDirectory = size == null && changeWorkingDirectory(fileModel.path)
+        if (size == null && !isDirectory) {
+            return null
         }
+        return FileModel(
+            fileUri = fileModel.fileUri,
+            filesystemUuid = serverConfig.uuid,
+            size = size ?: 0L,
+            lastModified = mdtmCalendar(fileModel.path)?.timeInMillis ?: 0L,
+            isDirectory = isDirectory,
+        )
     }
 
-    private fun disconnect() {
-        if (ftpsClient.isConnected) {
-            ftpsClient.logout()
-            ftpsClient.disconnect()
+    /** Tries the deepest directory first, so existing parents cost no extra round trips */
+    private fun FTPSClient.makeDirectories(path: String): Boolean {
+        if (path.isEmpty() || makeDirectory(path)) {
+            return true
+        }
+        val parent = path.substringBeforeLast(File.separator)
+        if (parent == path) {
+            return false
         }
+        makeDirectories(parent)
+        return makeDirectory(path)
     }
 
-    inner class FTPSMapper : Filesystem.Mapper<FTPFile> {
-
-        private var parent: FileModel? = null
+    inner class FTPSMapper(private val parent: FileModel) : Filesystem.Mapper<FTPFile> {
 
         @Suppress("KotlinConstantConditions")
         override fun toFileModel(fileObject: FTPFile): FileModel {
             return FileModel(
-                fileUri = parent?.fileUri + File.separator + fileObject.name,
+                fileUri = parent.fileUri + File.separator + fileObject.name,
                 filesystemUuid = serverConfig.uuid,
                 size = fileObject.size,
                 lastModified = fileObject.timestamp.timeInMillis,
@@ -253,10 +397,10 @@ class FTPSFilesystem(
         override fun toFileObject(fileModel: FileModel): FTPFile {
             throw UnsupportedOperationException()
         }
+    }
 
-        fun parent(parent: FileModel): FileModel {
-            this.parent = parent
-            return parent
-        }
+    companion object {
+        /** Server paths always use a slash, whatever the device's separator is */
+        private const val PATH_SEPARATOR = '/'
     }
 }
\ No newline at end of file
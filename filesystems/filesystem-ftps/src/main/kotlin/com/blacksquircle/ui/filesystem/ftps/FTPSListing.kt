@@ -0,0 +1,60 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.ftps
+
+import org.apache.commons.net.ftp.FTPClient
+import org.apache.commons.net.ftp.FTPFile
+import org.apache.commons.net.ftp.FTPFileEntryParser
+import java.io.BufferedReader
+import java.io.Closeable
+import java.io.IOException
+import java.io.InputStreamReader
+import java.net.Socket
+
+/** Entries of a directory, read from an open data connection as they arrive */
+internal class FTPSListing(
+    private val ftpClient: FTPClient,
+    private val socket: Socket,
+    private val parser: FTPFileEntryParser,
+) : Closeable {
+
+    private val reader = BufferedReader(
+        InputStreamReader(socket.getInputStream(), ftpClient.controlEncoding)
+    )
+
+    /** Returns at most [count] entries, an empty list once the listing is over */
+    fun next(count: Int): List<FTPFile> {
+        val files = ArrayList<FTPFile>(count)
+        while (files.size < count) {
+            val entry = parser.readNextEntry(reader) ?: break
+            parser.parseFTPEntry(entry)?.let(files::add)
+        }
+        return files
+    }
+
+    /** Closes the data connection and reads the final reply to the listing command */
+    override fun close() {
+        try {
+            reader.close()
+        } finally {
+            socket.close()
+        }
+        if (!ftpClient.completePendingCommand()) {
+            throw IOException(ftpClient.replyString)
+        }
+    }
+}
\ No newline at end of file
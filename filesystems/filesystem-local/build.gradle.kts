@@ -20,9 +20,10 @@ plugins {
 
 dependencies {
 
-    implementation(libs.ibm.icu4j)
     implementation(libs.kotlinx.coroutines.core)
     implementation(libs.lingala.zip4j)
 
     api(project(":filesystems:filesystem-base"))
+
+    testImplementation(libs.test.junit)
 }
\ No newline at end of file
@@ -0,0 +1,298 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.local
+
+import com.blacksquircle.ui.filesystem.base.Filesystem
+import com.blacksquircle.ui.filesystem.base.exception.*
+import com.blacksquircle.ui.filesystem.base.model.*
+import com.blacksquircle.ui.filesystem.base.utils.endsWith
+import com.blacksquircle.ui.filesystem.base.utils.onClose
+import com.blacksquircle.ui.filesystem.base.utils.openReader
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import net.lingala.zip4j.ZipFile
+import net.lingala.zip4j.model.FileHeader
+import net.lingala.zip4j.model.enums.CompressionMethod
+import java.io.File
+import java.io.FilterInputStream
+import java.io.InputStream
+import java.io.OutputStream
+import java.io.RandomAccessFile
+import java.io.Reader
+import java.nio.channels.Channels
+import java.util.zip.Inflater
+import java.util.zip.InflaterInputStream
+
+/**
+ * Read-only view of a zip archive. The central directory is read once and
+ * kept as an index, so listing a folder never touches the archive, and
+ * opening a file inflates only that entry.
+ */
+class ArchiveFilesystem(private val archive: File) : Filesystem {
+
+    /** zip4j only supports these formats */
+    private val supportedArchives = arrayOf(".zip", ".jar")
+
+    private val uuid = createUuid(archive)
+
+    @Volatile
+    private var index: Index? = null
+
+    override fun ping() {
+        index()
+    }
+
+    override fun listFiles(parent: FileModel): List<FileModel> {
+        val index = index()
+        return index.children[parent.path] ?: if (index.headers.containsKey(parent.path)) {
+            throw DirectoryExpectedException()
+        } else {
+            throw FileNotFoundException(parent.path)
+        }
+    }
+
+    override fun streamFiles(parent: FileModel): Flow<List<FileModel>> {
+        return flow {
+            val children = listFiles(parent)
+            if (children.isEmpty()) {
+                emit(emptyList())
+            }
+            for (chunk in children.chunked(Filesystem.CHUNK_SIZE)) {
+                emit(chunk)
+            }
+        }
+    }
+
+    override fun createFile(fileModel: FileModel) {
+        throw UnsupportedOperationException()
+    }
+
+    override fun renameFile(source: FileModel, name: String) {
+        throw UnsupportedOperationException()
+    }
+
+    override fun deleteFile(fileModel: FileModel) {
+        throw UnsupportedOperationException()
+    }
+
+    override fun copyFile(source: FileModel, dest: FileModel): Flow<TransferProgress> {
+        throw UnsupportedOperationException()
+    }
+
+    override fun moveFile(source: FileModel, dest: FileModel) {
+        throw UnsupportedOperationException()
+    }
+
+    override fun compressFiles(source: List<FileModel>, dest: FileModel): Flow<TransferProgress> {
+        throw UnsupportedOperationException()
+    }
+
+    override fun extractFiles(source: FileModel, dest: FileModel): Flow<TransferProgress> {
+        throw UnsupportedOperationException()
+    }
+
+    override fun loadFile(fileModel: FileModel, fileParams: FileParams): String {
+        return openReader(fileModel, fileParams).use(Reader::readText)
+    }
+
+    override fun saveFile(fileModel: FileModel, text: String, fileParams: FileParams) {
+        throw UnsupportedOperationException()
+    }
+
+    override fun openInputStream(fileModel: FileModel): InputStream {
+        val fileHeader = index().headers[fileModel.path]
+            ?: throw FileNotFoundException(fileModel.path)
+        if (fileHeader.isEncrypted) {
+            throw EncryptedArchiveException(archive.path)
+        }
+        val compressionMethod = fileHeader.compressionMethod
+        if (compressionMethod != CompressionMethod.STORE &&
+            compressionMethod != CompressionMethod.DEFLATE
+        ) {
+            throw UnsupportedArchiveException(archive.path)
+        }
+
+        val randomAccessFile = RandomAccessFile(archive, "r")
+        try {
+            // Name and extra field lengths of the local header may differ from the central one
+            randomAccessFile.seek(fileHeader.offsetLocalHeader + 26)
+            val nameLength = randomAccessFile.readUnsignedShortLE()
+            val extraLength = randomAccessFile.readUnsignedShortLE()
+            val channel = randomAccessFile.channel
+                .position(fileHeader.offsetLocalHeader + 30 + nameLength + extraLength)
+            val inputStream = EntryInputStream(
+                inputStream = Channels.newInputStream(channel).buffered(BUFFER_SIZE),
+                remaining = fileHeader.compressedSize,
+            )
+            if (compressionMethod == CompressionMethod.STORE) {
+                return inputStream
+            }
+            val inflater = Inflater(true)
+            return InflaterInputStream(inputStream, inflater, BUFFER_SIZE)
+                .onClose(inflater::end)
+        } catch (e: Exception) {
+            randomAccessFile.close()
+            throw e
+        }
+    }
+
+    override fun openOutputStream(fileModel: FileModel): OutputStream {
+        throw UnsupportedOperationException()
+    }
+
+    /** Re-reads the central directory only if the archive has changed on disk */
+    private fun index(): Index {
+        val cached = index
+        if (cached != null && cached.isValid()) {
+            return cached
+        }
+        return synchronized(this) {
+            index?.takeIf(Index::isValid) ?: readIndex().also { index = it }
+        }
+    }
+
+    private fun readIndex(): Index {
+        if (!archive.exists()) {
+            throw FileNotFoundException(archive.path)
+        }
+        if (!archive.name.endsWith(supportedArchives)) {
+            throw UnsupportedArchiveException(archive.path)
+        }
+        val length = archive.length()
+        val lastModified = archive.lastModified()
+        val fileHeaders = ZipFile(archive).use { archiveFile ->
+            when {
+                archiveFile.isValidZipFile -> archiveFile.fileHeaders
+                archiveFile.isSplitArchive -> throw SplitArchiveException(archive.path)
+                else -> throw InvalidArchiveException(archive.path)
+            }
+        }
+
+        // Some archives have no entries for folders, so they're added on the way up
+        val entries = HashMap<String, FileModel>(fileHeaders.size)
+        val headers = HashMap<String, FileHeader>(fileHeaders.size)
+        for (fileHeader in fileHeaders) {
+            val path = File.separator + fileHeader.fileName
+                .replace('\\', '/')
+                .trim('/')
+            if (path == File.separator) {
+                continue
+            }
+            entries[path] = toFileModel(path, fileHeader)
+            if (!fileHeader.isDirectory) {
+                headers[path] = fileHeader
+            }
+            var parent = path.parentPath()
+            while (parent != File.separator && !entries.containsKey(parent)) {
+                entries[parent] = FileModel(
+                    fileUri = ARCHIVE_SCHEME + parent,
+                    filesystemUuid = uuid,
+                    isDirectory = true,
+                    permission = Permission.OWNER_READ,
+                )
+                parent = parent.parentPath()
+            }
+        }
+        val children = entries.values
+            .filter(FileModel::isDirectory)
+            .associateTo(HashMap()) { it.path to emptyList<FileModel>() }
+        children[File.separator] = emptyList()
+        children += entries.values.groupBy { it.path.parentPath() }
+        return Index(length, lastModified, headers, children)
+    }
+
+    private fun toFileModel(path: String, fileHeader: FileHeader): FileModel {
+        return FileModel(
+            fileUri = ARCHIVE_SCHEME + path,
+            filesystemUuid = uuid,
+            size = fileHeader.uncompressedSize,
+            lastModified = fileHeader.lastModifiedTimeEpoch,
+            isDirectory = fileHeader.isDirectory,
+            permission = Permission.OWNER_READ,
+        )
+    }
+
+    private fun String.parentPath(): String {
+        return substringBeforeLast(File.separator).ifEmpty(File::separator)
+    }
+
+    private fun RandomAccessFile.readUnsignedShortLE(): Int {
+        return read() or (read() shl 8)
+    }
+
+    private inner class Index(
+        val length: Long,
+        val lastModified: Long,
+        val headers: Map<String, FileHeader>,
+        val children: Map<String, List<FileModel>>,
+    ) {
+        fun isValid(): Boolean {
+            return archive.length() == length && archive.lastModified() == lastModified
+        }
+    }
+
+    /** Stops at the end of the entry's compressed data */
+    private class EntryInputStream(
+        inputStream: InputStream,
+        private var remaining: Long,
+    ) : FilterInputStream(inputStream) {
+
+        override fun read(): Int {
+            if (remaining <= 0) {
+                return -1
+            }
+            val byte = super.read()
+            if (byte >= 0) {
+                remaining--
+            }
+            return byte
+        }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            if (remaining <= 0) {
+                return -1
+            }
+            val count = super.read(b, off, minOf(len.toLong(), remaining).toInt())
+            if (count > 0) {
+                remaining -= count
+            }
+            return count
+        }
+
+        override fun skip(n: Long): Long {
+            val count = super.skip(minOf(n, remaining))
+            remaining -= count
+            return count
+        }
+
+        override fun available(): Int {
+            return minOf(super.available().toLong(), remaining).toInt()
+        }
+
+        override fun markSupported() = false
+    }
+
+    companion object {
+
+        const val ARCHIVE_UUID = "archive:"
+        const val ARCHIVE_SCHEME = "archive://"
+
+        private const val BUFFER_SIZE = 64 * 1024
+
+        fun createUuid(archive: File): String = ARCHIVE_UUID + archive.path
+    }
+}
\ No newline at end of file
@@ -0,0 +1,142 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.local
+
+import com.blacksquircle.ui.filesystem.base.exception.FileAlreadyExistsException
+import com.blacksquircle.ui.filesystem.base.model.TransferProgress
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.flow.conflate
+import kotlinx.coroutines.launch
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.coroutines.coroutineContext
+
+/**
+ * Copies a file tree with a bounded pool of workers, so small files don't wait
+ * on each other's open/close latency. Large files are copied with
+ * [java.nio.channels.FileChannel.transferTo], which avoids user-space buffers.
+ */
+internal object FileCopier {
+
+    private const val WORKER_COUNT = 4
+    private const val LARGE_FILE = 1024 * 1024L
+    private const val CHUNK_SIZE = 8 * 1024 * 1024L
+    private const val BUFFER_SIZE = 64 * 1024
+
+    fun copy(source: File, dest: File): Flow<TransferProgress> = channelFlow {
+        val directories = ArrayList<Pair<File, File>>()
+        val files = ArrayList<Pair<File, File>>()
+        var totalBytes = 0L
+        for (file in source.walkTopDown()) {
+            val target = File(dest, file.toRelativeString(source))
+            if (file.isDirectory) {
+                if (!target.mkdirs() && !target.isDirectory) {
+                    throw IOException("Unable to create directory: ${target.path}")
+                }
+                directories += file to target
+            } else {
+                files += file to target
+                totalBytes += file.length()
+            }
+        }
+
+        val fileCount = AtomicInteger()
+        val bytesCount = AtomicLong()
+        val queue = Channel<Pair<File, File>>(Channel.UNLIMITED)
+        files.forEach(queue::trySend)
+        queue.close()
+
+        coroutineScope {
+            repeat(WORKER_COUNT) {
+                launch(Dispatchers.IO) {
+                    for ((file, target) in queue) {
+                        val unreported = copyFile(file, target) { bytes ->
+                            send(
+                                TransferProgress(
+                                    path = file.path,
+                                    fileCount = fileCount.get(),
+                                    totalFiles = files.size,
+                                    bytesCount = bytesCount.addAndGet(bytes),
+                                    totalBytes = totalBytes,
+                                )
+                            )
+                        }
+                        send(
+                            TransferProgress(
+                                path = file.path,
+                                fileCount = fileCount.incrementAndGet(),
+                                totalFiles = files.size,
+                                bytesCount = bytesCount.addAndGet(unreported),
+                                totalBytes = totalBytes,
+                            )
+                        )
+                    }
+                }
+            }
+        }
+
+        // Children were written after their parents, so restore deepest first
+        for ((directory, target) in directories.asReversed()) {
+            target.setLastModified(directory.lastModified())
+        }
+    }.conflate()
+
+    /** Reports progress of large files only, returns the number of bytes not reported yet */
+    private suspend inline fun copyFile(
+        source: File,
+        dest: File,
+        onProgress: (Long) -> Unit,
+    ): Long {
+        if (dest.exists()) {
+            throw FileAlreadyExistsException(dest.path)
+        }
+        var unreported = 0L
+        FileInputStream(source).use { input ->
+            FileOutputStream(dest).use { output ->
+                if (source.length() < LARGE_FILE) {
+                    unreported = input.copyTo(output, BUFFER_SIZE)
+                } else {
+                    val inputChannel = input.channel
+                    val outputChannel = output.channel
+                    val size = inputChannel.size()
+                    var position = 0L
+                    while (position < size) {
+                        coroutineContext.ensureActive()
+                        val count = minOf(CHUNK_SIZE, size - position)
+                        val bytes = inputChannel.transferTo(position, count, outputChannel)
+                        if (bytes <= 0) {
+                            break // source was truncated while copying
+                        }
+                        position += bytes
+                        onProgress(bytes)
+                    }
+                }
+            }
+        }
+        dest.setLastModified(source.lastModified())
+        return unreported
+    }
+}
\ No newline at end of file
@@ -17,17 +17,37 @@
 package com.blacksquircle.ui.filesystem.local
 
 import com.blacksquircle.ui.filesystem.base.Filesystem
+import com.blacksquircle.ui.filesystem.base.charset.EncodingDetector
 import com.blacksquircle.ui.filesystem.base.exception.*
 import com.blacksquircle.ui.filesystem.base.model.*
+import com.blacksquircle.ui.filesystem.base.utils.AtomicFileOutputStream
 import com.blacksquircle.ui.filesystem.base.utils.endsWith
 import com.blacksquircle.ui.filesystem.base.utils.plusFlag
-import com.ibm.icu.text.CharsetDetector
+import com.blacksquircle.ui.filesystem.base.utils.useWriter
 import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.currentCoroutineContext
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.ensureActive
 import kotlinx.coroutines.flow.Flow
-import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.FlowCollector
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
 import net.lingala.zip4j.ZipFile
 import net.lingala.zip4j.exception.ZipException
+import net.lingala.zip4j.progress.ProgressMonitor
 import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.InterruptedIOException
+import java.io.OutputStream
+import java.io.RandomAccessFile
+import java.nio.charset.Charset
+import java.util.concurrent.ConcurrentLinkedQueue
 
 class LocalFilesystem : Filesystem {
 
@@ -44,10 +64,31 @@ class LocalFilesystem : Filesystem {
         if (!file.exists()) {
             throw FileNotFoundException(file.path)
         }
+        if (NioFileLister.isAvailable) {
+            return NioFileLister.useChildren(file) { it.toList() }
+        }
         return file.listFiles().orEmpty()
             .map(::toFileModel)
     }
 
+    override fun streamFiles(parent: FileModel): Flow<List<FileModel>> {
+        return flow {
+            val file = toFileObject(parent)
+            if (!file.isDirectory) {
+                throw DirectoryExpectedException()
+            }
+            if (!file.exists()) {
+                throw FileNotFoundException(file.path)
+            }
+            if (NioFileLister.isAvailable) {
+                NioFileLister.useChildren(file) { emitChunks(it) }
+            } else {
+                val children = file.listFiles().orEmpty()
+                emitChunks(children.asSequence().map(::toFileModel))
+            }
+        }
+    }
+
     override fun createFile(fileModel: FileModel) {
         val file = toFileObject(fileModel)
         if (file.exists()) {
@@ -104,7 +145,24 @@ class LocalFilesystem : Filesystem {
         file.deleteRecursively()
     }
 
-    override fun copyFile(source: FileModel, dest: FileModel) {
+    override fun stat(fileModels: List<FileModel>): List<FileModel> {
+        return fileModels.mapNotNull { fileModel ->
+            toFileObject(fileModel)
+                .takeIf(File::exists)
+                ?.let(::toFileModel)
+        }
+    }
+
+    /** Each file is an independent syscall, so the batch is spread over a few IO threads */
+    override fun deleteFiles(fileModels: List<FileModel>) {
+        forEachParallel(fileModels, ::deleteFile)
+    }
+
+    override fun createFiles(fileModels: List<FileModel>) {
+        forEachParallel(fileModels, ::createFile)
+    }
+
+    override fun copyFile(source: FileModel, dest: FileModel): Flow<TransferProgress> {
         val directory = toFileObject(dest)
         val sourceFile = toFileObject(source)
         val destFile = File(directory, sourceFile.name)
@@ -118,79 +176,161 @@ class LocalFilesystem : Filesystem {
         val sourcePath = sourceFile.canonicalPath
         val destPath = destFile.canonicalPath
         if (destPath.startsWith(sourcePath + File.separator)) {
-            // Cannot copy a folder into itself
-            throw UnsupportedOperationException()
+            throw RecursiveTransferException(source.path)
         }
-        sourceFile.copyRecursively(destFile, overwrite = false)
+        return FileCopier.copy(sourceFile, destFile)
     }
 
-    // TODO: Use ProgressMonitor
-    override fun compressFiles(source: List<FileModel>, dest: FileModel): Flow<FileModel> {
-        return callbackFlow {
-            val destFile = toFileObject(dest)
-            val archiveFile = ZipFile(destFile)
-            invokeOnClose {
-                archiveFile.progressMonitor.isCancelAllTasks = true
+    override fun moveFile(source: FileModel, dest: FileModel) {
+        val directory = toFileObject(dest)
+        val sourceFile = toFileObject(source)
+        val destFile = File(directory, sourceFile.name)
+        if (!sourceFile.exists()) {
+            throw FileNotFoundException(sourceFile.path)
+        }
+        if (destFile.exists()) {
+            throw FileAlreadyExistsException(dest.path)
+        }
+
+        val sourcePath = sourceFile.canonicalPath
+        val destPath = destFile.canonicalPath
+        if (destPath.startsWith(sourcePath + File.separator)) {
+            throw RecursiveTransferException(source.path)
+        }
+        // rename(2) is atomic within a mount point, but fails across them
+        if (!sourceFile.renameTo(destFile)) {
+            try {
+                copyInterruptibly(sourceFile, destFile)
+            } catch (e: Exception) {
+                destFile.deleteRecursively()
+                throw e
             }
+            sourceFile.deleteRecursively()
+        }
+    }
+
+    override fun compressFiles(source: List<FileModel>, dest: FileModel): Flow<TransferProgress> {
+        return flow {
+            val destFile = toFileObject(dest)
             if (destFile.exists()) {
                 throw FileAlreadyExistsException(destFile.absolutePath)
             }
-            for (fileModel in source) {
+            val sourceFiles = source.map { fileModel ->
                 val sourceFile = toFileObject(fileModel)
                 if (!sourceFile.exists()) {
                     throw FileNotFoundException(sourceFile.path)
                 }
-                try {
+                sourceFile
+            }
+            if (WORKER_COUNT > 1 && sourceFiles.any(File::isDirectory)) {
+                emitAll(ParallelZipWriter(WORKER_COUNT).write(sourceFiles, destFile))
+                return@flow
+            }
+
+            val sizes = sourceFiles.map { sourceFile ->
+                sourceFile.walkTopDown()
+                    .filter(File::isFile)
+                    .map(File::length)
+                    .toList()
+            }
+            val totalFiles = sizes.sumOf { it.size }
+            val totalBytes = sizes.sumOf { it.sum() }
+            var fileCount = 0
+            var bytesCount = 0L
+            ZipFile(destFile).use { archiveFile ->
+                archiveFile.isRunInThread = true
+                sourceFiles.forEachIndexed { index, sourceFile ->
                     if (sourceFile.isDirectory) {
                         archiveFile.addFolder(sourceFile)
                     } else {
                         archiveFile.addFile(sourceFile)
                     }
-                } catch (e: ZipException) {
-                    if (e.type == ZipException.Type.TASK_CANCELLED_EXCEPTION) {
-                        throw CancellationException()
-                    } else {
-                        throw e
+                    var fileName: String? = null
+                    var entryCount = 0
+                    archiveFile.awaitTask { progressMonitor ->
+                        if (progressMonitor.fileName != fileName) {
+                            fileName = progressMonitor.fileName
+                            entryCount++
+                        }
+                        val progress = TransferProgress(
+                            path = fileName ?: sourceFile.path,
+                            fileCount = fileCount + maxOf(entryCount - 1, 0),
+                            totalFiles = totalFiles,
+                            bytesCount = bytesCount + progressMonitor.workCompleted,
+                            totalBytes = totalBytes,
+                        )
+                        emit(progress)
                     }
+                    fileCount += sizes[index].size
+                    bytesCount += sizes[index].sum()
+                    val progress = TransferProgress(
+                        path = sourceFile.path,
+                        fileCount = fileCount,
+                        totalFiles = totalFiles,
+                        bytesCount = bytesCount,
+                        totalBytes = totalBytes,
+                    )
+                    emit(progress)
                 }
-                send(fileModel)
             }
-            close()
         }
     }
 
-    // TODO: Use ProgressMonitor
-    override fun extractFiles(source: FileModel, dest: FileModel): Flow<FileModel> {
-        return callbackFlow {
+    override fun extractFiles(source: FileModel, dest: FileModel): Flow<TransferProgress> {
+        return flow {
             val sourceFile = toFileObject(source)
-            val archiveFile = ZipFile(sourceFile)
-            invokeOnClose {
-                archiveFile.progressMonitor.isCancelAllTasks = true
-            }
             if (!sourceFile.exists()) {
                 throw FileNotFoundException(sourceFile.path)
             }
             if (!sourceFile.name.endsWith(supportedArchives)) {
                 throw UnsupportedArchiveException(source.path)
             }
-            when {
-                archiveFile.isValidZipFile -> {
-                    try {
-                        archiveFile.extractAll(dest.path)
-                    } catch (e: ZipException) {
-                        if (e.type == ZipException.Type.TASK_CANCELLED_EXCEPTION) {
-                            throw CancellationException()
-                        } else {
-                            throw e
-                        }
+            ZipFile(sourceFile).use { archiveFile ->
+                when {
+                    archiveFile.isValidZipFile -> Unit
+                    archiveFile.isEncrypted -> throw EncryptedArchiveException(source.path)
+                    archiveFile.isSplitArchive -> throw SplitArchiveException(source.path)
+                    else -> throw InvalidArchiveException(source.path)
+                }
+
+                val fileHeaders = archiveFile.fileHeaders
+                val totalFiles = fileHeaders.count { !it.isDirectory }
+                val totalBytes = fileHeaders.sumOf { it.uncompressedSize }
+                var fileCount = 0
+                var bytesCount = 0L
+                for (fileHeader in fileHeaders) {
+                    currentCoroutineContext().ensureActive()
+                    val path = dest.path + File.separator + fileHeader.fileName
+
+                    // Polling only pays off for entries that take a while to inflate
+                    archiveFile.isRunInThread = fileHeader.uncompressedSize >= LARGE_ENTRY
+                    archiveFile.extractFile(fileHeader, dest.path)
+                    archiveFile.awaitTask { progressMonitor ->
+                        val progress = TransferProgress(
+                            path = path,
+                            fileCount = fileCount,
+                            totalFiles = totalFiles,
+                            bytesCount = bytesCount + progressMonitor.workCompleted,
+                            totalBytes = totalBytes,
+                        )
+                        emit(progress)
+                    }
+                    if (fileHeader.isDirectory) {
+                        continue
                     }
-                    send(source)
+
+                    fileCount++
+                    bytesCount += fileHeader.uncompressedSize
+                    val progress = TransferProgress(
+                        path = path,
+                        fileCount = fileCount,
+                        totalFiles = totalFiles,
+                        bytesCount = bytesCount,
+                        totalBytes = totalBytes,
+                    )
+                    emit(progress)
                 }
-                archiveFile.isEncrypted -> throw EncryptedArchiveException(source.path)
-                archiveFile.isSplitArchive -> throw SplitArchiveException(source.path)
-                else -> throw InvalidArchiveException(source.path)
             }
-            close() // FIXME send() вызывается только 1 раз
         }
     }
 
@@ -200,34 +340,148 @@ class LocalFilesystem : Filesystem {
             throw FileNotFoundException(file.path)
         }
         val charset = if (fileParams.chardet) {
-            try {
-                val charsetMatch = CharsetDetector()
-                    .setText(file.inputStream())
-                    .detect()
-                charset(charsetMatch.name)
-            } catch (e: Exception) {
-                Charsets.UTF_8
-            }
+            detectCharset(file)
         } else {
             fileParams.charset
         }
         return file.readText(charset)
     }
 
+    /** Samples the middle and the tail of the file too, the stream is left untouched */
+    override fun detectCharset(fileModel: FileModel, inputStream: InputStream): Charset {
+        return detectCharset(File(fileModel.path))
+    }
+
     override fun saveFile(fileModel: FileModel, text: String, fileParams: FileParams) {
-        val file = File(fileModel.path)
+        useWriter(fileModel, fileParams) { it.write(text) }
+    }
+
+    override fun openInputStream(fileModel: FileModel): InputStream {
+        val file = toFileObject(fileModel)
         if (!file.exists()) {
-            val parentFile = file.parentFile!!
-            if (!parentFile.exists()) {
-                parentFile.mkdirs()
+            throw FileNotFoundException(file.path)
+        }
+        return file.inputStream()
+    }
+
+    override fun openInputStream(fileModel: FileModel, offset: Long): InputStream {
+        val file = toFileObject(fileModel)
+        if (!file.exists()) {
+            throw FileNotFoundException(file.path)
+        }
+        val inputStream = FileInputStream(file)
+        inputStream.channel.position(offset)
+        return inputStream
+    }
+
+    override fun openOutputStream(fileModel: FileModel): OutputStream {
+        val file = toFileObject(fileModel)
+        val parentFile = file.parentFile!!
+        if (!parentFile.exists()) {
+            parentFile.mkdirs()
+        }
+        return AtomicFileOutputStream(file)
+    }
+
+    override fun openAppendStream(fileModel: FileModel): OutputStream {
+        val file = toFileObject(fileModel)
+        if (!file.exists()) {
+            throw FileNotFoundException(file.path)
+        }
+        return FileOutputStream(file, true)
+    }
+
+    /**
+     * Runs [action] on at most [WORKER_COUNT] coroutines of the IO dispatcher, blocking
+     * the caller until all items are done. The first failure cancels the other workers,
+     * interrupting the caller cancels all of them.
+     */
+    private fun <T> forEachParallel(items: List<T>, action: (T) -> Unit) {
+        if (items.size < 2) {
+            items.forEach(action)
+            return
+        }
+        val queue = ConcurrentLinkedQueue(items)
+        runBlocking(Dispatchers.IO) {
+            repeat(minOf(WORKER_COUNT, items.size)) {
+                launch {
+                    while (true) {
+                        ensureActive()
+                        val item = queue.poll() ?: break
+                        action(item)
+                    }
+                }
             }
-            file.createNewFile()
         }
-        val output = text.replace(
-            regex = fileParams.linebreak.regex,
-            replacement = fileParams.linebreak.replacement,
-        )
-        file.writeText(output, fileParams.charset)
+    }
+
+    private suspend fun FlowCollector<List<FileModel>>.emitChunks(children: Sequence<FileModel>) {
+        var isEmpty = true
+        for (chunk in children.chunked(Filesystem.CHUNK_SIZE)) {
+            emit(chunk)
+            isEmpty = false
+        }
+        if (isEmpty) {
+            emit(emptyList())
+        }
+    }
+
+    /** Unlike [File.copyRecursively], stops as soon as the calling thread is interrupted */
+    private fun copyInterruptibly(source: File, dest: File) {
+        for (file in source.walkTopDown()) {
+            if (Thread.interrupted()) {
+                throw InterruptedIOException()
+            }
+            val target = File(dest, file.toRelativeString(source))
+            if (file.isDirectory) {
+                if (!target.mkdirs() && !target.isDirectory) {
+                    throw IOException("Unable to create directory: ${target.path}")
+                }
+                continue
+            }
+            FileInputStream(file).channel.use { input ->
+                FileOutputStream(target).channel.use { output ->
+                    // FileChannel is interruptible, so even a huge file is abandoned right away
+                    val size = input.size()
+                    var position = 0L
+                    while (position < size) {
+                        val bytes = input.transferTo(position, size - position, output)
+                        if (bytes <= 0) {
+                            break
+                        }
+                        position += bytes
+                    }
+                }
+            }
+            target.setLastModified(file.lastModified())
+        }
+    }
+
+    /** Waits for a task started in run-in-thread mode, reporting its progress meanwhile */
+    private suspend inline fun ZipFile.awaitTask(onProgress: (ProgressMonitor) -> Unit) {
+        try {
+            while (progressMonitor.state == ProgressMonitor.State.BUSY) {
+                onProgress(progressMonitor)
+                delay(POLL_INTERVAL)
+            }
+        } catch (e: CancellationException) {
+            progressMonitor.isCancelAllTasks = true
+            throw e
+        }
+        val exception = progressMonitor.exception
+        when {
+            progressMonitor.result == ProgressMonitor.Result.CANCELLED -> throw CancellationException()
+            progressMonitor.result != ProgressMonitor.Result.ERROR -> Unit
+            exception is ZipException &&
+                exception.type == ZipException.Type.TASK_CANCELLED_EXCEPTION -> throw CancellationException()
+            exception != null -> throw exception
+        }
+    }
+
+    private fun detectCharset(file: File): Charset {
+        return EncodingDetector.cached(file.path, file.length(), file.lastModified()) {
+            RandomAccessFile(file, "r").use(EncodingDetector::detect)
+        }
     }
 
     companion object : Filesystem.Mapper<File> {
@@ -235,6 +489,10 @@ class LocalFilesystem : Filesystem {
         const val LOCAL_UUID = "local"
         const val LOCAL_SCHEME = "file://"
 
+        private const val POLL_INTERVAL = 100L
+        private const val LARGE_ENTRY = 1024 * 1024L
+        private val WORKER_COUNT = Runtime.getRuntime().availableProcessors()
+
         @Suppress("KotlinConstantConditions")
         override fun toFileModel(fileObject: File): FileModel {
             return FileModel(
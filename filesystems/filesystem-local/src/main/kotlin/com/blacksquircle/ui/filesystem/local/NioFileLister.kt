@@ -0,0 +1,107 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.local
+
+import com.blacksquircle.ui.filesystem.base.model.FileModel
+import com.blacksquircle.ui.filesystem.base.model.Permission
+import com.blacksquircle.ui.filesystem.base.utils.plusFlag
+import java.io.File
+import java.io.IOException
+import java.nio.file.AccessDeniedException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.PosixFileAttributes
+import java.nio.file.attribute.PosixFilePermission
+
+/**
+ * Lists directories via [Files.newDirectoryStream] and reads size, time, type and mode
+ * of an entry with a single stat call. Permissions still need up to three access(2)
+ * calls, made only for the bits the mode doesn't already rule out.
+ */
+internal object NioFileLister {
+
+    /** java.nio.file is only available since API 26 */
+    val isAvailable: Boolean by lazy {
+        try {
+            Class.forName("java.nio.file.Files")
+            true
+        } catch (e: ClassNotFoundException) {
+            false
+        }
+    }
+
+    inline fun <R> useChildren(directory: File, block: (Sequence<FileModel>) -> R): R {
+        val stream = try {
+            Files.newDirectoryStream(directory.toPath())
+        } catch (e: AccessDeniedException) {
+            return block(emptySequence())
+        }
+        return stream.use { paths ->
+            block(paths.asSequence().map(::toFileModel))
+        }
+    }
+
+    fun toFileModel(path: Path): FileModel {
+        val attributes = try {
+            Files.readAttributes(path, PosixFileAttributes::class.java)
+        } catch (e: IOException) {
+            // Broken symlink or the entry can't be stat'ed
+            return LocalFilesystem.toFileModel(path.toFile())
+        }
+        // Same access(2) checks as LocalFilesystem.toFileModel, owner mode bits say nothing about the app's uid.
+        // If no class has a bit, the check can't pass for a non-root app, e.g. execute for most regular files.
+        val mode = attributes.permissions()
+        var permission = Permission.EMPTY
+        if (mode.containsAny(READ_BITS) && Files.isReadable(path)) {
+            permission = permission plusFlag Permission.OWNER_READ
+        }
+        if (mode.containsAny(WRITE_BITS) && Files.isWritable(path)) {
+            permission = permission plusFlag Permission.OWNER_WRITE
+        }
+        if (mode.containsAny(EXECUTE_BITS) && Files.isExecutable(path)) {
+            permission = permission plusFlag Permission.OWNER_EXECUTE
+        }
+        return FileModel(
+            fileUri = LocalFilesystem.LOCAL_SCHEME + path.toString(),
+            filesystemUuid = LocalFilesystem.LOCAL_UUID,
+            size = attributes.size(),
+            lastModified = attributes.lastModifiedTime().toMillis(),
+            isDirectory = attributes.isDirectory,
+            permission = permission,
+        )
+    }
+
+    private fun Set<PosixFilePermission>.containsAny(bits: List<PosixFilePermission>): Boolean {
+        return bits.any(::contains)
+    }
+
+    private val READ_BITS = listOf(
+        PosixFilePermission.OWNER_READ,
+        PosixFilePermission.GROUP_READ,
+        PosixFilePermission.OTHERS_READ,
+    )
+    private val WRITE_BITS = listOf(
+        PosixFilePermission.OWNER_WRITE,
+        PosixFilePermission.GROUP_WRITE,
+        PosixFilePermission.OTHERS_WRITE,
+    )
+    private val EXECUTE_BITS = listOf(
+        PosixFilePermission.OWNER_EXECUTE,
+        PosixFilePermission.GROUP_EXECUTE,
+        PosixFilePermission.OTHERS_EXECUTE,
+    )
+}
\ No newline at end of file
@@ -0,0 +1,348 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.local
+
+import com.blacksquircle.ui.filesystem.base.model.TransferProgress
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.runInterruptible
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.FilterOutputStream
+import java.io.InterruptedIOException
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.Calendar
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+
+/**
+ * Writes a zip archive while its entries are deflated concurrently. Workers
+ * compress whole entries ahead of the writer (in memory, or in a temporary
+ * file for large ones), and the writer appends them in order, so only the
+ * central directory has to be kept until the end.
+ *
+ * Sizes and offsets from [zip64Limit] on are moved to zip64 extra fields,
+ * tests lower it to produce zip64 archives without writing 4 GiB.
+ */
+internal class ParallelZipWriter(
+    private val workerCount: Int,
+    private val zip64Limit: Long = ZIP64_LIMIT,
+) {
+
+    fun write(source: List<File>, dest: File): Flow<TransferProgress> = flow {
+        val entries = ArrayList<Entry>()
+        var totalFiles = 0
+        var totalBytes = 0L
+        for (root in source) {
+            val base = root.absoluteFile.parentFile
+            for (file in root.absoluteFile.walkTopDown()) {
+                val path = file.toRelativeString(base).replace(File.separatorChar, '/')
+                if (file.isDirectory) {
+                    entries += Entry(file, "$path/", isDirectory = true, size = 0L)
+                } else {
+                    entries += Entry(file, path, isDirectory = false, size = file.length())
+                    totalFiles++
+                    totalBytes += file.length()
+                }
+            }
+        }
+
+        val executor = Executors.newFixedThreadPool(workerCount)
+        val partsDir = File(dest.parentFile, ".${dest.name}.parts")
+        var isCompleted = false
+        try {
+            PositionOutputStream(FileOutputStream(dest).buffered(BUFFER_SIZE)).use { output ->
+                val records = ArrayList<Record>(entries.size)
+                val pending = ArrayDeque<Future<Record>>()
+                val iterator = entries.iterator()
+                var fileCount = 0
+                var bytesCount = 0L
+                while (true) {
+                    while (pending.size < workerCount * 2 && iterator.hasNext()) {
+                        val entry = iterator.next()
+                        pending += executor.submit(Callable { deflate(entry, partsDir) })
+                    }
+                    val future = pending.removeFirstOrNull() ?: break
+                    val record = try {
+                        runInterruptible { future.get() }
+                    } catch (e: ExecutionException) {
+                        throw e.cause ?: e
+                    }
+
+                    record.offset = output.position
+                    writeLocalHeader(output, record)
+                    record.data?.let(output::write)
+                    record.dataFile?.let { dataFile ->
+                        dataFile.inputStream().use { it.copyTo(output, BUFFER_SIZE) }
+                        dataFile.delete()
+                    }
+                    records += record
+
+                    if (!record.entry.isDirectory) {
+                        fileCount++
+                        bytesCount += record.entry.size
+                        emit(
+                            TransferProgress(
+                                path = record.entry.file.path,
+                                fileCount = fileCount,
+                                totalFiles = totalFiles,
+                                bytesCount = bytesCount,
+                                totalBytes = totalBytes,
+                            )
+                        )
+                    }
+                }
+                writeCentralDirectory(output, records)
+            }
+            isCompleted = true
+        } finally {
+            executor.shutdownNow()
+            executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)
+            partsDir.deleteRecursively()
+            if (!isCompleted) {
+                dest.delete()
+            }
+        }
+    }
+
+    private fun deflate(entry: Entry, partsDir: File): Record {
+        if (entry.isDirectory) {
+            return Record(entry, STORED, crc = 0L, compressedSize = 0L, data = ByteArray(0))
+        }
+        val dataFile = if (entry.size >= LARGE_ENTRY) {
+            partsDir.mkdirs()
+            File.createTempFile("entry", null, partsDir)
+        } else {
+            null
+        }
+        val buffer = ByteArrayOutputStream()
+        val crc = CRC32()
+        val deflater = Deflater(Deflater.DEFAULT_COMPRESSION, true)
+        try {
+            val sink = dataFile?.outputStream()?.buffered(BUFFER_SIZE) ?: buffer
+            DeflaterOutputStream(sink, deflater, BUFFER_SIZE).use { output ->
+                FileInputStream(entry.file).use { input ->
+                    val bytes = ByteArray(BUFFER_SIZE)
+                    while (true) {
+                        if (Thread.interrupted()) {
+                            throw InterruptedIOException()
+                        }
+                        val count = input.read(bytes)
+                        if (count < 0) {
+                            break
+                        }
+                        crc.update(bytes, 0, count)
+                        output.write(bytes, 0, count)
+                    }
+                }
+            }
+            return Record(
+                entry = entry.copy(size = deflater.bytesRead),
+                method = DEFLATED,
+                crc = crc.value,
+                compressedSize = deflater.bytesWritten,
+                data = if (dataFile == null) buffer.toByteArray() else null,
+                dataFile = dataFile,
+            )
+        } catch (e: Throwable) {
+            dataFile?.delete()
+            throw e
+        } finally {
+            deflater.end()
+        }
+    }
+
+    private fun writeLocalHeader(output: OutputStream, record: Record) {
+        val isZip64 = record.entry.size >= zip64Limit || record.compressedSize >= zip64Limit
+        val extraLength = if (isZip64) 20 else 0
+        val header = ByteBuffer.allocate(30 + record.name.size + extraLength)
+            .order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(LOCAL_HEADER_SIGNATURE)
+            .putWord(if (isZip64) VERSION_ZIP64 else VERSION_DEFAULT)
+            .putWord(FLAG_UTF8)
+            .putWord(record.method)
+            .putInt(record.dosTime)
+            .putInt(record.crc.toInt())
+            .putInt(if (isZip64) -1 else record.compressedSize.toInt())
+            .putInt(if (isZip64) -1 else record.entry.size.toInt())
+            .putWord(record.name.size)
+            .putWord(extraLength)
+            .put(record.name)
+        if (isZip64) {
+            header.putWord(ZIP64_EXTRA_ID)
+                .putWord(16)
+                .putLong(record.entry.size)
+                .putLong(record.compressedSize)
+        }
+        output.write(header.array())
+    }
+
+    private fun writeCentralDirectory(output: PositionOutputStream, records: List<Record>) {
+        val offset = output.position
+        for (record in records) {
+            // Only the fields that don't fit their header slot go to the zip64 extra field
+            val extra = ArrayList<Long>(3)
+            if (record.entry.size >= zip64Limit) extra += record.entry.size
+            if (record.compressedSize >= zip64Limit) extra += record.compressedSize
+            if (record.offset >= zip64Limit) extra += record.offset
+            val extraLength = if (extra.isEmpty()) 0 else 4 + extra.size * 8
+            val version = if (extra.isEmpty()) VERSION_DEFAULT else VERSION_ZIP64
+            val header = ByteBuffer.allocate(46 + record.name.size + extraLength)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(CENTRAL_HEADER_SIGNATURE)
+                .putWord(version)
+                .putWord(version)
+                .putWord(FLAG_UTF8)
+                .putWord(record.method)
+                .putInt(record.dosTime)
+                .putInt(record.crc.toInt())
+                .putInt(record.compressedSize.toHeaderInt())
+                .putInt(record.entry.size.toHeaderInt())
+                .putWord(record.name.size)
+                .putWord(extraLength)
+                .putWord(0) // comment length
+                .putWord(0) // disk number
+                .putWord(0) // internal attributes
+                .putInt(if (record.entry.isDirectory) ATTRIBUTE_DIRECTORY else 0)
+                .putInt(record.offset.toHeaderInt())
+                .put(record.name)
+            if (extra.isNotEmpty()) {
+                header.putWord(ZIP64_EXTRA_ID).putWord(extra.size * 8)
+                extra.forEach { header.putLong(it) }
+            }
+            output.write(header.array())
+        }
+
+        val size = output.position - offset
+        val count = records.size.toLong()
+        if (count >= 0xFFFF || size >= zip64Limit || offset >= zip64Limit) {
+            val recordOffset = output.position
+            val zip64End = ByteBuffer.allocate(56 + 20)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(ZIP64_END_SIGNATURE)
+                .putLong(44L)
+                .putWord(VERSION_ZIP64)
+                .putWord(VERSION_ZIP64)
+                .putInt(0) // disk number
+                .putInt(0) // disk with the central directory
+                .putLong(count)
+                .putLong(count)
+                .putLong(size)
+                .putLong(offset)
+                .putInt(ZIP64_LOCATOR_SIGNATURE)
+                .putInt(0) // disk with the zip64 record
+                .putLong(recordOffset)
+                .putInt(1) // total disks
+            output.write(zip64End.array())
+        }
+        val end = ByteBuffer.allocate(22)
+            .order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(END_SIGNATURE)
+            .putWord(0) // disk number
+            .putWord(0) // disk with the central directory
+            .putWord(minOf(count, 0xFFFF).toInt())
+            .putWord(minOf(count, 0xFFFF).toInt())
+            .putInt(size.toHeaderInt())
+            .putInt(offset.toHeaderInt())
+            .putWord(0) // comment length
+        output.write(end.array())
+    }
+
+    private fun ByteBuffer.putWord(value: Int): ByteBuffer = putShort(value.toShort())
+
+    private fun Long.toHeaderInt(): Int = if (this >= zip64Limit) -1 else toInt()
+
+    private data class Entry(
+        val file: File,
+        val path: String,
+        val isDirectory: Boolean,
+        val size: Long,
+    )
+
+    private class Record(
+        val entry: Entry,
+        val method: Int,
+        val crc: Long,
+        val compressedSize: Long,
+        val data: ByteArray? = null,
+        val dataFile: File? = null,
+    ) {
+        val name = entry.path.toByteArray(Charsets.UTF_8)
+        val dosTime = toDosTime(entry.file.lastModified())
+        var offset = 0L
+    }
+
+    private class PositionOutputStream(out: OutputStream) : FilterOutputStream(out) {
+
+        var position = 0L
+            private set
+
+        override fun write(b: Int) {
+            out.write(b)
+            position++
+        }
+
+        override fun write(b: ByteArray, off: Int, len: Int) {
+            out.write(b, off, len)
+            position += len
+        }
+    }
+
+    companion object {
+
+        private const val BUFFER_SIZE = 64 * 1024
+        internal const val LARGE_ENTRY = 1024 * 1024L
+        private const val SHUTDOWN_TIMEOUT = 1000L
+
+        private const val LOCAL_HEADER_SIGNATURE = 0x04034b50
+        private const val CENTRAL_HEADER_SIGNATURE = 0x02014b50
+        private const val ZIP64_END_SIGNATURE = 0x06064b50
+        private const val ZIP64_LOCATOR_SIGNATURE = 0x07064b50
+        private const val END_SIGNATURE = 0x06054b50
+        private const val ZIP64_EXTRA_ID = 0x0001
+        private const val ZIP64_LIMIT = 0xFFFFFFFFL
+
+        private const val VERSION_DEFAULT = 20
+        private const val VERSION_ZIP64 = 45
+        private const val FLAG_UTF8 = 0x0800
+        private const val ATTRIBUTE_DIRECTORY = 0x10
+        private const val STORED = 0
+        private const val DEFLATED = 8
+
+        private fun toDosTime(millis: Long): Int {
+            val calendar = Calendar.getInstance()
+            calendar.timeInMillis = millis
+            val year = calendar.get(Calendar.YEAR).coerceIn(1980, 2107)
+            return ((year - 1980) shl 25) or
+                ((calendar.get(Calendar.MONTH) + 1) shl 21) or
+                (calendar.get(Calendar.DAY_OF_MONTH) shl 16) or
+                (calendar.get(Calendar.HOUR_OF_DAY) shl 11) or
+                (calendar.get(Calendar.MINUTE) shl 5) or
+                (calendar.get(Calendar.SECOND) shr 1)
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,189 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.local
+
+import com.blacksquircle.ui.filesystem.base.exception.DirectoryExpectedException
+import com.blacksquircle.ui.filesystem.base.model.FileModel
+import com.blacksquircle.ui.filesystem.local.ArchiveFilesystem.Companion.ARCHIVE_SCHEME
+import com.blacksquircle.ui.filesystem.local.ArchiveFilesystem.Companion.ARCHIVE_UUID
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+import kotlin.random.Random
+
+class ArchiveFilesystemTest {
+
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    @Test
+    fun `When entry is stored Then read its content`() {
+        // Given
+        val content = Random(0).nextBytes(ENTRY_SIZE)
+        val archive = writeArchive(
+            storedEntry("first.bin") to content,
+            storedEntry("second.bin") to "second".toByteArray(),
+        )
+        val filesystem = ArchiveFilesystem(archive)
+
+        // When
+        val first = readEntry(filesystem, "/first.bin")
+        val second = readEntry(filesystem, "/second.bin")
+
+        // Then
+        assertArrayEquals(content, first)
+        assertArrayEquals("second".toByteArray(), second)
+    }
+
+    @Test
+    fun `When entry is deflated Then read its content`() {
+        // Given
+        val root = tempFolder.newFolder("root")
+        val content = Random(0).nextBytes(ENTRY_SIZE)
+        File(root, "first.bin").writeBytes(content)
+        File(root, "second.txt").writeText("second")
+        val archive = File(tempFolder.root, "archive.zip")
+        runBlocking {
+            ParallelZipWriter(workerCount = 2).write(listOf(root), archive).toList()
+        }
+        val filesystem = ArchiveFilesystem(archive)
+
+        // When
+        val first = readEntry(filesystem, "/root/first.bin")
+        val second = readEntry(filesystem, "/root/second.txt")
+
+        // Then
+        assertArrayEquals(content, first)
+        assertArrayEquals("second".toByteArray(), second)
+    }
+
+    @Test
+    fun `When entry has data descriptor Then read its content`() {
+        // Given
+        val content = Random(0).nextBytes(ENTRY_SIZE)
+        val archive = writeArchive(
+            ZipEntry("first.bin") to content,
+            ZipEntry("second.txt") to "second".toByteArray(),
+        )
+        val filesystem = ArchiveFilesystem(archive)
+
+        // When
+        val first = readEntry(filesystem, "/first.bin")
+        val second = readEntry(filesystem, "/second.txt")
+
+        // Then
+        assertArrayEquals(content, first)
+        assertArrayEquals("second".toByteArray(), second)
+    }
+
+    @Test
+    fun `When archive has no folder entries Then list missing folders`() {
+        // Given
+        val archive = writeArchive(
+            storedEntry("a/b/file.txt") to "file".toByteArray(),
+            storedEntry("a/empty/") to ByteArray(0),
+        )
+        val filesystem = ArchiveFilesystem(archive)
+
+        // When
+        val root = listNames(filesystem, "/")
+        val folder = listNames(filesystem, "/a")
+        val subfolder = listNames(filesystem, "/a/b")
+        val emptyFolder = listNames(filesystem, "/a/empty")
+
+        // Then
+        assertEquals(setOf("a"), root)
+        assertEquals(setOf("b", "empty"), folder)
+        assertEquals(setOf("file.txt"), subfolder)
+        assertEquals(emptySet<String>(), emptyFolder)
+    }
+
+    @Test(expected = DirectoryExpectedException::class)
+    fun `When listing a file Then throw DirectoryExpectedException`() {
+        // Given
+        val archive = writeArchive(storedEntry("a/file.txt") to "file".toByteArray())
+        val filesystem = ArchiveFilesystem(archive)
+
+        // When
+        listNames(filesystem, "/a/file.txt")
+    }
+
+    @Test
+    fun `When archive changes Then list new entries`() {
+        // Given
+        val archive = writeArchive(storedEntry("old.txt") to "old".toByteArray())
+        val filesystem = ArchiveFilesystem(archive)
+        val before = listNames(filesystem, "/")
+        val lastModified = archive.lastModified()
+
+        // When
+        writeArchive(storedEntry("new.txt") to "new".toByteArray())
+        archive.setLastModified(lastModified + 10_000)
+        val after = listNames(filesystem, "/")
+
+        // Then
+        assertEquals(setOf("old.txt"), before)
+        assertEquals(setOf("new.txt"), after)
+        assertArrayEquals("new".toByteArray(), readEntry(filesystem, "/new.txt"))
+    }
+
+    private fun writeArchive(vararg entries: Pair<ZipEntry, ByteArray>): File {
+        val archive = File(tempFolder.root, "archive.zip")
+        ZipOutputStream(archive.outputStream()).use { output ->
+            for ((entry, content) in entries) {
+                if (entry.method == ZipEntry.STORED) {
+                    // Stored entries have no data descriptor, so the sizes go to the local header
+                    entry.size = content.size.toLong()
+                    entry.compressedSize = content.size.toLong()
+                    entry.crc = CRC32().apply { update(content) }.value
+                }
+                output.putNextEntry(entry)
+                output.write(content)
+                output.closeEntry()
+            }
+        }
+        return archive
+    }
+
+    private fun storedEntry(name: String): ZipEntry {
+        return ZipEntry(name).apply {
+            method = ZipEntry.STORED
+        }
+    }
+
+    private fun readEntry(filesystem: ArchiveFilesystem, path: String): ByteArray {
+        val fileModel = FileModel(ARCHIVE_SCHEME + path, ARCHIVE_UUID)
+        return filesystem.openInputStream(fileModel).use { it.readBytes() }
+    }
+
+    private fun listNames(filesystem: ArchiveFilesystem, path: String): Set<String> {
+        val parent = FileModel(ARCHIVE_SCHEME + path, ARCHIVE_UUID, isDirectory = true)
+        return filesystem.listFiles(parent).map(FileModel::name).toSet()
+    }
+
+    companion object {
+        private const val ENTRY_SIZE = 256 * 1024
+    }
+}
\ No newline at end of file
@@ -0,0 +1,176 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.local
+
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.zip.ZipFile
+import kotlin.random.Random
+import net.lingala.zip4j.ZipFile as Zip4jFile
+
+class ParallelZipWriterTest {
+
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    @Test
+    fun `When folder is empty Then keep folder entry`() = runBlocking {
+        // Given
+        val root = tempFolder.newFolder("root")
+        File(root, "empty").mkdir()
+        val dest = File(tempFolder.root, "archive.zip")
+
+        // When
+        ParallelZipWriter(WORKER_COUNT).write(listOf(root), dest).toList()
+
+        // Then
+        val expected = mapOf("root/" to null, "root/empty/" to null)
+        assertEquals(expected, readWithJava(dest))
+        assertEquals(expected, readWithZip4j(dest))
+    }
+
+    @Test
+    fun `When file names aren't ASCII Then read them back as UTF-8`() = runBlocking {
+        // Given
+        val root = tempFolder.newFolder("корень")
+        File(root, "файл 文件.txt").writeText("текст")
+        File(root, "ß").mkdir()
+        val dest = File(tempFolder.root, "archive.zip")
+
+        // When
+        ParallelZipWriter(WORKER_COUNT).write(listOf(root), dest).toList()
+
+        // Then
+        val expected = mapOf(
+            "корень/" to null,
+            "корень/ß/" to null,
+            "корень/файл 文件.txt" to "текст".toByteArray(),
+        )
+        assertEntries(expected, readWithJava(dest))
+        assertEntries(expected, readWithZip4j(dest))
+    }
+
+    @Test
+    fun `When entries are around temp file cutoff Then read them back unchanged`() = runBlocking {
+        // Given
+        val root = tempFolder.newFolder("root")
+        val sizes = listOf(
+            ParallelZipWriter.LARGE_ENTRY - 1,
+            ParallelZipWriter.LARGE_ENTRY,
+            ParallelZipWriter.LARGE_ENTRY + 1,
+        )
+        val expected = mutableMapOf<String, ByteArray?>("root/" to null)
+        sizes.forEach { size ->
+            val bytes = Random(size).nextBytes(size.toInt())
+            File(root, "$size.bin").writeBytes(bytes)
+            expected["root/$size.bin"] = bytes
+        }
+        val dest = File(tempFolder.root, "archive.zip")
+
+        // When
+        val progress = ParallelZipWriter(WORKER_COUNT).write(listOf(root), dest).toList()
+
+        // Then
+        assertEntries(expected, readWithJava(dest))
+        assertEntries(expected, readWithZip4j(dest))
+        assertEquals(sizes.size, progress.last().fileCount)
+        assertEquals(sizes.sum(), progress.last().bytesCount)
+        assertFalse(File(tempFolder.root, ".archive.zip.parts").exists())
+    }
+
+    @Test
+    fun `When sizes and offsets reach zip64 limit Then read them back unchanged`() = runBlocking {
+        // Given
+        val root = tempFolder.newFolder("root")
+        val large = Random(0).nextBytes(ParallelZipWriter.LARGE_ENTRY.toInt())
+        File(root, "large.bin").writeBytes(large)
+        File(root, "small.txt").writeText("small")
+        File(root, "folder").mkdir()
+        val dest = File(tempFolder.root, "archive.zip")
+
+        // When
+        ParallelZipWriter(WORKER_COUNT, zip64Limit = 1024L).write(listOf(root), dest).toList()
+
+        // Then
+        val expected = mapOf(
+            "root/" to null,
+            "root/folder/" to null,
+            "root/large.bin" to large,
+            "root/small.txt" to "small".toByteArray(),
+        )
+        assertEntries(expected, readWithJava(dest))
+        assertEntries(expected, readWithZip4j(dest))
+        assertTrue(hasZip64Locator(dest))
+    }
+
+    private fun readWithJava(file: File): Map<String, ByteArray?> {
+        return ZipFile(file).use { zipFile ->
+            zipFile.entries().toList().associate { entry ->
+                val content = if (entry.isDirectory) {
+                    null
+                } else {
+                    zipFile.getInputStream(entry).use { it.readBytes() }
+                }
+                entry.name to content
+            }
+        }
+    }
+
+    private fun readWithZip4j(file: File): Map<String, ByteArray?> {
+        return Zip4jFile(file).use { zipFile ->
+            zipFile.fileHeaders.associate { header ->
+                val content = if (header.isDirectory) {
+                    null
+                } else {
+                    zipFile.getInputStream(header).use { it.readBytes() }
+                }
+                header.fileName to content
+            }
+        }
+    }
+
+    private fun assertEntries(expected: Map<String, ByteArray?>, actual: Map<String, ByteArray?>) {
+        assertEquals(expected.keys, actual.keys)
+        expected.forEach { (name, content) ->
+            assertArrayEquals(name, content, actual[name])
+        }
+    }
+
+    private fun hasZip64Locator(file: File): Boolean {
+        // The locator is written right before the 22 bytes of the end record
+        val bytes = file.readBytes()
+        val signature = ByteBuffer.wrap(bytes, bytes.size - 22 - 20, 4)
+            .order(ByteOrder.LITTLE_ENDIAN)
+            .int
+        return signature == ZIP64_LOCATOR_SIGNATURE
+    }
+
+    companion object {
+        private const val WORKER_COUNT = 4
+        private const val ZIP64_LOCATOR_SIGNATURE = 0x07064b50
+    }
+}
\ No newline at end of file
@@ -30,7 +30,6 @@ android {
 
 dependencies {
 
-    implementation(libs.ibm.icu4j)
     implementation(libs.kotlinx.coroutines.core)
     implementation(libs.libsu.io)
 
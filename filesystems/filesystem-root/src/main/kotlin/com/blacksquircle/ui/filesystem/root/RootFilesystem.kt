@@ -17,38 +17,50 @@
 package com.blacksquircle.ui.filesystem.root
 
 import com.blacksquircle.ui.filesystem.base.Filesystem
-import com.blacksquircle.ui.filesystem.base.exception.DirectoryExpectedException
+import com.blacksquircle.ui.filesystem.base.charset.EncodingDetector
 import com.blacksquircle.ui.filesystem.base.exception.FileAlreadyExistsException
 import com.blacksquircle.ui.filesystem.base.exception.FileNotFoundException
+import com.blacksquircle.ui.filesystem.base.exception.RenameFileException
 import com.blacksquircle.ui.filesystem.base.model.FileModel
 import com.blacksquircle.ui.filesystem.base.model.FileParams
 import com.blacksquircle.ui.filesystem.base.model.Permission
+import com.blacksquircle.ui.filesystem.base.model.TransferProgress
+import com.blacksquircle.ui.filesystem.base.utils.hasFlag
 import com.blacksquircle.ui.filesystem.base.utils.plusFlag
-import com.blacksquircle.ui.filesystem.root.utils.requestRootAccess
-import com.ibm.icu.text.CharsetDetector
+import com.blacksquircle.ui.filesystem.base.utils.useWriter
 import com.topjohnwu.superuser.Shell
 import com.topjohnwu.superuser.io.SuFile
 import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
 import java.io.BufferedReader
 import java.io.File
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.charset.Charset
 
 class RootFilesystem : Filesystem {
 
-    init {
-        requestRootAccess()
-    }
+    private val rootShell = RootShell()
 
     override fun ping() = Unit
 
     override fun listFiles(parent: FileModel): List<FileModel> {
-        val file = toFileObject(parent)
-        if (!file.isDirectory) {
-            throw DirectoryExpectedException()
-        }
-        return file.listFiles().orEmpty()
+        return rootShell.list(parent.path)
             .map(::toFileModel)
     }
 
+    override fun streamFiles(parent: FileModel): Flow<List<FileModel>> {
+        return flow {
+            val children = rootShell.list(parent.path)
+            if (children.isEmpty()) {
+                emit(emptyList())
+            }
+            for (chunk in children.chunked(Filesystem.CHUNK_SIZE)) {
+                emit(chunk.map(::toFileModel))
+            }
+        }
+    }
+
     override fun createFile(fileModel: FileModel) {
         val file = toFileObject(fileModel)
         if (file.exists()) {
@@ -78,22 +90,60 @@ class RootFilesystem : Filesystem {
     }
 
     override fun deleteFile(fileModel: FileModel) {
-        val file = toFileObject(fileModel)
-        if (!file.exists()) {
-            throw FileNotFoundException(fileModel.path)
+        rootShell.delete(listOf(fileModel.path))
+    }
+
+    override fun stat(fileModels: List<FileModel>): List<FileModel> {
+        return rootShell.stat(fileModels.map(FileModel::path))
+            .map(::toFileModel)
+    }
+
+    override fun deleteFiles(fileModels: List<FileModel>) {
+        rootShell.delete(fileModels.map(FileModel::path))
+    }
+
+    override fun createFiles(fileModels: List<FileModel>) {
+        val (directories, files) = fileModels.partition(FileModel::isDirectory)
+        rootShell.create(
+            directories = directories.map(FileModel::path),
+            files = files.map(FileModel::path),
+        )
+    }
+
+    override fun copyFile(source: FileModel, dest: FileModel): Flow<TransferProgress> {
+        return flow {
+            rootShell.copy(listOf(source.path), dest.path)
+            val progress = TransferProgress(
+                path = source.path,
+                fileCount = 1,
+                totalFiles = 1,
+                bytesCount = source.size,
+                totalBytes = source.size,
+            )
+            emit(progress)
         }
-        file.deleteRecursive()
     }
 
-    override fun copyFile(source: FileModel, dest: FileModel) {
-        throw UnsupportedOperationException()
+    override fun moveFile(source: FileModel, dest: FileModel) {
+        val sourceFile = toFileObject(source)
+        val destFile = SuFile(toFileObject(dest), sourceFile.name)
+        if (!sourceFile.exists()) {
+            throw FileNotFoundException(source.path)
+        }
+        if (destFile.exists()) {
+            throw FileAlreadyExistsException(destFile.absolutePath)
+        }
+        // mv falls back to copying when moving across mount points
+        if (!sourceFile.renameTo(destFile)) {
+            throw RenameFileException(destFile.absolutePath)
+        }
     }
 
-    override fun compressFiles(source: List<FileModel>, dest: FileModel): Flow<FileModel> {
+    override fun compressFiles(source: List<FileModel>, dest: FileModel): Flow<TransferProgress> {
         throw UnsupportedOperationException()
     }
 
-    override fun extractFiles(source: FileModel, dest: FileModel): Flow<FileModel> {
+    override fun extractFiles(source: FileModel, dest: FileModel): Flow<TransferProgress> {
         throw UnsupportedOperationException()
     }
 
@@ -102,24 +152,38 @@ class RootFilesystem : Filesystem {
         if (!file.exists()) {
             throw FileNotFoundException(fileModel.path)
         }
+        val inputStream = file.newInputStream().buffered()
         val charset = if (fileParams.chardet) {
-            try {
-                val charsetMatch = CharsetDetector()
-                    .setText(file.newInputStream().readBytes())
-                    .detect()
-                charset(charsetMatch.name)
-            } catch (e: Exception) {
-                Charsets.UTF_8
-            }
+            detectCharset(fileModel, inputStream)
         } else {
             fileParams.charset
         }
-        return file.newInputStream()
+        return inputStream
             .bufferedReader(charset)
             .use(BufferedReader::readText)
     }
 
+    /** Reuses the result while the file keeps its size and modification time */
+    override fun detectCharset(fileModel: FileModel, inputStream: InputStream): Charset {
+        val file = toFileObject(fileModel)
+        return EncodingDetector.cached(fileModel.fileUri, file.length(), file.lastModified()) {
+            EncodingDetector.detect(inputStream)
+        }
+    }
+
     override fun saveFile(fileModel: FileModel, text: String, fileParams: FileParams) {
+        useWriter(fileModel, fileParams) { it.write(text) }
+    }
+
+    override fun openInputStream(fileModel: FileModel): InputStream {
+        val file = toFileObject(fileModel)
+        if (!file.exists()) {
+            throw FileNotFoundException(fileModel.path)
+        }
+        return file.newInputStream()
+    }
+
+    override fun openOutputStream(fileModel: FileModel): OutputStream {
         val file = toFileObject(fileModel)
         if (!file.exists()) {
             val parentFile = file.parentFile!!
@@ -128,13 +192,15 @@ class RootFilesystem : Filesystem {
             }
             file.createNewFile()
         }
-        file.newOutputStream().bufferedWriter(fileParams.charset).use { writer ->
-            val output = text.replace(
-                regex = fileParams.linebreak.regex,
-                replacement = fileParams.linebreak.replacement
-            )
-            writer.write(output)
+        return file.newOutputStream()
+    }
+
+    override fun openAppendStream(fileModel: FileModel): OutputStream {
+        val file = toFileObject(fileModel)
+        if (!file.exists()) {
+            throw FileNotFoundException(fileModel.path)
         }
+        return file.newOutputStream(true)
     }
 
     companion object : Filesystem.Mapper<SuFile> {
@@ -150,6 +216,29 @@ class RootFilesystem : Filesystem {
             )
         }
 
+        private fun toFileModel(stat: RootShell.Stat): FileModel {
+            return FileModel(
+                fileUri = ROOT_SCHEME + File(stat.path).path,
+                filesystemUuid = ROOT_UUID,
+                size = stat.size,
+                lastModified = stat.lastModified,
+                isDirectory = stat.isDirectory,
+                permission = with(stat) {
+                    var permission = Permission.EMPTY
+                    if (mode hasFlag 0x100) { // S_IRUSR
+                        permission = permission plusFlag Permission.OWNER_READ
+                    }
+                    if (mode hasFlag 0x80) { // S_IWUSR
+                        permission = permission plusFlag Permission.OWNER_WRITE
+                    }
+                    if (mode hasFlag 0x40) { // S_IXUSR
+                        permission = permission plusFlag Permission.OWNER_EXECUTE
+                    }
+                    permission
+                },
+            )
+        }
+
         @Suppress("KotlinConstantConditions")
         override fun toFileModel(fileObject: SuFile): FileModel {
             return FileModel(
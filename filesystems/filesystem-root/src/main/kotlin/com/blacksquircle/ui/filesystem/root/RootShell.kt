@@ -0,0 +1,215 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.root
+
+import com.blacksquircle.ui.filesystem.base.exception.DirectoryExpectedException
+import com.blacksquircle.ui.filesystem.base.exception.FileAlreadyExistsException
+import com.blacksquircle.ui.filesystem.base.exception.FileNotFoundException
+import com.blacksquircle.ui.filesystem.root.utils.requestRootAccess
+import com.topjohnwu.superuser.Shell
+import java.io.File
+import java.io.IOException
+
+/**
+ * Runs file operations as scripts in one long-lived root shell. Every public
+ * method costs a single round trip (two for listings with symlinks), no matter
+ * how many files are involved, unlike [com.topjohnwu.superuser.io.SuFile],
+ * which asks the shell for each attribute of each file separately.
+ */
+internal class RootShell {
+
+    @Volatile
+    private var shell: Shell = requestRootAccess()
+
+    /** Lists the children of [path] with a single `stat` call, symlinks are resolved */
+    fun list(path: String): List<Stat> {
+        val result = exec(
+            """
+            [ -e ${quote(path)} ] || exit $CODE_NOT_FOUND
+            [ -d ${quote(path)} ] || exit $CODE_NOT_DIRECTORY
+            find ${quote(path)} -mindepth 1 -maxdepth 1 -exec stat -c '$STAT_FORMAT' {} +
+            """
+        )
+        when (result.code) {
+            CODE_NOT_FOUND -> throw FileNotFoundException(path)
+            CODE_NOT_DIRECTORY -> throw DirectoryExpectedException()
+        }
+
+        // Unreadable entries make stat fail, but the rest of the output is still valid
+        val stats = result.out.mapNotNullTo(ArrayList(result.out.size), ::parseStat)
+        val symlinks = stats.filter(Stat::isSymlink).map(Stat::path)
+        if (symlinks.isEmpty()) {
+            return stats
+        }
+        val targets = HashMap<String, Stat>(symlinks.size)
+        for (chunk in symlinks.chunked(ARGUMENTS_LIMIT)) {
+            val arguments = chunk.joinToString(" ", transform = ::quote)
+            exec("stat -L -c '$STAT_FORMAT' $arguments").out
+                .mapNotNull(::parseStat)
+                .associateByTo(targets, Stat::path)
+        }
+        // Broken links keep their own attributes
+        return stats.map { targets[it.path] ?: it }
+    }
+
+    /** Resolves attributes of all [paths] with one `stat` call per chunk, missing ones are omitted */
+    fun stat(paths: List<String>): List<Stat> {
+        val stats = ArrayList<Stat>(paths.size)
+        for (chunk in paths.chunked(ARGUMENTS_LIMIT)) {
+            val arguments = chunk.joinToString(" ", transform = ::quote)
+            exec("stat -L -c '$STAT_FORMAT' $arguments").out
+                .mapNotNullTo(stats, ::parseStat)
+        }
+        return stats
+    }
+
+    /** Creates all [directories] and empty [files] at once, fails before creating anything if one exists */
+    fun create(directories: List<String>, files: List<String>) {
+        if (directories.isEmpty() && files.isEmpty()) {
+            return
+        }
+        val arguments = (directories + files).joinToString(" ", transform = ::quote)
+        val parents = (directories + files.map { it.substringBeforeLast(File.separatorChar) })
+            .filter(String::isNotEmpty)
+            .distinct()
+        // `:` is a no-op, since mkdir and touch fail without operands
+        val mkdir = if (parents.isEmpty()) ":" else "mkdir -p " + parents.joinToString(" ", transform = ::quote)
+        val touch = if (files.isEmpty()) ":" else "touch " + files.joinToString(" ", transform = ::quote)
+        val result = exec(
+            """
+            for p in $arguments; do
+                [ -e "${'$'}p" ] && { echo "${'$'}p"; exit $CODE_EXISTS; }
+            done
+            $mkdir || exit $CODE_FAILED
+            $touch || exit $CODE_FAILED
+            """
+        )
+        when (result.code) {
+            CODE_EXISTS -> throw FileAlreadyExistsException(result.out.first())
+            CODE_FAILED -> throw IOException(result.out.joinToString("\n"))
+        }
+    }
+
+    /** Deletes all [paths] with one `rm`, missing ones are reported after the rest is gone */
+    fun delete(paths: List<String>) {
+        if (paths.isEmpty()) {
+            return
+        }
+        val arguments = paths.joinToString(" ", transform = ::quote)
+        val result = exec(
+            """
+            set --
+            for p in $arguments; do
+                if [ -e "${'$'}p" ] || [ -L "${'$'}p" ]; then set -- "${'$'}@" "${'$'}p"; else echo "${'$'}p"; fi
+            done
+            [ ${'$'}# -eq 0 ] || rm -rf "${'$'}@" || exit $CODE_FAILED
+            """
+        )
+        if (result.code == CODE_FAILED) {
+            throw IOException(result.out.joinToString("\n"))
+        }
+        result.out.firstOrNull()?.let { throw FileNotFoundException(it) }
+    }
+
+    /** Copies all [paths] into [dest] with one `cp -a`, after checking every source and target */
+    fun copy(paths: List<String>, dest: String) {
+        if (paths.isEmpty()) {
+            return
+        }
+        val arguments = paths.joinToString(" ", transform = ::quote)
+        val result = exec(
+            """
+            for p in $arguments; do
+                [ -e "${'$'}p" ] || [ -L "${'$'}p" ] || { echo "${'$'}p"; exit $CODE_NOT_FOUND; }
+                [ -e ${quote(dest)}/"${'$'}{p##*/}" ] && { echo ${quote(dest)}/"${'$'}{p##*/}"; exit $CODE_EXISTS; }
+            done
+            cp -a $arguments ${quote(dest)}/ || exit $CODE_FAILED
+            """
+        )
+        when (result.code) {
+            CODE_NOT_FOUND -> throw FileNotFoundException(result.out.first())
+            CODE_EXISTS -> throw FileAlreadyExistsException(result.out.first())
+            CODE_FAILED -> throw IOException(result.out.joinToString("\n"))
+        }
+    }
+
+    /** Runs [script] in a subshell, so `exit` doesn't terminate the persistent shell */
+    private fun exec(script: String): Shell.Result {
+        return shell().newJob()
+            .add("(\n${script.trimIndent()}\n)")
+            .exec()
+    }
+
+    private fun shell(): Shell {
+        val current = shell
+        if (current.isAlive) {
+            return current
+        }
+        return synchronized(this) {
+            shell.takeIf(Shell::isAlive) ?: requestRootAccess().also { shell = it }
+        }
+    }
+
+    /** Parses a line printed with [STAT_FORMAT], the path goes last because it may contain `|` */
+    private fun parseStat(line: String): Stat? {
+        val fields = line.split('|', limit = 4)
+        if (fields.size < 4) {
+            return null
+        }
+        val mode = fields[0].toIntOrNull(16) ?: return null
+        val size = fields[1].toLongOrNull() ?: return null
+        val lastModified = fields[2].toLongOrNull() ?: return null
+        return Stat(
+            path = fields[3],
+            mode = mode,
+            size = size,
+            lastModified = lastModified * 1000L,
+        )
+    }
+
+    private fun quote(path: String): String {
+        return "'" + path.replace("'", "'\\''") + "'"
+    }
+
+    data class Stat(
+        val path: String,
+        val mode: Int,
+        val size: Long,
+        val lastModified: Long,
+    ) {
+        val isDirectory: Boolean
+            get() = (mode and S_IFMT) == S_IFDIR
+        val isSymlink: Boolean
+            get() = (mode and S_IFMT) == S_IFLNK
+    }
+
+    companion object {
+
+        /** Raw mode in hex, size, modification time in seconds and path */
+        private const val STAT_FORMAT = "%f|%s|%Y|%n"
+        private const val ARGUMENTS_LIMIT = 256
+
+        private const val CODE_NOT_FOUND = 3
+        private const val CODE_NOT_DIRECTORY = 4
+        private const val CODE_EXISTS = 5
+        private const val CODE_FAILED = 6
+
+        private const val S_IFMT = 0xF000
+        private const val S_IFDIR = 0x4000
+        private const val S_IFLNK = 0xA000
+    }
+}
\ No newline at end of file
@@ -27,7 +27,6 @@ android {
 dependencies {
 
     implementation(libs.androidx.core)
-    implementation(libs.ibm.icu4j)
     implementation(libs.kotlinx.coroutines.core)
 
     api(project(":filesystems:filesystem-base"))
@@ -17,67 +17,367 @@
 package com.blacksquircle.ui.filesystem.saf
 
 import android.content.Context
+import android.database.Cursor
+import android.net.Uri
+import android.os.ParcelFileDescriptor
+import android.provider.DocumentsContract
+import android.provider.DocumentsContract.Document
 import androidx.core.net.toUri
 import com.blacksquircle.ui.filesystem.base.Filesystem
+import com.blacksquircle.ui.filesystem.base.exception.FileNotFoundException
+import com.blacksquircle.ui.filesystem.base.exception.RenameFileException
 import com.blacksquircle.ui.filesystem.base.model.FileModel
 import com.blacksquircle.ui.filesystem.base.model.FileParams
+import com.blacksquircle.ui.filesystem.base.model.Permission
+import com.blacksquircle.ui.filesystem.base.model.TransferProgress
+import com.blacksquircle.ui.filesystem.base.utils.hasFlag
+import com.blacksquircle.ui.filesystem.base.utils.openReader
+import com.blacksquircle.ui.filesystem.base.utils.plusFlag
+import com.blacksquircle.ui.filesystem.base.utils.skipFully
+import com.blacksquircle.ui.filesystem.base.utils.useWriter
 import kotlinx.coroutines.flow.Flow
-import java.io.BufferedReader
+import kotlinx.coroutines.flow.flow
+import java.io.File
 import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.io.Reader
+import java.util.concurrent.ConcurrentHashMap
 
 class SAFFilesystem(private val context: Context) : Filesystem {
 
+    /**
+     * Children of the folders resolved so far, by display name, keyed by the folder's
+     * document URI. Documents that don't exist yet, e.g. transfer targets, are looked up
+     * here instead of listing their parents again, and documents created here are added.
+     */
+    private val childDocuments = object : LinkedHashMap<String, MutableMap<String, Uri>>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, MutableMap<String, Uri>>): Boolean {
+            return size > MAX_CACHED_FOLDERS
+        }
+    }
+
     override fun ping() = Unit
 
     override fun listFiles(parent: FileModel): List<FileModel> {
-        throw UnsupportedOperationException()
+        return queryChildren(parent) { cursor, safMapper ->
+            val children = ArrayList<FileModel>(cursor.count)
+            while (cursor.moveToNext()) {
+                children += safMapper.toFileModel(cursor)
+            }
+            children
+        }
+    }
+
+    override fun streamFiles(parent: FileModel): Flow<List<FileModel>> {
+        return flow {
+            queryChildren(parent) { cursor, safMapper ->
+                val chunk = ArrayList<FileModel>(Filesystem.CHUNK_SIZE)
+                var isEmpty = true
+                while (cursor.moveToNext()) {
+                    chunk += safMapper.toFileModel(cursor)
+                    if (chunk.size >= Filesystem.CHUNK_SIZE) {
+                        emit(chunk.toList())
+                        chunk.clear()
+                        isEmpty = false
+                    }
+                }
+                if (chunk.isNotEmpty() || isEmpty) {
+                    emit(chunk.toList())
+                }
+            }
+        }
     }
 
     override fun createFile(fileModel: FileModel) {
-        throw UnsupportedOperationException()
+        createDocument(fileModel)
     }
 
     override fun renameFile(source: FileModel, name: String) {
-        throw UnsupportedOperationException()
+        val sourceUri = documentUri(source.fileUri)
+        DocumentsContract.renameDocument(context.contentResolver, sourceUri, name)
+            ?: throw RenameFileException(source.fileUri)
+        synchronized(childDocuments) { childDocuments.clear() }
     }
 
     override fun deleteFile(fileModel: FileModel) {
-        throw UnsupportedOperationException()
+        val fileUri = documentUri(fileModel.fileUri)
+        if (!DocumentsContract.deleteDocument(context.contentResolver, fileUri)) {
+            throw FileNotFoundException(fileModel.fileUri)
+        }
+        synchronized(childDocuments) { childDocuments.clear() }
+    }
+
+    /** Document URIs are opaque, so each document is queried by itself instead of via its parent */
+    override fun stat(fileModels: List<FileModel>): List<FileModel> {
+        return fileModels.mapNotNull { fileModel ->
+            try {
+                val fileUri = documentUri(fileModel.fileUri)
+                context.contentResolver.query(fileUri, PROJECTION, null, null, null)?.use {
+                    if (it.moveToFirst()) SAFMapper(fileUri).toFileModel(it) else null
+                }
+            } catch (e: FileNotFoundException) {
+                null
+            } catch (e: IllegalArgumentException) {
+                null // most providers report a missing document this way
+            }
+        }
     }
 
-    override fun copyFile(source: FileModel, dest: FileModel) {
+    override fun copyFile(source: FileModel, dest: FileModel): Flow<TransferProgress> {
+        return flow {
+            val sourceUri = documentUri(source.fileUri)
+            val destUri = documentUri(dest.fileUri)
+            val isCopied = try {
+                DocumentsContract.copyDocument(context.contentResolver, sourceUri, destUri) != null
+            } catch (e: UnsupportedOperationException) {
+                false
+            }
+            if (isCopied) {
+                val progress = TransferProgress(
+                    path = source.path,
+                    fileCount = 1,
+                    totalFiles = 1,
+                    bytesCount = source.size,
+                    totalBytes = source.size,
+                )
+                emit(progress)
+            } else {
+                // Provider can't copy by itself, e.g. between two different trees
+                var fileCount = 0
+                var bytesCount = 0L
+                copyDocument(source, destUri) { fileModel ->
+                    fileCount++
+                    bytesCount += fileModel.size
+                    val progress = TransferProgress(
+                        path = fileModel.path,
+                        fileCount = fileCount,
+                        totalFiles = -1,
+                        bytesCount = bytesCount,
+                        totalBytes = -1,
+                    )
+                    emit(progress)
+                }
+            }
+        }
+    }
+
+    override fun moveFile(source: FileModel, dest: FileModel) {
         throw UnsupportedOperationException()
     }
 
-    override fun compressFiles(source: List<FileModel>, dest: FileModel): Flow<FileModel> {
+    override fun compressFiles(source: List<FileModel>, dest: FileModel): Flow<TransferProgress> {
         throw UnsupportedOperationException()
     }
 
-    override fun extractFiles(source: FileModel, dest: FileModel): Flow<FileModel> {
+    override fun extractFiles(source: FileModel, dest: FileModel): Flow<TransferProgress> {
         throw UnsupportedOperationException()
     }
 
     override fun loadFile(fileModel: FileModel, fileParams: FileParams): String {
-        val fileUri = fileModel.fileUri.toUri()
-        // TODO chardet?
-        context.contentResolver.openInputStream(fileUri)?.use { inputStream ->
-            return inputStream.bufferedReader(fileParams.charset)
-                .use(BufferedReader::readText)
-        }
-        throw IOException("Unable to open file: ${fileModel.fileUri}")
+        return openReader(fileModel, fileParams).use(Reader::readText)
     }
 
     override fun saveFile(fileModel: FileModel, text: String, fileParams: FileParams) {
+        useWriter(fileModel, fileParams) { it.write(text) }
+    }
+
+    override fun openInputStream(fileModel: FileModel): InputStream {
+        val fileUri = fileModel.fileUri.toUri()
+        return context.contentResolver.openInputStream(fileUri)
+            ?: throw IOException("Unable to open file: ${fileModel.fileUri}")
+    }
+
+    override fun openInputStream(fileModel: FileModel, offset: Long): InputStream {
         val fileUri = fileModel.fileUri.toUri()
-        val fileText = text.replace(fileParams.linebreak.regex, fileParams.linebreak.replacement)
-        context.contentResolver.openOutputStream(fileUri)?.use { output ->
-            output.bufferedWriter(fileParams.charset).use {
-                it.write(fileText)
+        val descriptor = context.contentResolver.openFileDescriptor(fileUri, "r")
+            ?: throw IOException("Unable to open file: ${fileModel.fileUri}")
+        val inputStream = ParcelFileDescriptor.AutoCloseInputStream(descriptor)
+        try {
+            try {
+                inputStream.channel.position(offset)
+            } catch (e: IOException) {
+                // Providers may serve the document through a pipe, which can't seek
+                inputStream.skipFully(offset)
             }
-        } ?: throw IOException("Unable to save file: ${fileModel.fileUri}")
+        } catch (e: Exception) {
+            inputStream.close()
+            throw e
+        }
+        return inputStream
+    }
+
+    override fun openOutputStream(fileModel: FileModel): OutputStream {
+        val fileUri = try {
+            documentUri(fileModel.fileUri)
+        } catch (e: FileNotFoundException) {
+            createDocument(fileModel)
+        }
+        return context.contentResolver.openOutputStream(fileUri)
+            ?: throw IOException("Unable to save file: ${fileModel.fileUri}")
+    }
+
+    override fun openAppendStream(fileModel: FileModel): OutputStream {
+        val fileUri = documentUri(fileModel.fileUri)
+        return context.contentResolver.openOutputStream(fileUri, "wa")
+            ?: throw IOException("Unable to save file: ${fileModel.fileUri}")
+    }
+
+    /** Runs a single query for all children of [parent], with only the columns [SAFMapper] needs */
+    private inline fun <T> queryChildren(
+        parent: FileModel,
+        block: (Cursor, SAFMapper) -> T,
+    ): T {
+        val parentUri = parent.fileUri.toUri()
+        val documentId = documentId(parentUri)
+        val childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(parentUri, documentId)
+        val cursor = context.contentResolver.query(childrenUri, PROJECTION, null, null, null)
+            ?: throw FileNotFoundException(parent.fileUri)
+        // The folder is being browsed, so it may have changed outside of the app
+        val folderUri = DocumentsContract.buildDocumentUriUsingTree(parentUri, documentId)
+        synchronized(childDocuments) { childDocuments.remove(folderUri.toString()) }
+        return cursor.use { block(it, SAFMapper(parentUri)) }
+    }
+
+    private fun createDocument(fileModel: FileModel): Uri {
+        val parentUri = documentUri(fileModel.fileUri.substringBeforeLast(File.separator))
+        val mimeType = if (fileModel.isDirectory) Document.MIME_TYPE_DIR else MIME_TYPE_DEFAULT
+        val documentUri = DocumentsContract.createDocument(context.contentResolver, parentUri, mimeType, fileModel.name)
+            ?: throw FileNotFoundException(fileModel.fileUri)
+        synchronized(childDocuments) {
+            childDocuments[parentUri.toString()]?.put(fileModel.name, documentUri)
+            if (fileModel.isDirectory) {
+                childDocuments[documentUri.toString()] = ConcurrentHashMap()
+            }
+        }
+        return documentUri
+    }
+
+    private suspend fun copyDocument(
+        source: FileModel,
+        destUri: Uri,
+        onCopied: suspend (FileModel) -> Unit,
+    ) {
+        val resolver = context.contentResolver
+        val sourceUri = documentUri(source.fileUri)
+        val mimeType = if (source.isDirectory) Document.MIME_TYPE_DIR else MIME_TYPE_DEFAULT
+        val targetUri = DocumentsContract.createDocument(resolver, destUri, mimeType, source.name)
+            ?: throw FileNotFoundException(source.fileUri)
+        if (source.isDirectory) {
+            for (child in listFiles(source)) {
+                copyDocument(child, targetUri, onCopied)
+            }
+        } else {
+            val inputStream = resolver.openInputStream(sourceUri)
+                ?: throw IOException("Unable to open file: ${source.fileUri}")
+            inputStream.use { input ->
+                val outputStream = resolver.openOutputStream(targetUri)
+                    ?: throw IOException("Unable to save file: $targetUri")
+                outputStream.use { output -> input.copyTo(output, BUFFER_SIZE) }
+            }
+            onCopied(source)
+        }
+    }
+
+    /**
+     * Tree URIs point at the root document of the tree. Children are addressed as
+     * parent URI + separator + name until they exist, those are looked up by name.
+     * Names are appended as is, so they're cut off the string rather than parsed,
+     * a `%`, `#` or `?` in them would be decoded or taken for a fragment or query.
+     */
+    private fun documentUri(fileUri: String): Uri {
+        val uri = fileUri.toUri()
+        val isParsed = uri.encodedQuery == null && uri.encodedFragment == null
+        if (isParsed && DocumentsContract.isDocumentUri(context, uri)) {
+            return uri
+        }
+        if (!DocumentsContract.isTreeUri(uri)) {
+            // Single files shared by other apps, e.g. through a FileProvider
+            return uri
+        }
+        if (isParsed && uri.pathSegments.size <= TREE_SEGMENTS) {
+            return DocumentsContract.buildDocumentUriUsingTree(uri, documentId(uri))
+        }
+        val parentUri = documentUri(fileUri.substringBeforeLast(File.separator))
+        val name = fileUri.substringAfterLast(File.separator)
+        return childDocuments(parentUri)[name]
+            ?: throw FileNotFoundException(fileUri)
+    }
+
+    /** Lists the folder once, later lookups are served by [childDocuments] */
+    private fun childDocuments(parentUri: Uri): MutableMap<String, Uri> {
+        synchronized(childDocuments) { childDocuments[parentUri.toString()] }?.let { return it }
+        val childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(
+            parentUri,
+            documentId(parentUri),
+        )
+        val projection = arrayOf(Document.COLUMN_DOCUMENT_ID, Document.COLUMN_DISPLAY_NAME)
+        val cursor = context.contentResolver.query(childrenUri, projection, null, null, null)
+            ?: throw FileNotFoundException(parentUri.toString())
+        val children = ConcurrentHashMap<String, Uri>()
+        cursor.use {
+            while (it.moveToNext()) {
+                children[it.getString(1)] = DocumentsContract.buildDocumentUriUsingTree(parentUri, it.getString(0))
+            }
+        }
+        synchronized(childDocuments) { childDocuments[parentUri.toString()] = children }
+        return children
+    }
+
+    private fun documentId(uri: Uri): String {
+        return if (DocumentsContract.isDocumentUri(context, uri)) {
+            DocumentsContract.getDocumentId(uri)
+        } else {
+            DocumentsContract.getTreeDocumentId(uri)
+        }
+    }
+
+    inner class SAFMapper(private val treeUri: Uri) : Filesystem.Mapper<Cursor> {
+
+        override fun toFileModel(fileObject: Cursor): FileModel {
+            val documentId = fileObject.getString(0)
+            val mimeType = fileObject.getString(2)
+            val flags = fileObject.getInt(5)
+            return FileModel(
+                fileUri = DocumentsContract.buildDocumentUriUsingTree(treeUri, documentId).toString(),
+                filesystemUuid = SAF_UUID,
+                name = fileObject.getString(1),
+                size = if (fileObject.isNull(3)) 0L else fileObject.getLong(3),
+                lastModified = if (fileObject.isNull(4)) 0L else fileObject.getLong(4),
+                isDirectory = mimeType == Document.MIME_TYPE_DIR,
+                permission = run {
+                    var permission = Permission.OWNER_READ
+                    if (flags hasFlag Document.FLAG_SUPPORTS_WRITE ||
+                        flags hasFlag Document.FLAG_DIR_SUPPORTS_CREATE
+                    ) {
+                        permission = permission plusFlag Permission.OWNER_WRITE
+                    }
+                    permission
+                },
+            )
+        }
+
+        override fun toFileObject(fileModel: FileModel): Cursor {
+            throw UnsupportedOperationException()
+        }
     }
 
     companion object {
         const val SAF_UUID = "saf"
+
+        private const val MIME_TYPE_DEFAULT = "application/octet-stream"
+        private const val TREE_SEGMENTS = 2 // tree/<document id>
+        private const val MAX_CACHED_FOLDERS = 64
+        private const val BUFFER_SIZE = 64 * 1024
+
+        /** Column order is relied upon by [SAFMapper] */
+        private val PROJECTION = arrayOf(
+            Document.COLUMN_DOCUMENT_ID,
+            Document.COLUMN_DISPLAY_NAME,
+            Document.COLUMN_MIME_TYPE,
+            Document.COLUMN_SIZE,
+            Document.COLUMN_LAST_MODIFIED,
+            Document.COLUMN_FLAGS,
+        )
     }
 }
\ No newline at end of file
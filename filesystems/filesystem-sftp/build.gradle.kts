@@ -21,9 +21,11 @@ plugins {
 dependencies {
 
     implementation(libs.bouncycastle.bcprov)
-    implementation(libs.ibm.icu4j)
     implementation(libs.kotlinx.coroutines.core)
     implementation(libs.mwiede.jsch)
 
     api(project(":filesystems:filesystem-base"))
+
+    testImplementation(libs.test.junit)
+    testImplementation(libs.test.sshd.sftp)
 }
\ No newline at end of file
@@ -17,247 +17,312 @@
 package com.blacksquircle.ui.filesystem.sftp
 
 import com.blacksquircle.ui.filesystem.base.Filesystem
-import com.blacksquircle.ui.filesystem.base.exception.AuthRequiredException
-import com.blacksquircle.ui.filesystem.base.exception.AuthenticationException
-import com.blacksquircle.ui.filesystem.base.exception.FileNotFoundException
 import com.blacksquircle.ui.filesystem.base.model.*
 import com.blacksquircle.ui.filesystem.base.utils.hasFlag
 import com.blacksquircle.ui.filesystem.base.utils.isValidFileName
+import com.blacksquircle.ui.filesystem.base.utils.onClose
+import com.blacksquircle.ui.filesystem.base.utils.openReader
 import com.blacksquircle.ui.filesystem.base.utils.plusFlag
-import com.ibm.icu.text.CharsetDetector
+import com.blacksquircle.ui.filesystem.base.utils.useWriter
 import com.jcraft.jsch.*
 import com.jcraft.jsch.ChannelSftp.LsEntry
+import com.jcraft.jsch.ChannelSftp.LsEntrySelector
+import kotlinx.coroutines.channels.trySendBlocking
 import kotlinx.coroutines.flow.Flow
-import org.bouncycastle.jce.provider.BouncyCastleProvider
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.isActive
 import java.io.File
-import java.security.Security
-import java.util.*
+import java.io.InputStream
+import java.io.OutputStream
+import java.io.Reader
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
 
 class SFTPFilesystem(
     private val serverConfig: ServerConfig,
-    private val cacheDir: File,
-    private val keysDir: File,
+    private val sessionPool: SFTPSessionPool,
 ) : Filesystem {
 
-    private val jsch = JSch()
-    private var session: Session? = null
-    private var channel: ChannelSftp? = null
-
-    private val sftpMapper = SFTPMapper()
-
-    init {
-        Security.insertProviderAt(BouncyCastleProvider(), 1)
-    }
-
     override fun ping() {
-        try {
-            connect()
-        } finally {
-            disconnect()
-        }
+        sessionPool.use(serverConfig) { }
     }
 
     override fun listFiles(parent: FileModel): List<FileModel> {
-        try {
-            connect()
-            sftpMapper.parent(parent)
-            return channel?.ls(parent.path).orEmpty()
+        return sessionPool.use(serverConfig) { channel ->
+            val sftpMapper = SFTPMapper(parent)
+            channel.ls(parent.path).orEmpty()
                 .filter { it.filename.isValidFileName() }
                 .map(sftpMapper::toFileModel)
-        } finally {
-            disconnect()
         }
     }
 
-    override fun createFile(fileModel: FileModel) {
-        try {
-            connect()
-            if (fileModel.isDirectory) {
-                channel?.mkdir(fileModel.path)
-            } else {
-                channel?.put("".byteInputStream(), fileModel.path)
+    override fun streamFiles(parent: FileModel): Flow<List<FileModel>> {
+        return channelFlow {
+            val channel = sessionPool.acquire(serverConfig)
+            var isBroken = true
+            try {
+                val sftpMapper = SFTPMapper(parent)
+                val chunk = ArrayList<FileModel>(Filesystem.CHUNK_SIZE)
+                var isEmpty = true
+                channel.ls(parent.path) { entry ->
+                    if (entry.filename.isValidFileName()) {
+                        chunk.add(sftpMapper.toFileModel(entry))
+                    }
+                    if (chunk.size >= Filesystem.CHUNK_SIZE) {
+                        trySendBlocking(chunk.toList())
+                        chunk.clear()
+                        isEmpty = false
+                    }
+                    if (isActive) LsEntrySelector.CONTINUE else LsEntrySelector.BREAK
+                }
+                isBroken = false
+                if (chunk.isNotEmpty() || isEmpty) {
+                    send(chunk.toList())
+                }
+            } catch (e: SftpException) {
+                isBroken = false
+                throw e
+            } finally {
+                sessionPool.release(serverConfig, channel, isBroken)
             }
-        } finally {
-            disconnect()
+        }
+    }
+
+    override fun createFile(fileModel: FileModel) {
+        sessionPool.use(serverConfig) { channel ->
+            channel.create(fileModel)
         }
     }
 
     override fun renameFile(source: FileModel, name: String) {
-        try {
-            connect()
+        sessionPool.use(serverConfig) { channel ->
             val base = source.path.substringBeforeLast(File.separator)
-            channel?.rename(source.path, base + File.separator + name)
-        } finally {
-            disconnect()
+            channel.rename(source.path, base + File.separator + name)
         }
     }
 
     override fun deleteFile(fileModel: FileModel) {
-        try {
-            connect()
-            if (fileModel.isDirectory) {
-                channel?.rmdir(fileModel.path)
-            } else {
-                channel?.rm(fileModel.path)
+        if (!fileModel.isDirectory) {
+            sessionPool.use(serverConfig) { channel ->
+                channel.rm(fileModel.path)
             }
-        } finally {
-            disconnect()
+            return
+        }
+
+        // Walk the tree level by level, listing sibling directories in parallel
+        val files = ConcurrentLinkedQueue<String>()
+        val levels = ArrayList<List<String>>()
+        var directories = listOf(fileModel.path)
+        while (directories.isNotEmpty()) {
+            levels += directories
+            val subdirectories = ConcurrentLinkedQueue<String>()
+            sessionPool.forEachParallel(serverConfig, directories) { channel, path ->
+                channel.ls(path).orEmpty()
+                    .filter { it.filename.isValidFileName() }
+                    .forEach { entry ->
+                        val childPath = path + File.separator + entry.filename
+                        if (entry.attrs.isDir) {
+                            subdirectories += childPath
+                        } else {
+                            files += childPath
+                        }
+                    }
+            }
+            directories = subdirectories.toList()
+        }
+
+        sessionPool.forEachParallel(serverConfig, files) { channel, path ->
+            channel.rm(path)
+        }
+        for (level in levels.asReversed()) {
+            sessionPool.forEachParallel(serverConfig, level) { channel, path ->
+                channel.rmdir(path)
+            }
+        }
+    }
+
+    override fun stat(fileModels: List<FileModel>): List<FileModel> {
+        val found = ConcurrentHashMap<String, FileModel>(fileModels.size)
+        sessionPool.forEachParallel(serverConfig, fileModels) { channel, fileModel ->
+            val attrs = try {
+                channel.stat(fileModel.path)
+            } catch (e: SftpException) {
+                if (e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                    throw e
+                }
+                return@forEachParallel
+            }
+            val parent = FileModel(
+                fileUri = fileModel.fileUri.substringBeforeLast(File.separator),
+                filesystemUuid = serverConfig.uuid,
+            )
+            found[fileModel.fileUri] = SFTPMapper(parent).toFileModel(fileModel.name, attrs)
+        }
+        return fileModels.mapNotNull { found[it.fileUri] }
+    }
+
+    override fun deleteFiles(fileModels: List<FileModel>) {
+        val (directories, files) = fileModels.partition(FileModel::isDirectory)
+        sessionPool.forEachParallel(serverConfig, files) { channel, fileModel ->
+            channel.rm(fileModel.path)
+        }
+        directories.forEach(::deleteFile)
+    }
+
+    override fun createFiles(fileModels: List<FileModel>) {
+        sessionPool.forEachParallel(serverConfig, fileModels) { channel, fileModel ->
+            channel.create(fileModel)
         }
     }
 
-    override fun copyFile(source: FileModel, dest: FileModel) {
+    override fun copyFile(source: FileModel, dest: FileModel): Flow<TransferProgress> {
         throw UnsupportedOperationException()
     }
 
-    override fun compressFiles(source: List<FileModel>, dest: FileModel): Flow<FileModel> {
+    override fun moveFile(source: FileModel, dest: FileModel) {
+        sessionPool.use(serverConfig) { channel ->
+            channel.rename(source.path, dest.path + File.separator + source.name)
+        }
+    }
+
+    override fun compressFiles(source: List<FileModel>, dest: FileModel): Flow<TransferProgress> {
         throw UnsupportedOperationException()
     }
 
-    override fun extractFiles(source: FileModel, dest: FileModel): Flow<FileModel> {
+    override fun extractFiles(source: FileModel, dest: FileModel): Flow<TransferProgress> {
         throw UnsupportedOperationException()
     }
 
     override fun loadFile(fileModel: FileModel, fileParams: FileParams): String {
-        val tempFile = File(cacheDir, UUID.randomUUID().toString())
+        return openReader(fileModel, fileParams).use(Reader::readText)
+    }
+
+    override fun saveFile(fileModel: FileModel, text: String, fileParams: FileParams) {
+        useWriter(fileModel, fileParams) { it.write(text) }
+    }
+
+    override fun openInputStream(fileModel: FileModel): InputStream {
+        return openInputStream(fileModel, 0L)
+    }
+
+    override fun openInputStream(fileModel: FileModel, offset: Long): InputStream {
+        val channel = sessionPool.acquire(serverConfig)
         try {
-            connect()
-            tempFile.createNewFile()
-            tempFile.outputStream().use {
-                channel?.get(fileModel.path, it)
-            }
-            val charset = if (fileParams.chardet) {
-                try {
-                    val charsetMatch = CharsetDetector()
-                        .setText(tempFile.inputStream())
-                        .detect()
-                    charset(charsetMatch.name)
-                } catch (e: Exception) {
-                    Charsets.UTF_8
-                }
-            } else {
-                fileParams.charset
-            }
-            return tempFile.readText(charset)
-        } finally {
-            tempFile.deleteRecursively()
-            disconnect()
+            return channel.get(fileModel.path, null, offset)
+                .onClose { sessionPool.release(serverConfig, channel) }
+        } catch (e: Exception) {
+            sessionPool.release(serverConfig, channel, isBroken = e !is SftpException)
+            throw e
         }
     }
 
-    override fun saveFile(fileModel: FileModel, text: String, fileParams: FileParams) {
-        val tempFile = File(cacheDir, UUID.randomUUID().toString())
+    override fun openOutputStream(fileModel: FileModel): OutputStream {
+        val channel = sessionPool.acquire(serverConfig)
         try {
-            connect()
+            return channel.put(fileModel.path)
+                .onClose { sessionPool.release(serverConfig, channel) }
+        } catch (e: Exception) {
+            sessionPool.release(serverConfig, channel, isBroken = e !is SftpException)
+            throw e
+        }
+    }
 
-            tempFile.createNewFile()
-            tempFile.writeText(text, fileParams.charset)
-            tempFile.inputStream().use {
-                channel?.put(it, fileModel.path)
-            }
-        } finally {
-            tempFile.deleteRecursively()
-            disconnect()
+    override fun openAppendStream(fileModel: FileModel): OutputStream {
+        val channel = sessionPool.acquire(serverConfig)
+        try {
+            return channel.put(fileModel.path, ChannelSftp.APPEND)
+                .onClose { sessionPool.release(serverConfig, channel) }
+        } catch (e: Exception) {
+            sessionPool.release(serverConfig, channel, isBroken = e !is SftpException)
+            throw e
         }
     }
 
-    private fun connect() {
+    /** Parents are looked up only if the server reports that they're missing */
+    private fun ChannelSftp.create(fileModel: FileModel) {
         try {
-            jsch.removeAllIdentity()
-            session = jsch.getSession(
-                serverConfig.username,
-                serverConfig.address,
-                serverConfig.port,
-            ).apply {
-                when (serverConfig.authMethod) {
-                    AuthMethod.PASSWORD -> {
-                        if (serverConfig.password == null) {
-                            throw AuthRequiredException(AuthMethod.PASSWORD)
-                        }
-                        setPassword(serverConfig.password)
-                    }
-                    AuthMethod.KEY -> {
-                        if (serverConfig.passphrase == null) {
-                            throw AuthRequiredException(AuthMethod.KEY)
-                        }
-                        val keyId = serverConfig.keyId.orEmpty()
-                        val keyFile = File(keysDir, keyId)
-                        if (!keyFile.exists()) {
-                            throw FileNotFoundException("Key with id $keyId not found")
-                        }
-                        val keyPath = keyFile.absolutePath
-                        val keyPair = KeyPair.load(jsch, keyPath)
-
-                        if (keyPair.isEncrypted) {
-                            if (keyPair.decrypt(serverConfig.passphrase)) {
-                                jsch.addIdentity(keyPath, serverConfig.passphrase)
-                            } else {
-                                throw AuthRequiredException(AuthMethod.KEY)
-                            }
-                        } else {
-                            jsch.addIdentity(keyPath)
-                        }
-                    }
-                }
-                setConfig("StrictHostKeyChecking", "no")
-                connect()
-            }
-            channel = session?.openChannel(CHANNEL_SFTP) as ChannelSftp
-            channel?.connect()
-        } catch (e: JSchException) {
-            if (e.message.orEmpty().contains("Auth")) {
-                throw AuthenticationException(serverConfig.authMethod)
-            } else {
+            createEntry(fileModel)
+        } catch (e: SftpException) {
+            if (e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE) {
                 throw e
             }
+            makeParents(fileModel.path)
+            createEntry(fileModel)
         }
     }
 
-    private fun disconnect() {
-        channel?.disconnect()
-        session?.disconnect()
-        channel = null
-        session = null
+    private fun ChannelSftp.createEntry(fileModel: FileModel) {
+        if (fileModel.isDirectory) {
+            mkdir(fileModel.path)
+        } else {
+            put("".byteInputStream(), fileModel.path)
+        }
     }
 
-    inner class SFTPMapper : Filesystem.Mapper<LsEntry> {
+    /** Creates missing ancestors of [path], starting from the deepest existing one */
+    private fun ChannelSftp.makeParents(path: String) {
+        val missing = ArrayDeque<String>()
+        var parent = path.substringBeforeLast(File.separator)
+        while (parent.isNotEmpty() && !exists(parent)) {
+            missing.addFirst(parent)
+            parent = parent.substringBeforeLast(File.separator)
+        }
+        missing.forEach { mkdir(it) }
+    }
 
-        private var parent: FileModel? = null
+    private fun ChannelSftp.exists(path: String): Boolean {
+        return try {
+            stat(path)
+            true
+        } catch (e: SftpException) {
+            if (e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                throw e
+            }
+            false
+        }
+    }
+
+    inner class SFTPMapper(private val parent: FileModel) : Filesystem.Mapper<LsEntry> {
 
-        @Suppress("KotlinConstantConditions")
         override fun toFileModel(fileObject: LsEntry): FileModel {
+            return toFileModel(fileObject.filename, fileObject.attrs)
+        }
+
+        @Suppress("KotlinConstantConditions")
+        fun toFileModel(name: String, attrs: SftpATTRS): FileModel {
             return FileModel(
-                fileUri = parent?.fileUri + File.separator + fileObject.filename,
+                fileUri = parent.fileUri + File.separator + name,
                 filesystemUuid = serverConfig.uuid,
-                size = fileObject.attrs.size,
-                lastModified = fileObject.attrs.mTime * 1000L,
-                isDirectory = fileObject.attrs.isDir,
-                permission = with(fileObject) {
+                size = attrs.size,
+                lastModified = attrs.mTime * 1000L,
+                isDirectory = attrs.isDir,
+                permission = with(attrs) {
                     var permission = Permission.EMPTY
-                    if (attrs.permissions hasFlag (4 shl 2)) { // SftpATTRS.S_IRUSR
+                    if (permissions hasFlag (4 shl 2)) { // SftpATTRS.S_IRUSR
                         permission = permission plusFlag Permission.OWNER_READ
                     }
-                    if (attrs.permissions hasFlag (2 shl 2)) { // SftpATTRS.S_IWUSR
+                    if (permissions hasFlag (2 shl 2)) { // SftpATTRS.S_IWUSR
                         permission = permission plusFlag Permission.OWNER_WRITE
                     }
-                    if (attrs.permissions hasFlag (1 shl 2)) { // SftpATTRS.S_IXUSR
+                    if (permissions hasFlag (1 shl 2)) { // SftpATTRS.S_IXUSR
                         permission = permission plusFlag Permission.OWNER_EXECUTE
                     }
-                    if (attrs.permissions hasFlag (4 shl 1)) { // SftpATTRS.S_IRGRP
+                    if (permissions hasFlag (4 shl 1)) { // SftpATTRS.S_IRGRP
                         permission = permission plusFlag Permission.GROUP_READ
                     }
-                    if (attrs.permissions hasFlag (2 shl 1)) { // SftpATTRS.S_IWGRP
+                    if (permissions hasFlag (2 shl 1)) { // SftpATTRS.S_IWGRP
                         permission = permission plusFlag Permission.GROUP_WRITE
                     }
-                    if (attrs.permissions hasFlag (1 shl 1)) { // SftpATTRS.S_IXGRP
+                    if (permissions hasFlag (1 shl 1)) { // SftpATTRS.S_IXGRP
                         permission = permission plusFlag Permission.GROUP_EXECUTE
                     }
-                    if (attrs.permissions hasFlag 4) { // SftpATTRS.S_IROTH
+                    if (permissions hasFlag 4) { // SftpATTRS.S_IROTH
                         permission = permission plusFlag Permission.OTHERS_READ
                     }
-                    if (attrs.permissions hasFlag 2) { // SftpATTRS.S_IWOTH
+                    if (permissions hasFlag 2) { // SftpATTRS.S_IWOTH
                         permission = permission plusFlag Permission.OTHERS_WRITE
                     }
-                    if (attrs.permissions hasFlag 1) { // SftpATTRS.S_IXOTH
+                    if (permissions hasFlag 1) { // SftpATTRS.S_IXOTH
                         permission = permission plusFlag Permission.OTHERS_EXECUTE
                     }
                     permission
@@ -268,14 +333,5 @@ class SFTPFilesystem(
         override fun toFileObject(fileModel: FileModel): LsEntry {
             throw UnsupportedOperationException()
         }
-
-        fun parent(parent: FileModel): FileModel {
-            this.parent = parent
-            return parent
-        }
-    }
-
-    companion object {
-        private const val CHANNEL_SFTP = "sftp"
     }
 }
\ No newline at end of file
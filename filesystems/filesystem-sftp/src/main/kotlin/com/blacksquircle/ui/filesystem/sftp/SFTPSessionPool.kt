@@ -0,0 +1,201 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.sftp
+
+import com.blacksquircle.ui.filesystem.base.connection.ConnectionPool
+import com.blacksquircle.ui.filesystem.base.exception.AuthRequiredException
+import com.blacksquircle.ui.filesystem.base.exception.AuthenticationException
+import com.blacksquircle.ui.filesystem.base.exception.FileNotFoundException
+import com.blacksquircle.ui.filesystem.base.model.AuthMethod
+import com.blacksquircle.ui.filesystem.base.model.ServerConfig
+import com.jcraft.jsch.ChannelSftp
+import com.jcraft.jsch.JSch
+import com.jcraft.jsch.JSchException
+import com.jcraft.jsch.KeyPair
+import com.jcraft.jsch.Session
+import org.bouncycastle.jce.provider.BouncyCastleProvider
+import java.io.File
+import java.security.Security
+
+/**
+ * Pools [ChannelSftp] instances. Channels of the same server are multiplexed
+ * over a single kept-alive [Session], which is closed with its last channel.
+ */
+class SFTPSessionPool(private val keysDir: File) : ConnectionPool<ChannelSftp>() {
+
+    private val sessions = HashMap<ServerConfig, Session>()
+    private val channelCount = HashMap<Session, Int>()
+
+    override fun connect(serverConfig: ServerConfig): ChannelSftp {
+        val session = obtainSession(serverConfig)
+        return try {
+            openChannel(session)
+        } catch (e: JSchException) {
+            // Session is dead or out of channels, start a new one
+            synchronized(this) {
+                if (sessions[serverConfig] === session) {
+                    sessions.remove(serverConfig)
+                }
+            }
+            openChannel(obtainSession(serverConfig))
+        }
+    }
+
+    /** A round trip, so a channel with unread replies or a dropped session is caught after a long idle */
+    override fun isAlive(connection: ChannelSftp): Boolean {
+        return try {
+            connection.isConnected &&
+                connection.session.isConnected &&
+                connection.realpath(".") != null
+        } catch (e: Exception) {
+            // JSchException, SftpException or garbage left on the channel
+            false
+        }
+    }
+
+    override fun disconnect(connection: ChannelSftp) {
+        val session = try {
+            connection.session
+        } catch (e: JSchException) {
+            null
+        }
+        connection.disconnect()
+        if (session != null) {
+            val isLastChannel = synchronized(this) {
+                val count = channelCount[session]?.minus(1) ?: 0
+                if (count > 0) {
+                    channelCount[session] = count
+                    return@synchronized false
+                }
+                channelCount.remove(session)
+                sessions.values.remove(session)
+                true
+            }
+            if (isLastChannel) {
+                session.disconnect()
+            }
+        }
+    }
+
+    private fun openChannel(session: Session): ChannelSftp {
+        synchronized(this) {
+            channelCount[session] = (channelCount[session] ?: 0) + 1
+        }
+        try {
+            val channel = session.openChannel(CHANNEL_SFTP) as ChannelSftp
+            channel.connect()
+            return channel
+        } catch (e: JSchException) {
+            val isLastChannel = synchronized(this) {
+                val count = channelCount[session]?.minus(1) ?: 0
+                if (count > 0) channelCount[session] = count else channelCount.remove(session)
+                count <= 0
+            }
+            if (isLastChannel) {
+                session.disconnect()
+            }
+            throw e
+        }
+    }
+
+    private fun obtainSession(serverConfig: ServerConfig): Session {
+        synchronized(this) {
+            val session = sessions[serverConfig]
+            if (session?.isConnected == true) {
+                return session
+            }
+        }
+        val session = createSession(serverConfig)
+        val existing = synchronized(this) {
+            val existing = sessions[serverConfig]
+            if (existing?.isConnected == true) {
+                return@synchronized existing
+            }
+            sessions[serverConfig] = session
+            null
+        }
+        if (existing != null) {
+            // Another thread has connected in the meantime
+            session.disconnect()
+            return existing
+        }
+        return session
+    }
+
+    private fun createSession(serverConfig: ServerConfig): Session {
+        try {
+            val jsch = JSch()
+            return jsch.getSession(
+                serverConfig.username,
+                serverConfig.address,
+                serverConfig.port,
+            ).apply {
+                when (serverConfig.authMethod) {
+                    AuthMethod.PASSWORD -> {
+                        if (serverConfig.password == null) {
+                            throw AuthRequiredException(AuthMethod.PASSWORD)
+                        }
+                        setPassword(serverConfig.password)
+                    }
+                    AuthMethod.KEY -> {
+                        if (serverConfig.passphrase == null) {
+                            throw AuthRequiredException(AuthMethod.KEY)
+                        }
+                        val keyId = serverConfig.keyId.orEmpty()
+                        val keyFile = File(keysDir, keyId)
+                        if (!keyFile.exists()) {
+                            throw FileNotFoundException("Key with id $keyId not found")
+                        }
+                        val keyPath = keyFile.absolutePath
+                        val keyPair = KeyPair.load(jsch, keyPath)
+
+                        if (keyPair.isEncrypted) {
+                            if (keyPair.decrypt(serverConfig.passphrase)) {
+                                jsch.addIdentity(keyPath, serverConfig.passphrase)
+                            } else {
+                                throw AuthRequiredException(AuthMethod.KEY)
+                            }
+                        } else {
+                            jsch.addIdentity(keyPath)
+                        }
+                    }
+                }
+                setConfig("StrictHostKeyChecking", "no")
+                serverAliveInterval = KEEP_ALIVE_INTERVAL
+                serverAliveCountMax = KEEP_ALIVE_COUNT_MAX
+                connect()
+            }
+        } catch (e: JSchException) {
+            if (e.message.orEmpty().contains("Auth")) {
+                throw AuthenticationException(serverConfig.authMethod)
+            } else {
+                throw e
+            }
+        }
+    }
+
+    companion object {
+
+        private const val CHANNEL_SFTP = "sftp"
+        private const val KEEP_ALIVE_INTERVAL = 15_000
+        private const val KEEP_ALIVE_COUNT_MAX = 3
+
+        init {
+            Security.insertProviderAt(BouncyCastleProvider(), 1)
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,163 @@
+/*
+ * Copyright Squircle CE contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blacksquircle.ui.filesystem.sftp
+
+import com.blacksquircle.ui.filesystem.base.model.AuthMethod
+import com.blacksquircle.ui.filesystem.base.model.FileModel
+import com.blacksquircle.ui.filesystem.base.model.FileParams
+import com.blacksquircle.ui.filesystem.base.model.ServerConfig
+import com.blacksquircle.ui.filesystem.base.model.ServerType
+import com.blacksquircle.ui.filesystem.base.utils.cancellable
+import com.blacksquircle.ui.filesystem.base.utils.useReader
+import com.jcraft.jsch.ChannelSftp
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory
+import org.apache.sshd.server.SshServer
+import org.apache.sshd.server.auth.password.PasswordAuthenticator
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider
+import org.apache.sshd.sftp.server.SftpSubsystemFactory
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class SFTPCancellationTest {
+
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    private lateinit var server: SshServer
+    private lateinit var serverConfig: ServerConfig
+    private lateinit var sessionPool: SFTPSessionPool
+    private lateinit var filesystem: SFTPFilesystem
+
+    @Before
+    fun setup() {
+        val rootDir = tempFolder.newFolder("root")
+        File(rootDir, LARGE_FILE).writeBytes(ByteArray(LARGE_FILE_SIZE) { 'a'.code.toByte() })
+        File(rootDir, SMALL_FILE).writeText(SMALL_TEXT)
+
+        server = SshServer.setUpDefaultServer().apply {
+            port = 0
+            keyPairProvider = SimpleGeneratorHostKeyProvider(tempFolder.root.toPath().resolve("host.ser"))
+            passwordAuthenticator = PasswordAuthenticator { username, password, _ ->
+                username == USERNAME && password == PASSWORD
+            }
+            subsystemFactories = listOf(SftpSubsystemFactory())
+            fileSystemFactory = VirtualFileSystemFactory(rootDir.toPath())
+            start()
+        }
+        serverConfig = ServerConfig(
+            uuid = "12345",
+            scheme = ServerType.SFTP,
+            name = "server",
+            address = "localhost",
+            port = server.port,
+            initialDir = "/",
+            authMethod = AuthMethod.PASSWORD,
+            username = USERNAME,
+            password = PASSWORD,
+            keyId = null,
+            passphrase = null,
+            protectData = false,
+        )
+        sessionPool = SFTPSessionPool(tempFolder.newFolder("keys"))
+        filesystem = SFTPFilesystem(serverConfig, sessionPool)
+    }
+
+    @After
+    fun cleanup() {
+        sessionPool.evict(serverConfig.uuid)
+        server.stop(true)
+    }
+
+    @Test
+    fun `When download is cancelled midway Then discard the channel`() = runBlocking {
+        // Given
+        val started = CompletableDeferred<ChannelSftp>()
+        val job = launch(Dispatchers.Default) {
+            cancellable {
+                sessionPool.use(serverConfig) { channel ->
+                    channel.get("/$LARGE_FILE").use { inputStream ->
+                        val buffer = ByteArray(BUFFER_SIZE)
+                        started.complete(channel)
+                        while (inputStream.read(buffer) >= 0) {
+                            Thread.sleep(READ_DELAY)
+                        }
+                    }
+                }
+            }
+        }
+        val channel = started.await()
+
+        // When
+        withTimeout(TIMEOUT) { job.cancelAndJoin() }
+
+        // Then
+        val reused = sessionPool.acquire(serverConfig)
+        assertNotSame(channel, reused)
+        sessionPool.release(serverConfig, reused)
+    }
+
+    @Test
+    fun `When reader is cancelled midway Then next operations still work`() = runBlocking {
+        // Given
+        val largeFile = FileModel("sftp:///$LARGE_FILE", serverConfig.uuid)
+        val smallFile = FileModel("sftp:///$SMALL_FILE", serverConfig.uuid)
+        val started = CompletableDeferred<Unit>()
+        val job = launch(Dispatchers.Default) {
+            filesystem.useReader(largeFile, FileParams()) { reader ->
+                val buffer = CharArray(BUFFER_SIZE)
+                started.complete(Unit)
+                while (reader.read(buffer) >= 0) {
+                    Thread.sleep(READ_DELAY)
+                }
+            }
+        }
+        started.await()
+
+        // When
+        withTimeout(TIMEOUT) { job.cancelAndJoin() }
+
+        // Then
+        val root = FileModel("sftp:///", serverConfig.uuid, isDirectory = true)
+        val names = filesystem.listFiles(root).map(FileModel::name).sorted()
+        assertEquals(listOf(LARGE_FILE, SMALL_FILE), names)
+        assertEquals(SMALL_TEXT, filesystem.loadFile(smallFile, FileParams()))
+    }
+
+    companion object {
+        private const val USERNAME = "user"
+        private const val PASSWORD = "password"
+        private const val LARGE_FILE = "large.txt"
+        private const val LARGE_FILE_SIZE = 16 * 1024 * 1024
+        private const val SMALL_FILE = "small.txt"
+        private const val SMALL_TEXT = "Hello World!"
+        private const val BUFFER_SIZE = 8 * 1024
+        private const val READ_DELAY = 10L
+        private const val TIMEOUT = 5_000L
+    }
+}
\ No newline at end of file